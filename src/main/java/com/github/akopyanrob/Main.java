@@ -1,58 +1,298 @@
 package com.github.akopyanrob;
 
+import com.github.akopyanrob.dns.DnsCache;
+import com.github.akopyanrob.dns.DnsCacheConfig;
+import com.github.akopyanrob.dns.NameResolver;
+import com.github.akopyanrob.metrics.MetricsRegistry;
+import com.github.akopyanrob.metrics.MetricsServer;
+import com.github.akopyanrob.metrics.ResultMetrics;
 import com.github.akopyanrob.result.LastResultHolder;
+import com.github.akopyanrob.result.ResultLog;
+import com.github.akopyanrob.report.BatchingReporter;
 import com.github.akopyanrob.report.ReportBuilder;
+import com.github.akopyanrob.report.ReportOutbox;
+import com.github.akopyanrob.report.ReportPipelineConfig;
 import com.github.akopyanrob.report.Reporter;
+import com.github.akopyanrob.service.AsyncTCPPingService;
 import com.github.akopyanrob.service.Config;
+import com.github.akopyanrob.service.ContinuousICMPPingService;
 import com.github.akopyanrob.service.ICMPPingService;
+import com.github.akopyanrob.service.InFlightLimiter;
+import com.github.akopyanrob.service.NativeICMPPingService;
+import com.github.akopyanrob.service.NativeTraceRoutePingService;
+import com.github.akopyanrob.service.PhasedTCPPingService;
+import com.github.akopyanrob.service.PingService;
+import com.github.akopyanrob.scheduler.AdaptiveIntervalConfig;
+import com.github.akopyanrob.scheduler.AdaptiveIntervalPolicy;
+import com.github.akopyanrob.scheduler.HashedWheelTimer;
+import com.github.akopyanrob.scheduler.IntervalPolicy;
 import com.github.akopyanrob.scheduler.PingScheduler;
+import com.github.akopyanrob.scheduler.ProbeDispatcher;
+import com.github.akopyanrob.service.TCPConnectPingService;
 import com.github.akopyanrob.service.TCPPingService;
 import com.github.akopyanrob.service.TraceRoutePingService;
+import com.github.akopyanrob.topology.TopologyGraph;
+import com.github.akopyanrob.trace.TraceCache;
+import com.github.akopyanrob.trace.TraceCacheConfig;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.InetSocketAddress;
 import java.net.http.HttpClient;
+import java.nio.file.Path;
 import java.util.Properties;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 public class Main {
     private static final Logger logger = LoggerFactory.getLogger(Main.class);
     private static final String APPLICATION_PROPERTIES = "application.properties";
+    private static final MetricsRegistry metrics = MetricsRegistry.getInstance();
 
     public static void main(String[] args) {
 
         Properties properties = loadProperties();
+        DnsCache dnsCache = createDnsCache(properties);
 
         LastResultHolder lastResultHolder = LastResultHolder.getInstance();
+        openResultLog(properties, lastResultHolder);
+        startMetricsServer(properties, lastResultHolder);
 
-        ReportBuilder reportBuilder = new ReportBuilder(lastResultHolder);
+        ReportBuilder reportBuilder = new ReportBuilder(lastResultHolder,
+                Boolean.parseBoolean(properties.getProperty("report.pretty", "false")),
+                Integer.parseInt(properties.getProperty("report.history.samples", "0")),
+                Long.parseLong(properties.getProperty("report.percentiles.period.ms", "3600000")));
         String reportDestinationUrl = getReportDestinationUrl(properties);
-        Reporter reporter = new Reporter(reportBuilder, HttpClient.newBuilder().build(), reportDestinationUrl);
+        Reporter reporter = createReporter(properties, reportBuilder, reportDestinationUrl);
 
         // Start the pingScheduler
         int maxThreadPoolSize = getMaxThreadPoolSize(properties);
         int poolSize = Math.min(Runtime.getRuntime().availableProcessors() * 2, maxThreadPoolSize); // Max 16 threads as Ping calls are usually fast
-        ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(poolSize);
-        PingScheduler pingScheduler = new PingScheduler(scheduler, lastResultHolder, reporter);
+        PingScheduler pingScheduler = createPingScheduler(properties, poolSize, lastResultHolder, reporter);
+        metrics.timer("scheduler_lag_seconds", "Delay of the probe starts behind their schedule", pingScheduler.getSchedulingLag().getTimer());
+        startTopology(properties, reporter, pingScheduler, lastResultHolder);
 
         // Start TCP Ping Service
         Config tcpPingProperties = getTCPPingProperties(properties);
         HttpClient httpClient = HttpClient.newBuilder().build();
-        TCPPingService tcpPingService = new TCPPingService(httpClient, tcpPingProperties);
-        pingScheduler.schedulePing(tcpPingService, tcpPingProperties);
+        if (Boolean.parseBoolean(properties.getProperty("tcp.phases", "false"))) {
+            // A fresh connection per ping, with the DNS, connect, TLS and first byte times in the result
+            PhasedTCPPingService phasedTcpPingService = new PhasedTCPPingService(tcpPingProperties, dnsCache,
+                    Boolean.parseBoolean(properties.getProperty("tcp.phases.https", "false")));
+            pingScheduler.schedulePing(phasedTcpPingService, tcpPingProperties, getIntervalPolicy(properties, "tcp", tcpPingProperties));
+        } else if (Boolean.parseBoolean(properties.getProperty("tcp.async", "false"))) {
+            InFlightLimiter tcpInFlightLimiter = getTCPInFlightLimiter(properties);
+            registerInFlightLimiterMetrics("tcp", tcpInFlightLimiter);
+            AsyncTCPPingService asyncTcpPingService = new AsyncTCPPingService(httpClient, tcpPingProperties, tcpInFlightLimiter, dnsCache);
+            pingScheduler.scheduleAsyncPing(asyncTcpPingService, tcpPingProperties, getIntervalPolicy(properties, "tcp", tcpPingProperties));
+        } else {
+            TCPPingService tcpPingService = new TCPPingService(httpClient, tcpPingProperties, dnsCache);
+            pingScheduler.schedulePing(tcpPingService, tcpPingProperties, getIntervalPolicy(properties, "tcp", tcpPingProperties));
+        }
+
+        // Start TCP Connect Ping Service
+        if (Boolean.parseBoolean(properties.getProperty("tcp.connect.enabled", "false"))) {
+            Config tcpConnectPingProperties = getTCPConnectPingProperties(properties);
+            int port = Integer.parseInt(properties.getProperty("tcp.connect.port", "80"));
+            int maxInFlight = Integer.parseInt(properties.getProperty("tcp.connect.max.in.flight", "10000"));
+            try {
+                InFlightLimiter tcpConnectInFlightLimiter = new InFlightLimiter(maxInFlight, 1);
+                registerInFlightLimiterMetrics("tcp_connect", tcpConnectInFlightLimiter);
+                TCPConnectPingService tcpConnectPingService = new TCPConnectPingService(port, tcpConnectPingProperties, tcpConnectInFlightLimiter, dnsCache);
+                pingScheduler.scheduleAsyncPing(tcpConnectPingService, tcpConnectPingProperties,
+                        getIntervalPolicy(properties, "tcp.connect", tcpConnectPingProperties));
+            } catch (IOException e) {
+                logger.error("Failed to start TCP connect ping service: {}", e.getMessage(), e);
+            }
+        }
 
         // Start ICMP Ping Service
-        ProcessBuilder icmpProcessBuilder = new ProcessBuilder();
-        ICMPPingService icmpPingService = new ICMPPingService(icmpProcessBuilder);
-        pingScheduler.schedulePing(icmpPingService, getICMPPingProperties(properties));
+        Config icmpPingProperties = getICMPPingProperties(properties);
+        String pingExecutable = properties.getProperty("icmp.ping.command", "ping");
+        String icmpMode = properties.getProperty("icmp.mode", "process");
+        // Also the fallback of the native engine once it failed
+        ICMPPingService icmpPingService = new ICMPPingService(new ProcessBuilder(), icmpPingProperties, pingExecutable, dnsCache,
+                Boolean.parseBoolean(properties.getProperty("icmp.keep.output", "false")));
+        NativeICMPPingService nativeICMPPingService = null;
+        if ("native".equalsIgnoreCase(icmpMode)) {
+            long packetInterval = Long.parseLong(properties.getProperty("icmp.native.packet.interval.ms", "200"));
+            nativeICMPPingService = NativeICMPPingService.create(icmpPingProperties, packetInterval, dnsCache);
+            if (nativeICMPPingService == null) {
+                logger.warn("Falling back to the ping command for ICMP pings");
+            } else {
+                nativeICMPPingService.attachFallback(icmpPingService);
+            }
+        }
+        if (nativeICMPPingService != null) {
+            pingScheduler.scheduleAsyncPing(nativeICMPPingService, icmpPingProperties, getIntervalPolicy(properties, "icmp", icmpPingProperties));
+        } else if ("continuous".equalsIgnoreCase(icmpMode)) {
+            // One long-lived ping process per host, a result is published every icmp.ping.delay.ms.
+            // The results of all hosts come from one evaluator thread, so they are handled on the probe threads
+            long interval = Long.parseLong(properties.getProperty("icmp.continuous.interval.ms", "1000"));
+            int window = Integer.parseInt(properties.getProperty("icmp.continuous.window", "20"));
+            ContinuousICMPPingService continuousICMPPingService = new ContinuousICMPPingService(pingExecutable, interval, window, pingScheduler::dispatchResult);
+            continuousICMPPingService.start(icmpPingProperties);
+        } else {
+            pingScheduler.schedulePing(icmpPingService, icmpPingProperties, getIntervalPolicy(properties, "icmp", icmpPingProperties));
+        }
 
         // Start Trace Route Ping Service
-        ProcessBuilder traceRouteProcessBuilder = new ProcessBuilder();
-        TraceRoutePingService traceRoutePingService = new TraceRoutePingService(traceRouteProcessBuilder);
-        pingScheduler.schedulePing(traceRoutePingService, getTraceRoutePingProperties(properties));
+        Config traceRoutePingProperties = getTraceRoutePingProperties(properties);
+        TraceRoutePingService processTraceRoutePingService = new TraceRoutePingService(new ProcessBuilder(), traceRoutePingProperties,
+                properties.getProperty("trace.command"), dnsCache);
+        NativeTraceRoutePingService nativeTraceRoutePingService = null;
+        if ("native".equalsIgnoreCase(properties.getProperty("trace.engine", "process"))) {
+            nativeTraceRoutePingService = NativeTraceRoutePingService.create(traceRoutePingProperties,
+                    Integer.parseInt(properties.getProperty("trace.native.max.hops", "30")),
+                    Integer.parseInt(properties.getProperty("trace.native.sockets", "2")), dnsCache);
+            if (nativeTraceRoutePingService == null) {
+                logger.warn("Falling back to the traceroute command for traces");
+            } else {
+                nativeTraceRoutePingService.attachFallback(processTraceRoutePingService);
+            }
+        }
+        boolean cachedTraces = "cached".equalsIgnoreCase(properties.getProperty("trace.mode", "interval"));
+        if (nativeTraceRoutePingService != null && !cachedTraces) {
+            pingScheduler.scheduleAsyncPing(nativeTraceRoutePingService, traceRoutePingProperties,
+                    getIntervalPolicy(properties, "trace", traceRoutePingProperties));
+        } else {
+            PingService traceRoutePingService;
+            if (nativeTraceRoutePingService != null) {
+                NativeTraceRoutePingService nativeTraces = nativeTraceRoutePingService;
+                traceRoutePingService = host -> nativeTraces.pingAsync(host).join();
+            } else {
+                traceRoutePingService = processTraceRoutePingService;
+            }
+            if (cachedTraces) {
+                startTraceCache(properties, traceRoutePingService, traceRoutePingProperties, pingScheduler);
+            } else {
+                pingScheduler.schedulePing(traceRoutePingService, traceRoutePingProperties,
+                        getIntervalPolicy(properties, "trace", traceRoutePingProperties));
+            }
+        }
+    }
+
+    /**
+     * 'trace.mode=cached' traces every host once per trace.cache.ttl.ms instead of every trace.ping.delay.ms,
+     * and a failure triggers a fresh trace that the failure report waits for up to trace.report.wait.ms.
+     */
+    private static void startTraceCache(Properties properties, PingService traceRoutePingService,
+                                        Config traceRoutePingProperties, PingScheduler pingScheduler) {
+        TraceCacheConfig traceCacheConfig = new TraceCacheConfig(
+                Long.parseLong(properties.getProperty("trace.cache.ttl.ms", "600000")),
+                Long.parseLong(properties.getProperty("trace.trigger.min.interval.ms", "30000")),
+                Long.parseLong(properties.getProperty("trace.report.wait.ms", "10000")),
+                Integer.parseInt(properties.getProperty("trace.max.concurrent", "4")));
+        TraceCache traceCache = new TraceCache(traceRoutePingService, traceCacheConfig, pingScheduler::publishResult);
+        traceCache.start(traceRoutePingProperties);
+        pingScheduler.attachFailureHook(traceCache::triggerForReport);
+    }
+
+    /**
+     * 'report.correlation.enabled=true' merges the traces of all hosts into a topology, and failures of at least
+     * report.correlation.min.hosts hosts behind the same hop are sent as one incident. A host counts as failing until its
+     * latest ICMP, TCP or TCP connect result succeeds again, so the failures may be spread over several report batches.
+     */
+    private static void startTopology(Properties properties, Reporter reporter, PingScheduler pingScheduler,
+                                      LastResultHolder lastResultHolder) {
+        if (!Boolean.parseBoolean(properties.getProperty("report.correlation.enabled", "false"))) {
+            return;
+        }
+        if (!(reporter instanceof BatchingReporter batchingReporter)) {
+            logger.warn("Failure correlation needs report.batching=true, reporting every host on its own");
+            return;
+        }
+        TopologyGraph topologyGraph = new TopologyGraph(Integer.parseInt(properties.getProperty("report.correlation.min.hosts", "3")));
+        pingScheduler.attachTraceListener(topologyGraph::update);
+        batchingReporter.attachTopology(topologyGraph, host -> lastResultHolder.getSnapshot(host).isFailing());
+        metrics.gauge("topology_nodes", "Hop nodes in the topology of the traced paths", topologyGraph::getNodeCount);
+        metrics.counter("report_incidents_total", "Incidents reported instead of the reports of their hosts", batchingReporter::getIncidents);
+    }
+
+    /**
+     * 'history.log.enabled=true' persists the results in memory-mapped files and restores the latest ones on start.
+     */
+    private static void openResultLog(Properties properties, LastResultHolder lastResultHolder) {
+        if (!Boolean.parseBoolean(properties.getProperty("history.log.enabled", "false"))) {
+            return;
+        }
+        try {
+            ResultLog resultLog = new ResultLog(
+                    Path.of(properties.getProperty("history.log.dir", "history")),
+                    Integer.parseInt(properties.getProperty("history.log.segment.records", "65536")),
+                    Integer.parseInt(properties.getProperty("history.log.max.segments", "32")));
+            resultLog.restore(lastResultHolder);
+            lastResultHolder.attachResultLog(resultLog);
+            Runtime.getRuntime().addShutdownHook(new Thread(resultLog::close, "result-log-shutdown"));
+        } catch (IOException e) {
+            logger.error("Failed to open result log, results will not be persisted: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 'metrics.enabled=true' serves the metrics in the Prometheus text format on http://host:metrics.port/metrics.
+     */
+    private static void startMetricsServer(Properties properties, LastResultHolder lastResultHolder) {
+        if (!Boolean.parseBoolean(properties.getProperty("metrics.enabled", "false"))) {
+            return;
+        }
+        ResultMetrics.register(metrics, lastResultHolder);
+        try {
+            new MetricsServer(metrics, new InetSocketAddress(Integer.parseInt(properties.getProperty("metrics.port", "9400"))));
+        } catch (IOException e) {
+            logger.error("Failed to start metrics server: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 'dns.cache.enabled=true' resolves every host once per dns.cache.ttl.ms for all probes and hands them the address.
+     * The TCP probes then send the host name in the Host header, which HttpClient only allows with the system property
+     * below, so it is set before the first HttpClient is created.
+     */
+    private static DnsCache createDnsCache(Properties properties) {
+        if (!Boolean.parseBoolean(properties.getProperty("dns.cache.enabled", "false"))) {
+            return null;
+        }
+        System.setProperty("jdk.httpclient.allowRestrictedHeaders", "host");
+        DnsCacheConfig dnsCacheConfig = new DnsCacheConfig(
+                Long.parseLong(properties.getProperty("dns.cache.ttl.ms", "60000")),
+                Long.parseLong(properties.getProperty("dns.cache.negative.ttl.ms", "10000")));
+        DnsCache dnsCache = new DnsCache(NameResolver.system(), dnsCacheConfig);
+        metrics.gauge("dns_cache_hosts", "Host names in the DNS cache", dnsCache::size);
+        return dnsCache;
+    }
+
+    private static void registerProbeDispatcherMetrics(ProbeDispatcher probeDispatcher) {
+        metrics.gauge("probe_in_flight", "Probes running on the probe dispatcher", probeDispatcher::getInFlight);
+        metrics.gauge("probe_max_in_flight", "Limit of probes running on the probe dispatcher", probeDispatcher::getMaxInFlight);
+    }
+
+    private static void registerInFlightLimiterMetrics(String probe, InFlightLimiter inFlightLimiter) {
+        metrics.gauge("async_probe_in_flight", "Asynchronous probes in flight", inFlightLimiter::getInFlight, "probe", probe);
+        metrics.gauge("async_probe_waiting", "Asynchronous probes waiting for a permit", inFlightLimiter::getWaiting, "probe", probe);
+    }
+
+    /**
+     * 'adaptive.enabled=true' stretches the interval of stable hosts and probes failing ones sooner,
+     * every 'adaptive.*' property can be overridden per service, e.g. 'icmp.adaptive.max.delay.ms'.
+     */
+    private static IntervalPolicy getIntervalPolicy(Properties properties, String service, Config config) {
+        if (!Boolean.parseBoolean(getServiceProperty(properties, service, "adaptive.enabled", "false"))) {
+            return IntervalPolicy.fixed(config.pingDelay());
+        }
+        AdaptiveIntervalConfig adaptiveConfig = new AdaptiveIntervalConfig(
+                Long.parseLong(getServiceProperty(properties, service, "adaptive.max.delay.ms", "60000")),
+                Long.parseLong(getServiceProperty(properties, service, "adaptive.confirm.delay.ms", "1000")),
+                Double.parseDouble(getServiceProperty(properties, service, "adaptive.backoff.factor", "1.5")),
+                Integer.parseInt(getServiceProperty(properties, service, "adaptive.backoff.after", "3")));
+        return new AdaptiveIntervalPolicy(config.pingDelay(), adaptiveConfig);
+    }
+
+    private static String getServiceProperty(Properties properties, String service, String key, String defaultValue) {
+        return properties.getProperty(service + "." + key, properties.getProperty(key, defaultValue));
     }
 
     private static int getMaxThreadPoolSize(Properties properties) {
@@ -65,6 +305,90 @@ public class Main {
         }
     }
 
+    /**
+     * 'scheduler.type=wheel' uses a hashed timing wheel for the probe timers and spreads the hosts over the ping interval,
+     * the thread pool then only runs probes (unless virtual threads are enabled).
+     */
+    private static PingScheduler createPingScheduler(Properties properties, int poolSize, LastResultHolder lastResultHolder, Reporter reporter) {
+        ProbeDispatcher probeDispatcher = getProbeDispatcher(properties);
+        if ("wheel".equalsIgnoreCase(properties.getProperty("scheduler.type", "executor"))) {
+            int tickMillis = Integer.parseInt(properties.getProperty("scheduler.wheel.tick.ms", "10"));
+            int wheelSize = Integer.parseInt(properties.getProperty("scheduler.wheel.size", "512"));
+            if (probeDispatcher == null) {
+                probeDispatcher = new ProbeDispatcher(Executors.newFixedThreadPool(poolSize), poolSize);
+            }
+            registerProbeDispatcherMetrics(probeDispatcher);
+            HashedWheelTimer wheelTimer = new HashedWheelTimer(tickMillis, TimeUnit.MILLISECONDS, wheelSize);
+            return new PingScheduler(wheelTimer, lastResultHolder, reporter, probeDispatcher);
+        }
+        if (probeDispatcher != null) {
+            registerProbeDispatcherMetrics(probeDispatcher);
+        }
+        ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(poolSize);
+        return new PingScheduler(scheduler, lastResultHolder, reporter, probeDispatcher);
+    }
+
+    /**
+     * Returns null unless 'probe.virtual.threads' is enabled, in which case every probe runs on its own virtual thread
+     * and the thread pool only handles timing.
+     */
+    private static ProbeDispatcher getProbeDispatcher(Properties properties) {
+        if (!Boolean.parseBoolean(properties.getProperty("probe.virtual.threads", "false"))) {
+            return null;
+        }
+        String maxInFlightStr = properties.getProperty("probe.max.in.flight", "1024");
+        try {
+            return ProbeDispatcher.virtualThreads(Integer.parseInt(maxInFlightStr));
+        } catch (IllegalArgumentException e) {
+            logger.warn("Invalid max in-flight probes in configuration: {}\nSetting max in-flight probes as 1024", maxInFlightStr);
+            return ProbeDispatcher.virtualThreads(1024);
+        }
+    }
+
+    /**
+     * 'report.batching=true' sends the reports from a background pipeline, so probes never wait for the report endpoint.
+     * 'report.outbox.enabled=true' spools the reports that could not be sent to disk and retries them until delivered.
+     */
+    private static Reporter createReporter(Properties properties, ReportBuilder reportBuilder, String reportDestinationUrl) {
+        HttpClient reportHttpClient = HttpClient.newBuilder().build();
+        ReportOutbox outbox = createReportOutbox(properties, reportHttpClient, reportDestinationUrl);
+        if (!Boolean.parseBoolean(properties.getProperty("report.batching", "false"))) {
+            return new Reporter(reportBuilder, reportHttpClient, reportDestinationUrl, outbox);
+        }
+        ReportPipelineConfig pipelineConfig = new ReportPipelineConfig(
+                Integer.parseInt(properties.getProperty("report.queue.capacity", "10000")),
+                Long.parseLong(properties.getProperty("report.coalesce.window.ms", "1000")),
+                Integer.parseInt(properties.getProperty("report.batch.size", "100")),
+                Integer.parseInt(properties.getProperty("report.max.concurrent.requests", "4")));
+        BatchingReporter batchingReporter = new BatchingReporter(reportBuilder, reportHttpClient, reportDestinationUrl, pipelineConfig, outbox);
+        metrics.gauge("report_queue_depth", "Hosts waiting in the report queue", batchingReporter::getQueueDepth);
+        metrics.counter("report_dropped_total", "Reports dropped because the report queue was full", batchingReporter::getDroppedReports);
+        metrics.counter("report_coalesced_total", "Reports merged into a report already queued", batchingReporter::getCoalescedReports);
+        return batchingReporter;
+    }
+
+    private static ReportOutbox createReportOutbox(Properties properties, HttpClient reportHttpClient, String reportDestinationUrl) {
+        if (!Boolean.parseBoolean(properties.getProperty("report.outbox.enabled", "false"))) {
+            return null;
+        }
+        try {
+            ReportOutbox outbox = new ReportOutbox(
+                    Path.of(properties.getProperty("report.outbox.dir", "outbox")),
+                    Integer.parseInt(properties.getProperty("report.outbox.segment.bytes", "4194304")),
+                    Integer.parseInt(properties.getProperty("report.outbox.max.segments", "16")),
+                    reportHttpClient,
+                    reportDestinationUrl,
+                    Long.parseLong(properties.getProperty("report.outbox.initial.backoff.ms", "1000")),
+                    Long.parseLong(properties.getProperty("report.outbox.max.backoff.ms", "60000")));
+            metrics.gauge("report_outbox_pending", "Reports spooled to disk waiting for delivery", outbox::getPendingReports);
+            metrics.counter("report_outbox_dropped_total", "Spooled reports dropped because the outbox was full or the endpoint rejected them", outbox::getDroppedReports);
+            return outbox;
+        } catch (IOException e) {
+            logger.error("Failed to open report outbox, failed reports will not be retried: {}", e.getMessage(), e);
+            return null;
+        }
+    }
+
     private static String getReportDestinationUrl(Properties properties) {
         String reportDestination = properties.getProperty("report.url");
         if (reportDestination == null || reportDestination.isBlank()) {
@@ -91,6 +415,20 @@ public class Main {
         return new Config(hosts, tcpPingDelay, timeout);
     }
 
+    private static InFlightLimiter getTCPInFlightLimiter(Properties properties) {
+        int maxInFlight = Integer.parseInt(properties.getProperty("tcp.async.max.in.flight", "10000"));
+        int maxInFlightPerHost = Integer.parseInt(properties.getProperty("tcp.async.max.in.flight.per.host", "1"));
+        return new InFlightLimiter(maxInFlight, maxInFlightPerHost);
+    }
+
+    private static Config getTCPConnectPingProperties(Properties properties) {
+        String connectHosts = properties.getProperty("tcp.connect.hosts");
+        String[] hosts = connectHosts == null || connectHosts.isBlank() ? getHosts(properties) : connectHosts.split(";");
+        int tcpConnectPingDelay = Integer.parseInt(properties.getProperty("tcp.connect.delay.ms", "5000"));
+        int timeout = Integer.parseInt(properties.getProperty("response.timeout.ms", "5000"));
+        return new Config(hosts, tcpConnectPingDelay, timeout);
+    }
+
     private static Config getICMPPingProperties(Properties properties) {
         String[] hosts = getHosts(properties);
         int icmpPingDelay = Integer.parseInt(properties.getProperty("icmp.ping.delay.ms", "5000"));
@@ -0,0 +1,176 @@
+package com.github.akopyanrob.dns;
+
+import com.github.akopyanrob.metrics.Counter;
+import com.github.akopyanrob.metrics.MetricsRegistry;
+import com.github.akopyanrob.metrics.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.regex.Pattern;
+
+/**
+ * Host name resolution shared by all probes, so a name is looked up once per TTL instead of once per probe and process.
+ * Lookups run on virtual threads and the same name is never looked up twice at the same time.
+ * After the TTL the cached addresses are still returned while a lookup refreshes them in the background,
+ * names that failed to resolve are cached as unknown for the negative TTL.
+ * Lookup times and failures are recorded as their own metrics, separate from the probe latencies.
+ */
+public class DnsCache implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(DnsCache.class);
+
+    private static final Pattern IPV4_LITERAL = Pattern.compile("\\d{1,3}(\\.\\d{1,3}){3}");
+    private static final Timer LOOKUP_TIMER = MetricsRegistry.getInstance()
+            .timer("dns_lookup_seconds", "Time to resolve a host name");
+    private static final Counter LOOKUP_FAILURES = MetricsRegistry.getInstance()
+            .counter("dns_lookup_failures_total", "Host names that failed to resolve");
+
+    private final NameResolver resolver;
+    private final long ttlNanos;
+    private final long negativeTtlNanos;
+    private final Executor executor;
+    private final LongSupplier nanoClock;
+    private final Map<String, HostEntry> entries = new ConcurrentHashMap<>();
+
+    public DnsCache(NameResolver resolver, DnsCacheConfig config) {
+        this(resolver, config, Executors.newVirtualThreadPerTaskExecutor(), System::nanoTime);
+    }
+
+    DnsCache(NameResolver resolver, DnsCacheConfig config, Executor executor, LongSupplier nanoClock) {
+        this.resolver = Objects.requireNonNull(resolver, "resolver must not be null");
+        Objects.requireNonNull(config, "config must not be null");
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(config.ttlMillis());
+        this.negativeTtlNanos = TimeUnit.MILLISECONDS.toNanos(config.negativeTtlMillis());
+        this.executor = Objects.requireNonNull(executor, "executor must not be null");
+        this.nanoClock = Objects.requireNonNull(nanoClock, "nanoClock must not be null");
+    }
+
+    /**
+     * Completes with the first address of the name, or with an {@link UnknownHostException} when it can not be resolved.
+     * Address literals are returned as they are.
+     */
+    public CompletableFuture<InetAddress> resolveAsync(String hostName) {
+        return resolveAllAsync(hostName).thenApply(List::getFirst);
+    }
+
+    public CompletableFuture<List<InetAddress>> resolveAllAsync(String hostName) {
+        InetAddress literal = parseLiteral(hostName);
+        if (literal != null) {
+            return CompletableFuture.completedFuture(List.of(literal));
+        }
+        HostEntry entry = entries.computeIfAbsent(hostName, HostEntry::new);
+        synchronized (entry) {
+            if (entry.lookup == null && (entry.resolved == null || nanoClock.getAsLong() - entry.expiresAtNanos >= 0)) {
+                startLookup(entry);
+            }
+            // Stale addresses are good enough while they are refreshed, an unknown name waits for the new answer
+            if (entry.resolved != null && (!entry.resolved.isCompletedExceptionally() || entry.lookup == null)) {
+                return entry.resolved;
+            }
+            return entry.lookup;
+        }
+    }
+
+    /**
+     * Blocking variant of {@link #resolveAsync}, for probes that run on their own thread.
+     */
+    public InetAddress resolve(String hostName) throws UnknownHostException {
+        try {
+            return resolveAsync(hostName).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof UnknownHostException unknownHostException) {
+                throw unknownHostException;
+            }
+            throw new UnknownHostException(hostName + ": " + e.getCause().getMessage());
+        }
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    @Override
+    public void close() {
+        if (executor instanceof ExecutorService executorService) {
+            executorService.shutdownNow();
+        }
+    }
+
+    private void startLookup(HostEntry entry) {
+        CompletableFuture<List<InetAddress>> lookup = new CompletableFuture<>();
+        entry.lookup = lookup;
+        lookup.whenComplete((addresses, throwable) -> {
+            synchronized (entry) {
+                entry.resolved = lookup;
+                entry.expiresAtNanos = nanoClock.getAsLong() + (throwable == null ? ttlNanos : negativeTtlNanos);
+                if (entry.lookup == lookup) {
+                    entry.lookup = null;
+                }
+            }
+        });
+        try {
+            executor.execute(() -> lookup(entry.hostName, lookup));
+        } catch (RejectedExecutionException e) {
+            lookup.completeExceptionally(new UnknownHostException(entry.hostName + ": resolver is closed"));
+        }
+    }
+
+    private void lookup(String hostName, CompletableFuture<List<InetAddress>> lookup) {
+        long startNanos = System.nanoTime();
+        try {
+            InetAddress[] addresses = resolver.resolve(hostName);
+            LOOKUP_TIMER.recordSince(startNanos);
+            if (addresses == null || addresses.length == 0) {
+                throw new UnknownHostException(hostName + ": no addresses");
+            }
+            lookup.complete(List.of(addresses));
+        } catch (UnknownHostException e) {
+            LOOKUP_FAILURES.increment();
+            logger.warn("Failed to resolve host " + hostName + ": " + e.getMessage());
+            lookup.completeExceptionally(e);
+        } catch (RuntimeException e) {
+            LOOKUP_FAILURES.increment();
+            logger.error("Unexpected exception while resolving host " + hostName + ": " + e.getMessage());
+            lookup.completeExceptionally(new UnknownHostException(hostName + ": " + e.getMessage()));
+        }
+    }
+
+    /**
+     * Literals are converted without a lookup, IPv6 ones may be in brackets.
+     */
+    private static InetAddress parseLiteral(String hostName) {
+        if (!IPV4_LITERAL.matcher(hostName).matches() && hostName.indexOf(':') < 0) {
+            return null;
+        }
+        try {
+            return InetAddress.getByName(hostName);
+        } catch (UnknownHostException e) {
+            return null;
+        }
+    }
+
+    private static final class HostEntry {
+        private final String hostName;
+        // Last finished lookup and the one in progress, guarded by the entry
+        private CompletableFuture<List<InetAddress>> resolved;
+        private CompletableFuture<List<InetAddress>> lookup;
+        private long expiresAtNanos;
+
+        private HostEntry(String hostName) {
+            this.hostName = hostName;
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.github.akopyanrob.dns;
+
+/**
+ * @param ttlMillis         a resolved name is used for this long, after it the next lookup refreshes it in the background
+ * @param negativeTtlMillis a name that failed to resolve is reported as unknown for this long before it is looked up again
+ */
+public record DnsCacheConfig(long ttlMillis, long negativeTtlMillis) {
+    public DnsCacheConfig {
+        if (ttlMillis <= 0 || negativeTtlMillis < 0) {
+            throw new IllegalArgumentException("TTL must be positive and negative TTL non-negative");
+        }
+    }
+}
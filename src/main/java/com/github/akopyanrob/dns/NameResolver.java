@@ -0,0 +1,20 @@
+package com.github.akopyanrob.dns;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+
+/**
+ * Looks up the addresses of a host name, blocking until the answer is there.
+ */
+@FunctionalInterface
+public interface NameResolver {
+
+    InetAddress[] resolve(String hostName) throws UnknownHostException;
+
+    /**
+     * The resolver of the JVM, see {@link InetAddress#getAllByName}.
+     */
+    static NameResolver system() {
+        return InetAddress::getAllByName;
+    }
+}
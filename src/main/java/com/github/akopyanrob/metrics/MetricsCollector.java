@@ -0,0 +1,11 @@
+package com.github.akopyanrob.metrics;
+
+import java.io.IOException;
+
+/**
+ * Writes a family of samples computed at scrape time, for metrics with many label values such as per host state.
+ */
+@FunctionalInterface
+public interface MetricsCollector {
+    void collect(MetricsWriter writer) throws IOException;
+}
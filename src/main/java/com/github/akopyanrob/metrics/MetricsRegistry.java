@@ -0,0 +1,132 @@
+package com.github.akopyanrob.metrics;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Registry of the application metrics, rendered in the Prometheus text format.
+ * Counters and timers are created once and kept by the instrumented code, so the hot path never looks them up.
+ * Labels are given as key, value pairs.
+ */
+public final class MetricsRegistry {
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+    private static final String[] QUANTILE_LABELS = {"0.5", "0.9", "0.99", "0.999"};
+
+    private final ConcurrentSkipListMap<String, Family> families = new ConcurrentSkipListMap<>();
+
+    //Bill Pugh Singleton Design
+    private MetricsRegistry() {
+    }
+
+    private static class Holder {
+        private static final MetricsRegistry INSTANCE = new MetricsRegistry();
+    }
+
+    public static MetricsRegistry getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    public Counter counter(String name, String help, String... labels) {
+        return (Counter) family(name, "counter", help).children.computeIfAbsent(encodeLabels(labels), l -> new Counter());
+    }
+
+    public Timer timer(String name, String help, String... labels) {
+        return (Timer) family(name, "summary", help).children.computeIfAbsent(encodeLabels(labels), l -> new Timer());
+    }
+
+    /**
+     * Registers a timer kept elsewhere (e.g. one per instance), replacing the previous one with the same name and labels.
+     */
+    public void timer(String name, String help, Timer timer, String... labels) {
+        family(name, "summary", help).children.put(encodeLabels(labels), timer);
+    }
+
+    /**
+     * Registers a count kept elsewhere and read at scrape time, it must never decrease.
+     * Replaces the previous one with the same name and labels.
+     */
+    public void counter(String name, String help, DoubleSupplier supplier, String... labels) {
+        family(name, "counter", help).children.put(encodeLabels(labels), supplier);
+    }
+
+    /**
+     * Registers a value read at scrape time, replacing the previous gauge with the same name and labels.
+     */
+    public void gauge(String name, String help, DoubleSupplier supplier, String... labels) {
+        family(name, "gauge", help).children.put(encodeLabels(labels), supplier);
+    }
+
+    /**
+     * Registers a family whose samples are written by the collector at scrape time.
+     */
+    public void collector(String name, String type, String help, MetricsCollector collector) {
+        family(name, type, help).collector = collector;
+    }
+
+    public void render(MetricsWriter writer) throws IOException {
+        for (Map.Entry<String, Family> entry : families.entrySet()) {
+            String name = entry.getKey();
+            Family family = entry.getValue();
+            writer.family(name, family.type, family.help);
+            for (Map.Entry<String, Object> child : family.children.entrySet()) {
+                String labels = child.getKey();
+                switch (child.getValue()) {
+                    case Counter counter -> writer.sample(name).labels(labels).value(counter.get());
+                    case DoubleSupplier gauge -> writer.sample(name).labels(labels).value(gauge.getAsDouble());
+                    case Timer timer -> writeTimer(writer, name, labels, timer);
+                    default -> throw new IllegalStateException("Unknown metric " + child.getValue());
+                }
+            }
+            if (family.collector != null) {
+                family.collector.collect(writer);
+            }
+        }
+        writer.flush();
+    }
+
+    private static void writeTimer(MetricsWriter writer, String name, String labels, Timer timer) throws IOException {
+        for (int i = 0; i < QUANTILES.length; i++) {
+            long micros = timer.getHistogram().getValueAtPercentile(QUANTILES[i] * 100);
+            writer.sample(name).labels(labels).label("quantile", QUANTILE_LABELS[i]).value(micros / 1e6);
+        }
+        writer.sample(name + "_sum").labels(labels).value(timer.getSumNanos() / 1e9);
+        writer.sample(name + "_count").labels(labels).value(timer.getCount());
+    }
+
+    private Family family(String name, String type, String help) {
+        Family family = families.computeIfAbsent(name, n -> new Family(type, help));
+        if (!family.type.equals(type)) {
+            throw new IllegalArgumentException("Metric " + name + " is already registered as a " + family.type);
+        }
+        return family;
+    }
+
+    private static String encodeLabels(String... labels) {
+        if (labels.length % 2 != 0) {
+            throw new IllegalArgumentException("Labels must be key, value pairs");
+        }
+        StringBuilder encoded = new StringBuilder();
+        for (int i = 0; i < labels.length; i += 2) {
+            if (i > 0) {
+                encoded.append(',');
+            }
+            encoded.append(labels[i]).append("=\"").append(MetricsWriter.escapeLabelValue(labels[i + 1])).append('"');
+        }
+        return encoded.toString();
+    }
+
+    private static final class Family {
+        private final String type;
+        private final String help;
+        private final Map<String, Object> children = new ConcurrentHashMap<>();
+        private volatile MetricsCollector collector;
+
+        private Family(String type, String help) {
+            this.type = type;
+            this.help = help;
+        }
+    }
+}
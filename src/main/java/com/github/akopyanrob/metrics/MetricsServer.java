@@ -0,0 +1,66 @@
+package com.github.akopyanrob.metrics;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Embedded HTTP endpoint serving the metrics of the registry on /metrics. The response is streamed with chunked
+ * encoding while it is rendered, scrapes are handled one at a time.
+ */
+public class MetricsServer implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(MetricsServer.class);
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private final MetricsRegistry registry;
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    public MetricsServer(MetricsRegistry registry, InetSocketAddress address) throws IOException {
+        this.registry = Objects.requireNonNull(registry, "registry must not be null");
+        this.server = HttpServer.create(Objects.requireNonNull(address, "address must not be null"), 0);
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "metrics-server");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.createContext("/metrics", this::handle);
+        server.start();
+        logger.info("Metrics are served on http://{}:{}/metrics", address.getHostString(), getPort());
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream body = exchange.getResponseBody()) {
+                registry.render(new MetricsWriter(body));
+            }
+        } catch (IOException e) {
+            logger.warn("Failed to serve metrics: {}", e.getMessage());
+        }
+    }
+}
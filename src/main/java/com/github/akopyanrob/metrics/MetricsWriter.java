@@ -0,0 +1,149 @@
+package com.github.akopyanrob.metrics;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes the Prometheus text format straight to a stream through a small fixed buffer,
+ * so the size of a scrape does not change the memory it needs.
+ * A sample is written as {@code sample(name).label(key, value)...value(v)}.
+ */
+public final class MetricsWriter {
+    private static final int BUFFER_SIZE = 8192;
+
+    private final OutputStream out;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int size;
+    private boolean hasLabels;
+
+    public MetricsWriter(OutputStream out) {
+        this.out = out;
+    }
+
+    public MetricsWriter family(String name, String type, String help) throws IOException {
+        writeAscii("# HELP ").writeAscii(name).write(' ').writeEscaped(help, false).write('\n');
+        writeAscii("# TYPE ").writeAscii(name).write(' ').writeAscii(type).write('\n');
+        return this;
+    }
+
+    public MetricsWriter sample(String name) throws IOException {
+        writeAscii(name);
+        hasLabels = false;
+        return this;
+    }
+
+    public MetricsWriter label(String key, String value) throws IOException {
+        write(hasLabels ? ',' : '{');
+        hasLabels = true;
+        writeAscii(key).writeAscii("=\"").writeEscaped(value, true).write('"');
+        return this;
+    }
+
+    /**
+     * Writes raw "key=\"value\",..." label pairs, already escaped.
+     */
+    public MetricsWriter labels(String encodedLabels) throws IOException {
+        if (!encodedLabels.isEmpty()) {
+            write(hasLabels ? ',' : '{');
+            hasLabels = true;
+            writeAscii(encodedLabels);
+        }
+        return this;
+    }
+
+    public void value(long value) throws IOException {
+        endLabels();
+        writeAscii(Long.toString(value)).write('\n');
+    }
+
+    public void value(double value) throws IOException {
+        endLabels();
+        if (Double.isNaN(value)) {
+            writeAscii("NaN");
+        } else if (Double.isInfinite(value)) {
+            writeAscii(value > 0 ? "+Inf" : "-Inf");
+        } else if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            writeAscii(Long.toString((long) value));
+        } else {
+            writeAscii(Double.toString(value));
+        }
+        write('\n');
+    }
+
+    public void flush() throws IOException {
+        if (size > 0) {
+            out.write(buffer, 0, size);
+            size = 0;
+        }
+        out.flush();
+    }
+
+    static String escapeLabelValue(String value) {
+        StringBuilder escaped = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\\' -> escaped.append("\\\\");
+                case '"' -> escaped.append("\\\"");
+                case '\n' -> escaped.append("\\n");
+                default -> escaped.append(c);
+            }
+        }
+        return escaped.toString();
+    }
+
+    private void endLabels() throws IOException {
+        if (hasLabels) {
+            write('}');
+            hasLabels = false;
+        }
+        write(' ');
+    }
+
+    private MetricsWriter writeEscaped(String value, boolean quoted) throws IOException {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\') {
+                writeAscii("\\\\");
+            } else if (c == '\n') {
+                writeAscii("\\n");
+            } else if (c == '"' && quoted) {
+                writeAscii("\\\"");
+            } else if (c < 0x80) {
+                write(c);
+            } else {
+                writeUtf8(c);
+            }
+        }
+        return this;
+    }
+
+    private void writeUtf8(char c) throws IOException {
+        if (Character.isSurrogate(c)) {
+            write('?');
+        } else if (c < 0x800) {
+            write((char) (0xC0 | (c >> 6)));
+            write((char) (0x80 | (c & 0x3F)));
+        } else {
+            write((char) (0xE0 | (c >> 12)));
+            write((char) (0x80 | ((c >> 6) & 0x3F)));
+            write((char) (0x80 | (c & 0x3F)));
+        }
+    }
+
+    private MetricsWriter writeAscii(String value) throws IOException {
+        for (int i = 0; i < value.length(); i++) {
+            write(value.charAt(i));
+        }
+        return this;
+    }
+
+    private MetricsWriter write(char c) throws IOException {
+        if (size == BUFFER_SIZE) {
+            out.write(buffer, 0, size);
+            size = 0;
+        }
+        buffer[size++] = (byte) c;
+        return this;
+    }
+}
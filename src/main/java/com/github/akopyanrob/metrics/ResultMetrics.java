@@ -0,0 +1,74 @@
+package com.github.akopyanrob.metrics;
+
+import com.github.akopyanrob.result.ConnectionPhases;
+import com.github.akopyanrob.result.HostRegistry;
+import com.github.akopyanrob.result.LastResultHolder;
+import com.github.akopyanrob.result.PingResult;
+import com.github.akopyanrob.result.ProbeType;
+import com.github.akopyanrob.result.TCPPingResult;
+
+import java.io.IOException;
+
+/**
+ * Per host metrics read from the latest results at scrape time, streamed host by host.
+ */
+public final class ResultMetrics {
+
+    private ResultMetrics() {
+    }
+
+    public static void register(MetricsRegistry registry, LastResultHolder lastResultHolder) {
+        registry.collector("probe_up", "gauge", "1 when the latest probe of the host succeeded", writer -> {
+            writeUp(writer, "icmp", lastResultHolder, ProbeType.ICMP);
+            writeUp(writer, "tcp", lastResultHolder, ProbeType.TCP);
+            writeUp(writer, "tcp_connect", lastResultHolder, ProbeType.TCP_CONNECT);
+            writeUp(writer, "trace", lastResultHolder, ProbeType.TRACE);
+        });
+        registry.collector("probe_latency_seconds", "gauge", "Latency measured by the latest probe of the host", writer -> {
+            writeLatency(writer, "icmp", lastResultHolder, ProbeType.ICMP);
+            writeLatency(writer, "tcp", lastResultHolder, ProbeType.TCP);
+            writeLatency(writer, "tcp_connect", lastResultHolder, ProbeType.TCP_CONNECT);
+        });
+        registry.collector("probe_phase_seconds", "gauge", "Connection phase durations of the latest TCP probe of the host", writer -> {
+            HostRegistry hosts = lastResultHolder.getHostRegistry();
+            for (int hostId = 0, size = hosts.size(); hostId < size; hostId++) {
+                if (lastResultHolder.getSnapshot(hostId).tcp() instanceof TCPPingResult tcpPingResult && tcpPingResult.getPhases() != null) {
+                    writePhases(writer, hosts.hostOf(hostId), tcpPingResult.getPhases());
+                }
+            }
+        });
+    }
+
+    private static void writePhases(MetricsWriter writer, String host, ConnectionPhases phases) throws IOException {
+        writePhase(writer, host, "dns", phases.dnsNanos());
+        writePhase(writer, host, "connect", phases.connectNanos());
+        if (phases.tlsNanos() >= 0) {
+            writePhase(writer, host, "tls", phases.tlsNanos());
+        }
+        writePhase(writer, host, "first_byte", phases.firstByteNanos());
+    }
+
+    private static void writePhase(MetricsWriter writer, String host, String phase, long nanos) throws IOException {
+        writer.sample("probe_phase_seconds").label("host", host).label("probe", "tcp").label("phase", phase).value(nanos / 1e9);
+    }
+
+    private static void writeUp(MetricsWriter writer, String probe, LastResultHolder lastResultHolder, ProbeType probeType) throws IOException {
+        HostRegistry hosts = lastResultHolder.getHostRegistry();
+        for (int hostId = 0, size = hosts.size(); hostId < size; hostId++) {
+            PingResult result = lastResultHolder.getSnapshot(hostId).get(probeType);
+            if (result != null) {
+                writer.sample("probe_up").label("host", hosts.hostOf(hostId)).label("probe", probe).value(result.isSuccessful() ? 1 : 0);
+            }
+        }
+    }
+
+    private static void writeLatency(MetricsWriter writer, String probe, LastResultHolder lastResultHolder, ProbeType probeType) throws IOException {
+        HostRegistry hosts = lastResultHolder.getHostRegistry();
+        for (int hostId = 0, size = hosts.size(); hostId < size; hostId++) {
+            PingResult result = lastResultHolder.getSnapshot(hostId).get(probeType);
+            if (result != null && result.getLatencyMicros() >= 0) {
+                writer.sample("probe_latency_seconds").label("host", hosts.hostOf(hostId)).label("probe", probe).value(result.getLatencyMicros() / 1e6);
+            }
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.github.akopyanrob.metrics;
+
+import com.github.akopyanrob.result.LatencyHistogram;
+import com.github.akopyanrob.result.WindowedLatencyHistogram;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Duration metric rendered as a Prometheus summary: count and sum since the start, quantiles over the last
+ * five minutes from log-bucketed histograms. Recording is lock-free and does not allocate.
+ */
+public final class Timer {
+    private static final long QUANTILE_WINDOW_MILLIS = 60_000;
+    private static final int QUANTILE_WINDOWS = 5;
+
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sumNanos = new LongAdder();
+    private final WindowedLatencyHistogram histogram = new WindowedLatencyHistogram(QUANTILE_WINDOW_MILLIS, QUANTILE_WINDOWS);
+
+    /**
+     * A timer of its own, e.g. one per instance, export it with {@link MetricsRegistry#timer(String, String, Timer, String...)}.
+     */
+    public Timer() {
+    }
+
+    public void recordNanos(long nanos) {
+        count.increment();
+        sumNanos.add(nanos);
+        histogram.record(System.currentTimeMillis(), nanos / 1000);
+    }
+
+    /**
+     * Records the time since startNanos, taken from System.nanoTime.
+     */
+    public void recordSince(long startNanos) {
+        recordNanos(System.nanoTime() - startNanos);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getSumNanos() {
+        return sumNanos.sum();
+    }
+
+    /**
+     * The duration at the given percentile (0-100) of the last five minutes, in microseconds.
+     */
+    public long getPercentileMicros(double percentile) {
+        return getHistogram().getValueAtPercentile(percentile);
+    }
+
+    /**
+     * Durations of the last five minutes.
+     */
+    LatencyHistogram getHistogram() {
+        return histogram.snapshot(System.currentTimeMillis(), QUANTILE_WINDOW_MILLIS * QUANTILE_WINDOWS);
+    }
+}
@@ -0,0 +1,260 @@
+package com.github.akopyanrob.report;
+
+import com.github.akopyanrob.result.JsonWriter;
+import com.github.akopyanrob.topology.Incident;
+import com.github.akopyanrob.topology.TopologyGraph;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.http.HttpClient;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+/**
+ * Reporter that never blocks the caller: hosts to report go into a bounded queue, and a dispatcher thread
+ * sends their reports in batches (a JSON array per POST) with a limit on concurrent requests.
+ * A host that is already waiting in the queue is not queued again, so its failures within the coalesce window
+ * end up in one report, built from the latest results when the batch is sent.
+ * With an outbox, failed batches and reports that do not fit in the queue are spooled instead of lost.
+ * With a {@link TopologyGraph} attached, hosts of a batch that failed behind the same hop are sent as one incident,
+ * together with the hosts behind it that are still failing since an earlier batch.
+ */
+public class BatchingReporter extends Reporter implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(BatchingReporter.class);
+
+    private final ReportPipelineConfig pipelineConfig;
+    private final BlockingQueue<String> queue;
+    private final Set<String> queuedHosts = ConcurrentHashMap.newKeySet();
+    private final Semaphore requestPermits;
+    private final LongAdder droppedReports = new LongAdder();
+    private final LongAdder coalescedReports = new LongAdder();
+    private final LongAdder sentBatches = new LongAdder();
+    private final LongAdder failedBatches = new LongAdder();
+    private final LongAdder incidents = new LongAdder();
+    private final Thread dispatcherThread;
+    private volatile TopologyGraph topologyGraph;
+    private volatile Predicate<String> stillFailing = host -> false;
+    private volatile boolean running = true;
+    // Set when the dispatcher thread stopped while the reporter was still running
+    private volatile boolean dispatcherFailed;
+
+    public BatchingReporter(ReportBuilder reportBuilder, HttpClient httpClient, String reportDestinationUrl,
+                            ReportPipelineConfig pipelineConfig) {
+        this(reportBuilder, httpClient, reportDestinationUrl, pipelineConfig, null);
+    }
+
+    public BatchingReporter(ReportBuilder reportBuilder, HttpClient httpClient, String reportDestinationUrl,
+                            ReportPipelineConfig pipelineConfig, ReportOutbox outbox) {
+        super(reportBuilder, httpClient, reportDestinationUrl, outbox);
+        this.pipelineConfig = Objects.requireNonNull(pipelineConfig, "pipelineConfig must not be null");
+        this.queue = new ArrayBlockingQueue<>(pipelineConfig.queueCapacity());
+        this.requestPermits = new Semaphore(pipelineConfig.maxConcurrentRequests());
+        this.dispatcherThread = new Thread(this::dispatch, "report-dispatcher");
+        this.dispatcherThread.setDaemon(true);
+        this.dispatcherThread.start();
+    }
+
+    @Override
+    public void report(String host) {
+        if (dispatcherFailed) {
+            spoolOrDrop(host);
+            return;
+        }
+        if (!queuedHosts.add(host)) {
+            coalescedReports.increment();
+            return;
+        }
+        if (!running || !queue.offer(host)) {
+            queuedHosts.remove(host);
+            if (outbox != null && running) {
+                logger.warn("Report queue is full, spooling report for host {}", host);
+                spool(reportBuilder.buildReport(host));
+            } else {
+                droppedReports.increment();
+                logger.warn("Report queue is full, dropped report for host {}", host);
+            }
+        }
+    }
+
+    /**
+     * Correlates the failures of every batch over the paths in the graph, null to report every host on its own.
+     */
+    public void attachTopology(TopologyGraph topologyGraph) {
+        attachTopology(topologyGraph, host -> false);
+    }
+
+    /**
+     * @param stillFailing tells whether a host is failing now, e.g. from its latest results, so hosts reported in
+     *                     earlier batches join the incidents of later ones
+     */
+    public void attachTopology(TopologyGraph topologyGraph, Predicate<String> stillFailing) {
+        this.stillFailing = Objects.requireNonNull(stillFailing, "stillFailing must not be null");
+        this.topologyGraph = topologyGraph;
+    }
+
+    /**
+     * For a report that can not go through the queue, counted as dropped when there is no outbox or it can not be built.
+     */
+    private void spoolOrDrop(String host) {
+        if (outbox == null) {
+            droppedReports.increment();
+            logger.warn("No outbox to spool to, dropped report for host {}", host);
+            return;
+        }
+        try {
+            spool(reportBuilder.buildReport(host));
+        } catch (Exception e) {
+            droppedReports.increment();
+            logger.error("Failed to build report for host {}, dropped: {}", host, e.getMessage(), e);
+        }
+    }
+
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    public long getDroppedReports() {
+        return droppedReports.sum();
+    }
+
+    public long getCoalescedReports() {
+        return coalescedReports.sum();
+    }
+
+    public long getSentBatches() {
+        return sentBatches.sum();
+    }
+
+    public long getFailedBatches() {
+        return failedBatches.sum();
+    }
+
+    public long getIncidents() {
+        return incidents.sum();
+    }
+
+    public int getInFlightRequests() {
+        return pipelineConfig.maxConcurrentRequests() - requestPermits.availablePermits();
+    }
+
+    /**
+     * Stops accepting reports and sends the ones still in the queue.
+     */
+    @Override
+    public void close() {
+        running = false;
+        dispatcherThread.interrupt();
+        try {
+            dispatcherThread.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void dispatch() {
+        List<String> batch = new ArrayList<>(pipelineConfig.maxBatchSize());
+        while (running || !queue.isEmpty()) {
+            try {
+                String first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, pipelineConfig.maxBatchSize() - batch.size());
+                // Give other hosts of the same incident the time to join the batch, a full batch goes out right away
+                if (running && pipelineConfig.coalesceWindowMillis() > 0 && batch.size() < pipelineConfig.maxBatchSize()) {
+                    Thread.sleep(pipelineConfig.coalesceWindowMillis());
+                }
+            } catch (InterruptedException e) {
+                if (running) {
+                    logger.error("Report dispatcher was interrupted, reports are {} from now on", outbox != null ? "spooled" : "dropped");
+                    dispatcherFailed = true;
+                    queue.drainTo(batch);
+                    batch.forEach(host -> {
+                        queuedHosts.remove(host);
+                        spoolOrDrop(host);
+                    });
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+            queue.drainTo(batch, pipelineConfig.maxBatchSize() - batch.size());
+            if (!batch.isEmpty()) {
+                sendBatch(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    private void sendBatch(List<String> hosts) {
+        // Removed before the reports are built, so a failure after this point is reported again
+        hosts.forEach(queuedHosts::remove);
+        // A writer per batch, its buffer is the body of a request that may still be in flight when the next batch is built
+        JsonWriter body = reportBuilder.newWriter();
+        try {
+            body.beginArray();
+            TopologyGraph topology = topologyGraph;
+            if (topology == null) {
+                for (String host : hosts) {
+                    reportBuilder.writeReport(host, body);
+                }
+            } else {
+                TopologyGraph.Correlation correlation = topology.correlate(hosts, stillFailing);
+                for (Incident incident : correlation.incidents()) {
+                    reportBuilder.writeIncident(incident, body);
+                    incidents.increment();
+                }
+                for (String host : correlation.uncorrelatedHosts()) {
+                    reportBuilder.writeReport(host, body);
+                }
+            }
+            body.endArray();
+        } catch (Exception e) {
+            failedBatches.increment();
+            logger.error("Failed to build report batch for hosts {}: {}", hosts, e.getMessage(), e);
+            // The hosts are no longer queued, so their reports would be lost
+            hosts.forEach(this::spoolOrDrop);
+            return;
+        }
+
+        requestPermits.acquireUninterruptibly();
+        long startNanos = System.nanoTime();
+        try {
+            httpClient.sendAsync(createRequest(body), HttpResponse.BodyHandlers.discarding())
+                    .whenComplete((response, throwable) -> {
+                        requestPermits.release();
+                        REQUEST_TIMER.recordSince(startNanos);
+                        if (throwable != null) {
+                            FAILED_REQUESTS.increment();
+                            failedBatches.increment();
+                            logger.error("Exception when sending report batch: \n" + body, throwable);
+                            spool(body.toString());
+                        } else if (response.statusCode() == 200) {
+                            sentBatches.increment();
+                            logger.debug("Report batch successfully sent: \n{}", body);
+                        } else {
+                            FAILED_REQUESTS.increment();
+                            failedBatches.increment();
+                            logger.error("Failed to send report batch: \n{}", body);
+                            spool(body.toString());
+                        }
+                    });
+        } catch (Exception e) {
+            requestPermits.release();
+            FAILED_REQUESTS.increment();
+            failedBatches.increment();
+            logger.error("Exception when sending report batch: \n" + body, e);
+            spool(body.toString());
+        }
+    }
+}
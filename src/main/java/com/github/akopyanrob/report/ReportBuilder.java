@@ -1,38 +1,175 @@
 package com.github.akopyanrob.report;
 
+import com.github.akopyanrob.result.HostSnapshot;
+import com.github.akopyanrob.result.JsonWriter;
 import com.github.akopyanrob.result.LastResultHolder;
+import com.github.akopyanrob.result.LatencyHistogram;
+import com.github.akopyanrob.result.LatencyHistograms;
+import com.github.akopyanrob.result.LatencyHistory;
+import com.github.akopyanrob.result.LatencySamples;
 import com.github.akopyanrob.result.PingResult;
-import org.json.JSONObject;
+import com.github.akopyanrob.result.ProbeType;
+import com.github.akopyanrob.topology.Incident;
 
-import java.util.LinkedHashMap;
 import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 
 public class ReportBuilder {
+    private static final String NOT_AVAILABLE = "N/A";
+    private static final int SCRATCH_POOL_SIZE = 16;
+
     private final LastResultHolder lastResultHolder;
+    private final boolean pretty;
+    private final int historySamples;
+    private final long percentilePeriodMillis;
+    // Merge targets of the percentile histograms, shared by the reporting threads
+    private final BlockingQueue<LatencyHistogram> scratchHistograms = new ArrayBlockingQueue<>(SCRATCH_POOL_SIZE);
 
     public ReportBuilder(LastResultHolder lastResultHolder) {
+        this(lastResultHolder, false);
+    }
+
+    /**
+     * @param pretty indent the reports, compact output is smaller and faster to write
+     */
+    public ReportBuilder(LastResultHolder lastResultHolder, boolean pretty) {
+        this(lastResultHolder, pretty, 0);
+    }
+
+    /**
+     * @param historySamples number of latency samples per probe added to the report, 0 for none
+     */
+    public ReportBuilder(LastResultHolder lastResultHolder, boolean pretty, int historySamples) {
+        this(lastResultHolder, pretty, historySamples, 0);
+    }
+
+    /**
+     * @param percentilePeriodMillis period of the latency percentiles added to the report, 0 for none
+     */
+    public ReportBuilder(LastResultHolder lastResultHolder, boolean pretty, int historySamples, long percentilePeriodMillis) {
         this.lastResultHolder = Objects.requireNonNull(lastResultHolder, "lastResultHolder must not be null");
+        this.pretty = pretty;
+        this.historySamples = historySamples;
+        this.percentilePeriodMillis = percentilePeriodMillis;
+    }
+
+    public JsonWriter newWriter() {
+        return new JsonWriter(pretty);
     }
 
     public String buildReport(String host) {
-        LinkedHashMap<String, String> reportMap = new LinkedHashMap<>();
+        JsonWriter writer = newWriter();
+        writeReport(host, writer);
+        return writer.toString();
+    }
+
+    public String buildReport(int hostId) {
+        JsonWriter writer = newWriter();
+        writeReport(hostId, writer);
+        return writer.toString();
+    }
+
+    /**
+     * Writes the report of the host as a JSON object, the results are nested objects.
+     */
+    public void writeReport(String host, JsonWriter writer) {
+        writeReport(host, lastResultHolder.getSnapshot(host), writer);
+    }
+
+    /**
+     * Same as {@link #writeReport(String, JsonWriter)} for a host registered in the {@link com.github.akopyanrob.result.HostRegistry}.
+     */
+    public void writeReport(int hostId, JsonWriter writer) {
+        writeReport(lastResultHolder.getHostRegistry().hostOf(hostId), lastResultHolder.getSnapshot(hostId), writer);
+    }
+
+    private void writeReport(String host, HostSnapshot snapshot, JsonWriter writer) {
+        writer.beginObject();
+        writer.name("host").value(host);
+        writePingResultOrDefault(writer.name("icmp_ping"), snapshot.icmp());
+        writePingResultOrDefault(writer.name("tcp_ping"), snapshot.tcp());
 
-        reportMap.put("host", host);
+        // Only present when the TCP connect probe is enabled
+        PingResult tcpConnectPingResult = snapshot.tcpConnect();
+        if (tcpConnectPingResult != null) {
+            tcpConnectPingResult.writeJson(writer.name("tcp_connect"));
+        }
 
-        String icmpPingResult = getPingResultOrDefault(lastResultHolder.getHostLastICMPPingResult().get(host));
-        reportMap.put("icmp_ping", icmpPingResult);
+        writePingResultOrDefault(writer.name("trace"), snapshot.trace());
 
-        String tcpPingResult = getPingResultOrDefault(lastResultHolder.getHostLastTCPPingResult().get(host));
-        reportMap.put("tcp_ping", tcpPingResult);
+        if (historySamples > 0) {
+            LatencyHistory latencyHistory = lastResultHolder.getLatencyHistory();
+            writer.name("latency_history").beginObject();
+            writeSamples(writer.name("icmp_ping"), latencyHistory.getLastSamples(host, ProbeType.ICMP, historySamples));
+            writeSamples(writer.name("tcp_ping"), latencyHistory.getLastSamples(host, ProbeType.TCP, historySamples));
+            writeSamples(writer.name("tcp_connect"), latencyHistory.getLastSamples(host, ProbeType.TCP_CONNECT, historySamples));
+            writer.endObject();
+        }
 
-        String traceRoutePingResult = getPingResultOrDefault(lastResultHolder.getHostLastTracePingResult().get(host));
-        reportMap.put("trace", traceRoutePingResult);
+        if (percentilePeriodMillis > 0) {
+            LatencyHistograms latencyHistograms = lastResultHolder.getLatencyHistograms();
+            LatencyHistogram scratch = scratchHistograms.poll();
+            if (scratch == null) {
+                scratch = new LatencyHistogram();
+            }
+            writer.name("latency_percentiles").beginObject();
+            writePercentiles(writer.name("icmp_ping"), latencyHistograms.getHistogram(host, ProbeType.ICMP, percentilePeriodMillis, scratch));
+            writePercentiles(writer.name("tcp_ping"), latencyHistograms.getHistogram(host, ProbeType.TCP, percentilePeriodMillis, scratch));
+            writePercentiles(writer.name("tcp_connect"), latencyHistograms.getHistogram(host, ProbeType.TCP_CONNECT, percentilePeriodMillis, scratch));
+            writer.endObject();
+            scratchHistograms.offer(scratch);
+        }
+        writer.endObject();
+    }
+
+    /**
+     * Writes one object for all hosts of the incident instead of a report per host.
+     */
+    public void writeIncident(Incident incident, JsonWriter writer) {
+        writer.beginObject();
+        writer.name("incident").beginObject();
+        writer.name("hop").value(incident.hop());
+        writer.name("depth").value(incident.depth());
+        writer.name("path").beginArray();
+        incident.path().forEach(writer::value);
+        writer.endArray();
+        writer.name("hosts").beginArray();
+        incident.failedHosts().forEach(writer::value);
+        writer.endArray();
+        writer.endObject();
+        writer.endObject();
+    }
+
+    /**
+     * Percentiles in microseconds.
+     */
+    private void writePercentiles(JsonWriter writer, LatencyHistogram histogram) {
+        writer.beginObject();
+        writer.name("count").value(histogram.getCount());
+        writer.name("p50").value(histogram.getValueAtPercentile(50));
+        writer.name("p90").value(histogram.getValueAtPercentile(90));
+        writer.name("p99").value(histogram.getValueAtPercentile(99));
+        writer.name("p999").value(histogram.getValueAtPercentile(99.9));
+        writer.name("max").value(histogram.getMaxMicros());
+        writer.endObject();
+    }
 
-        JSONObject jsonObject = new JSONObject(reportMap);
-        return jsonObject.toString(4);
+    /**
+     * Samples as [timeStamp, latencyMicros, isSuccessful] arrays, oldest first.
+     */
+    private void writeSamples(JsonWriter writer, LatencySamples samples) {
+        writer.beginArray();
+        samples.forEach((timestamp, latencyMicros, successful) ->
+                writer.beginArray().value(timestamp).value(latencyMicros).value(successful).endArray());
+        writer.endArray();
     }
 
-    private String getPingResultOrDefault(PingResult pingResult) {
-        return pingResult != null ? pingResult.toString() : "N/A";
+    private void writePingResultOrDefault(JsonWriter writer, PingResult pingResult) {
+        if (pingResult != null) {
+            pingResult.writeJson(writer);
+        } else {
+            writer.value(NOT_AVAILABLE);
+        }
     }
 }
@@ -0,0 +1,384 @@
+package com.github.akopyanrob.report;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpResponse;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Durable spool for reports that could not be delivered. Reports are appended to memory-mapped segment files
+ * and a background drainer replays them in order to the report endpoint, retrying with exponential backoff.
+ * The delivered position is checkpointed, so undelivered reports survive a restart, and fully delivered segments are deleted.
+ * The spool is bounded by segment size times segment count: when it is full the oldest segment is dropped.
+ * A report the endpoint rejects for good (a 4xx status other than 408 and 429) is dropped instead of retried,
+ * so it does not hold up the reports behind it.
+ * <p>
+ * Record layout: [int length][int crc32][length bytes of UTF-8 body]. The length is written last, so a record
+ * torn by a crash is not visible. Writes reach the page cache and survive a process crash, segments are forced to disk on rollover.
+ */
+public class ReportOutbox implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(ReportOutbox.class);
+
+    private static final String SEGMENT_PREFIX = "outbox-";
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final String CHECKPOINT_FILE = "outbox.checkpoint";
+    private static final int RECORD_HEADER_SIZE = 8;
+
+    private final Path directory;
+    private final int segmentSize;
+    private final int maxSegments;
+    private final HttpClient httpClient;
+    private final String reportDestinationUrl;
+    private final long initialBackoffMillis;
+    private final long maxBackoffMillis;
+    private final TreeMap<Long, Segment> segments = new TreeMap<>();
+    private final MappedByteBuffer checkpoint;
+    private final AtomicLong appendedReports = new AtomicLong();
+    private final AtomicLong deliveredReports = new AtomicLong();
+    private final AtomicLong droppedReports = new AtomicLong();
+    private final Thread drainerThread;
+
+    private long readSegmentId;
+    private int readOffset;
+    private volatile boolean running = true;
+
+    public ReportOutbox(Path directory, int segmentSize, int maxSegments, HttpClient httpClient, String reportDestinationUrl,
+                        long initialBackoffMillis, long maxBackoffMillis) throws IOException {
+        this.directory = Objects.requireNonNull(directory, "directory must not be null");
+        this.httpClient = Objects.requireNonNull(httpClient, "httpClient must not be null");
+        this.reportDestinationUrl = Objects.requireNonNull(reportDestinationUrl, "reportDestinationUrl must not be null");
+        if (segmentSize <= RECORD_HEADER_SIZE || maxSegments < 2) {
+            throw new IllegalArgumentException("Segment size must hold a record and there must be at least 2 segments");
+        }
+        if (initialBackoffMillis <= 0 || maxBackoffMillis < initialBackoffMillis) {
+            throw new IllegalArgumentException("Backoff must be positive and max backoff not lower than the initial one");
+        }
+        this.segmentSize = segmentSize;
+        this.maxSegments = maxSegments;
+        this.initialBackoffMillis = initialBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+
+        Files.createDirectories(directory);
+        try (FileChannel channel = FileChannel.open(directory.resolve(CHECKPOINT_FILE),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            this.checkpoint = channel.map(FileChannel.MapMode.READ_WRITE, 0, Long.BYTES);
+        }
+        recover();
+
+        this.drainerThread = new Thread(this::drain, "report-outbox-drainer");
+        this.drainerThread.setDaemon(true);
+        this.drainerThread.start();
+    }
+
+    /**
+     * Adds a report to the spool, never waits for the network. Returns false when the report is larger than a segment.
+     */
+    public boolean append(String report) {
+        byte[] body = report.getBytes(StandardCharsets.UTF_8);
+        if (body.length + RECORD_HEADER_SIZE > segmentSize) {
+            droppedReports.incrementAndGet();
+            logger.error("Report of {} bytes does not fit in an outbox segment, dropped", body.length);
+            return false;
+        }
+        synchronized (this) {
+            Segment segment = segments.lastEntry().getValue();
+            if (segment.writeOffset + RECORD_HEADER_SIZE + body.length > segmentSize) {
+                try {
+                    segment = rollSegment();
+                } catch (IOException e) {
+                    droppedReports.incrementAndGet();
+                    logger.error("Failed to create outbox segment, report dropped: {}", e.getMessage(), e);
+                    return false;
+                }
+            }
+            CRC32 crc = new CRC32();
+            crc.update(body);
+            int offset = segment.writeOffset;
+            segment.buffer.put(offset + RECORD_HEADER_SIZE, body);
+            segment.buffer.putInt(offset + Integer.BYTES, (int) crc.getValue());
+            segment.buffer.putInt(offset, body.length);
+            segment.writeOffset += RECORD_HEADER_SIZE + body.length;
+            appendedReports.incrementAndGet();
+            notifyAll();
+        }
+        return true;
+    }
+
+    public long getAppendedReports() {
+        return appendedReports.get();
+    }
+
+    public long getDeliveredReports() {
+        return deliveredReports.get();
+    }
+
+    public long getDroppedReports() {
+        return droppedReports.get();
+    }
+
+    public synchronized int getSegmentCount() {
+        return segments.size();
+    }
+
+    /**
+     * Number of reports waiting to be delivered.
+     */
+    public synchronized long getPendingReports() {
+        long pending = 0;
+        for (Segment segment : segments.tailMap(readSegmentId, true).values()) {
+            int offset = segment.id == readSegmentId ? readOffset : 0;
+            while (offset < segment.writeOffset) {
+                offset += RECORD_HEADER_SIZE + segment.buffer.getInt(offset);
+                pending++;
+            }
+        }
+        return pending;
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        drainerThread.interrupt();
+        try {
+            drainerThread.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            segments.values().forEach(segment -> segment.buffer.force());
+            checkpoint.force();
+        }
+    }
+
+    private void drain() {
+        long backoff = initialBackoffMillis;
+        while (running) {
+            PendingRecord record;
+            try {
+                record = nextRecord();
+            } catch (InterruptedException e) {
+                return;
+            }
+            Delivery delivery = deliver(record.body);
+            if (delivery != Delivery.RETRY) {
+                commit(record, delivery == Delivery.DELIVERED);
+                backoff = initialBackoffMillis;
+                continue;
+            }
+            try {
+                Thread.sleep(backoff);
+            } catch (InterruptedException e) {
+                return;
+            }
+            backoff = Math.min(backoff * 2, maxBackoffMillis);
+        }
+    }
+
+    private Delivery deliver(String body) {
+        try {
+            HttpResponse<Void> response = httpClient.send(Reporter.createRequest(reportDestinationUrl, body), HttpResponse.BodyHandlers.discarding());
+            int statusCode = response.statusCode();
+            if (statusCode == 200) {
+                logger.debug("Spooled report delivered: \n" + body);
+                return Delivery.DELIVERED;
+            }
+            if (isRejected(statusCode)) {
+                logger.error("Spooled report of {} bytes rejected with status code {}, dropped", body.length(), statusCode);
+                return Delivery.REJECTED;
+            }
+            logger.warn("Failed to deliver spooled report, status code {}", statusCode);
+        } catch (IOException e) {
+            logger.warn("Exception when delivering spooled report: {}", e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return Delivery.RETRY;
+    }
+
+    /**
+     * Client errors will not go away by sending the same body again, except a request timeout and rate limiting.
+     */
+    static boolean isRejected(int statusCode) {
+        return statusCode >= 400 && statusCode < 500 && statusCode != 408 && statusCode != 429;
+    }
+
+    /**
+     * Blocks until a record is available, deleting the fully delivered segments on the way.
+     */
+    private synchronized PendingRecord nextRecord() throws InterruptedException {
+        while (true) {
+            Segment segment = segments.get(readSegmentId);
+            if (segment == null) {
+                Map.Entry<Long, Segment> next = segments.ceilingEntry(readSegmentId);
+                moveReadPosition(next != null ? next.getKey() : segments.lastKey(), 0);
+                continue;
+            }
+            if (readOffset < segment.writeOffset) {
+                int length = segment.buffer.getInt(readOffset);
+                byte[] body = new byte[length];
+                segment.buffer.get(readOffset + RECORD_HEADER_SIZE, body);
+                return new PendingRecord(segment.id, readOffset, RECORD_HEADER_SIZE + length, new String(body, StandardCharsets.UTF_8));
+            }
+            if (segment != segments.lastEntry().getValue()) {
+                // Everything in this segment is delivered and no more records will be written to it
+                deleteSegment(segments.remove(segment.id));
+                moveReadPosition(segments.higherKey(segment.id), 0);
+                continue;
+            }
+            wait();
+        }
+    }
+
+    /**
+     * Moves past a record that was delivered or rejected.
+     */
+    private synchronized void commit(PendingRecord record, boolean delivered) {
+        // The segment may have been dropped while the record was being delivered, it was counted as dropped then
+        if (record.segmentId == readSegmentId && record.offset == readOffset) {
+            moveReadPosition(readSegmentId, readOffset + record.size);
+            if (!delivered) {
+                droppedReports.incrementAndGet();
+            }
+        }
+        if (delivered) {
+            deliveredReports.incrementAndGet();
+        }
+    }
+
+    private void moveReadPosition(long segmentId, int offset) {
+        readSegmentId = segmentId;
+        readOffset = offset;
+        // Segment id and offset in one long, a single write can not be torn by a process crash
+        checkpoint.putLong(0, (segmentId << 32) | offset);
+    }
+
+    private Segment rollSegment() throws IOException {
+        Segment current = segments.lastEntry().getValue();
+        current.buffer.force();
+        while (segments.size() >= maxSegments) {
+            dropOldestSegment();
+        }
+        Segment segment = openSegment(current.id + 1);
+        segments.put(segment.id, segment);
+        return segment;
+    }
+
+    private void dropOldestSegment() {
+        Segment oldest = segments.pollFirstEntry().getValue();
+        if (oldest.id >= readSegmentId) {
+            int offset = oldest.id == readSegmentId ? readOffset : 0;
+            long dropped = 0;
+            while (offset < oldest.writeOffset) {
+                offset += RECORD_HEADER_SIZE + oldest.buffer.getInt(offset);
+                dropped++;
+            }
+            droppedReports.addAndGet(dropped);
+            logger.warn("Report outbox is full, dropped {} undelivered reports", dropped);
+            moveReadPosition(segments.firstKey(), 0);
+        }
+        deleteSegment(oldest);
+    }
+
+    private void recover() throws IOException {
+        List<Long> segmentIds = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX))
+                    .forEach(name -> segmentIds.add(Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()))));
+        }
+        for (long segmentId : segmentIds) {
+            Segment segment = openSegment(segmentId);
+            segment.writeOffset = findEndOfRecords(segment.buffer);
+            segments.put(segmentId, segment);
+        }
+        if (segments.isEmpty()) {
+            segments.put(0L, openSegment(0));
+        }
+
+        long position = checkpoint.getLong(0);
+        long segmentId = position >>> 32;
+        int offset = (int) position;
+        if (segments.containsKey(segmentId) && offset <= segments.get(segmentId).writeOffset) {
+            readSegmentId = segmentId;
+            readOffset = offset;
+        } else {
+            moveReadPosition(segmentId > segments.lastKey() ? segments.lastKey() : segments.firstKey(), 0);
+        }
+        logger.info("Report outbox opened with {} segments, {} reports pending", segments.size(), getPendingReports());
+    }
+
+    private int findEndOfRecords(MappedByteBuffer buffer) {
+        int offset = 0;
+        CRC32 crc = new CRC32();
+        while (offset + RECORD_HEADER_SIZE <= segmentSize) {
+            int length = buffer.getInt(offset);
+            if (length <= 0 || offset + RECORD_HEADER_SIZE + length > segmentSize) {
+                break;
+            }
+            crc.reset();
+            crc.update(buffer.slice(offset + RECORD_HEADER_SIZE, length));
+            if ((int) crc.getValue() != buffer.getInt(offset + Integer.BYTES)) {
+                break;
+            }
+            offset += RECORD_HEADER_SIZE + length;
+        }
+        return offset;
+    }
+
+    private Segment openSegment(long id) throws IOException {
+        Path path = segmentPath(id);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return new Segment(id, channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize));
+        }
+    }
+
+    private void deleteSegment(Segment segment) {
+        try {
+            Files.deleteIfExists(segmentPath(segment.id));
+        } catch (IOException e) {
+            logger.error("Failed to delete outbox segment {}: {}", segment.id, e.getMessage());
+        }
+    }
+
+    private Path segmentPath(long id) {
+        return directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, id, SEGMENT_SUFFIX));
+    }
+
+    private static final class Segment {
+        private final long id;
+        private final MappedByteBuffer buffer;
+        private int writeOffset;
+
+        private Segment(long id, MappedByteBuffer buffer) {
+            this.id = id;
+            this.buffer = buffer;
+        }
+    }
+
+    private enum Delivery {
+        DELIVERED,
+        // Rejected for good by the endpoint
+        REJECTED,
+        RETRY
+    }
+
+    private record PendingRecord(long segmentId, int offset, int size, String body) {
+    }
+}
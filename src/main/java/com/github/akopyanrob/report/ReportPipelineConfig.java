@@ -0,0 +1,18 @@
+package com.github.akopyanrob.report;
+
+/**
+ * @param queueCapacity         hosts waiting to be reported, reports beyond it are dropped
+ * @param coalesceWindowMillis  reports of the same host within this window are sent once
+ * @param maxBatchSize          host reports sent together in one POST
+ * @param maxConcurrentRequests POSTs in flight at the same time
+ */
+public record ReportPipelineConfig(int queueCapacity, long coalesceWindowMillis, int maxBatchSize, int maxConcurrentRequests) {
+    public ReportPipelineConfig {
+        if (queueCapacity <= 0 || maxBatchSize <= 0 || maxConcurrentRequests <= 0) {
+            throw new IllegalArgumentException("Queue capacity, batch size and concurrent requests must be positive");
+        }
+        if (coalesceWindowMillis < 0) {
+            throw new IllegalArgumentException("Coalesce window must be non-negative");
+        }
+    }
+}
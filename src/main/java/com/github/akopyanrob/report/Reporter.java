@@ -1,5 +1,9 @@
 package com.github.akopyanrob.report;
 
+import com.github.akopyanrob.metrics.Counter;
+import com.github.akopyanrob.metrics.MetricsRegistry;
+import com.github.akopyanrob.metrics.Timer;
+import com.github.akopyanrob.result.JsonWriter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -9,37 +13,117 @@ import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 
 public class Reporter {
     private static final Logger logger = LoggerFactory.getLogger(Reporter.class);
+    protected static final Timer REQUEST_TIMER = MetricsRegistry.getInstance()
+            .timer("report_request_seconds", "Duration of the report POST requests");
+    protected static final Counter FAILED_REQUESTS = MetricsRegistry.getInstance()
+            .counter("report_failed_requests_total", "Report POST requests that failed or were not answered with 200");
+    // Enough buffers for the reports that are sent at the same time, extra ones are left to the GC
+    private static final int WRITER_POOL_SIZE = 16;
 
-    private final ReportBuilder reportBuilder;
-    private final HttpClient httpClient;
-    private final String reportDestinationUrl;
+    protected final ReportBuilder reportBuilder;
+    protected final HttpClient httpClient;
+    protected final String reportDestinationUrl;
+    protected final ReportOutbox outbox;
+    // Shared by all reporting threads, a thread local would never be reused by the virtual threads
+    private final BlockingQueue<JsonWriter> writers = new ArrayBlockingQueue<>(WRITER_POOL_SIZE);
 
     public Reporter(ReportBuilder reportBuilder, HttpClient httpClient, String reportDestinationUrl) {
+        this(reportBuilder, httpClient, reportDestinationUrl, null);
+    }
+
+    /**
+     * @param outbox spool for the reports that could not be sent, null to only log them
+     */
+    public Reporter(ReportBuilder reportBuilder, HttpClient httpClient, String reportDestinationUrl, ReportOutbox outbox) {
         this.reportBuilder = Objects.requireNonNull(reportBuilder, "reportBuilder must not be null");
         this.httpClient = Objects.requireNonNull(httpClient, "httpClient must not be null");
         this.reportDestinationUrl = Objects.requireNonNull(reportDestinationUrl, "reportDestinationUrl must not be null");
+        this.outbox = outbox;
     }
 
     public void report(String host) {
-        String report = reportBuilder.buildReport(host);
-        System.out.println("REPORT : " + report);
-        HttpRequest request = HttpRequest.newBuilder()
-                .uri(URI.create("http://" + reportDestinationUrl))
-                .header("Content-Type", "application/json; utf-8")
-                .POST(HttpRequest.BodyPublishers.ofString(report))
-                .build();
+        JsonWriter report = acquireWriter();
+        try {
+            send(host, report);
+        } finally {
+            // Report sending is synchronous, so the buffer is free again once the request completed
+            writers.offer(report);
+        }
+    }
+
+    private JsonWriter acquireWriter() {
+        JsonWriter writer = writers.poll();
+        if (writer == null) {
+            return reportBuilder.newWriter();
+        }
+        writer.reset();
+        return writer;
+    }
+
+    private void send(String host, JsonWriter report) {
+        reportBuilder.writeReport(host, report);
+        printReport(report);
+        HttpRequest request = createRequest(report);
+        long startNanos = System.nanoTime();
         try {
-            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+            HttpResponse<Void> response = httpClient.send(request, HttpResponse.BodyHandlers.discarding());
+            REQUEST_TIMER.recordSince(startNanos);
             if (response.statusCode() == 200) {
-                logger.debug("Report successfully sent: \n" + report);
+                logger.debug("Report successfully sent: \n{}", report);
             } else {
-                logger.error("Failed to send report: \n" + report);
+                FAILED_REQUESTS.increment();
+                logger.error("Failed to send report: \n{}", report);
+                spool(report.toString());
             }
         } catch (IOException | InterruptedException e) {
+            REQUEST_TIMER.recordSince(startNanos);
+            FAILED_REQUESTS.increment();
             logger.error("Exception when sending report: \n" + report, e);
+            spool(report.toString());
+        }
+    }
+
+    protected void spool(String report) {
+        if (outbox != null) {
+            outbox.append(report);
         }
     }
+
+    protected static void printReport(JsonWriter report) {
+        synchronized (System.out) {
+            System.out.print("REPORT : ");
+            System.out.write(report.buffer(), 0, report.size());
+            System.out.println();
+        }
+    }
+
+    /**
+     * The request body is the writer buffer itself, it must not be reused before the request is sent.
+     */
+    protected HttpRequest createRequest(JsonWriter body) {
+        return newRequestBuilder(reportDestinationUrl)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body.buffer(), 0, body.size()))
+                .build();
+    }
+
+    protected HttpRequest createRequest(String body) {
+        return createRequest(reportDestinationUrl, body);
+    }
+
+    static HttpRequest createRequest(String reportDestinationUrl, String body) {
+        return newRequestBuilder(reportDestinationUrl)
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+    }
+
+    private static HttpRequest.Builder newRequestBuilder(String reportDestinationUrl) {
+        return HttpRequest.newBuilder()
+                .uri(URI.create("http://" + reportDestinationUrl))
+                .header("Content-Type", "application/json; utf-8");
+    }
 }
@@ -0,0 +1,30 @@
+package com.github.akopyanrob.result;
+
+/**
+ * Durations of the phases of one probe over a fresh connection, measured with System.nanoTime.
+ *
+ * @param dnsNanos       name resolution, 0 for address literals and names that were already cached
+ * @param connectNanos   TCP handshake
+ * @param tlsNanos       TLS handshake, -1 when the target is not https
+ * @param firstByteNanos from sending the request to the first byte of the response
+ */
+public record ConnectionPhases(long dnsNanos, long connectNanos, long tlsNanos, long firstByteNanos) {
+
+    /**
+     * Time spent on the connection after the name was resolved, the response time of the probe.
+     */
+    public long connectionNanos() {
+        return connectNanos + Math.max(tlsNanos, 0) + firstByteNanos;
+    }
+
+    void writeJson(JsonWriter writer) {
+        writer.beginObject();
+        writer.name("dnsNanos").value(dnsNanos);
+        writer.name("connectNanos").value(connectNanos);
+        if (tlsNanos >= 0) {
+            writer.name("tlsNanos").value(tlsNanos);
+        }
+        writer.name("firstByteNanos").value(firstByteNanos);
+        writer.endObject();
+    }
+}
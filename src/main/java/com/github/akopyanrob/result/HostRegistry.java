@@ -0,0 +1,69 @@
+package com.github.akopyanrob.result;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Gives every host a dense id, 0 for the first registered host, 1 for the next and so on.
+ * Ids are never reused, so they can index arrays of per host state. Registering is the only operation
+ * that takes a lock, looking up a host by id is an array load.
+ */
+public class HostRegistry {
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final ConcurrentHashMap<String, Integer> ids = new ConcurrentHashMap<>();
+    private volatile String[] hosts = new String[INITIAL_CAPACITY];
+    private volatile int size;
+
+    /**
+     * Returns the id of the host, registering it when it has none yet.
+     */
+    public int register(String host) {
+        if (host == null) {
+            throw new IllegalArgumentException("Host must not be null");
+        }
+        Integer id = ids.get(host);
+        if (id != null) {
+            return id;
+        }
+        synchronized (this) {
+            id = ids.get(host);
+            if (id != null) {
+                return id;
+            }
+            int newId = size;
+            String[] current = hosts;
+            if (newId == current.length) {
+                current = Arrays.copyOf(current, current.length * 2);
+            }
+            current[newId] = host;
+            hosts = current;
+            // The host is readable by id before its id is published
+            size = newId + 1;
+            ids.put(host, newId);
+            return newId;
+        }
+    }
+
+    /**
+     * The id of the host, -1 when it was never registered.
+     */
+    public int idOf(String host) {
+        Integer id = host != null ? ids.get(host) : null;
+        return id != null ? id : -1;
+    }
+
+    public String hostOf(int id) {
+        if (id < 0 || id >= size) {
+            throw new IllegalArgumentException("Unknown host id " + id);
+        }
+        return hosts[id];
+    }
+
+    /**
+     * Number of registered hosts, the ids are 0 to size - 1.
+     */
+    public int size() {
+        return size;
+    }
+}
@@ -0,0 +1,42 @@
+package com.github.akopyanrob.result;
+
+/**
+ * The latest result of every probe of a host, null for a probe without a result. Immutable, an update
+ * creates a new snapshot, so the results read from one snapshot were all current at the same time.
+ */
+public record HostSnapshot(PingResult icmp, PingResult tcp, PingResult tcpConnect, PingResult trace) {
+    public static final HostSnapshot EMPTY = new HostSnapshot(null, null, null, null);
+
+    public PingResult get(ProbeType probeType) {
+        return switch (probeType) {
+            case ICMP -> icmp;
+            case TCP -> tcp;
+            case TCP_CONNECT -> tcpConnect;
+            case TRACE -> trace;
+        };
+    }
+
+    /**
+     * True when the latest result of a reachability probe (ICMP, TCP or TCP connect) failed, traces do not count.
+     * The host stays failing until its next probe succeeds, so the state covers at least one probe interval.
+     */
+    public boolean isFailing() {
+        return failed(icmp) || failed(tcp) || failed(tcpConnect);
+    }
+
+    private static boolean failed(PingResult result) {
+        return result != null && !result.isSuccessful();
+    }
+
+    /**
+     * A copy with the result of the probe replaced.
+     */
+    public HostSnapshot with(ProbeType probeType, PingResult result) {
+        return switch (probeType) {
+            case ICMP -> new HostSnapshot(result, tcp, tcpConnect, trace);
+            case TCP -> new HostSnapshot(icmp, result, tcpConnect, trace);
+            case TCP_CONNECT -> new HostSnapshot(icmp, tcp, result, trace);
+            case TRACE -> new HostSnapshot(icmp, tcp, tcpConnect, result);
+        };
+    }
+}
@@ -0,0 +1,68 @@
+package com.github.akopyanrob.result;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.IntFunction;
+import java.util.function.UnaryOperator;
+
+/**
+ * Per host values indexed by the id from the {@link HostRegistry}. Values are kept in chunks created on first use,
+ * so looking up a host is two array loads and growing never copies the table.
+ */
+final class HostTable<T> {
+    private static final int CHUNK_BITS = 10;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int MAX_CHUNKS = 1024;
+
+    private final AtomicReferenceArray<AtomicReferenceArray<T>> chunks = new AtomicReferenceArray<>(MAX_CHUNKS);
+
+    /**
+     * The value of the host, null when it has none or the id is invalid.
+     */
+    T get(int hostId) {
+        AtomicReferenceArray<T> chunk = hostId >= 0 && hostId >>> CHUNK_BITS < MAX_CHUNKS ? chunks.get(hostId >>> CHUNK_BITS) : null;
+        return chunk != null ? chunk.get(hostId & (CHUNK_SIZE - 1)) : null;
+    }
+
+    /**
+     * The value of the host, created by the factory when it has none. Concurrent callers all get the same value.
+     */
+    T computeIfAbsent(int hostId, IntFunction<T> factory) {
+        AtomicReferenceArray<T> chunk = chunk(hostId);
+        int index = hostId & (CHUNK_SIZE - 1);
+        T value = chunk.get(index);
+        if (value == null) {
+            chunk.compareAndSet(index, null, factory.apply(hostId));
+            value = chunk.get(index);
+        }
+        return value;
+    }
+
+    /**
+     * Replaces the value of the host (null when it has none) by compare-and-set, retrying the function on contention,
+     * so it must not have side effects. Returns the new value.
+     */
+    T update(int hostId, UnaryOperator<T> function) {
+        AtomicReferenceArray<T> chunk = chunk(hostId);
+        int index = hostId & (CHUNK_SIZE - 1);
+        T current;
+        T updated;
+        do {
+            current = chunk.get(index);
+            updated = function.apply(current);
+        } while (!chunk.compareAndSet(index, current, updated));
+        return updated;
+    }
+
+    private AtomicReferenceArray<T> chunk(int hostId) {
+        int chunkIndex = hostId >>> CHUNK_BITS;
+        if (hostId < 0 || chunkIndex >= MAX_CHUNKS) {
+            throw new IllegalArgumentException("Invalid host id " + hostId);
+        }
+        AtomicReferenceArray<T> chunk = chunks.get(chunkIndex);
+        if (chunk == null) {
+            chunks.compareAndSet(chunkIndex, null, new AtomicReferenceArray<>(CHUNK_SIZE));
+            chunk = chunks.get(chunkIndex);
+        }
+        return chunk;
+    }
+}
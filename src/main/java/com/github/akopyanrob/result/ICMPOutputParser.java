@@ -0,0 +1,88 @@
+package com.github.akopyanrob.result;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Parses the output of the ping command into {@link ICMPStatistics}: iputils and BSD/macOS ping on Linux and macOS,
+ * ping.exe on Windows. The packet counts come from the statistics lines, the round trip times from the reply lines.
+ */
+public final class ICMPOutputParser {
+    // "5 packets transmitted, 3 received, +2 errors, 40% packet loss" and the BSD "5 packets received"
+    private static final Pattern TRANSMITTED = Pattern.compile("(\\d+) packets transmitted, (\\d+) (?:packets )?received");
+    // "Packets: Sent = 5, Received = 5, Lost = 0 (0% loss),"
+    private static final Pattern WINDOWS_PACKETS = Pattern.compile("Sent = (\\d+), Received = (\\d+)");
+    // "rtt min/avg/max/mdev = 11.412/11.646/12.012/0.205 ms", "round-trip min/avg/max/stddev = ..." or without the deviation
+    private static final Pattern RTT_SUMMARY = Pattern.compile("= ([\\d.]+)/([\\d.]+)/([\\d.]+)(?:/([\\d.]+))? ms");
+    // "Minimum = 11ms, Maximum = 13ms, Average = 11ms"
+    private static final Pattern WINDOWS_RTT_SUMMARY = Pattern.compile("Minimum = (\\d+)ms, Maximum = (\\d+)ms, Average = (\\d+)ms");
+    // "64 bytes from 1.1.1.1: icmp_seq=1 ttl=55 time=11.6 ms" or "Reply from 1.1.1.1: bytes=32 time<1ms TTL=55"
+    private static final Pattern REPLY = Pattern.compile("(?:icmp_seq=(\\d+).*)?time[=<]([\\d.]+) ?ms");
+
+    private ICMPOutputParser() {
+    }
+
+    /**
+     * Returns null when the output has no packet statistics, e.g. when ping failed before sending anything.
+     */
+    public static ICMPStatistics parse(List<String> outputLines) {
+        if (outputLines == null) {
+            return null;
+        }
+        int sent = -1;
+        int received = -1;
+        int[] summary = null;
+        int[] replySequences = new int[outputLines.size()];
+        int[] replyMicros = new int[outputLines.size()];
+        int replies = 0;
+        boolean sequenceFromZero = false;
+        Matcher matcher;
+        try {
+            for (String line : outputLines) {
+                if (line.contains("transmitted") && (matcher = TRANSMITTED.matcher(line)).find()
+                        || line.contains("Sent =") && (matcher = WINDOWS_PACKETS.matcher(line)).find()) {
+                    sent = Integer.parseInt(matcher.group(1));
+                    received = Integer.parseInt(matcher.group(2));
+                } else if ((line.startsWith("rtt ") || line.startsWith("round-trip")) && (matcher = RTT_SUMMARY.matcher(line)).find()) {
+                    summary = new int[]{toMicros(matcher.group(1)), toMicros(matcher.group(2)), toMicros(matcher.group(3)),
+                            matcher.group(4) != null ? toMicros(matcher.group(4)) : -1};
+                } else if (line.contains("Average =") && (matcher = WINDOWS_RTT_SUMMARY.matcher(line)).find()) {
+                    summary = new int[]{toMicros(matcher.group(1)), toMicros(matcher.group(3)), toMicros(matcher.group(2)), -1};
+                } else if ((line.contains("time=") || line.contains("time<")) && (matcher = REPLY.matcher(line)).find()) {
+                    int sequence = matcher.group(1) != null ? Integer.parseInt(matcher.group(1)) : -1;
+                    sequenceFromZero |= sequence == 0;
+                    replySequences[replies] = sequence;
+                    replyMicros[replies++] = toMicros(matcher.group(2));
+                }
+            }
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        if (sent < 0 || received < 0) {
+            return null;
+        }
+
+        // iputils counts from 1 and BSD ping from 0, Windows prints no sequence numbers
+        int[] roundTripMicros = new int[sent];
+        Arrays.fill(roundTripMicros, -1);
+        for (int i = 0; i < replies; i++) {
+            int index = replySequences[i] >= 0 ? replySequences[i] - (sequenceFromZero ? 0 : 1) : i;
+            if (index >= 0 && index < sent && roundTripMicros[index] < 0) {
+                roundTripMicros[index] = replyMicros[i];
+            }
+        }
+        if (summary == null) {
+            ICMPStatistics computed = ICMPStatistics.of(roundTripMicros);
+            return new ICMPStatistics(sent, received, computed.minMicros(), computed.avgMicros(), computed.maxMicros(),
+                    computed.mdevMicros(), roundTripMicros);
+        }
+        int deviation = summary[3] >= 0 ? summary[3] : ICMPStatistics.deviationMicros(roundTripMicros);
+        return new ICMPStatistics(sent, received, summary[0], summary[1], summary[2], deviation, roundTripMicros);
+    }
+
+    private static int toMicros(String millis) {
+        return (int) Math.round(Double.parseDouble(millis) * 1000);
+    }
+}
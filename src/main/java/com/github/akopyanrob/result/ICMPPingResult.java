@@ -2,9 +2,50 @@ package com.github.akopyanrob.result;
 
 import java.util.List;
 
+/**
+ * Result of an ICMP ping, kept as {@link ICMPStatistics}. The raw output lines are only kept when they could not be
+ * parsed, for errors and when the probe is configured to keep them.
+ */
 public class ICMPPingResult extends ProcessPingResult {
+    private final ICMPStatistics statistics;
 
-    public ICMPPingResult(boolean isSuccessful, String host, long timeStamp, List<String> resultLines) {
+    public ICMPPingResult(boolean isSuccessful, String host, long timeStamp, ICMPStatistics statistics) {
+        this(isSuccessful, host, timeStamp, statistics, null);
+    }
+
+    /**
+     * @param statistics  null when the output could not be parsed
+     * @param resultLines raw ping output, null when it is not kept
+     */
+    public ICMPPingResult(boolean isSuccessful, String host, long timeStamp, ICMPStatistics statistics, List<String> resultLines) {
         super(isSuccessful, host, timeStamp, resultLines);
+        this.statistics = statistics;
+    }
+
+    /**
+     * Parses the statistics from the lines and keeps the lines too.
+     */
+    public ICMPPingResult(boolean isSuccessful, String host, long timeStamp, List<String> resultLines) {
+        this(isSuccessful, host, timeStamp, ICMPOutputParser.parse(resultLines), resultLines);
+    }
+
+    public ICMPStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * Average round trip time, -1 when no reply was received.
+     */
+    @Override
+    public int getLatencyMicros() {
+        return statistics != null && statistics.received() > 0 ? statistics.avgMicros() : -1;
+    }
+
+    @Override
+    protected void writeFields(JsonWriter writer) {
+        super.writeFields(writer);
+        if (statistics != null) {
+            statistics.writeJson(writer);
+        }
     }
 }
@@ -0,0 +1,105 @@
+package com.github.akopyanrob.result;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Outcome of one ICMP ping run, round trip times in microseconds. The RTT summary is -1 when nothing was received,
+ * a single value of it is -1 when it is unknown.
+ *
+ * @param sent            echo requests sent
+ * @param received        echo replies received
+ * @param mdevMicros      standard deviation of the round trip times
+ * @param roundTripMicros round trip time per echo request in sequence order, -1 for a lost one, empty when unknown
+ */
+public record ICMPStatistics(int sent, int received, int minMicros, int avgMicros, int maxMicros, int mdevMicros,
+                             int[] roundTripMicros) {
+
+    /**
+     * Computes the statistics from the round trip times of all echo requests, -1 marks a lost one.
+     */
+    public static ICMPStatistics of(int[] roundTripMicros) {
+        int received = 0;
+        int min = Integer.MAX_VALUE;
+        int max = -1;
+        long sum = 0;
+        for (int roundTrip : roundTripMicros) {
+            if (roundTrip >= 0) {
+                received++;
+                min = Math.min(min, roundTrip);
+                max = Math.max(max, roundTrip);
+                sum += roundTrip;
+            }
+        }
+        if (received == 0) {
+            return new ICMPStatistics(roundTripMicros.length, 0, -1, -1, -1, -1, roundTripMicros);
+        }
+        return new ICMPStatistics(roundTripMicros.length, received, min, (int) Math.round((double) sum / received), max,
+                deviationMicros(roundTripMicros), roundTripMicros);
+    }
+
+    /**
+     * Population standard deviation of the received round trip times, as ping prints it as mdev. -1 when there is none.
+     */
+    static int deviationMicros(int[] roundTripMicros) {
+        int count = 0;
+        double sum = 0;
+        double sumOfSquares = 0;
+        for (int roundTrip : roundTripMicros) {
+            if (roundTrip >= 0) {
+                count++;
+                sum += roundTrip;
+                sumOfSquares += (double) roundTrip * roundTrip;
+            }
+        }
+        if (count == 0) {
+            return -1;
+        }
+        double mean = sum / count;
+        return (int) Math.round(Math.sqrt(Math.max(sumOfSquares / count - mean * mean, 0)));
+    }
+
+    public double lossRatio() {
+        return sent == 0 ? 1 : (double) (sent - received) / sent;
+    }
+
+    void writeJson(JsonWriter writer) {
+        writer.name("sent").value(sent);
+        writer.name("received").value(received);
+        writer.name("loss").value(lossRatio());
+        writeRoundTrip(writer, "rttMinMicros", minMicros);
+        writeRoundTrip(writer, "rttAvgMicros", avgMicros);
+        writeRoundTrip(writer, "rttMaxMicros", maxMicros);
+        writeRoundTrip(writer, "rttMdevMicros", mdevMicros);
+        writer.name("rttMicros").beginArray();
+        for (int roundTrip : roundTripMicros) {
+            writer.value(roundTrip);
+        }
+        writer.endArray();
+    }
+
+    private void writeRoundTrip(JsonWriter writer, String name, int micros) {
+        if (received > 0 && micros >= 0) {
+            writer.name(name).value(micros);
+        }
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == this) return true;
+        if (!(obj instanceof ICMPStatistics that)) return false;
+        return sent == that.sent && received == that.received && minMicros == that.minMicros && avgMicros == that.avgMicros
+                && maxMicros == that.maxMicros && mdevMicros == that.mdevMicros && Arrays.equals(roundTripMicros, that.roundTripMicros);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Objects.hash(sent, received, minMicros, avgMicros, maxMicros, mdevMicros) + Arrays.hashCode(roundTripMicros);
+    }
+
+    @Override
+    public String toString() {
+        return "ICMPStatistics[sent=" + sent + ", received=" + received + ", minMicros=" + minMicros + ", avgMicros=" + avgMicros
+                + ", maxMicros=" + maxMicros + ", mdevMicros=" + mdevMicros + ", roundTripMicros=" + Arrays.toString(roundTripMicros) + "]";
+    }
+}
@@ -0,0 +1,285 @@
+package com.github.akopyanrob.result;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Streaming JSON writer that encodes UTF-8 straight into a growable byte buffer.
+ * The buffer is kept between {@link #reset()} calls, so a writer reused per thread does not allocate once it has grown.
+ * Commas and (optional) indentation are handled by the writer, callers only describe the structure.
+ */
+public final class JsonWriter {
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] TRUE = "true".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] FALSE = "false".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] NULL = "null".getBytes(StandardCharsets.US_ASCII);
+    private static final int INDENT = 4;
+
+    private final boolean pretty;
+    private byte[] buffer;
+    private int size;
+    // hasElements[depth] tells if the current object/array already has an element and needs a comma
+    private boolean[] hasElements = new boolean[16];
+    private int depth;
+    private boolean afterName;
+
+    public JsonWriter(boolean pretty) {
+        this(pretty, 1024);
+    }
+
+    public JsonWriter(boolean pretty, int initialCapacity) {
+        this.pretty = pretty;
+        this.buffer = new byte[Math.max(initialCapacity, 16)];
+    }
+
+    public void reset() {
+        size = 0;
+        depth = 0;
+        afterName = false;
+    }
+
+    /**
+     * The internal buffer, valid from 0 to {@link #size()} until the writer is reset or written to.
+     */
+    public byte[] buffer() {
+        return buffer;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public JsonWriter beginObject() {
+        return open('{');
+    }
+
+    public JsonWriter endObject() {
+        return close('}');
+    }
+
+    public JsonWriter beginArray() {
+        return open('[');
+    }
+
+    public JsonWriter endArray() {
+        return close(']');
+    }
+
+    public JsonWriter name(String name) {
+        beforeValue();
+        writeString(name);
+        write(':');
+        if (pretty) {
+            write(' ');
+        }
+        afterName = true;
+        return this;
+    }
+
+    public JsonWriter value(String value) {
+        if (value == null) {
+            return nullValue();
+        }
+        beforeValue();
+        writeString(value);
+        return this;
+    }
+
+    public JsonWriter value(boolean value) {
+        beforeValue();
+        write(value ? TRUE : FALSE);
+        return this;
+    }
+
+    public JsonWriter value(long value) {
+        beforeValue();
+        writeLong(value);
+        return this;
+    }
+
+    public JsonWriter value(double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            return nullValue();
+        }
+        beforeValue();
+        writeAscii(Double.toString(value));
+        return this;
+    }
+
+    public JsonWriter nullValue() {
+        beforeValue();
+        write(NULL);
+        return this;
+    }
+
+    /**
+     * Writes an already encoded JSON value as is.
+     */
+    public JsonWriter rawValue(String json) {
+        beforeValue();
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        write(bytes);
+        return this;
+    }
+
+    public JsonWriter strings(Iterable<String> values) {
+        beginArray();
+        for (String value : values) {
+            value(value);
+        }
+        return endArray();
+    }
+
+    public byte[] toByteArray() {
+        return Arrays.copyOf(buffer, size);
+    }
+
+    @Override
+    public String toString() {
+        return new String(buffer, 0, size, StandardCharsets.UTF_8);
+    }
+
+    private JsonWriter open(char bracket) {
+        beforeValue();
+        write(bracket);
+        if (++depth == hasElements.length) {
+            hasElements = Arrays.copyOf(hasElements, depth * 2);
+        }
+        hasElements[depth] = false;
+        return this;
+    }
+
+    private JsonWriter close(char bracket) {
+        if (depth == 0) {
+            throw new IllegalStateException("Nothing to close");
+        }
+        boolean empty = !hasElements[depth--];
+        if (pretty && !empty) {
+            newLine();
+        }
+        write(bracket);
+        return this;
+    }
+
+    private void beforeValue() {
+        if (afterName) {
+            afterName = false;
+            return;
+        }
+        if (depth == 0) {
+            return;
+        }
+        if (hasElements[depth]) {
+            write(',');
+        }
+        hasElements[depth] = true;
+        if (pretty) {
+            newLine();
+        }
+    }
+
+    private void newLine() {
+        ensureCapacity(1 + depth * INDENT);
+        buffer[size++] = '\n';
+        for (int i = 0; i < depth * INDENT; i++) {
+            buffer[size++] = ' ';
+        }
+    }
+
+    private void writeString(String value) {
+        int length = value.length();
+        // Worst case is 6 bytes per char for escaped control characters, plus the quotes
+        ensureCapacity(length * 6 + 2);
+        byte[] out = buffer;
+        int position = size;
+        out[position++] = '"';
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c >= 0x20 && c < 0x80 && c != '"' && c != '\\') {
+                out[position++] = (byte) c;
+            } else if (c == '"' || c == '\\') {
+                out[position++] = '\\';
+                out[position++] = (byte) c;
+            } else if (c == '\n') {
+                out[position++] = '\\';
+                out[position++] = 'n';
+            } else if (c == '\r') {
+                out[position++] = '\\';
+                out[position++] = 'r';
+            } else if (c == '\t') {
+                out[position++] = '\\';
+                out[position++] = 't';
+            } else if (c < 0x20) {
+                out[position++] = '\\';
+                out[position++] = 'u';
+                out[position++] = '0';
+                out[position++] = '0';
+                out[position++] = HEX[c >> 4];
+                out[position++] = HEX[c & 0xF];
+            } else if (c < 0x800) {
+                out[position++] = (byte) (0xC0 | (c >> 6));
+                out[position++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                out[position++] = (byte) (0xF0 | (codePoint >> 18));
+                out[position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                out[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                out[position++] = (byte) (0x80 | (codePoint & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                out[position++] = '?';
+            } else {
+                out[position++] = (byte) (0xE0 | (c >> 12));
+                out[position++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                out[position++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        out[position++] = '"';
+        size = position;
+    }
+
+    private void writeLong(long value) {
+        if (value == Long.MIN_VALUE) {
+            writeAscii(Long.toString(value));
+            return;
+        }
+        ensureCapacity(20);
+        if (value < 0) {
+            buffer[size++] = '-';
+            value = -value;
+        }
+        int digits = 1;
+        for (long remaining = value / 10; remaining > 0; remaining /= 10) {
+            digits++;
+        }
+        int position = size + digits;
+        size = position;
+        do {
+            buffer[--position] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value > 0);
+    }
+
+    private void writeAscii(String value) {
+        ensureCapacity(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            buffer[size++] = (byte) value.charAt(i);
+        }
+    }
+
+    private void write(char c) {
+        ensureCapacity(1);
+        buffer[size++] = (byte) c;
+    }
+
+    private void write(byte[] bytes) {
+        ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, buffer, size, bytes.length);
+        size += bytes.length;
+    }
+
+    private void ensureCapacity(int extra) {
+        if (size + extra > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + extra));
+        }
+    }
+}
@@ -1,14 +1,21 @@
 package com.github.akopyanrob.result;
 
-import java.util.Collections;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-
+/**
+ * The latest results of every host, one {@link HostSnapshot} per host indexed by the id from the {@link HostRegistry}.
+ * Snapshots are replaced by compare-and-set, readers never lock and always see the results of all probes from one snapshot.
+ */
 public class LastResultHolder {
+    private static final int HISTORY_CAPACITY = 1024;
+    // An hour in four windows, 4 * 3 probe types * 1.5 KB = about 18 KB per host once all windows are in use
+    private static final long HISTOGRAM_WINDOW_MILLIS = 900_000;
+    private static final int HISTOGRAM_WINDOWS = 4;
 
-    private final ConcurrentHashMap<String, PingResult> hostLastICMPPingResult = new ConcurrentHashMap<>();
-    private final ConcurrentHashMap<String, PingResult> hostLastTCPPingResult = new ConcurrentHashMap<>();
-    private final ConcurrentHashMap<String, PingResult> hostLastTracePingResult = new ConcurrentHashMap<>();
+    private final HostRegistry hostRegistry = new HostRegistry();
+    // Chunks created on first use, so registering more hosts never copies (and loses) an update
+    private final HostTable<HostSnapshot> snapshots = new HostTable<>();
+    private final LatencyHistory latencyHistory = new LatencyHistory(HISTORY_CAPACITY, hostRegistry);
+    private final LatencyHistograms latencyHistograms = new LatencyHistograms(HISTOGRAM_WINDOW_MILLIS, HISTOGRAM_WINDOWS, hostRegistry);
+    private volatile ResultLog resultLog;
 
     //Bill Pugh Singleton Design
     private LastResultHolder() {
@@ -22,31 +29,98 @@ public class LastResultHolder {
         return Holder.INSTANCE;
     }
 
-    public Map<String, PingResult> getHostLastICMPPingResult() {
-        return Collections.unmodifiableMap(hostLastICMPPingResult);
+    /**
+     * The recent results of every host and probe, the snapshots only keep the latest one.
+     */
+    public LatencyHistory getLatencyHistory() {
+        return latencyHistory;
+    }
+
+    /**
+     * Latency distribution of every host and probe over the last hour, in fifteen minute windows.
+     */
+    public LatencyHistograms getLatencyHistograms() {
+        return latencyHistograms;
+    }
+
+    /**
+     * Persists every result added from now on, null to stop.
+     */
+    public void attachResultLog(ResultLog resultLog) {
+        this.resultLog = resultLog;
     }
 
-    public Map<String, PingResult> getHostLastTCPPingResult() {
-        return Collections.unmodifiableMap(hostLastTCPPingResult);
+    /**
+     * Ids of the hosts, register a host once and pass its id to {@link #addLastResult} and {@link #getSnapshot(int)}.
+     */
+    public HostRegistry getHostRegistry() {
+        return hostRegistry;
     }
 
-    public Map<String, PingResult> getHostLastTracePingResult() {
-        return Collections.unmodifiableMap(hostLastTracePingResult);
+    /**
+     * The latest results of the host, {@link HostSnapshot#EMPTY} when it has none.
+     */
+    public HostSnapshot getSnapshot(int hostId) {
+        HostSnapshot snapshot = snapshots.get(hostId);
+        return snapshot != null ? snapshot : HostSnapshot.EMPTY;
+    }
+
+    public HostSnapshot getSnapshot(String host) {
+        return getSnapshot(hostRegistry.idOf(host));
+    }
+
+    /**
+     * Sets the latest result of the probe and records it in the history.
+     */
+    public void addLastResult(int hostId, ProbeType probeType, PingResult result) {
+        if (result == null) {
+            throw new IllegalArgumentException("Result must not be null");
+        }
+        setLastResult(hostId, probeType, result);
+        recordHistory(hostId, probeType, result);
     }
 
     public void addHostLastICMPPingResult(String host, PingResult lastICMPPingResult) {
         validateInput(host, lastICMPPingResult);
-        this.hostLastICMPPingResult.put(host, lastICMPPingResult);
+        addLastResult(hostRegistry.register(host), ProbeType.ICMP, lastICMPPingResult);
     }
 
     public void addHostLastTCPPingResult(String host, PingResult lastTCPPingResult) {
         validateInput(host, lastTCPPingResult);
-        this.hostLastTCPPingResult.put(host, lastTCPPingResult);
+        addLastResult(hostRegistry.register(host), ProbeType.TCP, lastTCPPingResult);
     }
 
     public void addHostLastTracePingResult(String host, PingResult lastTracePingResult) {
         validateInput(host, lastTracePingResult);
-        this.hostLastTracePingResult.put(host, lastTracePingResult);
+        addLastResult(hostRegistry.register(host), ProbeType.TRACE, lastTracePingResult);
+    }
+
+    public void addHostLastTCPConnectPingResult(String host, PingResult lastTCPConnectPingResult) {
+        validateInput(host, lastTCPConnectPingResult);
+        addLastResult(hostRegistry.register(host), ProbeType.TCP_CONNECT, lastTCPConnectPingResult);
+    }
+
+    /**
+     * Sets the latest result without recording it, used to restore the results of a previous run.
+     */
+    void restoreLastResult(String host, ProbeType probeType, PingResult result) {
+        validateInput(host, result);
+        setLastResult(hostRegistry.register(host), probeType, result);
+    }
+
+    private void setLastResult(int hostId, ProbeType probeType, PingResult result) {
+        snapshots.update(hostId, current -> (current != null ? current : HostSnapshot.EMPTY).with(probeType, result));
+    }
+
+    private void recordHistory(int hostId, ProbeType probeType, PingResult result) {
+        latencyHistory.record(hostId, probeType, result.getTimeStamp(), result.getLatencyMicros(), result.isSuccessful());
+        if (result.getLatencyMicros() >= 0) {
+            latencyHistograms.record(hostId, probeType, result.getTimeStamp(), result.getLatencyMicros());
+        }
+        ResultLog log = resultLog;
+        if (log != null) {
+            log.append(hostRegistry, hostId, probeType, result);
+        }
     }
 
     private static void validateInput(String host, PingResult lastTracePingResult) {
@@ -0,0 +1,104 @@
+package com.github.akopyanrob.result;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Fixed memory latency histogram with log-linear buckets (HDR style): exact below 32 µs, then 16 buckets
+ * per power of two, so any recorded value is within about 6% of its bucket. Values above 2^26 µs (about 67 s,
+ * longer than any probe timeout) are clamped. The 368 buckets are int counts, about 1.5 KB per histogram,
+ * so a histogram is meant for a bounded time window. Recording is lock-free, O(1) and does not allocate.
+ */
+public final class LatencyHistogram {
+    private static final int LINEAR_BUCKETS = 32;
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_SHIFT = 21;
+    static final int BUCKET_COUNT = LINEAR_BUCKETS + MAX_SHIFT * SUB_BUCKETS;
+    static final long MAX_VALUE = ((2L * SUB_BUCKETS) << MAX_SHIFT) - 1;
+
+    private final AtomicIntegerArray counts = new AtomicIntegerArray(BUCKET_COUNT);
+    private final AtomicLong totalCount = new AtomicLong();
+    private final AtomicLong maxValue = new AtomicLong();
+
+    public void record(long valueMicros) {
+        if (valueMicros < 0) {
+            return;
+        }
+        long value = Math.min(valueMicros, MAX_VALUE);
+        counts.incrementAndGet(bucketIndex(value));
+        totalCount.incrementAndGet();
+        maxValue.accumulateAndGet(value, Math::max);
+    }
+
+    /**
+     * Adds the counts of the other histogram to this one.
+     */
+    public void add(LatencyHistogram other) {
+        long added = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            int count = other.counts.get(i);
+            if (count != 0) {
+                counts.addAndGet(i, count);
+                added += count;
+            }
+        }
+        totalCount.addAndGet(added);
+        maxValue.accumulateAndGet(other.maxValue.get(), Math::max);
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts.set(i, 0);
+        }
+        totalCount.set(0);
+        maxValue.set(0);
+    }
+
+    public long getCount() {
+        return totalCount.get();
+    }
+
+    public long getMaxMicros() {
+        return maxValue.get();
+    }
+
+    /**
+     * The highest value of the bucket holding the given percentile (0-100), never above the max, 0 when empty.
+     */
+    public long getValueAtPercentile(double percentile) {
+        long total = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            total += counts.get(i);
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(Math.min(percentile, 100.0) / 100.0 * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return Math.min(bucketUpperBound(i), maxValue.get());
+            }
+        }
+        return maxValue.get();
+    }
+
+    static int bucketIndex(long value) {
+        if (value < LINEAR_BUCKETS) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return LINEAR_BUCKETS + (shift - 1) * SUB_BUCKETS + (int) ((value >>> shift) - SUB_BUCKETS);
+    }
+
+    static long bucketUpperBound(int index) {
+        if (index < LINEAR_BUCKETS) {
+            return index;
+        }
+        int shift = (index - LINEAR_BUCKETS) / SUB_BUCKETS + 1;
+        long subBucket = (index - LINEAR_BUCKETS) % SUB_BUCKETS + SUB_BUCKETS;
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,66 @@
+package com.github.akopyanrob.result;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Windowed latency histograms of every host and probe type, indexed by host id.
+ * A histogram costs about 1.5 KB per window, so hosts * probes * windows bounds the memory, windows are only
+ * allocated once a sample falls into them.
+ */
+public class LatencyHistograms {
+    private final long windowMillis;
+    private final int windowCount;
+    private final HostRegistry hostRegistry;
+    private final HostTable<AtomicReferenceArray<WindowedLatencyHistogram>> histograms = new HostTable<>();
+
+    public LatencyHistograms(long windowMillis, int windowCount) {
+        this(windowMillis, windowCount, new HostRegistry());
+    }
+
+    /**
+     * @param hostRegistry gives the ids of the hosts recorded or queried by name
+     */
+    public LatencyHistograms(long windowMillis, int windowCount, HostRegistry hostRegistry) {
+        if (windowMillis <= 0 || windowCount <= 0) {
+            throw new IllegalArgumentException("Window length and count must be positive");
+        }
+        this.windowMillis = windowMillis;
+        this.windowCount = windowCount;
+        this.hostRegistry = hostRegistry;
+    }
+
+    public void record(String host, ProbeType probeType, long timeMillis, long latencyMicros) {
+        record(hostRegistry.register(host), probeType, timeMillis, latencyMicros);
+    }
+
+    public void record(int hostId, ProbeType probeType, long timeMillis, long latencyMicros) {
+        AtomicReferenceArray<WindowedLatencyHistogram> hostHistograms =
+                histograms.computeIfAbsent(hostId, id -> new AtomicReferenceArray<>(ProbeType.values().length));
+        WindowedLatencyHistogram histogram = hostHistograms.get(probeType.ordinal());
+        if (histogram == null) {
+            hostHistograms.compareAndSet(probeType.ordinal(), null, new WindowedLatencyHistogram(windowMillis, windowCount));
+            histogram = hostHistograms.get(probeType.ordinal());
+        }
+        histogram.record(timeMillis, latencyMicros);
+    }
+
+    /**
+     * Latency distribution of the host and probe over the last periodMillis, at most the whole ring of windows.
+     */
+    public LatencyHistogram getHistogram(String host, ProbeType probeType, long periodMillis) {
+        return getHistogram(host, probeType, periodMillis, new LatencyHistogram());
+    }
+
+    /**
+     * Same as {@link #getHistogram(String, ProbeType, long)}, but clears and fills the given histogram instead of allocating one.
+     */
+    public LatencyHistogram getHistogram(String host, ProbeType probeType, long periodMillis, LatencyHistogram into) {
+        AtomicReferenceArray<WindowedLatencyHistogram> hostHistograms = histograms.get(hostRegistry.idOf(host));
+        WindowedLatencyHistogram histogram = hostHistograms != null ? hostHistograms.get(probeType.ordinal()) : null;
+        if (histogram == null) {
+            into.reset();
+            return into;
+        }
+        return histogram.snapshot(System.currentTimeMillis(), periodMillis, into);
+    }
+}
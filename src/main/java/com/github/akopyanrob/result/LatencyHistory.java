@@ -0,0 +1,75 @@
+package com.github.akopyanrob.result;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Latency history of every host and probe type, kept in fixed size rings of primitive arrays indexed by host id.
+ * A ring of n samples costs about 12.1 * n bytes (timestamp, latency in microseconds and a success bit).
+ * Probe types without latency are not recorded.
+ */
+public class LatencyHistory {
+    private final int capacity;
+    private final HostRegistry hostRegistry;
+    private final HostTable<AtomicReferenceArray<LatencyRing>> rings = new HostTable<>();
+
+    public LatencyHistory(int capacity) {
+        this(capacity, new HostRegistry());
+    }
+
+    /**
+     * @param hostRegistry gives the ids of the hosts recorded or queried by name
+     */
+    public LatencyHistory(int capacity, HostRegistry hostRegistry) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        this.capacity = capacity;
+        this.hostRegistry = hostRegistry;
+    }
+
+    public void record(String host, ProbeType probeType, long timestamp, int latencyMicros, boolean successful) {
+        record(hostRegistry.register(host), probeType, timestamp, latencyMicros, successful);
+    }
+
+    public void record(int hostId, ProbeType probeType, long timestamp, int latencyMicros, boolean successful) {
+        if (!probeType.hasLatency()) {
+            return;
+        }
+        AtomicReferenceArray<LatencyRing> hostRings = rings.computeIfAbsent(hostId, id -> new AtomicReferenceArray<>(ProbeType.values().length));
+        LatencyRing ring = hostRings.get(probeType.ordinal());
+        if (ring == null) {
+            hostRings.compareAndSet(probeType.ordinal(), null, new LatencyRing(capacity));
+            ring = hostRings.get(probeType.ordinal());
+        }
+        ring.record(timestamp, latencyMicros, successful);
+    }
+
+    /**
+     * The last n samples, oldest first.
+     */
+    public LatencySamples getLastSamples(String host, ProbeType probeType, int n) {
+        LatencyRing ring = getRing(host, probeType);
+        return ring != null ? ring.snapshot(n) : LatencySamples.EMPTY;
+    }
+
+    /**
+     * The samples still in the history with a timestamp in [fromMillis, toMillis], oldest first.
+     */
+    public LatencySamples getSamples(String host, ProbeType probeType, long fromMillis, long toMillis) {
+        LatencyRing ring = getRing(host, probeType);
+        return ring != null ? ring.snapshot(ring.capacity()).between(fromMillis, toMillis) : LatencySamples.EMPTY;
+    }
+
+    /**
+     * Number of samples recorded for the host and probe, including the ones that no longer fit in the history.
+     */
+    public long getSampleCount(String host, ProbeType probeType) {
+        LatencyRing ring = getRing(host, probeType);
+        return ring != null ? ring.count() : 0;
+    }
+
+    private LatencyRing getRing(String host, ProbeType probeType) {
+        AtomicReferenceArray<LatencyRing> hostRings = rings.get(hostRegistry.idOf(host));
+        return hostRings != null ? hostRings.get(probeType.ordinal()) : null;
+    }
+}
@@ -0,0 +1,81 @@
+package com.github.akopyanrob.result;
+
+import java.lang.invoke.VarHandle;
+
+/**
+ * Fixed size ring of samples in parallel primitive arrays, no object is allocated per sample.
+ * There is one writer at a time (record is synchronized and uncontended in practice), readers never lock:
+ * they copy the slots and then check with the write sequence that the writer did not overwrite them meanwhile.
+ */
+final class LatencyRing {
+    private final long[] timestamps;
+    private final int[] latenciesMicros;
+    private final long[] successBits;
+    private final int mask;
+    // Number of samples ever written, the write of a slot is published by incrementing it
+    private volatile long head;
+    // Incremented before a slot is written, differs from head while a write is in progress
+    private volatile long claimed;
+
+    LatencyRing(int capacity) {
+        int size = Integer.highestOneBit(Math.max(capacity - 1, 1)) << 1;
+        this.timestamps = new long[size];
+        this.latenciesMicros = new int[size];
+        this.successBits = new long[(size + 63) >>> 6];
+        this.mask = size - 1;
+    }
+
+    int capacity() {
+        return mask + 1;
+    }
+
+    long count() {
+        return head;
+    }
+
+    synchronized void record(long timestamp, int latencyMicros, boolean successful) {
+        long sequence = head;
+        claimed = sequence + 1;
+        VarHandle.storeStoreFence();
+        int slot = (int) (sequence & mask);
+        timestamps[slot] = timestamp;
+        latenciesMicros[slot] = latencyMicros;
+        if (successful) {
+            successBits[slot >>> 6] |= 1L << slot;
+        } else {
+            successBits[slot >>> 6] &= ~(1L << slot);
+        }
+        head = sequence + 1;
+    }
+
+    /**
+     * Copies up to the last maxSamples samples, oldest first.
+     */
+    LatencySamples snapshot(int maxSamples) {
+        while (true) {
+            long end = head;
+            int count = (int) Math.min(Math.min(end, capacity()), Math.max(maxSamples, 0));
+            long start = end - count;
+            long[] copiedTimestamps = new long[count];
+            int[] copiedLatencies = new int[count];
+            boolean[] copiedSuccess = new boolean[count];
+            for (int i = 0; i < count; i++) {
+                int slot = (int) ((start + i) & mask);
+                copiedTimestamps[i] = timestamps[slot];
+                copiedLatencies[i] = latenciesMicros[slot];
+                copiedSuccess[i] = (successBits[slot >>> 6] & (1L << slot)) != 0;
+            }
+            VarHandle.loadLoadFence();
+            // Slots of sequences up to claimed - capacity may have been overwritten while they were copied
+            long firstValid = claimed - capacity();
+            if (start >= firstValid) {
+                return new LatencySamples(copiedTimestamps, copiedLatencies, copiedSuccess, count);
+            }
+            if (end >= firstValid) {
+                // Only the oldest samples were overwritten, keep the rest
+                int skip = (int) (firstValid - start);
+                return new LatencySamples(copiedTimestamps, copiedLatencies, copiedSuccess, count).tail(count - skip);
+            }
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.github.akopyanrob.result;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Immutable copy of samples of a host and probe, oldest first. Latency is -1 when the probe did not measure one.
+ */
+public final class LatencySamples {
+    public static final LatencySamples EMPTY = new LatencySamples(new long[0], new int[0], new boolean[0], 0);
+
+    private final long[] timestamps;
+    private final int[] latenciesMicros;
+    private final boolean[] successful;
+    private final int size;
+
+    LatencySamples(long[] timestamps, int[] latenciesMicros, boolean[] successful, int size) {
+        this.timestamps = timestamps;
+        this.latenciesMicros = latenciesMicros;
+        this.successful = successful;
+        this.size = size;
+    }
+
+    @FunctionalInterface
+    public interface SampleConsumer {
+        void accept(long timestamp, int latencyMicros, boolean successful);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long getTimestamp(int index) {
+        return timestamps[checkIndex(index)];
+    }
+
+    public int getLatencyMicros(int index) {
+        return latenciesMicros[checkIndex(index)];
+    }
+
+    public boolean isSuccessful(int index) {
+        return successful[checkIndex(index)];
+    }
+
+    public void forEach(SampleConsumer consumer) {
+        for (int i = 0; i < size; i++) {
+            consumer.accept(timestamps[i], latenciesMicros[i], successful[i]);
+        }
+    }
+
+    /**
+     * Samples with a timestamp in [fromMillis, toMillis].
+     */
+    public LatencySamples between(long fromMillis, long toMillis) {
+        int count = 0;
+        long[] rangeTimestamps = new long[size];
+        int[] rangeLatencies = new int[size];
+        boolean[] rangeSuccessful = new boolean[size];
+        for (int i = 0; i < size; i++) {
+            if (timestamps[i] >= fromMillis && timestamps[i] <= toMillis) {
+                rangeTimestamps[count] = timestamps[i];
+                rangeLatencies[count] = latenciesMicros[i];
+                rangeSuccessful[count] = successful[i];
+                count++;
+            }
+        }
+        return new LatencySamples(rangeTimestamps, rangeLatencies, rangeSuccessful, count);
+    }
+
+    LatencySamples tail(int count) {
+        int from = size - count;
+        return new LatencySamples(Arrays.copyOfRange(timestamps, from, size), Arrays.copyOfRange(latenciesMicros, from, size),
+                Arrays.copyOfRange(successful, from, size), count);
+    }
+
+    private int checkIndex(int index) {
+        return Objects.checkIndex(index, size);
+    }
+}
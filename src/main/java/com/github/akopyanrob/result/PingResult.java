@@ -23,4 +23,33 @@ public class PingResult {
     public long getTimeStamp() {
         return timeStamp;
     }
+
+    /**
+     * Latency measured by the probe in microseconds, -1 when there is none.
+     */
+    public int getLatencyMicros() {
+        return -1;
+    }
+
+    /**
+     * Writes this result as a JSON object.
+     */
+    public final void writeJson(JsonWriter writer) {
+        writer.beginObject();
+        writeFields(writer);
+        writer.endObject();
+    }
+
+    protected void writeFields(JsonWriter writer) {
+        writer.name("isSuccessful").value(isSuccessful);
+        writer.name("host").value(host);
+        writer.name("timeStamp").value(timeStamp);
+    }
+
+    @Override
+    public String toString() {
+        JsonWriter writer = new JsonWriter(false, 256);
+        writeJson(writer);
+        return writer.toString();
+    }
 }
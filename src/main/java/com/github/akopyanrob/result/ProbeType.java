@@ -0,0 +1,24 @@
+package com.github.akopyanrob.result;
+
+/**
+ * The probes whose results are kept, the ordinal indexes the per host history.
+ */
+public enum ProbeType {
+    ICMP(true),
+    TCP(true),
+    TCP_CONNECT(true),
+    TRACE(false);
+
+    private final boolean hasLatency;
+
+    ProbeType(boolean hasLatency) {
+        this.hasLatency = hasLatency;
+    }
+
+    /**
+     * False for the probes whose results carry no latency, they get no latency history.
+     */
+    public boolean hasLatency() {
+        return hasLatency;
+    }
+}
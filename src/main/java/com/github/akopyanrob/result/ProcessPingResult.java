@@ -1,8 +1,5 @@
 package com.github.akopyanrob.result;
 
-import org.json.JSONArray;
-import org.json.JSONObject;
-
 import java.util.List;
 
 public class ProcessPingResult extends PingResult {
@@ -18,15 +15,10 @@ public class ProcessPingResult extends PingResult {
     }
 
     @Override
-    public String toString() {
-        JSONObject jsonObject = new JSONObject();
-        jsonObject.put("isSuccessful", isSuccessful);
-        jsonObject.put("host", host);
-        jsonObject.put("timeStamp", timeStamp);
-
-        JSONArray resultLinesJson = new JSONArray(resultLines);
-        jsonObject.put("resultLines", resultLinesJson);
-
-        return jsonObject.toString();
+    protected void writeFields(JsonWriter writer) {
+        super.writeFields(writer);
+        if (resultLines != null) {
+            writer.name("resultLines").strings(resultLines);
+        }
     }
 }
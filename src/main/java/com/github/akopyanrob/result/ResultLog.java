@@ -0,0 +1,443 @@
+package com.github.akopyanrob.result;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Persistent result history: fixed-width binary records appended to memory-mapped segment files, so the results
+ * survive a restart. Hosts are stored once in a dictionary file and referenced by id.
+ * Each segment keeps a small in-memory index of the time range of every block of records for range queries.
+ * When a segment is full the writer switches to the next segment, which is mapped ahead of time. Flushing the full
+ * segment, deleting the oldest ones above the retention limit and persisting new hosts run on a background thread.
+ * Host ids are never reused: ids referenced by records but missing from the dictionary are kept unnamed.
+ * <p>
+ * Record layout (24 bytes): [long timeStamp][int hostId][int latencyMicros][int code][byte probeType + 1][byte status][byte sent][byte received],
+ * the code is the HTTP response code of TCP results, the port of TCP connect results and -1 otherwise.
+ * Sent and received are the unsigned echo counts of ICMP results, both 0 when they are unknown or do not fit.
+ * The probe type is written last, a zero there marks the end of the records.
+ */
+public class ResultLog implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(ResultLog.class);
+
+    static final int RECORD_SIZE = 24;
+    private static final int BLOCK_RECORDS = 256;
+    private static final String SEGMENT_PREFIX = "results-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String HOSTS_FILE = "hosts.idx";
+    private static final String HOSTS_TEMP_FILE = "hosts.idx.tmp";
+    private static final List<String> RESTORED_LINES = List.of("Restored from the result history");
+    private static final ProbeType[] PROBE_TYPES = ProbeType.values();
+    private static final int MAX_ECHO_COUNT = 0xFF;
+
+    private final Path directory;
+    private final int segmentRecords;
+    private final int maxSegments;
+    private final ExecutorService maintenance = Executors.newSingleThreadExecutor(Thread.ofPlatform().name("result-log").daemon().factory());
+    private final ConcurrentHashMap<String, Integer> hostIds = new ConcurrentHashMap<>();
+    // Log id of the hosts by registry id, so appending a registered host's result does not look up its name
+    private final HostTable<Integer> logIdsByRegistryId = new HostTable<>();
+    // Host name by id, null for the ids whose name was lost
+    private final List<String> hosts = new ArrayList<>();
+    private int persistedHosts;
+    private final TreeMap<Long, Segment> segments = new TreeMap<>();
+    private Segment writeSegment;
+    // Mapped ahead of time by the background thread, null until it is ready
+    private Segment nextSegment;
+
+    @FunctionalInterface
+    public interface RecordConsumer {
+        void accept(long timeStamp, int latencyMicros, boolean successful, int code);
+    }
+
+    public ResultLog(Path directory, int segmentRecords, int maxSegments) throws IOException {
+        this.directory = Objects.requireNonNull(directory, "directory must not be null");
+        if (segmentRecords < BLOCK_RECORDS || maxSegments < 1) {
+            throw new IllegalArgumentException("A segment must hold at least " + BLOCK_RECORDS + " records and at least 1 segment must be kept");
+        }
+        this.segmentRecords = segmentRecords;
+        this.maxSegments = maxSegments;
+
+        Files.createDirectories(directory);
+        Path hostsFile = directory.resolve(HOSTS_FILE);
+        if (Files.exists(hostsFile)) {
+            for (String host : Files.readAllLines(hostsFile, StandardCharsets.UTF_8)) {
+                if (!host.isEmpty()) {
+                    hostIds.put(host, hosts.size());
+                }
+                hosts.add(host.isEmpty() ? null : host);
+            }
+        }
+        persistedHosts = hosts.size();
+
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path path : (Iterable<Path>) files::iterator) {
+                String name = path.getFileName().toString();
+                if (name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX)) {
+                    long id = Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+                    segments.put(id, openSegment(id));
+                }
+            }
+        }
+        if (segments.isEmpty()) {
+            segments.put(0L, openSegment(0));
+        }
+        // Records of hosts that were not persisted before a crash must not be attributed to new hosts
+        for (Segment segment : segments.values()) {
+            while (hosts.size() <= segment.maxHostId()) {
+                hosts.add(null);
+            }
+        }
+        if (segments.size() > 1 && segments.lastEntry().getValue().count == 0) {
+            nextSegment = segments.pollLastEntry().getValue();
+        }
+        writeSegment = segments.lastEntry().getValue();
+        if (nextSegment == null) {
+            long nextId = writeSegment.id + 1;
+            runInBackground(() -> preallocateSegment(nextId));
+        }
+    }
+
+    /**
+     * Appends the result, a copy of a few fields into the mapped segment.
+     */
+    public void append(String host, ProbeType probeType, PingResult result) {
+        append(getHostId(host), probeType, result);
+    }
+
+    /**
+     * Appends the result of a host registered in the registry, the name is only read the first time.
+     */
+    public void append(HostRegistry hostRegistry, int registryId, ProbeType probeType, PingResult result) {
+        append(logIdsByRegistryId.computeIfAbsent(registryId, id -> getHostId(hostRegistry.hostOf(id))), probeType, result);
+    }
+
+    private void append(int hostId, ProbeType probeType, PingResult result) {
+        int code = -1;
+        int sent = 0;
+        int received = 0;
+        if (result instanceof TCPPingResult tcpPingResult && tcpPingResult.getResponseCode() != null) {
+            code = tcpPingResult.getResponseCode();
+        } else if (result instanceof TCPConnectPingResult tcpConnectPingResult) {
+            code = tcpConnectPingResult.getPort();
+        } else if (result instanceof ICMPPingResult icmpPingResult && icmpPingResult.getStatistics() != null
+                && icmpPingResult.getStatistics().sent() <= MAX_ECHO_COUNT) {
+            sent = icmpPingResult.getStatistics().sent();
+            received = icmpPingResult.getStatistics().received();
+        }
+        synchronized (this) {
+            if (writeSegment.count == segmentRecords) {
+                try {
+                    rollSegment();
+                } catch (IOException e) {
+                    logger.error("Failed to start a new result log segment, result not persisted: {}", e.getMessage());
+                    return;
+                }
+            }
+            writeSegment.append(result.getTimeStamp(), hostId, result.getLatencyMicros(), code, sent, received, probeType, result.isSuccessful());
+        }
+    }
+
+    /**
+     * Calls the consumer for every record of the host and probe with a time stamp in [fromMillis, toMillis], oldest segment first.
+     */
+    public void forEach(String host, ProbeType probeType, long fromMillis, long toMillis, RecordConsumer consumer) {
+        Integer hostId = hostIds.get(host);
+        if (hostId == null) {
+            return;
+        }
+        for (Segment segment : getSegments()) {
+            segment.forEach(hostId, probeType, fromMillis, toMillis, consumer);
+        }
+    }
+
+    /**
+     * Warm start: replays the segments into the latency history, oldest first, and restores the latest result of every
+     * host and probe. Must be called before the log is attached to the holder.
+     */
+    public void restore(LastResultHolder lastResultHolder) {
+        List<Segment> snapshot = getSegments();
+        List<String> hostNames;
+        synchronized (hosts) {
+            hostNames = new ArrayList<>(hosts);
+        }
+        for (Segment segment : snapshot) {
+            ByteBuffer buffer = segment.buffer;
+            for (int i = 0, count = segment.count; i < count; i++) {
+                int offset = i * RECORD_SIZE;
+                String host = hostName(hostNames, buffer.getInt(offset + 8));
+                if (host != null) {
+                    lastResultHolder.getLatencyHistory().record(host, PROBE_TYPES[buffer.get(offset + 20) - 1],
+                            buffer.getLong(offset), buffer.getInt(offset + 12), buffer.get(offset + 21) == 1);
+                }
+            }
+        }
+
+        Set<Long> restored = new HashSet<>();
+        for (int s = snapshot.size() - 1; s >= 0; s--) {
+            ByteBuffer buffer = snapshot.get(s).buffer;
+            for (int i = snapshot.get(s).count - 1; i >= 0; i--) {
+                int offset = i * RECORD_SIZE;
+                int hostId = buffer.getInt(offset + 8);
+                ProbeType probeType = PROBE_TYPES[buffer.get(offset + 20) - 1];
+                String host = hostName(hostNames, hostId);
+                if (host != null && restored.add(((long) hostId << 8) | probeType.ordinal())) {
+                    lastResultHolder.restoreLastResult(host, probeType, toResult(host, probeType, buffer.getLong(offset),
+                            buffer.getInt(offset + 12), buffer.get(offset + 21) == 1, buffer.getInt(offset + 16),
+                            Byte.toUnsignedInt(buffer.get(offset + 22)), Byte.toUnsignedInt(buffer.get(offset + 23))));
+                }
+            }
+        }
+        logger.info("Restored {} results of {} hosts from the result history", restored.size(), hostNames.size());
+    }
+
+    public synchronized int getSegmentCount() {
+        return segments.size();
+    }
+
+    @Override
+    public void close() {
+        maintenance.shutdown();
+        try {
+            if (!maintenance.awaitTermination(5, TimeUnit.SECONDS)) {
+                logger.warn("Result log maintenance did not finish in time");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            segments.values().forEach(segment -> segment.buffer.force());
+        }
+        persistHosts();
+    }
+
+    private static String hostName(List<String> hostNames, int hostId) {
+        return hostId >= 0 && hostId < hostNames.size() ? hostNames.get(hostId) : null;
+    }
+
+    private static PingResult toResult(String host, ProbeType probeType, long timeStamp, int latencyMicros, boolean successful,
+                                       int code, int sent, int received) {
+        return switch (probeType) {
+            // Only the counts and the average are stored, the statistics stay unknown when the counts are
+            case ICMP -> new ICMPPingResult(successful, host, timeStamp, sent > 0
+                    ? new ICMPStatistics(sent, received, -1, received > 0 ? latencyMicros : -1, -1, -1, new int[0]) : null, RESTORED_LINES);
+            case TRACE -> new TraceRoutePingResult(successful, host, timeStamp, RESTORED_LINES);
+            case TCP -> new TCPPingResult(successful, host, timeStamp, latencyMicros >= 0 ? (long) latencyMicros / 1000 : null,
+                    latencyMicros >= 0 ? latencyMicros * 1000L : null, code >= 0 ? code : null);
+            case TCP_CONNECT -> new TCPConnectPingResult(successful, host, timeStamp, code, latencyMicros >= 0 ? latencyMicros * 1000L : null);
+        };
+    }
+
+    private int getHostId(String host) {
+        Integer hostId = hostIds.get(host);
+        if (hostId != null) {
+            return hostId;
+        }
+        synchronized (hosts) {
+            hostId = hostIds.get(host);
+            if (hostId != null) {
+                return hostId;
+            }
+            hostId = hosts.size();
+            hosts.add(host);
+            hostIds.put(host, hostId);
+        }
+        runInBackground(this::persistHosts);
+        return hostId;
+    }
+
+    /**
+     * Rewrites the host dictionary when hosts were added, a failed write is retried with the next new host or on close.
+     * Runs on the maintenance thread, or on the closing thread once it stopped.
+     */
+    private void persistHosts() {
+        List<String> snapshot;
+        synchronized (hosts) {
+            if (persistedHosts == hosts.size()) {
+                return;
+            }
+            snapshot = new ArrayList<>(hosts);
+        }
+        StringBuilder content = new StringBuilder();
+        for (String host : snapshot) {
+            content.append(host != null ? host : "").append('\n');
+        }
+        try {
+            Path temp = directory.resolve(HOSTS_TEMP_FILE);
+            Files.writeString(temp, content, StandardCharsets.UTF_8);
+            Files.move(temp, directory.resolve(HOSTS_FILE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            synchronized (hosts) {
+                persistedHosts = Math.max(persistedHosts, snapshot.size());
+            }
+        } catch (IOException e) {
+            logger.error("Failed to persist the result log hosts: {}", e.getMessage());
+        }
+    }
+
+    private void runInBackground(Runnable task) {
+        try {
+            maintenance.execute(task);
+        } catch (RejectedExecutionException e) {
+            logger.debug("Result log is closed, maintenance task skipped");
+        }
+    }
+
+    private synchronized List<Segment> getSegments() {
+        return new ArrayList<>(segments.values());
+    }
+
+    private void rollSegment() throws IOException {
+        Segment full = writeSegment;
+        Segment segment = nextSegment;
+        nextSegment = null;
+        if (segment == null) {
+            // The background thread did not map it yet
+            segment = openSegment(full.id + 1);
+        }
+        segments.put(segment.id, segment);
+        writeSegment = segment;
+        List<Segment> expired = new ArrayList<>();
+        while (segments.size() > maxSegments) {
+            expired.add(segments.pollFirstEntry().getValue());
+        }
+        long nextId = segment.id + 1;
+        runInBackground(() -> {
+            full.buffer.force();
+            for (Segment oldest : expired) {
+                try {
+                    // Readers still holding the segment keep a valid mapping after the file is deleted
+                    Files.deleteIfExists(segmentPath(oldest.id));
+                } catch (IOException e) {
+                    logger.error("Failed to delete result log segment {}: {}", oldest.id, e.getMessage());
+                }
+            }
+            preallocateSegment(nextId);
+        });
+    }
+
+    private void preallocateSegment(long id) {
+        try {
+            Segment segment = openSegment(id);
+            synchronized (this) {
+                if (nextSegment == null && writeSegment.id + 1 == id) {
+                    nextSegment = segment;
+                }
+            }
+        } catch (IOException e) {
+            logger.warn("Failed to map the next result log segment: {}", e.getMessage());
+        }
+    }
+
+    private Segment openSegment(long id) throws IOException {
+        try (FileChannel channel = FileChannel.open(segmentPath(id), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            Segment segment = new Segment(id, channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) segmentRecords * RECORD_SIZE), segmentRecords);
+            segment.recover();
+            return segment;
+        }
+    }
+
+    private Path segmentPath(long id) {
+        return directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, id, SEGMENT_SUFFIX));
+    }
+
+    private static final class Segment {
+        private final long id;
+        private final MappedByteBuffer buffer;
+        private final int capacity;
+        // Time range of every block of BLOCK_RECORDS records, written before count publishes the record
+        private final long[] blockMinTimeStamp;
+        private final long[] blockMaxTimeStamp;
+        private volatile int count;
+
+        private Segment(long id, MappedByteBuffer buffer, int capacity) {
+            this.id = id;
+            this.buffer = buffer;
+            this.capacity = capacity;
+            int blocks = (capacity + BLOCK_RECORDS - 1) / BLOCK_RECORDS;
+            this.blockMinTimeStamp = new long[blocks];
+            this.blockMaxTimeStamp = new long[blocks];
+            Arrays.fill(blockMinTimeStamp, Long.MAX_VALUE);
+            Arrays.fill(blockMaxTimeStamp, Long.MIN_VALUE);
+        }
+
+        private void recover() {
+            int recovered = 0;
+            while (recovered < capacity && buffer.get(recovered * RECORD_SIZE + 20) != 0) {
+                index(recovered, buffer.getLong(recovered * RECORD_SIZE));
+                recovered++;
+            }
+            count = recovered;
+        }
+
+        private int maxHostId() {
+            int maxHostId = -1;
+            for (int i = 0, end = count; i < end; i++) {
+                maxHostId = Math.max(maxHostId, buffer.getInt(i * RECORD_SIZE + 8));
+            }
+            return maxHostId;
+        }
+
+        private void append(long timeStamp, int hostId, int latencyMicros, int code, int sent, int received, ProbeType probeType,
+                            boolean successful) {
+            int index = count;
+            int offset = index * RECORD_SIZE;
+            buffer.putLong(offset, timeStamp);
+            buffer.putInt(offset + 8, hostId);
+            buffer.putInt(offset + 12, latencyMicros);
+            buffer.putInt(offset + 16, code);
+            buffer.put(offset + 21, (byte) (successful ? 1 : 0));
+            buffer.put(offset + 22, (byte) sent);
+            buffer.put(offset + 23, (byte) received);
+            buffer.put(offset + 20, (byte) (probeType.ordinal() + 1));
+            index(index, timeStamp);
+            count = index + 1;
+        }
+
+        private void index(int index, long timeStamp) {
+            int block = index / BLOCK_RECORDS;
+            blockMinTimeStamp[block] = Math.min(blockMinTimeStamp[block], timeStamp);
+            blockMaxTimeStamp[block] = Math.max(blockMaxTimeStamp[block], timeStamp);
+        }
+
+        private void forEach(int hostId, ProbeType probeType, long fromMillis, long toMillis, RecordConsumer consumer) {
+            int end = count;
+            byte type = (byte) (probeType.ordinal() + 1);
+            for (int block = 0; block * BLOCK_RECORDS < end; block++) {
+                // Blocks are skipped by time range, result time stamps are not strictly ordered
+                if (blockMaxTimeStamp[block] < fromMillis || blockMinTimeStamp[block] > toMillis) {
+                    continue;
+                }
+                for (int i = block * BLOCK_RECORDS, blockEnd = Math.min(end, i + BLOCK_RECORDS); i < blockEnd; i++) {
+                    int offset = i * RECORD_SIZE;
+                    long timeStamp = buffer.getLong(offset);
+                    if (buffer.getInt(offset + 8) == hostId && buffer.get(offset + 20) == type
+                            && timeStamp >= fromMillis && timeStamp <= toMillis) {
+                        consumer.accept(timeStamp, buffer.getInt(offset + 12), buffer.get(offset + 21) == 1, buffer.getInt(offset + 16));
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.github.akopyanrob.result;
+
+import java.util.Objects;
+
+public final class TCPConnectPingResult extends PingResult {
+    private final int port;
+    private final Long connectTimeNanos;
+
+    public TCPConnectPingResult(boolean isSuccessful, String host, long timestamp, int port, Long connectTimeNanos) {
+        super(isSuccessful, host, timestamp);
+        this.port = port;
+        this.connectTimeNanos = connectTimeNanos;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public Long getConnectTimeNanos() {
+        return connectTimeNanos;
+    }
+
+    @Override
+    public int getLatencyMicros() {
+        return connectTimeNanos != null ? (int) Math.min(connectTimeNanos / 1000, Integer.MAX_VALUE) : -1;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == this) return true;
+        if (obj == null || obj.getClass() != this.getClass()) return false;
+        var that = (TCPConnectPingResult) obj;
+        return this.isSuccessful == that.isSuccessful &&
+                this.port == that.port &&
+                Objects.equals(this.host, that.host) &&
+                Objects.equals(this.connectTimeNanos, that.connectTimeNanos);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(isSuccessful, host, port, connectTimeNanos);
+    }
+
+    @Override
+    protected void writeFields(JsonWriter writer) {
+        super.writeFields(writer);
+        writer.name("port").value(port);
+        if (connectTimeNanos != null) {
+            writer.name("connectTimeNanos").value(connectTimeNanos);
+        }
+    }
+}
@@ -1,27 +1,60 @@
 package com.github.akopyanrob.result;
 
-import org.json.JSONObject;
-
 import java.util.Objects;
 
 public final class TCPPingResult extends PingResult {
     private final Long responseTimeMillis;
+    private final Long responseTimeNanos;
     private final Integer responseCode;
+    private final ConnectionPhases phases;
 
     public TCPPingResult(boolean isSuccessful, String host, long timestamp, Long responseTimeMillis, Integer responseCode) {
+        this(isSuccessful, host, timestamp, responseTimeMillis, null, responseCode);
+    }
+
+    /**
+     * @param responseTimeNanos response time measured with System.nanoTime, keeps the sub-millisecond part
+     */
+    public TCPPingResult(boolean isSuccessful, String host, long timestamp, Long responseTimeMillis, Long responseTimeNanos, Integer responseCode) {
+        this(isSuccessful, host, timestamp, responseTimeMillis, responseTimeNanos, responseCode, null);
+    }
+
+    /**
+     * @param phases durations of the connection phases, only measured by probes that open a fresh connection
+     */
+    public TCPPingResult(boolean isSuccessful, String host, long timestamp, Long responseTimeMillis, Long responseTimeNanos,
+                         Integer responseCode, ConnectionPhases phases) {
         super(isSuccessful, host, timestamp);
         this.responseTimeMillis = responseTimeMillis;
+        this.responseTimeNanos = responseTimeNanos;
         this.responseCode = responseCode;
+        this.phases = phases;
     }
 
     public Long getResponseTimeMillis() {
         return responseTimeMillis;
     }
 
+    public Long getResponseTimeNanos() {
+        return responseTimeNanos;
+    }
+
     public Integer getResponseCode() {
         return responseCode;
     }
 
+    public ConnectionPhases getPhases() {
+        return phases;
+    }
+
+    @Override
+    public int getLatencyMicros() {
+        if (responseTimeNanos != null) {
+            return (int) Math.min(responseTimeNanos / 1000, Integer.MAX_VALUE);
+        }
+        return responseTimeMillis != null ? (int) Math.min(responseTimeMillis * 1000, Integer.MAX_VALUE) : -1;
+    }
+
     @Override
     public boolean equals(Object obj) {
         if (obj == this) return true;
@@ -30,26 +63,30 @@ public final class TCPPingResult extends PingResult {
         return this.isSuccessful == that.isSuccessful &&
                 Objects.equals(this.host, that.host) &&
                 Objects.equals(this.responseTimeMillis, that.responseTimeMillis) &&
-                Objects.equals(this.responseCode, that.responseCode);
+                Objects.equals(this.responseTimeNanos, that.responseTimeNanos) &&
+                Objects.equals(this.responseCode, that.responseCode) &&
+                Objects.equals(this.phases, that.phases);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(isSuccessful, host, responseTimeMillis, responseCode);
+        return Objects.hash(isSuccessful, host, responseTimeMillis, responseTimeNanos, responseCode, phases);
     }
 
     @Override
-    public String toString() {
-        JSONObject jsonObject = new JSONObject();
-        jsonObject.put("isSuccessful", isSuccessful);
-        jsonObject.put("host", host);
-        jsonObject.put("timeStamp", timeStamp);
+    protected void writeFields(JsonWriter writer) {
+        super.writeFields(writer);
         if (responseTimeMillis != null) {
-            jsonObject.put("responseTimeMillis", responseTimeMillis);
+            writer.name("responseTimeMillis").value(responseTimeMillis);
+        }
+        if (responseTimeNanos != null) {
+            writer.name("responseTimeNanos").value(responseTimeNanos);
         }
         if (responseCode != null) {
-            jsonObject.put("responseCode", responseCode);
+            writer.name("responseCode").value(responseCode);
+        }
+        if (phases != null) {
+            phases.writeJson(writer.name("phases"));
         }
-        return jsonObject.toString();
     }
 }
@@ -0,0 +1,25 @@
+package com.github.akopyanrob.result;
+
+/**
+ * One hop of a traceroute.
+ *
+ * @param hop       distance from this host, 1 for the first router
+ * @param address   address of the router that answered, null when no router answered
+ * @param rttMicros average round trip time of the answered probes, -1 when none was answered
+ */
+public record TraceHop(int hop, String address, int rttMicros) {
+
+    public boolean isAnswered() {
+        return address != null;
+    }
+
+    void writeJson(JsonWriter writer) {
+        writer.beginObject();
+        writer.name("hop").value(hop);
+        if (address != null) {
+            writer.name("address").value(address);
+        }
+        writer.name("rttMicros").value(rttMicros);
+        writer.endObject();
+    }
+}
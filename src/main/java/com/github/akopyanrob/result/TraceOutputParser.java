@@ -0,0 +1,61 @@
+package com.github.akopyanrob.result;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Parses the output of traceroute (Linux, macOS) and tracert (Windows) into its hops.
+ */
+public final class TraceOutputParser {
+    // "3  core.example.net (10.0.0.1)  1.112 ms  1.034 ms *" or "3    12 ms    <1 ms     *     core.example.net [10.0.0.1]"
+    private static final Pattern HOP = Pattern.compile("^(\\d+)\\s+(.*)$");
+    private static final Pattern ROUND_TRIP = Pattern.compile("<?([\\d.]+) ?ms");
+    private static final Pattern ENCLOSED_ADDRESS = Pattern.compile("[(\\[]([\\da-fA-F.:]+)[)\\]]");
+    private static final Pattern IPV4_ADDRESS = Pattern.compile("\\b(\\d{1,3}(?:\\.\\d{1,3}){3})\\b");
+
+    private TraceOutputParser() {
+    }
+
+    /**
+     * The hops in the order of the output, empty when there are none.
+     */
+    public static List<TraceHop> parse(List<String> outputLines) {
+        List<TraceHop> hops = new ArrayList<>();
+        if (outputLines == null) {
+            return hops;
+        }
+        for (String line : outputLines) {
+            Matcher hopMatcher = HOP.matcher(line.trim());
+            if (!hopMatcher.matches()) {
+                continue;
+            }
+            String rest = hopMatcher.group(2);
+            Matcher roundTrip = ROUND_TRIP.matcher(rest);
+            long sum = 0;
+            int answered = 0;
+            while (roundTrip.find()) {
+                try {
+                    sum += Math.round(Double.parseDouble(roundTrip.group(1)) * 1000);
+                    answered++;
+                } catch (NumberFormatException e) {
+                    // Not a round trip time, e.g. a host name ending in "ms"
+                }
+            }
+            String address = answered > 0 ? findAddress(ROUND_TRIP.matcher(rest).replaceAll(" ")) : null;
+            hops.add(new TraceHop(Integer.parseInt(hopMatcher.group(1)), address,
+                    address != null ? (int) (sum / answered) : -1));
+        }
+        return hops;
+    }
+
+    private static String findAddress(String hopLine) {
+        Matcher enclosed = ENCLOSED_ADDRESS.matcher(hopLine);
+        if (enclosed.find()) {
+            return enclosed.group(1);
+        }
+        Matcher bare = IPV4_ADDRESS.matcher(hopLine);
+        return bare.find() ? bare.group(1) : null;
+    }
+}
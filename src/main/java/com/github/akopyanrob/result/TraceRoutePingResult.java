@@ -3,8 +3,31 @@ package com.github.akopyanrob.result;
 import java.util.List;
 
 public class TraceRoutePingResult extends ProcessPingResult {
+    private final List<TraceHop> hops;
 
     public TraceRoutePingResult(boolean isSuccessful, String host, long timeStamp, List<String> resultLines) {
+        this(isSuccessful, host, timeStamp, TraceOutputParser.parse(resultLines), resultLines);
+    }
+
+    public TraceRoutePingResult(boolean isSuccessful, String host, long timeStamp, List<TraceHop> hops, List<String> resultLines) {
         super(isSuccessful, host, timeStamp, resultLines);
+        this.hops = hops != null ? List.copyOf(hops) : List.of();
+    }
+
+    /**
+     * The hops parsed from the output, empty when the trace failed before the first one.
+     */
+    public List<TraceHop> getHops() {
+        return hops;
+    }
+
+    @Override
+    protected void writeFields(JsonWriter writer) {
+        super.writeFields(writer);
+        writer.name("hops").beginArray();
+        for (TraceHop hop : hops) {
+            hop.writeJson(writer);
+        }
+        writer.endArray();
     }
 }
@@ -0,0 +1,78 @@
+package com.github.akopyanrob.result;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Ring of histograms, one per time window: a window is cleared and reused when its slot comes around again,
+ * so the memory is fixed and old samples expire. Queries merge the windows of the requested period.
+ * The histogram of a slot is allocated the first time a sample falls into it.
+ */
+public final class WindowedLatencyHistogram {
+    private final long windowMillis;
+    // Published by the write of the window number, so a slot with a valid number has its histogram
+    private final LatencyHistogram[] windows;
+    // Window number (time / windowMillis) each slot currently holds
+    private final AtomicLongArray windowNumbers;
+
+    public WindowedLatencyHistogram(long windowMillis, int windowCount) {
+        if (windowMillis <= 0 || windowCount <= 0) {
+            throw new IllegalArgumentException("Window length and count must be positive");
+        }
+        this.windowMillis = windowMillis;
+        this.windows = new LatencyHistogram[windowCount];
+        this.windowNumbers = new AtomicLongArray(windowCount);
+        for (int i = 0; i < windowCount; i++) {
+            windowNumbers.set(i, -1);
+        }
+    }
+
+    public void record(long timeMillis, long valueMicros) {
+        long windowNumber = timeMillis / windowMillis;
+        int slot = (int) (windowNumber % windows.length);
+        long current = windowNumbers.get(slot);
+        if (current != windowNumber) {
+            if (current > windowNumber) {
+                // Older than anything the ring still holds
+                return;
+            }
+            rotate(slot, current, windowNumber);
+        }
+        windows[slot].record(valueMicros);
+    }
+
+    /**
+     * Merges the windows overlapping the last periodMillis before nowMillis into a new histogram.
+     */
+    public LatencyHistogram snapshot(long nowMillis, long periodMillis) {
+        return snapshot(nowMillis, periodMillis, new LatencyHistogram());
+    }
+
+    /**
+     * Clears the given histogram and merges the windows overlapping the last periodMillis before nowMillis into it.
+     */
+    public LatencyHistogram snapshot(long nowMillis, long periodMillis, LatencyHistogram merged) {
+        long lastWindow = nowMillis / windowMillis;
+        long firstWindow = Math.max(lastWindow - windows.length + 1, (nowMillis - periodMillis) / windowMillis);
+        merged.reset();
+        for (int slot = 0; slot < windows.length; slot++) {
+            long windowNumber = windowNumbers.get(slot);
+            if (windowNumber >= firstWindow && windowNumber <= lastWindow) {
+                merged.add(windows[slot]);
+            }
+        }
+        return merged;
+    }
+
+    private void rotate(int slot, long current, long windowNumber) {
+        synchronized (this) {
+            if (windowNumbers.get(slot) == current) {
+                if (windows[slot] == null) {
+                    windows[slot] = new LatencyHistogram();
+                } else {
+                    windows[slot].reset();
+                }
+                windowNumbers.set(slot, windowNumber);
+            }
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.github.akopyanrob.scheduler;
+
+/**
+ * @param maxDelayMillis     longest interval a stable host is stretched to
+ * @param confirmDelayMillis interval after the first failure, to confirm the outage quickly
+ * @param backoffFactor      the interval is multiplied by it on every success after backoffAfter successes in a row
+ * @param backoffAfter       successes in a row before the interval starts to stretch
+ */
+public record AdaptiveIntervalConfig(long maxDelayMillis, long confirmDelayMillis, double backoffFactor, int backoffAfter) {
+    public AdaptiveIntervalConfig {
+        if (maxDelayMillis <= 0 || confirmDelayMillis < 0) {
+            throw new IllegalArgumentException("Max delay must be positive and confirm delay non-negative");
+        }
+        if (backoffFactor < 1 || backoffAfter < 0) {
+            throw new IllegalArgumentException("Backoff factor must be at least 1 and backoff after non-negative");
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.github.akopyanrob.scheduler;
+
+import com.github.akopyanrob.result.PingResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Probes stable hosts less often and failing hosts sooner.
+ * After backoffAfter successes in a row the interval of a host grows by backoffFactor with every success, up to maxDelay.
+ * The first failure schedules a confirming probe after confirmDelay, while the host keeps failing it is probed at the base interval.
+ * The first success after a failure goes back to the base interval.
+ */
+public class AdaptiveIntervalPolicy implements IntervalPolicy {
+    private static final Logger logger = LoggerFactory.getLogger(AdaptiveIntervalPolicy.class);
+
+    private final long baseDelayMillis;
+    private final AdaptiveIntervalConfig config;
+    private final Map<String, HostInterval> intervals = new ConcurrentHashMap<>();
+
+    public AdaptiveIntervalPolicy(long baseDelayMillis, AdaptiveIntervalConfig config) {
+        this.config = Objects.requireNonNull(config, "config must not be null");
+        if (baseDelayMillis <= 0 || baseDelayMillis > config.maxDelayMillis()) {
+            throw new IllegalArgumentException("Base delay must be positive and not above the max delay");
+        }
+        this.baseDelayMillis = baseDelayMillis;
+    }
+
+    @Override
+    public long nextDelay(String host, PingResult result) {
+        HostInterval interval = intervals.computeIfAbsent(host, h -> new HostInterval(baseDelayMillis));
+        // A host has one probe at a time per service, the lock is uncontended
+        synchronized (interval) {
+            if (result != null && result.isSuccessful()) {
+                if (interval.failing) {
+                    logger.debug("Host {} recovered, probing it every {} ms again", host, baseDelayMillis);
+                    interval.failing = false;
+                    interval.successes = 0;
+                    interval.delayMillis = baseDelayMillis;
+                }
+                if (++interval.successes > config.backoffAfter()) {
+                    interval.delayMillis = Math.min(config.maxDelayMillis(), (long) Math.ceil(interval.delayMillis * config.backoffFactor()));
+                }
+                return interval.delayMillis;
+            }
+            if (!interval.failing) {
+                logger.debug("Host {} failed, confirming in {} ms", host, config.confirmDelayMillis());
+                interval.failing = true;
+                interval.delayMillis = config.confirmDelayMillis();
+            } else {
+                interval.delayMillis = baseDelayMillis;
+            }
+            interval.successes = 0;
+            return interval.delayMillis;
+        }
+    }
+
+    /**
+     * The interval the host was last given, the base interval for unknown hosts.
+     */
+    public long getDelayMillis(String host) {
+        HostInterval interval = intervals.get(host);
+        if (interval == null) {
+            return baseDelayMillis;
+        }
+        synchronized (interval) {
+            return interval.delayMillis;
+        }
+    }
+
+    private static final class HostInterval {
+        private long delayMillis;
+        private int successes;
+        private boolean failing;
+
+        private HostInterval(long delayMillis) {
+            this.delayMillis = delayMillis;
+        }
+    }
+}
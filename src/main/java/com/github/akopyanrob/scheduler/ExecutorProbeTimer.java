@@ -0,0 +1,24 @@
+package com.github.akopyanrob.scheduler;
+
+import java.util.Objects;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+public class ExecutorProbeTimer implements ProbeTimer {
+
+    private final ScheduledExecutorService scheduler;
+
+    public ExecutorProbeTimer(ScheduledExecutorService scheduler) {
+        this.scheduler = Objects.requireNonNull(scheduler, "scheduler must not be null");
+    }
+
+    @Override
+    public void schedule(Runnable task, long delayMillis) {
+        scheduler.schedule(task, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+}
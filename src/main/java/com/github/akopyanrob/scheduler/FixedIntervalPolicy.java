@@ -0,0 +1,14 @@
+package com.github.akopyanrob.scheduler;
+
+import com.github.akopyanrob.result.PingResult;
+
+/**
+ * The same delay for every probe, what the scheduler uses unless a policy is given.
+ */
+record FixedIntervalPolicy(long delayMillis) implements IntervalPolicy {
+
+    @Override
+    public long nextDelay(String host, PingResult result) {
+        return delayMillis;
+    }
+}
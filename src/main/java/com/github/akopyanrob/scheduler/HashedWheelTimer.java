@@ -0,0 +1,166 @@
+package com.github.akopyanrob.scheduler;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Hashed timing wheel: scheduling and expiring a task is O(1) regardless of how many tasks are registered.
+ * A single worker thread advances the wheel every tick and runs the expired tasks inline,
+ * so tasks must only hand the real work off to another thread.
+ * Precision is bounded by the tick duration.
+ */
+public class HashedWheelTimer implements ProbeTimer {
+    private static final Logger logger = LoggerFactory.getLogger(HashedWheelTimer.class);
+
+    private static final int MAX_TRANSFERS_PER_TICK = 100_000;
+
+    private final long tickNanos;
+    private final Bucket[] wheel;
+    private final int mask;
+    private final ConcurrentLinkedQueue<Timeout> pendingTimeouts = new ConcurrentLinkedQueue<>();
+    private final Thread workerThread;
+    private final long startTime;
+
+    private volatile boolean running = true;
+    private long tick;
+
+    public HashedWheelTimer(long tickDuration, TimeUnit unit, int wheelSize) {
+        if (tickDuration <= 0) {
+            throw new IllegalArgumentException("Tick duration must be positive");
+        }
+        if (wheelSize <= 0 || wheelSize > 1 << 30) {
+            throw new IllegalArgumentException("Wheel size must be between 1 and 2^30");
+        }
+        this.tickNanos = unit.toNanos(tickDuration);
+        int size = Integer.highestOneBit(wheelSize - 1) << 1;
+        this.wheel = new Bucket[Math.max(size, 1)];
+        for (int i = 0; i < wheel.length; i++) {
+            wheel[i] = new Bucket();
+        }
+        this.mask = wheel.length - 1;
+        this.startTime = System.nanoTime();
+        this.workerThread = new Thread(this::run, "hashed-wheel-timer");
+        this.workerThread.setDaemon(true);
+        this.workerThread.start();
+    }
+
+    @Override
+    public void schedule(Runnable task, long delayMillis) {
+        if (!running) {
+            throw new RejectedExecutionException("Timer is shut down");
+        }
+        long deadline = System.nanoTime() - startTime + TimeUnit.MILLISECONDS.toNanos(Math.max(delayMillis, 0));
+        pendingTimeouts.add(new Timeout(task, deadline));
+    }
+
+    @Override
+    public void shutdown() {
+        running = false;
+        workerThread.interrupt();
+    }
+
+    public int getWheelSize() {
+        return wheel.length;
+    }
+
+    private void run() {
+        while (running) {
+            long deadline = waitForNextTick();
+            if (deadline < 0) {
+                continue;
+            }
+            transferPendingTimeouts();
+            wheel[(int) (tick & mask)].expire(deadline);
+            tick++;
+        }
+    }
+
+    /**
+     * Returns the current time relative to startTime, or -1 when interrupted.
+     */
+    private long waitForNextTick() {
+        long deadline = tickNanos * (tick + 1);
+        while (true) {
+            long currentTime = System.nanoTime() - startTime;
+            long sleepNanos = deadline - currentTime;
+            if (sleepNanos <= 0) {
+                return currentTime;
+            }
+            LockSupport.parkNanos(this, sleepNanos);
+            if (Thread.interrupted()) {
+                return -1;
+            }
+        }
+    }
+
+    private void transferPendingTimeouts() {
+        for (int i = 0; i < MAX_TRANSFERS_PER_TICK; i++) {
+            Timeout timeout = pendingTimeouts.poll();
+            if (timeout == null) {
+                return;
+            }
+            long calculated = timeout.deadline / tickNanos;
+            timeout.remainingRounds = (calculated - tick) / wheel.length;
+            long ticks = Math.max(calculated, tick);
+            wheel[(int) (ticks & mask)].add(timeout);
+        }
+    }
+
+    private static final class Timeout {
+        private final Runnable task;
+        private final long deadline;
+        private long remainingRounds;
+        private Timeout next;
+
+        private Timeout(Runnable task, long deadline) {
+            this.task = task;
+            this.deadline = deadline;
+        }
+    }
+
+    /**
+     * Singly linked list of timeouts, only touched by the worker thread.
+     */
+    private static final class Bucket {
+        private Timeout head;
+
+        private void add(Timeout timeout) {
+            timeout.next = head;
+            head = timeout;
+        }
+
+        private void expire(long currentTime) {
+            Timeout previous = null;
+            Timeout timeout = head;
+            while (timeout != null) {
+                Timeout next = timeout.next;
+                if (timeout.remainingRounds <= 0 && timeout.deadline <= currentTime) {
+                    if (previous == null) {
+                        head = next;
+                    } else {
+                        previous.next = next;
+                    }
+                    timeout.next = null;
+                    runTask(timeout.task);
+                } else {
+                    timeout.remainingRounds--;
+                    previous = timeout;
+                }
+                timeout = next;
+            }
+        }
+
+        private static void runTask(Runnable task) {
+            try {
+                task.run();
+            } catch (Exception e) {
+                logger.error("Timer task failed: {}", e.getMessage(), e);
+            }
+        }
+    }
+}
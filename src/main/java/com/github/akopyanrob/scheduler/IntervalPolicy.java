@@ -0,0 +1,18 @@
+package com.github.akopyanrob.scheduler;
+
+import com.github.akopyanrob.result.PingResult;
+
+/**
+ * Decides when the next probe of a host runs, from the result of its previous probe.
+ */
+public interface IntervalPolicy {
+
+    /**
+     * The result is null when the probe failed with an exception.
+     */
+    long nextDelay(String host, PingResult result);
+
+    static IntervalPolicy fixed(long delayMillis) {
+        return new FixedIntervalPolicy(delayMillis);
+    }
+}
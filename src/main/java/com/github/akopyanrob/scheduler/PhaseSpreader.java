@@ -0,0 +1,26 @@
+package com.github.akopyanrob.scheduler;
+
+/**
+ * Gives every host of a service a deterministic offset inside the ping interval,
+ * so that the probes of a large host list are spread evenly instead of firing at the same instant.
+ */
+public final class PhaseSpreader {
+
+    private PhaseSpreader() {
+    }
+
+    public static long offset(String host, String service, long intervalMillis) {
+        if (intervalMillis <= 0) {
+            return 0;
+        }
+        long hash = mix(((long) host.hashCode() << 32) ^ service.hashCode());
+        return Math.floorMod(hash, intervalMillis);
+    }
+
+    // SplitMix64 finalizer, spreads close hash codes (e.g. host1, host2) across the whole range
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -1,63 +1,352 @@
 package com.github.akopyanrob.scheduler;
 
+import com.github.akopyanrob.metrics.Counter;
+import com.github.akopyanrob.metrics.MetricsRegistry;
 import com.github.akopyanrob.service.Config;
 import com.github.akopyanrob.result.ICMPPingResult;
 import com.github.akopyanrob.result.PingResult;
+import com.github.akopyanrob.result.ProbeType;
+import com.github.akopyanrob.result.TCPConnectPingResult;
 import com.github.akopyanrob.result.TCPPingResult;
 import com.github.akopyanrob.result.TraceRoutePingResult;
 import com.github.akopyanrob.result.LastResultHolder;
 import com.github.akopyanrob.report.Reporter;
+import com.github.akopyanrob.service.AsyncPingService;
 import com.github.akopyanrob.service.PingService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
 
 public class PingScheduler {
     private static final Logger logger = LoggerFactory.getLogger(PingScheduler.class);
+    private static final Counter[] SUCCESSFUL_PROBES = probeCounters("success");
+    private static final Counter[] FAILED_PROBES = probeCounters("failure");
 
     private final ScheduledExecutorService scheduler;
+    private final ProbeTimer probeTimer;
     private final LastResultHolder lastResultHolder;
     private final Reporter reporter;
+    private final ProbeDispatcher probeDispatcher;
+    private final SchedulingLagStats schedulingLag = new SchedulingLagStats();
+    private volatile Function<String, ? extends CompletionStage<?>> failureHook;
+    private volatile BiConsumer<String, TraceRoutePingResult> traceListener;
 
     public PingScheduler(ScheduledExecutorService scheduler, LastResultHolder lastResultHolder, Reporter reporter) {
+        this(scheduler, lastResultHolder, reporter, null);
+    }
+
+    /**
+     * When a probeDispatcher is given the scheduler threads only handle timing and every probe runs on the dispatcher.
+     * The next probe of a host is scheduled once the previous one completes, same as with scheduleWithFixedDelay.
+     */
+    public PingScheduler(ScheduledExecutorService scheduler, LastResultHolder lastResultHolder, Reporter reporter,
+                         ProbeDispatcher probeDispatcher) {
         this.scheduler = Objects.requireNonNull(scheduler, "scheduler must not be null");
+        this.probeTimer = probeDispatcher != null ? new ExecutorProbeTimer(scheduler) : null;
+        this.lastResultHolder = Objects.requireNonNull(lastResultHolder, "lastResultHolder must not be null");
+        this.reporter = Objects.requireNonNull(reporter, "reporter must not be null");
+        this.probeDispatcher = probeDispatcher;
+    }
+
+    /**
+     * Timing is handled by the probeTimer (e.g. a {@link HashedWheelTimer}) and probes run on the probeDispatcher.
+     */
+    public PingScheduler(ProbeTimer probeTimer, LastResultHolder lastResultHolder, Reporter reporter,
+                         ProbeDispatcher probeDispatcher) {
+        this.scheduler = null;
+        this.probeTimer = Objects.requireNonNull(probeTimer, "probeTimer must not be null");
         this.lastResultHolder = Objects.requireNonNull(lastResultHolder, "lastResultHolder must not be null");
         this.reporter = Objects.requireNonNull(reporter, "reporter must not be null");
+        this.probeDispatcher = Objects.requireNonNull(probeDispatcher, "probeDispatcher must not be null");
     }
 
     //we could use futures
     public void schedulePing(PingService pingService, Config config) {
+        schedulePing(pingService, config, IntervalPolicy.fixed(config.pingDelay()));
+    }
+
+    /**
+     * The intervalPolicy decides the delay after every probe of a host, e.g. an {@link AdaptiveIntervalPolicy}.
+     */
+    public void schedulePing(PingService pingService, Config config, IntervalPolicy intervalPolicy) {
+        Objects.requireNonNull(intervalPolicy, "intervalPolicy must not be null");
+        String serviceName = pingService.getClass().getSimpleName();
         for (String host : config.hosts()) {
-            scheduler.scheduleWithFixedDelay(() -> {
+            int hostId = lastResultHolder.getHostRegistry().register(host);
+            // Phase offset spreads the first probe of every host over the interval. The following ones start a delay
+            // after the previous one completed, so the phase shifts by the probe duration every cycle
+            long phaseOffset = PhaseSpreader.offset(host, serviceName, config.pingDelay());
+            if (probeTimer == null) {
+                if (intervalPolicy instanceof FixedIntervalPolicy fixed) {
+                    scheduleFixedDelayPing(pingService, hostId, host, phaseOffset, fixed.delayMillis());
+                } else {
+                    schedulePooledPing(pingService, hostId, host, phaseOffset, intervalPolicy);
+                }
+            } else {
+                scheduleDispatchedPing(pingService, hostId, host, phaseOffset, intervalPolicy);
+            }
+        }
+    }
+
+    public void scheduleAsyncPing(AsyncPingService pingService, Config config) {
+        scheduleAsyncPing(pingService, config, IntervalPolicy.fixed(config.pingDelay()));
+    }
+
+    /**
+     * Results are handled as the probes complete. Handling runs on the probeDispatcher (or the scheduler when there is none)
+     * because reporting a failure may block.
+     */
+    public void scheduleAsyncPing(AsyncPingService pingService, Config config, IntervalPolicy intervalPolicy) {
+        Objects.requireNonNull(intervalPolicy, "intervalPolicy must not be null");
+        String serviceName = pingService.getClass().getSimpleName();
+        for (String host : config.hosts()) {
+            int hostId = lastResultHolder.getHostRegistry().register(host);
+            long phaseOffset = PhaseSpreader.offset(host, serviceName, config.pingDelay());
+            scheduleAsyncPing(pingService, hostId, host, phaseOffset, intervalPolicy);
+        }
+    }
+
+    /**
+     * Handles a result produced outside of the scheduler (e.g. by a continuously running probe) like a scheduled one.
+     */
+    public void publishResult(String host, PingResult result) {
+        handleResult(lastResultHolder.getHostRegistry().register(host), host, result);
+    }
+
+    /**
+     * Same as {@link #publishResult}, but the result is handled on the probeDispatcher (or the scheduler when there is none),
+     * so a producer publishing the results of many hosts from one thread is not held up by blocking failure reports.
+     */
+    public void dispatchResult(String host, PingResult result) {
+        int hostId = lastResultHolder.getHostRegistry().register(host);
+        try {
+            if (probeDispatcher != null) {
+                probeDispatcher.dispatch(() -> handleResult(hostId, host, result), () -> {
+                });
+            } else {
+                scheduler.execute(() -> handleResult(hostId, host, result));
+            }
+        } catch (RejectedExecutionException e) {
+            logger.debug("Scheduler is shut down, result of host {} not handled", host);
+        }
+    }
+
+    /**
+     * Runs before every failure report on the thread that handles the result, e.g. to start a trace the report
+     * should include. The report is sent once the returned stage completes, so the hook must not block. Null to stop.
+     */
+    public void attachFailureHook(Function<String, ? extends CompletionStage<?>> failureHook) {
+        this.failureHook = failureHook;
+    }
+
+    /**
+     * Gets every trace result after it is stored, e.g. to keep a topology of the paths. Null to stop.
+     */
+    public void attachTraceListener(BiConsumer<String, TraceRoutePingResult> traceListener) {
+        this.traceListener = traceListener;
+    }
+
+    public SchedulingLagStats getSchedulingLag() {
+        return schedulingLag;
+    }
+
+    private void scheduleDispatchedPing(PingService pingService, int hostId, String host, long delay, IntervalPolicy intervalPolicy) {
+        long intendedStart = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delay);
+        try {
+            probeTimer.schedule(() -> {
+                // Written by the probe and read by onComplete, both run on the same thread
+                PingResult[] result = new PingResult[1];
+                probeDispatcher.dispatch(
+                        () -> {
+                            schedulingLag.record(System.nanoTime() - intendedStart);
+                            result[0] = runPing(pingService, hostId, host);
+                        },
+                        () -> scheduleDispatchedPing(pingService, hostId, host, intervalPolicy.nextDelay(host, result[0]), intervalPolicy)
+                );
+            }, delay);
+        } catch (RejectedExecutionException e) {
+            logger.debug("Scheduler is shut down, stopped pinging host {}", host);
+        }
+    }
+
+    private void scheduleFixedDelayPing(PingService pingService, int hostId, String host, long initialDelay, long delay) {
+        long delayNanos = TimeUnit.MILLISECONDS.toNanos(delay);
+        // Written and read by the runs of the task only, which never overlap
+        long[] intendedStart = {System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(initialDelay)};
+        scheduler.scheduleWithFixedDelay(() -> {
+            schedulingLag.record(System.nanoTime() - intendedStart[0]);
+            runPing(pingService, hostId, host);
+            intendedStart[0] = System.nanoTime() + delayNanos;
+        }, initialDelay, delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * One-shot tasks on the scheduler thread pool, used instead of scheduleWithFixedDelay when the interval varies.
+     */
+    private void schedulePooledPing(PingService pingService, int hostId, String host, long delay, IntervalPolicy intervalPolicy) {
+        long intendedStart = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delay);
+        try {
+            scheduler.schedule(() -> {
+                schedulingLag.record(System.nanoTime() - intendedStart);
+                PingResult result = runPing(pingService, hostId, host);
+                schedulePooledPing(pingService, hostId, host, intervalPolicy.nextDelay(host, result), intervalPolicy);
+            }, delay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            logger.debug("Scheduler is shut down, stopped pinging host {}", host);
+        }
+    }
+
+    private void scheduleAsyncPing(AsyncPingService pingService, int hostId, String host, long delay, IntervalPolicy intervalPolicy) {
+        long intendedStart = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delay);
+        Runnable task = () -> {
+            schedulingLag.record(System.nanoTime() - intendedStart);
+            CompletableFuture<PingResult> future;
+            try {
+                future = pingService.pingAsync(host);
+            } catch (Exception e) {
+                future = CompletableFuture.failedFuture(e);
+            }
+            future.whenComplete((result, throwable) -> {
+                Runnable handler = () -> {
+                    if (throwable != null) {
+                        logger.error("Error occurred during ping for host {}: {}", host, throwable.getMessage(), throwable);
+                    } else {
+                        handleResult(hostId, host, result);
+                    }
+                };
+                Runnable next = () -> scheduleAsyncPing(pingService, hostId, host,
+                        intervalPolicy.nextDelay(host, throwable == null ? result : null), intervalPolicy);
                 try {
-                    PingResult result = pingService.ping(host);
-                    logger.debug("Ping result: {}", result);
-
-                    switch (result) {
-                        case ICMPPingResult icmpPingResult -> {
-                            lastResultHolder.addHostLastICMPPingResult(host, result);
-                            if (!icmpPingResult.isSuccessful()) {
-                                reporter.report(host);
-                            }
-                        }
-                        case TCPPingResult tcpPingResult -> {
-                            lastResultHolder.addHostLastTCPPingResult(host, result);
-                            if (!tcpPingResult.isSuccessful()) {
-                                reporter.report(host);
-                            }
-                        }
-                        case TraceRoutePingResult traceRoutePingResult -> {
-                            lastResultHolder.addHostLastTracePingResult(host, result);
-                        }
-                        default -> throw new RuntimeException("Unexpected PingResult: " + result);
+                    if (probeDispatcher != null) {
+                        probeDispatcher.dispatch(handler, next);
+                    } else {
+                        scheduler.execute(() -> {
+                            handler.run();
+                            next.run();
+                        });
+                    }
+                } catch (RejectedExecutionException e) {
+                    logger.debug("Scheduler is shut down, stopped pinging host {}", host);
+                }
+            });
+        };
+        try {
+            if (probeTimer != null) {
+                probeTimer.schedule(task, delay);
+            } else {
+                scheduler.schedule(task, delay, TimeUnit.MILLISECONDS);
+            }
+        } catch (RejectedExecutionException e) {
+            logger.debug("Scheduler is shut down, stopped pinging host {}", host);
+        }
+    }
+
+    /**
+     * Returns the result, null when the ping failed with an exception.
+     */
+    private PingResult runPing(PingService pingService, int hostId, String host) {
+        PingResult result;
+        try {
+            result = pingService.ping(host);
+        } catch (Exception e) {
+            logger.error("Error occurred during ping for host {}: {}", host, e.getMessage(), e);
+            return null;
+        }
+        handleResult(hostId, host, result);
+        return result;
+    }
+
+    /**
+     * Results are stored by host id, the host name is only used for logging and reporting.
+     */
+    private void handleResult(int hostId, String host, PingResult result) {
+        try {
+            logger.debug("Ping result: {}", result);
+
+            switch (result) {
+                case ICMPPingResult icmpPingResult -> {
+                    countResult(ProbeType.ICMP, result);
+                    lastResultHolder.addLastResult(hostId, ProbeType.ICMP, result);
+                    if (!icmpPingResult.isSuccessful()) {
+                        reportFailure(host);
                     }
-                } catch (Exception e) {
-                    logger.error("Error occurred during ping for host {}: {}", host, e.getMessage(), e);
                 }
-            }, 0, config.pingDelay(), TimeUnit.MILLISECONDS);
+                case TCPPingResult tcpPingResult -> {
+                    countResult(ProbeType.TCP, result);
+                    lastResultHolder.addLastResult(hostId, ProbeType.TCP, result);
+                    if (!tcpPingResult.isSuccessful()) {
+                        reportFailure(host);
+                    }
+                }
+                case TCPConnectPingResult tcpConnectPingResult -> {
+                    countResult(ProbeType.TCP_CONNECT, result);
+                    lastResultHolder.addLastResult(hostId, ProbeType.TCP_CONNECT, result);
+                    if (!tcpConnectPingResult.isSuccessful()) {
+                        reportFailure(host);
+                    }
+                }
+                case TraceRoutePingResult traceRoutePingResult -> {
+                    countResult(ProbeType.TRACE, result);
+                    lastResultHolder.addLastResult(hostId, ProbeType.TRACE, result);
+                    BiConsumer<String, TraceRoutePingResult> listener = traceListener;
+                    if (listener != null) {
+                        listener.accept(host, traceRoutePingResult);
+                    }
+                }
+                default -> throw new RuntimeException("Unexpected PingResult: " + result);
+            }
+        } catch (Exception e) {
+            logger.error("Error occurred during ping for host {}: {}", host, e.getMessage(), e);
+        }
+    }
+
+    private void reportFailure(String host) {
+        Function<String, ? extends CompletionStage<?>> hook = failureHook;
+        CompletableFuture<?> before = null;
+        if (hook != null) {
+            try {
+                before = hook.apply(host).toCompletableFuture();
+            } catch (Exception e) {
+                logger.error("Error occurred in the failure hook for host {}: {}", host, e.getMessage(), e);
+            }
+        }
+        if (before == null || before.isDone()) {
+            reporter.report(host);
+            return;
+        }
+        // Completed by another thread (e.g. a trace), reporting may block so it runs on the probe threads again
+        before.whenComplete((result, throwable) -> {
+            try {
+                if (probeDispatcher != null) {
+                    probeDispatcher.dispatch(() -> reporter.report(host), () -> {
+                    });
+                } else {
+                    scheduler.execute(() -> reporter.report(host));
+                }
+            } catch (RejectedExecutionException e) {
+                logger.debug("Scheduler is shut down, failure of host {} not reported", host);
+            }
+        });
+    }
+
+    private static void countResult(ProbeType probeType, PingResult result) {
+        (result.isSuccessful() ? SUCCESSFUL_PROBES : FAILED_PROBES)[probeType.ordinal()].increment();
+    }
+
+    private static Counter[] probeCounters(String outcome) {
+        Counter[] counters = new Counter[ProbeType.values().length];
+        for (ProbeType probeType : ProbeType.values()) {
+            counters[probeType.ordinal()] = MetricsRegistry.getInstance().counter("probe_results_total", "Probe results by probe and outcome",
+                    "probe", probeType.name().toLowerCase(), "result", outcome);
         }
+        return counters;
     }
 }
@@ -0,0 +1,71 @@
+package com.github.akopyanrob.scheduler;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Runs probes off the scheduler threads so the scheduler only handles timing.
+ * The number of probes running at the same time is capped by {@code maxInFlight}.
+ */
+public class ProbeDispatcher {
+    private static final Logger logger = LoggerFactory.getLogger(ProbeDispatcher.class);
+
+    private final ExecutorService executor;
+    private final Semaphore permits;
+    private final int maxInFlight;
+
+    public ProbeDispatcher(ExecutorService executor, int maxInFlight) {
+        this.executor = Objects.requireNonNull(executor, "executor must not be null");
+        if (maxInFlight <= 0) {
+            throw new IllegalArgumentException("Max in-flight probes must be positive");
+        }
+        this.maxInFlight = maxInFlight;
+        this.permits = new Semaphore(maxInFlight);
+    }
+
+    /**
+     * Each probe gets its own virtual thread, so a probe blocked on I/O does not hold a platform thread.
+     */
+    public static ProbeDispatcher virtualThreads(int maxInFlight) {
+        return new ProbeDispatcher(Executors.newVirtualThreadPerTaskExecutor(), maxInFlight);
+    }
+
+    /**
+     * Runs the probe once a permit is available and then calls {@code onComplete}.
+     * {@code onComplete} is skipped when the wait for a permit is interrupted (e.g. on shutdown).
+     */
+    public void dispatch(Runnable probe, Runnable onComplete) {
+        executor.execute(() -> {
+            try {
+                permits.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                logger.debug("Interrupted while waiting for a probe permit");
+                return;
+            }
+            try {
+                probe.run();
+            } finally {
+                permits.release();
+            }
+            onComplete.run();
+        });
+    }
+
+    public int getInFlight() {
+        return maxInFlight - permits.availablePermits();
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
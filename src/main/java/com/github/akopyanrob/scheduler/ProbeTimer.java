@@ -0,0 +1,11 @@
+package com.github.akopyanrob.scheduler;
+
+/**
+ * Fires one-shot timers for probe tasks. Tasks are expected to be short, e.g. handing a probe to a {@link ProbeDispatcher}.
+ */
+public interface ProbeTimer {
+
+    void schedule(Runnable task, long delayMillis);
+
+    void shutdown();
+}
@@ -0,0 +1,58 @@
+package com.github.akopyanrob.scheduler;
+
+import com.github.akopyanrob.metrics.Timer;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+
+/**
+ * How far the actual start of the probes is behind their intended start time. The lags go into a {@link Timer},
+ * so the exported quantiles follow the current lag while its sum and count keep the totals.
+ */
+public class SchedulingLagStats {
+
+    private final Timer timer = new Timer();
+    private final LongAccumulator maxLagNanos = new LongAccumulator(Math::max, 0);
+
+    public void record(long lagNanos) {
+        long lag = Math.max(lagNanos, 0);
+        timer.recordNanos(lag);
+        maxLagNanos.accumulate(lag);
+    }
+
+    /**
+     * The lags as a summary, to be exported with the metrics.
+     */
+    public Timer getTimer() {
+        return timer;
+    }
+
+    public long getCount() {
+        return timer.getCount();
+    }
+
+    public long getTotalLagNanos() {
+        return timer.getSumNanos();
+    }
+
+    public double getAverageLagMillis() {
+        long samples = timer.getCount();
+        return samples == 0 ? 0 : (double) timer.getSumNanos() / samples / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    public double getMaxLagMillis() {
+        return (double) maxLagNanos.get() / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    /**
+     * The lag at the given percentile (0-100) over the last five minutes, with the precision of the histogram buckets.
+     */
+    public double getLagPercentileMillis(double percentile) {
+        return timer.getPercentileMicros(percentile) / 1000.0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("SchedulingLag[count=%d, avg=%.3fms, max=%.3fms]", getCount(), getAverageLagMillis(), getMaxLagMillis());
+    }
+}
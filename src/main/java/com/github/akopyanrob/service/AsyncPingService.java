@@ -0,0 +1,13 @@
+package com.github.akopyanrob.service;
+
+import com.github.akopyanrob.result.PingResult;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Non-blocking variant of {@link PingService}, no thread is held while the probe is in flight.
+ */
+public interface AsyncPingService {
+
+    CompletableFuture<PingResult> pingAsync(String host);
+}
@@ -0,0 +1,98 @@
+package com.github.akopyanrob.service;
+
+import com.github.akopyanrob.dns.DnsCache;
+import com.github.akopyanrob.result.PingResult;
+import com.github.akopyanrob.result.TCPPingResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.net.UnknownHostException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Same HEAD probe as {@link TCPPingService}, but sent with {@link HttpClient#sendAsync} so that no thread waits for the response.
+ */
+public class AsyncTCPPingService implements AsyncPingService {
+    private static final Logger logger = LoggerFactory.getLogger(AsyncTCPPingService.class);
+
+    private final HttpClient httpClient;
+    private final Config config;
+    private final InFlightLimiter inFlightLimiter;
+    private final DnsCache dnsCache;
+
+    public AsyncTCPPingService(HttpClient httpClient, Config config, InFlightLimiter inFlightLimiter) {
+        this(httpClient, config, inFlightLimiter, null);
+    }
+
+    /**
+     * A non-null dnsCache resolves the host before the request, so the lookup is not part of the response time.
+     */
+    public AsyncTCPPingService(HttpClient httpClient, Config config, InFlightLimiter inFlightLimiter, DnsCache dnsCache) {
+        this.httpClient = Objects.requireNonNull(httpClient, "httpClient must not be null");
+        this.config = Objects.requireNonNull(config, "config must not be null");
+        this.inFlightLimiter = Objects.requireNonNull(inFlightLimiter, "inFlightLimiter must not be null");
+        this.dnsCache = dnsCache;
+    }
+
+    @Override
+    public CompletableFuture<PingResult> pingAsync(String host) {
+        return inFlightLimiter.acquire(host).thenCompose(permit -> {
+            long startTime = System.currentTimeMillis();
+            URI uri;
+            CompletableFuture<InetAddress> address;
+            try {
+                uri = HeadRequests.uri(host);
+                address = dnsCache != null && uri.getHost() != null
+                        ? dnsCache.resolveAsync(uri.getHost())
+                        : CompletableFuture.completedFuture(null);
+            } catch (Exception e) {
+                return CompletableFuture.completedFuture(toPingResult(host, startTime, 0, null, e))
+                        .whenComplete((result, throwable) -> inFlightLimiter.release(host));
+            }
+            return address
+                    .thenCompose(resolvedAddress -> send(host, uri, resolvedAddress, startTime))
+                    .exceptionally(throwable -> toPingResult(host, startTime, 0, null, throwable))
+                    .whenComplete((result, throwable) -> inFlightLimiter.release(host));
+        });
+    }
+
+    private CompletableFuture<PingResult> send(String host, URI uri, InetAddress address, long startTime) {
+        long startNanos = System.nanoTime();
+        CompletableFuture<HttpResponse<Void>> response;
+        try {
+            HttpRequest request = HeadRequests.build(uri, address, config.timeout());
+            response = httpClient.sendAsync(request, HttpResponse.BodyHandlers.discarding());
+        } catch (Exception e) {
+            response = CompletableFuture.failedFuture(e);
+        }
+        return response.handle((httpResponse, throwable) -> toPingResult(host, startTime, startNanos, httpResponse, throwable));
+    }
+
+    private PingResult toPingResult(String host, long startTime, long startNanos, HttpResponse<Void> response, Throwable throwable) {
+        if (throwable == null) {
+            long responseTimeNanos = System.nanoTime() - startNanos;
+            logger.debug("Successful TCP ping result for host " + host + ": " + response.statusCode());
+            return new TCPPingResult(true, host, startTime, TimeUnit.NANOSECONDS.toMillis(responseTimeNanos), responseTimeNanos, response.statusCode());
+        }
+
+        Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null ? throwable.getCause() : throwable;
+        if (cause instanceof HttpTimeoutException || cause instanceof UnknownHostException
+                || cause instanceof ConnectException || cause instanceof SocketTimeoutException) {
+            logger.error("Error during tcp ping of host " + host + ": " + cause.getMessage());
+        } else {
+            logger.error("Unexpected exception during tcp ping of host " + host + ": " + cause.getMessage());
+        }
+        return new TCPPingResult(false, host, startTime, null, null);
+    }
+}
@@ -0,0 +1,277 @@
+package com.github.akopyanrob.service;
+
+import com.github.akopyanrob.result.ICMPPingResult;
+import com.github.akopyanrob.result.ICMPStatistics;
+import com.github.akopyanrob.result.PingResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Keeps one long-lived {@code ping -O -i <interval> host} process per host instead of forking ping every cycle.
+ * Reply lines are read as a stream into a rolling window, and on every evaluation tick an {@link ICMPPingResult}
+ * summarizing the window is published. It fails when an echo request since the previous tick was lost, so one lost
+ * packet fails one tick instead of every tick until it leaves the window.
+ * Processes that die are restarted with an exponential backoff, a dead process is reported once until it answers again.
+ * Relies on the iputils ping output (Linux).
+ */
+public class ContinuousICMPPingService implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(ContinuousICMPPingService.class);
+
+    private static final Pattern REPLY = Pattern.compile("icmp_seq=(\\d+).*time[=<]([\\d.]+) ms");
+    private static final Pattern NO_ANSWER = Pattern.compile("no answer yet for icmp_seq=(\\d+)");
+    private static final long MAX_RESTART_BACKOFF_MILLIS = 60_000;
+
+    private final String pingExecutable;
+    private final long intervalMillis;
+    private final int windowSize;
+    private final BiConsumer<String, PingResult> resultConsumer;
+    private final ScheduledExecutorService evaluator;
+    private final Map<String, HostPinger> pingers = new ConcurrentHashMap<>();
+    private ScheduledFuture<?> evaluationTask;
+
+    /**
+     * @param intervalMillis time between two echo requests of the same host
+     * @param windowSize     number of most recent echo requests the published loss and round trip times are computed on
+     * @param resultConsumer called for every host on the one evaluator thread, so it should hand off work that may block
+     *                       (e.g. {@code PingScheduler::dispatchResult})
+     */
+    public ContinuousICMPPingService(String pingExecutable, long intervalMillis, int windowSize,
+                                     BiConsumer<String, PingResult> resultConsumer) {
+        this.pingExecutable = Objects.requireNonNull(pingExecutable, "pingExecutable must not be null");
+        this.resultConsumer = Objects.requireNonNull(resultConsumer, "resultConsumer must not be null");
+        if (intervalMillis <= 0 || windowSize <= 0) {
+            throw new IllegalArgumentException("Interval and window size must be positive");
+        }
+        this.intervalMillis = intervalMillis;
+        this.windowSize = windowSize;
+        this.evaluator = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "continuous-icmp-evaluator");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Starts a ping process for every host and publishes a result for each of them every {@code config.pingDelay()} ms.
+     */
+    public synchronized void start(Config config) {
+        for (String host : config.hosts()) {
+            pingers.computeIfAbsent(host, HostPinger::new).start();
+        }
+        if (evaluationTask == null) {
+            evaluationTask = evaluator.scheduleWithFixedDelay(this::evaluate, config.pingDelay(), config.pingDelay(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        evaluator.shutdownNow();
+        pingers.values().forEach(HostPinger::stop);
+        pingers.clear();
+    }
+
+    void evaluate() {
+        long now = System.currentTimeMillis();
+        for (HostPinger pinger : pingers.values()) {
+            try {
+                PingResult result;
+                if (pinger.superviseProcess(now)) {
+                    result = pinger.window.toResult(pinger.host, now);
+                } else {
+                    result = pinger.reportDown()
+                            ? new ICMPPingResult(false, pinger.host, now, List.of("Error: ping process is not running"))
+                            : null;
+                }
+                if (result != null) {
+                    resultConsumer.accept(pinger.host, result);
+                }
+            } catch (Exception e) {
+                logger.error("Error occurred during continuous ping evaluation for host {}: {}", pinger.host, e.getMessage(), e);
+            }
+        }
+    }
+
+    private List<String> getPingCommand(String host) {
+        String interval = String.format(Locale.ROOT, "%.3f", intervalMillis / 1000.0);
+        return List.of(pingExecutable, "-O", "-i", interval, host);
+    }
+
+    private final class HostPinger {
+        private final String host;
+        private final RollingWindow window = new RollingWindow(windowSize);
+        private volatile Process process;
+        private volatile boolean stopped;
+        private int restarts;
+        private long nextRestartTime;
+        private boolean downReported;
+
+        private HostPinger(String host) {
+            this.host = host;
+        }
+
+        private synchronized void start() {
+            if (stopped || (process != null && process.isAlive())) {
+                return;
+            }
+            try {
+                Process started = new ProcessBuilder(getPingCommand(host)).redirectErrorStream(true).start();
+                process = started;
+                Thread.ofVirtual().name("continuous-icmp-" + host).start(() -> readOutput(started));
+                logger.debug("Started continuous ping for host {}", host);
+            } catch (IOException e) {
+                logger.error("Failed to start continuous ping for host {}: {}", host, e.getMessage());
+            }
+        }
+
+        /**
+         * Restarts the process when it is no longer running, returns whether it was running.
+         */
+        private synchronized boolean superviseProcess(long now) {
+            if (stopped || (process != null && process.isAlive())) {
+                return true;
+            }
+            window.clear();
+            if (now < nextRestartTime) {
+                return false;
+            }
+            long backoff = Math.min(intervalMillis << Math.min(restarts, 16), MAX_RESTART_BACKOFF_MILLIS);
+            restarts++;
+            nextRestartTime = now + backoff;
+            logger.warn("Continuous ping process for host {} is not running, restarting (attempt {})", host, restarts);
+            start();
+            return false;
+        }
+
+        private synchronized void stop() {
+            stopped = true;
+            if (process != null) {
+                process.destroyForcibly();
+            }
+        }
+
+        private void readOutput(Process running) {
+            try (var reader = new BufferedReader(new InputStreamReader(running.getInputStream(), Charset.defaultCharset()))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    Matcher reply = REPLY.matcher(line);
+                    if (reply.find()) {
+                        window.recordReply(Integer.parseInt(reply.group(1)), Double.parseDouble(reply.group(2)));
+                        resetRestarts();
+                        continue;
+                    }
+                    Matcher noAnswer = NO_ANSWER.matcher(line);
+                    if (noAnswer.find()) {
+                        window.recordLoss(Integer.parseInt(noAnswer.group(1)));
+                    }
+                }
+            } catch (IOException e) {
+                if (!stopped) {
+                    logger.debug("Continuous ping output of host {} closed: {}", host, e.getMessage());
+                }
+            }
+        }
+
+        private synchronized void resetRestarts() {
+            restarts = 0;
+            downReported = false;
+        }
+
+        /**
+         * Whether the process being down still has to be reported, true once until it answers again.
+         */
+        private synchronized boolean reportDown() {
+            if (downReported) {
+                return false;
+            }
+            downReported = true;
+            return true;
+        }
+    }
+
+    /**
+     * Outcome of the most recent echo requests by sequence number, NaN marks a lost request.
+     */
+    static final class RollingWindow {
+        private final double[] roundTripMillis;
+        private final int[] sequences;
+        private int next;
+        private int size;
+        // Echo requests recorded since the last result
+        private int added;
+
+        RollingWindow(int capacity) {
+            this.roundTripMillis = new double[capacity];
+            this.sequences = new int[capacity];
+        }
+
+        synchronized void recordReply(int sequence, double roundTrip) {
+            // A reply that arrives after its "no answer yet" line replaces the loss
+            for (int i = 0; i < size; i++) {
+                int index = Math.floorMod(next - 1 - i, sequences.length);
+                if (sequences[index] == sequence) {
+                    roundTripMillis[index] = roundTrip;
+                    return;
+                }
+            }
+            add(sequence, roundTrip);
+        }
+
+        synchronized void recordLoss(int sequence) {
+            add(sequence, Double.NaN);
+        }
+
+        synchronized void clear() {
+            next = 0;
+            size = 0;
+            added = 0;
+        }
+
+        private void add(int sequence, double roundTrip) {
+            sequences[next] = sequence;
+            roundTripMillis[next] = roundTrip;
+            next = (next + 1) % sequences.length;
+            size = Math.min(size + 1, sequences.length);
+            added++;
+        }
+
+        /**
+         * Summarizes the window from the oldest to the newest echo request, returns null while the window is empty.
+         * The result fails when one of the echo requests since the last result is lost, or the newest one when
+         * there is none since then.
+         */
+        synchronized ICMPPingResult toResult(String host, long timeStamp) {
+            if (size == 0) {
+                return null;
+            }
+            int[] roundTripMicros = new int[size];
+            int oldest = Math.floorMod(next - size, sequences.length);
+            for (int i = 0; i < size; i++) {
+                double roundTrip = roundTripMillis[(oldest + i) % sequences.length];
+                roundTripMicros[i] = Double.isNaN(roundTrip) ? -1 : (int) Math.round(roundTrip * 1000);
+            }
+            boolean successful = true;
+            for (int i = Math.max(size - Math.max(added, 1), 0); i < size; i++) {
+                successful &= roundTripMicros[i] >= 0;
+            }
+            added = 0;
+            return new ICMPPingResult(successful, host, timeStamp, ICMPStatistics.of(roundTripMicros));
+        }
+    }
+}
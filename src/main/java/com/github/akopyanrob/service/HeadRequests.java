@@ -0,0 +1,49 @@
+package com.github.akopyanrob.service;
+
+import java.net.InetAddress;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.http.HttpRequest;
+import java.time.Duration;
+
+/**
+ * The HEAD request of the TCP probes. With a resolved address the request is sent to the address literal and the host
+ * name goes into the Host header, which HttpClient only allows with -Djdk.httpclient.allowRestrictedHeaders=host.
+ * Without that property the request keeps the host name and HttpClient resolves it itself.
+ */
+final class HeadRequests {
+    private static final boolean HOST_HEADER_ALLOWED = isHostHeaderAllowed();
+
+    private HeadRequests() {
+    }
+
+    static URI uri(String host) {
+        return URI.create("http://" + host);
+    }
+
+    static HttpRequest build(URI uri, InetAddress address, int timeoutMillis) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder()
+                .HEAD()
+                .timeout(Duration.ofMillis(timeoutMillis));
+        if (address == null || !HOST_HEADER_ALLOWED) {
+            return builder.uri(uri).build();
+        }
+        try {
+            URI addressUri = new URI(uri.getScheme(), uri.getUserInfo(), address.getHostAddress(), uri.getPort(),
+                    uri.getPath(), uri.getQuery(), uri.getFragment());
+            String hostHeader = uri.getPort() == -1 ? uri.getHost() : uri.getHost() + ":" + uri.getPort();
+            return builder.uri(addressUri).header("Host", hostHeader).build();
+        } catch (URISyntaxException e) {
+            throw new IllegalArgumentException("Invalid address for " + uri, e);
+        }
+    }
+
+    private static boolean isHostHeaderAllowed() {
+        try {
+            HttpRequest.newBuilder().header("Host", "localhost");
+            return true;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+}
@@ -1,12 +1,16 @@
 package com.github.akopyanrob.service;
 
+import com.github.akopyanrob.dns.DnsCache;
+import com.github.akopyanrob.result.ICMPOutputParser;
 import com.github.akopyanrob.result.ICMPPingResult;
+import com.github.akopyanrob.result.ICMPStatistics;
 import com.github.akopyanrob.result.PingResult;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 
 /**
  * If portability is crucial and having a dependency is okay: we can use icmp4j.
@@ -17,42 +21,80 @@ public class ICMPPingService extends ProcessPingService {
     private static final Logger logger = LoggerFactory.getLogger(ICMPPingService.class);
 
     private static final int PACKET_COUNT = 5;
+    private static final long PACKET_INTERVAL_MILLIS = 1000;
+
+    private final String pingExecutable;
+    private final boolean keepOutput;
 
     public ICMPPingService(ProcessBuilder processBuilder) {
         super(processBuilder);
+        this.pingExecutable = "ping";
+        this.keepOutput = false;
+    }
+
+    /**
+     * The process is killed when it has not finished within the time needed to send all packets plus the configured timeout.
+     */
+    public ICMPPingService(ProcessBuilder processBuilder, Config config, String pingExecutable) {
+        this(processBuilder, config, pingExecutable, null);
+    }
+
+    /**
+     * Pings the address from the dnsCache instead of the host name when the cache is not null.
+     */
+    public ICMPPingService(ProcessBuilder processBuilder, Config config, String pingExecutable, DnsCache dnsCache) {
+        this(processBuilder, config, pingExecutable, dnsCache, false);
+    }
+
+    /**
+     * @param keepOutput keep the raw ping output in every result, otherwise it is only kept when it can not be parsed
+     */
+    public ICMPPingService(ProcessBuilder processBuilder, Config config, String pingExecutable, DnsCache dnsCache, boolean keepOutput) {
+        super(processBuilder, (PACKET_COUNT - 1) * PACKET_INTERVAL_MILLIS + config.timeout(), dnsCache);
+        this.pingExecutable = Objects.requireNonNull(pingExecutable, "pingExecutable must not be null");
+        this.keepOutput = keepOutput;
     }
 
     @Override
     protected String getPingCommand(String host) {
         String os = System.getProperty("os.name").toLowerCase();
         if (os.contains("win")) {
-            return String.format("ping -n %d %s", PACKET_COUNT, host);
+            return String.format("%s -n %d %s", pingExecutable, PACKET_COUNT, host);
         } else {
-            return String.format("ping -c %d %s", PACKET_COUNT, host);
+            return String.format("%s -c %d %s", pingExecutable, PACKET_COUNT, host);
         }
     }
 
+    /**
+     * The round trip summary is the last line ping prints, when all packets are lost there is none after the loss line.
+     */
     @Override
-    protected boolean parsePingOutput(List<String> outputLines) {
-        for (String line : outputLines) {
-            if (line.contains("0% packet loss") || line.contains("Lost = 0")) {
-                return true;
-            }
-        }
-        return false;
+    protected boolean isFinalLine(String line) {
+        return line.startsWith("rtt ") || line.startsWith("round-trip")
+                || line.contains("Average =")
+                || line.contains("100% packet loss") || line.contains("(100% loss)");
     }
 
+    /**
+     * Successful when every echo request was answered.
+     */
     @Override
-    protected PingResult createPingResult(boolean success, String host, long startTime, List<String> outputLines) {
+    protected PingResult createPingResult(String host, long startTime, List<String> outputLines) {
         logger.debug("ICMP ping result for host " + host + ":\n " + outputLines);
-        return new ICMPPingResult(success, host, startTime, outputLines);
+        ICMPStatistics statistics = ICMPOutputParser.parse(outputLines);
+        if (statistics == null) {
+            logger.warn("Failed to parse the ping output of host " + host);
+            return new ICMPPingResult(false, host, startTime, null, outputLines);
+        }
+        boolean success = statistics.sent() > 0 && statistics.received() == statistics.sent();
+        return new ICMPPingResult(success, host, startTime, statistics, keepOutput ? outputLines : null);
     }
 
     @Override
     protected PingResult handleError(String host, long startTime, String errorMessage) {
         List<String> errorLines = new ArrayList<>();
         errorLines.add("Error: " + errorMessage);
-        return new ICMPPingResult(false, host, startTime, errorLines);
+        return new ICMPPingResult(false, host, startTime, null, errorLines);
     }
 }
 
@@ -0,0 +1,113 @@
+package com.github.akopyanrob.service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Limits the number of in-flight requests, globally and per host, without blocking the caller.
+ * A request that is over the limit waits in a queue and its future completes once a permit is released.
+ * Waiters queue per host, and hosts whose waiters are only held back by the global limit queue in arrival order,
+ * so a release only looks at the hosts it admits.
+ */
+public class InFlightLimiter {
+
+    private final int maxInFlight;
+    private final int maxInFlightPerHost;
+    private final Map<String, HostState> hosts = new HashMap<>();
+    // Hosts with waiters and a free per-host permit, each at most once
+    private final ArrayDeque<HostState> readyHosts = new ArrayDeque<>();
+    private int inFlight;
+    private int waiting;
+
+    public InFlightLimiter(int maxInFlight, int maxInFlightPerHost) {
+        if (maxInFlight <= 0 || maxInFlightPerHost <= 0) {
+            throw new IllegalArgumentException("In-flight limits must be positive");
+        }
+        this.maxInFlight = maxInFlight;
+        this.maxInFlightPerHost = maxInFlightPerHost;
+    }
+
+    public synchronized CompletableFuture<Void> acquire(String host) {
+        HostState state = hosts.computeIfAbsent(host, HostState::new);
+        if (inFlight < maxInFlight && state.inFlight < maxInFlightPerHost) {
+            take(state);
+            return CompletableFuture.completedFuture(null);
+        }
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        state.waiters.add(future);
+        waiting++;
+        markReady(state);
+        return future;
+    }
+
+    public void release(String host) {
+        List<CompletableFuture<Void>> admitted = new ArrayList<>();
+        synchronized (this) {
+            HostState released = hosts.get(host);
+            inFlight--;
+            if (released != null) {
+                released.inFlight--;
+                markReady(released);
+                removeIfIdle(released);
+            }
+
+            while (inFlight < maxInFlight && !readyHosts.isEmpty()) {
+                HostState state = readyHosts.poll();
+                state.ready = false;
+                while (inFlight < maxInFlight && state.inFlight < maxInFlightPerHost && !state.waiters.isEmpty()) {
+                    take(state);
+                    waiting--;
+                    admitted.add(state.waiters.poll());
+                }
+                if (!state.waiters.isEmpty() && state.inFlight < maxInFlightPerHost) {
+                    // Only the global limit stopped it, it stays first in line
+                    state.ready = true;
+                    readyHosts.addFirst(state);
+                }
+            }
+        }
+        // Completed outside the lock as dependent stages run on this thread
+        admitted.forEach(future -> future.complete(null));
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    public synchronized int getWaiting() {
+        return waiting;
+    }
+
+    private void take(HostState state) {
+        inFlight++;
+        state.inFlight++;
+    }
+
+    private void markReady(HostState state) {
+        if (!state.ready && !state.waiters.isEmpty() && state.inFlight < maxInFlightPerHost) {
+            state.ready = true;
+            readyHosts.add(state);
+        }
+    }
+
+    private void removeIfIdle(HostState state) {
+        if (state.inFlight <= 0 && state.waiters.isEmpty()) {
+            hosts.remove(state.host);
+        }
+    }
+
+    private static final class HostState {
+        private final String host;
+        private final ArrayDeque<CompletableFuture<Void>> waiters = new ArrayDeque<>();
+        private int inFlight;
+        private boolean ready;
+
+        private HostState(String host) {
+            this.host = host;
+        }
+    }
+}
@@ -0,0 +1,284 @@
+package com.github.akopyanrob.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.FunctionDescriptor;
+import java.lang.foreign.Linker;
+import java.lang.foreign.MemoryLayout;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.StructLayout;
+import java.lang.foreign.SymbolLookup;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.VarHandle;
+import java.net.Inet4Address;
+import java.nio.ByteOrder;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.lang.foreign.ValueLayout.ADDRESS;
+import static java.lang.foreign.ValueLayout.JAVA_BYTE;
+import static java.lang.foreign.ValueLayout.JAVA_INT;
+import static java.lang.foreign.ValueLayout.JAVA_LONG;
+import static java.lang.foreign.ValueLayout.JAVA_SHORT;
+
+/**
+ * ICMP echo over a Linux unprivileged ICMP datagram socket (socket(AF_INET, SOCK_DGRAM, IPPROTO_ICMP)),
+ * called through the Foreign Function & Memory API. One socket is shared by all hosts, replies are matched
+ * by source address and sequence number, a sequence number still pending for a destination is not reused.
+ * The kernel fills in the echo id and the checksum. When the receiver fails, the pending echoes fail and so does every
+ * later one, see {@link #isFailed()}.
+ * Needs the JVM to run with --enable-preview and the group of the process to be in net.ipv4.ping_group_range.
+ */
+final class NativeICMPEngine implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(NativeICMPEngine.class);
+
+    private static final int AF_INET = 2;
+    private static final int SOCK_DGRAM = 2;
+    private static final int IPPROTO_ICMP = 1;
+    private static final int SOL_SOCKET = 1;
+    private static final int SO_RCVTIMEO = 20;
+    private static final int EAGAIN = 11;
+    private static final int EINTR = 4;
+    private static final byte ICMP_ECHO = 8;
+    private static final byte ICMP_ECHO_REPLY = 0;
+    private static final int SOCKADDR_IN_SIZE = 16;
+    private static final int PACKET_SIZE = 16;
+    private static final int RECEIVE_BUFFER_SIZE = 1500;
+    private static final long RECEIVE_TIMEOUT_MICROS = 100_000;
+    private static final int SEQUENCE_COUNT = 1 << 16;
+    // recvfrom errors in a row after which the receiver gives up, it backs off between them
+    private static final int MAX_RECEIVE_ERRORS = 8;
+    private static final long RECEIVE_ERROR_BACKOFF_MILLIS = 10;
+
+    private static final StructLayout CAPTURE_STATE_LAYOUT = Linker.Option.captureStateLayout();
+    private static final VarHandle ERRNO = CAPTURE_STATE_LAYOUT.varHandle(MemoryLayout.PathElement.groupElement("errno"));
+    private static final MethodHandle SOCKET;
+    private static final MethodHandle SETSOCKOPT;
+    private static final MethodHandle SENDTO;
+    private static final MethodHandle RECVFROM;
+    private static final MethodHandle CLOSE;
+
+    static {
+        Linker linker = Linker.nativeLinker();
+        SymbolLookup libc = linker.defaultLookup();
+        Linker.Option errno = Linker.Option.captureCallState("errno");
+        SOCKET = linker.downcallHandle(libc.find("socket").orElseThrow(),
+                FunctionDescriptor.of(JAVA_INT, JAVA_INT, JAVA_INT, JAVA_INT), errno);
+        SETSOCKOPT = linker.downcallHandle(libc.find("setsockopt").orElseThrow(),
+                FunctionDescriptor.of(JAVA_INT, JAVA_INT, JAVA_INT, JAVA_INT, ADDRESS, JAVA_INT), errno);
+        SENDTO = linker.downcallHandle(libc.find("sendto").orElseThrow(),
+                FunctionDescriptor.of(JAVA_LONG, JAVA_INT, ADDRESS, JAVA_LONG, JAVA_INT, ADDRESS, JAVA_INT), errno);
+        RECVFROM = linker.downcallHandle(libc.find("recvfrom").orElseThrow(),
+                FunctionDescriptor.of(JAVA_LONG, JAVA_INT, ADDRESS, JAVA_LONG, JAVA_INT, ADDRESS, ADDRESS), errno);
+        CLOSE = linker.downcallHandle(libc.find("close").orElseThrow(), FunctionDescriptor.of(JAVA_INT, JAVA_INT));
+    }
+
+    private final int socket;
+    private final Arena arena = Arena.ofShared();
+    private final MemorySegment sendPacket = arena.allocate(PACKET_SIZE);
+    private final MemorySegment sendAddress = arena.allocate(SOCKADDR_IN_SIZE);
+    private final MemorySegment sendCaptureState = arena.allocate(CAPTURE_STATE_LAYOUT);
+    // Keyed by destination address and sequence number, see echoKey
+    private final Map<Long, PendingEcho> pendingEchoes = new ConcurrentHashMap<>();
+    private final AtomicInteger sequence = new AtomicInteger();
+    private final Thread receiverThread;
+    private volatile boolean running = true;
+    private volatile boolean failed;
+    private boolean socketClosed;
+
+    private NativeICMPEngine(int socket) {
+        this.socket = socket;
+        this.receiverThread = new Thread(this::receive, "native-icmp-receiver");
+        this.receiverThread.setDaemon(true);
+        this.receiverThread.start();
+    }
+
+    static NativeICMPEngine open() throws IOException {
+        try (Arena local = Arena.ofConfined()) {
+            MemorySegment captureState = local.allocate(CAPTURE_STATE_LAYOUT);
+            int socket = (int) SOCKET.invokeExact(captureState, AF_INET, SOCK_DGRAM, IPPROTO_ICMP);
+            if (socket < 0) {
+                throw new IOException("Failed to open ICMP datagram socket, errno " + (int) ERRNO.get(captureState)
+                        + " (is the group of the process in net.ipv4.ping_group_range?)");
+            }
+            // The receiver wakes up periodically so that it notices close()
+            MemorySegment timeout = local.allocate(16);
+            timeout.set(JAVA_LONG, 0, 0);
+            timeout.set(JAVA_LONG, 8, RECEIVE_TIMEOUT_MICROS);
+            int status = (int) SETSOCKOPT.invokeExact(captureState, socket, SOL_SOCKET, SO_RCVTIMEO, timeout, 16);
+            if (status < 0) {
+                closeSocket(socket);
+                throw new IOException("Failed to set receive timeout, errno " + (int) ERRNO.get(captureState));
+            }
+            return new NativeICMPEngine(socket);
+        } catch (IOException e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IOException("Failed to open ICMP datagram socket: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Sends one echo request, the future completes with the round trip time in nanoseconds or null on timeout.
+     */
+    CompletableFuture<Long> echo(Inet4Address address, long timeoutMillis) {
+        PendingEcho pending = new PendingEcho(address.getAddress(), new CompletableFuture<>());
+        int seq = -1;
+        long key = 0;
+        for (int attempt = 0; attempt < SEQUENCE_COUNT && seq < 0; attempt++) {
+            int candidate = sequence.getAndIncrement() & 0xFFFF;
+            key = echoKey(pending.address, candidate);
+            if (pendingEchoes.putIfAbsent(key, pending) == null) {
+                seq = candidate;
+            }
+        }
+        if (seq < 0) {
+            return CompletableFuture.failedFuture(new IOException("All sequence numbers are pending for " + address.getHostAddress()));
+        }
+        long pendingKey = key;
+        pending.future.completeOnTimeout(null, timeoutMillis, TimeUnit.MILLISECONDS)
+                .whenComplete((roundTrip, throwable) -> pendingEchoes.remove(pendingKey, pending));
+
+        // The arena is closed under the same lock, so the segments are never written after close()
+        synchronized (sendPacket) {
+            if (!running) {
+                pending.future.completeExceptionally(new IOException(failed ? "ICMP engine failed" : "ICMP engine is closed"));
+                return pending.future;
+            }
+            sendPacket.fill((byte) 0);
+            sendPacket.set(JAVA_BYTE, 0, ICMP_ECHO);
+            sendPacket.set(JAVA_SHORT.withOrder(ByteOrder.BIG_ENDIAN), 6, (short) seq);
+            sendAddress.fill((byte) 0);
+            sendAddress.set(JAVA_SHORT, 0, (short) AF_INET);
+            MemorySegment.copy(pending.address, 0, sendAddress, JAVA_BYTE, 4, 4);
+            try {
+                pending.sentNanos = System.nanoTime();
+                long sent = (long) SENDTO.invokeExact(sendCaptureState, socket, sendPacket, (long) PACKET_SIZE, 0, sendAddress, SOCKADDR_IN_SIZE);
+                if (sent < 0) {
+                    pending.future.completeExceptionally(new IOException("sendto failed, errno " + (int) ERRNO.get(sendCaptureState)));
+                }
+            } catch (Throwable e) {
+                pending.future.completeExceptionally(e);
+            }
+        }
+        return pending.future;
+    }
+
+    /**
+     * True once the receiver stopped on an error, no echo completes anymore and the caller should use another engine.
+     */
+    boolean isFailed() {
+        return failed;
+    }
+
+    @Override
+    public void close() {
+        synchronized (sendPacket) {
+            running = false;
+        }
+        try {
+            receiverThread.join(TimeUnit.MICROSECONDS.toMillis(RECEIVE_TIMEOUT_MICROS) * 5);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        stopSocket();
+        pendingEchoes.values().forEach(pending -> pending.future.complete(null));
+        synchronized (sendPacket) {
+            arena.close();
+        }
+    }
+
+    /**
+     * Stops the sends and closes the socket once, under the lock the sends hold.
+     */
+    private void stopSocket() {
+        synchronized (sendPacket) {
+            running = false;
+            if (!socketClosed) {
+                socketClosed = true;
+                closeSocket(socket);
+            }
+        }
+    }
+
+    private static long echoKey(byte[] address, int seq) {
+        long destination = ((address[0] & 0xFFL) << 24) | ((address[1] & 0xFF) << 16) | ((address[2] & 0xFF) << 8) | (address[3] & 0xFF);
+        return destination << 16 | seq;
+    }
+
+    private static void closeSocket(int socket) {
+        try {
+            if ((int) CLOSE.invokeExact(socket) < 0) {
+                logger.debug("Failed to close ICMP socket {}", socket);
+            }
+        } catch (Throwable e) {
+            logger.debug("Failed to close ICMP socket: {}", e.getMessage());
+        }
+    }
+
+    private void receive() {
+        try (Arena receiveArena = Arena.ofConfined()) {
+            MemorySegment buffer = receiveArena.allocate(RECEIVE_BUFFER_SIZE);
+            MemorySegment sourceAddress = receiveArena.allocate(SOCKADDR_IN_SIZE);
+            MemorySegment addressLength = receiveArena.allocate(JAVA_INT);
+            MemorySegment captureState = receiveArena.allocate(CAPTURE_STATE_LAYOUT);
+            byte[] source = new byte[4];
+            int errors = 0;
+            while (running) {
+                addressLength.set(JAVA_INT, 0, SOCKADDR_IN_SIZE);
+                long received = (long) RECVFROM.invokeExact(captureState, socket, buffer, (long) RECEIVE_BUFFER_SIZE, 0, sourceAddress, addressLength);
+                long receivedNanos = System.nanoTime();
+                if (received < 0) {
+                    int errno = (int) ERRNO.get(captureState);
+                    if (errno == EAGAIN || errno == EINTR || !running) {
+                        errors = 0;
+                        continue;
+                    }
+                    // A persistent error (e.g. EBADF) fails again right away, so back off and give up after a few
+                    if (++errors >= MAX_RECEIVE_ERRORS) {
+                        throw new IOException("recvfrom on ICMP socket failed " + errors + " times in a row, errno " + errno);
+                    }
+                    logger.warn("recvfrom on ICMP socket failed, errno {}", errno);
+                    Thread.sleep(RECEIVE_ERROR_BACKOFF_MILLIS << (errors - 1));
+                    continue;
+                }
+                errors = 0;
+                if (received < 8 || buffer.get(JAVA_BYTE, 0) != ICMP_ECHO_REPLY) {
+                    continue;
+                }
+                int seq = Short.toUnsignedInt(buffer.get(JAVA_SHORT.withOrder(ByteOrder.BIG_ENDIAN), 6));
+                MemorySegment.copy(sourceAddress, JAVA_BYTE, 4, source, 0, 4);
+                PendingEcho pending = pendingEchoes.get(echoKey(source, seq));
+                if (pending != null) {
+                    pending.future.complete(receivedNanos - pending.sentNanos);
+                }
+            }
+        } catch (Throwable e) {
+            if (!running) {
+                return;
+            }
+            logger.error("ICMP receiver failed, failing the pending echoes: {}", e.getMessage(), e);
+            failed = true;
+            stopSocket();
+            IOException failure = new IOException("ICMP receiver failed: " + e.getMessage(), e);
+            pendingEchoes.values().forEach(pending -> pending.future.completeExceptionally(failure));
+        }
+    }
+
+    private static final class PendingEcho {
+        private final byte[] address;
+        private final CompletableFuture<Long> future;
+        private volatile long sentNanos;
+
+        private PendingEcho(byte[] address, CompletableFuture<Long> future) {
+            this.address = address;
+            this.future = future;
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.github.akopyanrob.service;
+
+import com.github.akopyanrob.dns.DnsCache;
+import com.github.akopyanrob.result.ICMPPingResult;
+import com.github.akopyanrob.result.ICMPStatistics;
+import com.github.akopyanrob.result.PingResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ICMP ping sent from the JVM itself instead of forking the ping command, see {@link NativeICMPEngine}.
+ * Use {@link #create} to get an instance, it returns null when the native engine is not available.
+ * Once the engine failed the pings run on the service given to {@link #attachFallback}, if any.
+ */
+public class NativeICMPPingService implements AsyncPingService, AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(NativeICMPPingService.class);
+
+    private static final int PACKET_COUNT = 5;
+
+    private final NativeICMPEngine engine;
+    private final Config config;
+    private final long packetIntervalMillis;
+    private final DnsCache dnsCache;
+    // Name resolution blocks, so without a DnsCache it runs on virtual threads
+    private final ExecutorService resolverExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    private volatile PingService fallback;
+
+    private NativeICMPPingService(NativeICMPEngine engine, Config config, long packetIntervalMillis, DnsCache dnsCache) {
+        this.engine = engine;
+        this.config = config;
+        this.packetIntervalMillis = packetIntervalMillis;
+        this.dnsCache = dnsCache;
+    }
+
+    /**
+     * Returns null when unprivileged ICMP sockets can not be used: not Linux, the JVM runs without --enable-preview
+     * or the group of the process is not in net.ipv4.ping_group_range. The caller should fall back to {@link ICMPPingService}.
+     */
+    public static NativeICMPPingService create(Config config, long packetIntervalMillis) {
+        return create(config, packetIntervalMillis, null);
+    }
+
+    /**
+     * Same as {@link #create(Config, long)}, with the hosts resolved by the given cache when it is not null.
+     */
+    public static NativeICMPPingService create(Config config, long packetIntervalMillis, DnsCache dnsCache) {
+        Objects.requireNonNull(config, "config must not be null");
+        if (packetIntervalMillis < 0) {
+            throw new IllegalArgumentException("Packet interval must be non-negative");
+        }
+        if (!System.getProperty("os.name").toLowerCase().contains("linux")) {
+            logger.warn("Native ICMP engine is only supported on Linux");
+            return null;
+        }
+        try {
+            return new NativeICMPPingService(NativeICMPEngine.open(), config, packetIntervalMillis, dnsCache);
+        } catch (IOException | LinkageError e) {
+            logger.warn("Native ICMP engine is not available: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    @Override
+    public CompletableFuture<PingResult> pingAsync(String host) {
+        if (fallback != null && engine.isFailed()) {
+            return pingFallback(host);
+        }
+        long startTime = System.currentTimeMillis();
+        CompletableFuture<Inet4Address> resolved = dnsCache != null
+                ? dnsCache.resolveAllAsync(host).thenApply(addresses -> firstIPv4(host, addresses))
+                : CompletableFuture.supplyAsync(() -> resolve(host), resolverExecutor);
+        return resolved
+                .thenCompose(address -> sendEchoes(host, address, startTime))
+                .exceptionallyCompose(throwable -> {
+                    // Echoes pending when the engine failed say nothing about the host, ping it again instead
+                    if (fallback != null && engine.isFailed()) {
+                        return pingFallback(host);
+                    }
+                    Throwable cause = throwable.getCause() != null ? throwable.getCause() : throwable;
+                    logger.error("Error during native ICMP ping of host " + host + ": " + cause.getMessage());
+                    return CompletableFuture.completedFuture(new ICMPPingResult(false, host, startTime, List.of("Error: " + cause.getMessage())));
+                });
+    }
+
+    /**
+     * Runs the pings once the native engine failed, e.g. an {@link ICMPPingService}. Null to stop.
+     */
+    public void attachFallback(PingService fallback) {
+        this.fallback = fallback;
+    }
+
+    @Override
+    public void close() {
+        resolverExecutor.shutdownNow();
+        engine.close();
+    }
+
+    private CompletableFuture<PingResult> pingFallback(String host) {
+        PingService fallbackService = fallback;
+        // Blocking process based pings, on the virtual threads like the name resolution
+        return CompletableFuture.supplyAsync(() -> fallbackService.ping(host), resolverExecutor);
+    }
+
+    private CompletableFuture<PingResult> sendEchoes(String host, Inet4Address address, long startTime) {
+        List<CompletableFuture<Long>> roundTrips = new ArrayList<>(PACKET_COUNT);
+        for (int i = 0; i < PACKET_COUNT; i++) {
+            Executor delayed = CompletableFuture.delayedExecutor(i * packetIntervalMillis, TimeUnit.MILLISECONDS);
+            roundTrips.add(CompletableFuture.supplyAsync(() -> null, delayed)
+                    .thenCompose(ignored -> engine.echo(address, config.timeout())));
+        }
+        return CompletableFuture.allOf(roundTrips.toArray(CompletableFuture[]::new))
+                .thenApply(ignored -> createPingResult(host, startTime, roundTrips.stream().map(CompletableFuture::join).toList()));
+    }
+
+    private static PingResult createPingResult(String host, long startTime, List<Long> roundTripNanos) {
+        int[] roundTripMicros = new int[roundTripNanos.size()];
+        for (int i = 0; i < roundTripMicros.length; i++) {
+            Long nanos = roundTripNanos.get(i);
+            roundTripMicros[i] = nanos != null ? (int) Math.min(TimeUnit.NANOSECONDS.toMicros(nanos), Integer.MAX_VALUE) : -1;
+        }
+        ICMPStatistics statistics = ICMPStatistics.of(roundTripMicros);
+        logger.debug("Native ICMP ping result for host " + host + ": " + statistics);
+        return new ICMPPingResult(statistics.received() == statistics.sent(), host, startTime, statistics);
+    }
+
+    static Inet4Address resolve(String host) {
+        try {
+            return firstIPv4(host, List.of(InetAddress.getAllByName(host)));
+        } catch (UnknownHostException e) {
+            throw new IllegalArgumentException("Unknown host " + host, e);
+        }
+    }
+
+    static Inet4Address firstIPv4(String host, List<InetAddress> addresses) {
+        for (InetAddress address : addresses) {
+            if (address instanceof Inet4Address inet4Address) {
+                return inet4Address;
+            }
+        }
+        throw new IllegalArgumentException("No IPv4 address for host " + host);
+    }
+}
@@ -0,0 +1,501 @@
+package com.github.akopyanrob.service;
+
+import com.github.akopyanrob.result.TraceHop;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.FunctionDescriptor;
+import java.lang.foreign.Linker;
+import java.lang.foreign.MemoryLayout;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.StructLayout;
+import java.lang.foreign.SymbolLookup;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.VarHandle;
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.lang.foreign.ValueLayout.ADDRESS;
+import static java.lang.foreign.ValueLayout.JAVA_BYTE;
+import static java.lang.foreign.ValueLayout.JAVA_INT;
+import static java.lang.foreign.ValueLayout.JAVA_LONG;
+import static java.lang.foreign.ValueLayout.JAVA_SHORT;
+
+/**
+ * UDP traceroute from the JVM over Linux datagram sockets with IP_RECVERR, called through the Foreign Function & Memory API.
+ * A trace sends one probe for every TTL at once, the ICMP time exceeded and port unreachable answers are read from the
+ * socket error queue, so a trace takes one round trip to the farthest hop instead of one per hop and needs no privileges.
+ * The traces of all hosts share a few sockets. Every pending probe to a destination has its own destination port, and
+ * the error queue returns the original destination address and port with the answer, so answers are matched even when
+ * a router quotes no payload. One receiver thread polls all sockets. Assumes 64-bit Linux structure layouts.
+ */
+final class NativeTraceEngine implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(NativeTraceEngine.class);
+
+    private static final int AF_INET = 2;
+    private static final int SOCK_DGRAM = 2;
+    private static final int IPPROTO_IP = 0;
+    private static final int IP_TTL = 2;
+    private static final int IP_RECVERR = 11;
+    private static final int MSG_DONTWAIT = 0x40;
+    private static final int ENETUNREACH = 101;
+    private static final int ECONNREFUSED = 111;
+    private static final int EHOSTUNREACH = 113;
+    private static final int MAX_SEND_ATTEMPTS = 4;
+    private static final int MSG_ERRQUEUE = 0x2000;
+    private static final byte SO_EE_ORIGIN_ICMP = 2;
+    private static final byte ICMP_DEST_UNREACH = 3;
+    private static final byte ICMP_PORT_UNREACH = 3;
+    private static final byte ICMP_TIME_EXCEEDED = 11;
+    // Same port range as traceroute, every pending probe to a destination takes one of the ports above BASE_PORT
+    private static final int BASE_PORT = 33434;
+    private static final int PORT_COUNT = 65536 - BASE_PORT;
+    private static final int SOCKADDR_IN_SIZE = 16;
+    private static final int PAYLOAD_SIZE = 8;
+    private static final int RECEIVE_BUFFER_SIZE = 512;
+    private static final int CONTROL_BUFFER_SIZE = 512;
+    private static final int MSGHDR_SIZE = 56;
+    private static final int IOVEC_SIZE = 16;
+    private static final int POLLFD_SIZE = 8;
+    private static final int POLL_TIMEOUT_MILLIS = 100;
+
+    private static final StructLayout CAPTURE_STATE_LAYOUT = Linker.Option.captureStateLayout();
+    private static final VarHandle ERRNO = CAPTURE_STATE_LAYOUT.varHandle(MemoryLayout.PathElement.groupElement("errno"));
+    private static final MethodHandle SOCKET;
+    private static final MethodHandle SETSOCKOPT;
+    private static final MethodHandle SENDTO;
+    private static final MethodHandle RECVMSG;
+    private static final MethodHandle POLL;
+    private static final MethodHandle CLOSE;
+
+    static {
+        Linker linker = Linker.nativeLinker();
+        SymbolLookup libc = linker.defaultLookup();
+        Linker.Option errno = Linker.Option.captureCallState("errno");
+        SOCKET = linker.downcallHandle(libc.find("socket").orElseThrow(),
+                FunctionDescriptor.of(JAVA_INT, JAVA_INT, JAVA_INT, JAVA_INT), errno);
+        SETSOCKOPT = linker.downcallHandle(libc.find("setsockopt").orElseThrow(),
+                FunctionDescriptor.of(JAVA_INT, JAVA_INT, JAVA_INT, JAVA_INT, ADDRESS, JAVA_INT), errno);
+        SENDTO = linker.downcallHandle(libc.find("sendto").orElseThrow(),
+                FunctionDescriptor.of(JAVA_LONG, JAVA_INT, ADDRESS, JAVA_LONG, JAVA_INT, ADDRESS, JAVA_INT), errno);
+        RECVMSG = linker.downcallHandle(libc.find("recvmsg").orElseThrow(),
+                FunctionDescriptor.of(JAVA_LONG, JAVA_INT, ADDRESS, JAVA_INT), errno);
+        POLL = linker.downcallHandle(libc.find("poll").orElseThrow(),
+                FunctionDescriptor.of(JAVA_INT, ADDRESS, JAVA_LONG, JAVA_INT));
+        CLOSE = linker.downcallHandle(libc.find("close").orElseThrow(), FunctionDescriptor.of(JAVA_INT, JAVA_INT));
+    }
+
+    /**
+     * The hops up to the destination, or up to the farthest one that answered when the destination was not reached.
+     */
+    record Route(List<TraceHop> hops, boolean destinationReached) {
+    }
+
+    private final ProbeSocket[] sockets;
+    private final Arena arena = Arena.ofShared();
+    // Keyed by destination address and port, see probeKey
+    private final Map<Long, Probe> pendingProbes = new ConcurrentHashMap<>();
+    private final AtomicInteger nextPort = new AtomicInteger();
+    private final AtomicInteger nextSocket = new AtomicInteger();
+    private final Thread receiverThread;
+    private volatile boolean running = true;
+    private volatile boolean failed;
+
+    private NativeTraceEngine(int[] socketFds) {
+        this.sockets = new ProbeSocket[socketFds.length];
+        for (int i = 0; i < socketFds.length; i++) {
+            sockets[i] = new ProbeSocket(socketFds[i]);
+        }
+        this.receiverThread = new Thread(this::receive, "native-trace-receiver");
+        this.receiverThread.setDaemon(true);
+        this.receiverThread.start();
+    }
+
+    /**
+     * Opens socketCount UDP sockets, the traces are spread over them.
+     */
+    static NativeTraceEngine open(int socketCount) throws IOException {
+        if (socketCount <= 0) {
+            throw new IllegalArgumentException("Socket count must be positive");
+        }
+        int[] fds = new int[socketCount];
+        int opened = 0;
+        try (Arena local = Arena.ofConfined()) {
+            MemorySegment captureState = local.allocate(CAPTURE_STATE_LAYOUT);
+            MemorySegment enabled = local.allocate(JAVA_INT);
+            enabled.set(JAVA_INT, 0, 1);
+            for (; opened < socketCount; opened++) {
+                int socket = (int) SOCKET.invokeExact(captureState, AF_INET, SOCK_DGRAM, IPPROTO_IP);
+                if (socket < 0) {
+                    throw new IOException("Failed to open UDP socket, errno " + (int) ERRNO.get(captureState));
+                }
+                fds[opened] = socket;
+                int status = (int) SETSOCKOPT.invokeExact(captureState, socket, IPPROTO_IP, IP_RECVERR, enabled, 4);
+                if (status < 0) {
+                    opened++;
+                    throw new IOException("Failed to enable IP_RECVERR, errno " + (int) ERRNO.get(captureState));
+                }
+            }
+            return new NativeTraceEngine(fds);
+        } catch (Throwable e) {
+            for (int i = 0; i < opened; i++) {
+                closeSocket(fds[i]);
+            }
+            if (e instanceof IOException ioException) {
+                throw ioException;
+            }
+            throw new IOException("Failed to open UDP sockets: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Sends a probe for every TTL up to maxHops at once. The future completes once the destination and every hop
+     * before it answered, or after the timeout with the hops that answered by then.
+     */
+    CompletableFuture<Route> trace(Inet4Address destination, int maxHops, long timeoutMillis) {
+        if (!running) {
+            return CompletableFuture.failedFuture(new IOException(failed ? "Trace engine failed" : "Trace engine is closed"));
+        }
+        Trace trace = new Trace(maxHops);
+        ProbeSocket socket = sockets[Math.floorMod(nextSocket.getAndIncrement(), sockets.length)];
+        CompletableFuture.delayedExecutor(timeoutMillis, TimeUnit.MILLISECONDS).execute(trace::finish);
+        byte[] address = destination.getAddress();
+        for (int ttl = 1; ttl <= maxHops && !trace.future.isDone(); ttl++) {
+            Probe probe = new Probe(trace, ttl);
+            int port = acquirePort(address, probe);
+            if (port < 0) {
+                trace.fail(new IOException("All probe ports are pending for " + destination.getHostAddress()));
+                break;
+            }
+            trace.probeKeys[ttl - 1] = probeKey(address, port);
+            try {
+                socket.send(address, port, ttl, probe);
+            } catch (IOException e) {
+                trace.fail(e);
+            }
+        }
+        return trace.future;
+    }
+
+    /**
+     * True once the receiver stopped on an error, no trace completes anymore and the caller should use another engine.
+     */
+    boolean isFailed() {
+        return failed;
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        try {
+            receiverThread.join(POLL_TIMEOUT_MILLIS * 5);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        stopSockets();
+        pendingProbes.values().forEach(probe -> probe.trace.finish());
+        arena.close();
+    }
+
+    /**
+     * Closes the sockets, a send checks running under the lock of its socket, so none writes the arena afterwards.
+     */
+    private void stopSockets() {
+        for (ProbeSocket socket : sockets) {
+            synchronized (socket) {
+                if (!socket.closed) {
+                    socket.closed = true;
+                    closeSocket(socket.fd);
+                }
+            }
+        }
+    }
+
+    /**
+     * Registers the probe under a destination port no other pending probe to the address uses, -1 when all are taken.
+     */
+    private int acquirePort(byte[] address, Probe probe) {
+        for (int attempt = 0; attempt < PORT_COUNT; attempt++) {
+            int port = BASE_PORT + Math.floorMod(nextPort.getAndIncrement(), PORT_COUNT);
+            if (pendingProbes.putIfAbsent(probeKey(address, port), probe) == null) {
+                return port;
+            }
+        }
+        return -1;
+    }
+
+    private static long probeKey(byte[] address, int port) {
+        return probeKey(((address[0] & 0xFFL) << 24) | ((address[1] & 0xFF) << 16) | ((address[2] & 0xFF) << 8) | (address[3] & 0xFF), port);
+    }
+
+    private static long probeKey(long address, int port) {
+        return address << 16 | port;
+    }
+
+    private void receive() {
+        try (Arena receiveArena = Arena.ofConfined()) {
+            MemorySegment pollFds = receiveArena.allocate((long) POLLFD_SIZE * sockets.length);
+            MemorySegment buffer = receiveArena.allocate(RECEIVE_BUFFER_SIZE);
+            MemorySegment control = receiveArena.allocate(CONTROL_BUFFER_SIZE, 8);
+            MemorySegment name = receiveArena.allocate(SOCKADDR_IN_SIZE);
+            MemorySegment iovec = receiveArena.allocate(IOVEC_SIZE, 8);
+            MemorySegment message = receiveArena.allocate(MSGHDR_SIZE, 8);
+            MemorySegment captureState = receiveArena.allocate(CAPTURE_STATE_LAYOUT);
+            iovec.set(ADDRESS, 0, buffer);
+            iovec.set(JAVA_LONG, 8, RECEIVE_BUFFER_SIZE);
+            while (running) {
+                for (int i = 0; i < sockets.length; i++) {
+                    // No events requested, POLLERR (a queued error) is always reported
+                    pollFds.set(JAVA_INT, (long) i * POLLFD_SIZE, sockets[i].fd);
+                    pollFds.set(JAVA_INT, (long) i * POLLFD_SIZE + 4, 0);
+                }
+                int ready = (int) POLL.invokeExact(pollFds, (long) sockets.length, POLL_TIMEOUT_MILLIS);
+                if (ready <= 0) {
+                    continue;
+                }
+                for (int i = 0; i < sockets.length; i++) {
+                    if (pollFds.get(JAVA_SHORT, (long) i * POLLFD_SIZE + 6) == 0) {
+                        continue;
+                    }
+                    while (running) {
+                        message.fill((byte) 0);
+                        message.set(ADDRESS, 0, name);
+                        message.set(JAVA_INT, 8, SOCKADDR_IN_SIZE);
+                        message.set(ADDRESS, 16, iovec);
+                        message.set(JAVA_LONG, 24, 1);
+                        message.set(ADDRESS, 32, control);
+                        message.set(JAVA_LONG, 40, CONTROL_BUFFER_SIZE);
+                        long received = (long) RECVMSG.invokeExact(captureState, sockets[i].fd, message, MSG_ERRQUEUE | MSG_DONTWAIT);
+                        if (received < 0) {
+                            break;
+                        }
+                        long receivedNanos = System.nanoTime();
+                        // msg_name holds the destination and port of the probe the error is about
+                        if (message.get(JAVA_INT, 8) >= 8) {
+                            long destination = name.get(JAVA_INT.withOrder(ByteOrder.BIG_ENDIAN), 4) & 0xFFFFFFFFL;
+                            int port = name.get(JAVA_SHORT.withOrder(ByteOrder.BIG_ENDIAN), 2) & 0xFFFF;
+                            handleError(probeKey(destination, port), control, message.get(JAVA_LONG, 40), receivedNanos);
+                        }
+                    }
+                }
+            }
+        } catch (Throwable e) {
+            logger.error("Trace receiver failed, failing the pending traces: {}", e.getMessage(), e);
+            failed = true;
+            running = false;
+            stopSockets();
+            IOException failure = new IOException("Trace receiver failed: " + e.getMessage(), e);
+            pendingProbes.values().forEach(probe -> probe.trace.fail(failure));
+        }
+    }
+
+    /**
+     * Reads the sock_extended_err of the IP_RECVERR control message and the address of the router that sent it.
+     */
+    private void handleError(long probeKey, MemorySegment control, long controlLength, long receivedNanos) {
+        Probe probe = pendingProbes.get(probeKey);
+        if (probe == null) {
+            return;
+        }
+        long offset = 0;
+        while (offset + 16 <= controlLength) {
+            long length = control.get(JAVA_LONG, offset);
+            int level = control.get(JAVA_INT, offset + 8);
+            int type = control.get(JAVA_INT, offset + 12);
+            if (length < 16) {
+                return;
+            }
+            if (level == IPPROTO_IP && type == IP_RECVERR && length >= 16 + 16 + 8) {
+                long error = offset + 16;
+                byte origin = control.get(JAVA_BYTE, error + 4);
+                byte icmpType = control.get(JAVA_BYTE, error + 5);
+                byte icmpCode = control.get(JAVA_BYTE, error + 6);
+                if (origin != SO_EE_ORIGIN_ICMP || (icmpType != ICMP_TIME_EXCEEDED && icmpType != ICMP_DEST_UNREACH)) {
+                    return;
+                }
+                byte[] offender = new byte[4];
+                // SO_EE_OFFENDER, the sockaddr_in right after the sock_extended_err
+                MemorySegment.copy(control, JAVA_BYTE, error + 16 + 4, offender, 0, 4);
+                pendingProbes.remove(probeKey, probe);
+                probe.trace.answer(probe.ttl, offender, receivedNanos - probe.sentNanos,
+                        icmpType == ICMP_DEST_UNREACH, icmpCode == ICMP_PORT_UNREACH);
+                return;
+            }
+            offset += (length + 7) & ~7L;
+        }
+    }
+
+    private static void closeSocket(int fd) {
+        try {
+            if ((int) CLOSE.invokeExact(fd) < 0) {
+                logger.debug("Failed to close UDP socket {}", fd);
+            }
+        } catch (Throwable e) {
+            logger.debug("Failed to close UDP socket: {}", e.getMessage());
+        }
+    }
+
+    private final class Trace {
+        private final int maxHops;
+        private final long[] probeKeys;
+        private final byte[][] addresses;
+        private final long[] roundTripNanos;
+        private final CompletableFuture<Route> future = new CompletableFuture<>();
+        // Guarded by the trace
+        private int lastTtl = Integer.MAX_VALUE;
+        private boolean destinationReached;
+
+        private Trace(int maxHops) {
+            this.maxHops = maxHops;
+            this.probeKeys = new long[maxHops];
+            this.addresses = new byte[maxHops][];
+            this.roundTripNanos = new long[maxHops];
+        }
+
+        /**
+         * An unreachable answer ends the path, from the destination itself when it is a port unreachable.
+         */
+        private synchronized void answer(int ttl, byte[] address, long nanos, boolean unreachable, boolean portUnreachable) {
+            if (future.isDone()) {
+                return;
+            }
+            addresses[ttl - 1] = address;
+            roundTripNanos[ttl - 1] = nanos;
+            if (unreachable && ttl < lastTtl) {
+                lastTtl = ttl;
+                destinationReached = portUnreachable;
+            }
+            if (lastTtl != Integer.MAX_VALUE) {
+                for (int i = 0; i < lastTtl; i++) {
+                    if (addresses[i] == null) {
+                        return;
+                    }
+                }
+                finish();
+            }
+        }
+
+        private synchronized void finish() {
+            if (future.isDone()) {
+                return;
+            }
+            int last = lastTtl != Integer.MAX_VALUE ? lastTtl : 0;
+            if (last == 0) {
+                for (int i = maxHops - 1; i >= 0 && last == 0; i--) {
+                    if (addresses[i] != null) {
+                        last = i + 1;
+                    }
+                }
+            }
+            List<TraceHop> hops = new ArrayList<>(last);
+            for (int i = 0; i < last; i++) {
+                hops.add(addresses[i] != null
+                        ? new TraceHop(i + 1, toString(addresses[i]), (int) Math.min(TimeUnit.NANOSECONDS.toMicros(roundTripNanos[i]), Integer.MAX_VALUE))
+                        : new TraceHop(i + 1, null, -1));
+            }
+            forgetProbes();
+            future.complete(new Route(hops, destinationReached));
+        }
+
+        private synchronized void fail(IOException e) {
+            forgetProbes();
+            future.completeExceptionally(e);
+        }
+
+        private void forgetProbes() {
+            for (int i = 0; i < maxHops; i++) {
+                Probe probe = pendingProbes.get(probeKeys[i]);
+                // TTLs that were not sent have key 0, which no probe uses. A forgotten key may belong to another trace
+                if (probe != null && probe.trace == this) {
+                    pendingProbes.remove(probeKeys[i], probe);
+                }
+            }
+        }
+
+        private static String toString(byte[] address) {
+            try {
+                return InetAddress.getByAddress(address).getHostAddress();
+            } catch (UnknownHostException e) {
+                return null;
+            }
+        }
+    }
+
+    private static final class Probe {
+        private final Trace trace;
+        private final int ttl;
+        private volatile long sentNanos;
+
+        private Probe(Trace trace, int ttl) {
+            this.trace = trace;
+            this.ttl = ttl;
+        }
+    }
+
+    /**
+     * The TTL is a socket option, so setting it and sending the probe happen under one lock.
+     * The lock also keeps close() from freeing the segments while a probe is sent.
+     */
+    private final class ProbeSocket {
+        private final int fd;
+        private final MemorySegment payload;
+        private final MemorySegment address;
+        private final MemorySegment ttlValue;
+        private final MemorySegment captureState;
+        // Guarded by the socket
+        private boolean closed;
+
+        private ProbeSocket(int fd) {
+            this.fd = fd;
+            this.payload = arena.allocate(PAYLOAD_SIZE);
+            this.address = arena.allocate(SOCKADDR_IN_SIZE);
+            this.ttlValue = arena.allocate(JAVA_INT);
+            this.captureState = arena.allocate(CAPTURE_STATE_LAYOUT);
+        }
+
+        private synchronized void send(byte[] destination, int port, int ttl, Probe probe) throws IOException {
+            if (!running || closed) {
+                throw new IOException("Trace engine is closed");
+            }
+            try {
+                ttlValue.set(JAVA_INT, 0, ttl);
+                int status = (int) SETSOCKOPT.invokeExact(captureState, fd, IPPROTO_IP, IP_TTL, ttlValue, 4);
+                if (status < 0) {
+                    throw new IOException("Failed to set TTL, errno " + (int) ERRNO.get(captureState));
+                }
+                payload.fill((byte) 0);
+                address.fill((byte) 0);
+                address.set(JAVA_SHORT, 0, (short) AF_INET);
+                address.set(JAVA_SHORT.withOrder(ByteOrder.BIG_ENDIAN), 2, (short) port);
+                MemorySegment.copy(destination, 0, address, JAVA_BYTE, 4, 4);
+                // An ICMP error of an earlier probe is also reported by the next send, which then sends nothing
+                for (int attempt = 1; ; attempt++) {
+                    probe.sentNanos = System.nanoTime();
+                    long sent = (long) SENDTO.invokeExact(captureState, fd, payload, (long) PAYLOAD_SIZE, 0, address, SOCKADDR_IN_SIZE);
+                    if (sent >= 0) {
+                        return;
+                    }
+                    int errno = (int) ERRNO.get(captureState);
+                    if (attempt == MAX_SEND_ATTEMPTS || errno != ECONNREFUSED && errno != EHOSTUNREACH && errno != ENETUNREACH) {
+                        throw new IOException("sendto failed, errno " + errno);
+                    }
+                }
+            } catch (IOException e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new IOException("Failed to send probe: " + e.getMessage(), e);
+            }
+        }
+    }
+}
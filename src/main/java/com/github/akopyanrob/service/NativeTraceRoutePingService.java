@@ -0,0 +1,107 @@
+package com.github.akopyanrob.service;
+
+import com.github.akopyanrob.dns.DnsCache;
+import com.github.akopyanrob.result.PingResult;
+import com.github.akopyanrob.result.TraceHop;
+import com.github.akopyanrob.result.TraceRoutePingResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.Inet4Address;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Traceroute run in the JVM instead of forking traceroute, see {@link NativeTraceEngine}.
+ * Use {@link #create} to get an instance, it returns null when the native engine is not available.
+ * When the engine fails later on, the traces run on the attached fallback service.
+ */
+public class NativeTraceRoutePingService implements AsyncPingService, AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(NativeTraceRoutePingService.class);
+
+    private final NativeTraceEngine engine;
+    private final Config config;
+    private final int maxHops;
+    private final DnsCache dnsCache;
+    // Name resolution blocks, so without a DnsCache it runs on virtual threads
+    private final ExecutorService resolverExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    private volatile PingService fallback;
+
+    private NativeTraceRoutePingService(NativeTraceEngine engine, Config config, int maxHops, DnsCache dnsCache) {
+        this.engine = engine;
+        this.config = config;
+        this.maxHops = maxHops;
+        this.dnsCache = dnsCache;
+    }
+
+    /**
+     * Returns null when the engine can not be used: not Linux or the JVM runs without --enable-preview.
+     * The caller should fall back to {@link TraceRoutePingService}. The traces of all hosts share socketCount sockets.
+     */
+    public static NativeTraceRoutePingService create(Config config, int maxHops, int socketCount, DnsCache dnsCache) {
+        Objects.requireNonNull(config, "config must not be null");
+        if (maxHops <= 0 || maxHops > 255) {
+            throw new IllegalArgumentException("Max hops must be between 1 and 255");
+        }
+        if (socketCount <= 0) {
+            throw new IllegalArgumentException("Socket count must be positive");
+        }
+        if (!System.getProperty("os.name").toLowerCase().contains("linux")) {
+            logger.warn("Native trace engine is only supported on Linux");
+            return null;
+        }
+        try {
+            return new NativeTraceRoutePingService(NativeTraceEngine.open(socketCount), config, maxHops, dnsCache);
+        } catch (IOException | LinkageError e) {
+            logger.warn("Native trace engine is not available: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * A trace succeeds when the destination answered and so did every hop before it, like a traceroute without "* * *".
+     */
+    @Override
+    public CompletableFuture<PingResult> pingAsync(String host) {
+        PingService fallbackService = fallback;
+        if (fallbackService != null && engine.isFailed()) {
+            // Blocking process based traces, on the virtual threads like the name resolution
+            return CompletableFuture.supplyAsync(() -> fallbackService.ping(host), resolverExecutor);
+        }
+        long startTime = System.currentTimeMillis();
+        CompletableFuture<Inet4Address> resolved = dnsCache != null
+                ? dnsCache.resolveAllAsync(host).thenApply(addresses -> NativeICMPPingService.firstIPv4(host, addresses))
+                : CompletableFuture.supplyAsync(() -> NativeICMPPingService.resolve(host), resolverExecutor);
+        return resolved
+                .thenCompose(address -> engine.trace(address, maxHops, config.timeout()))
+                .thenApply(route -> createPingResult(host, startTime, route))
+                .exceptionally(throwable -> {
+                    Throwable cause = throwable.getCause() != null ? throwable.getCause() : throwable;
+                    logger.error("Error during native trace of host " + host + ": " + cause.getMessage());
+                    return new TraceRoutePingResult(false, host, startTime, List.of(), List.of("Error: " + cause.getMessage()));
+                });
+    }
+
+    /**
+     * Runs the traces once the native engine failed, e.g. a {@link TraceRoutePingService}. Null to stop.
+     */
+    public void attachFallback(PingService fallback) {
+        this.fallback = fallback;
+    }
+
+    @Override
+    public void close() {
+        resolverExecutor.shutdownNow();
+        engine.close();
+    }
+
+    private static PingResult createPingResult(String host, long startTime, NativeTraceEngine.Route route) {
+        boolean successful = route.destinationReached() && route.hops().stream().allMatch(TraceHop::isAnswered);
+        logger.debug("Native trace result for host " + host + ": " + route.hops());
+        return new TraceRoutePingResult(successful, host, startTime, route.hops(), null);
+    }
+}
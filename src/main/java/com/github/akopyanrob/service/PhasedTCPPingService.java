@@ -0,0 +1,173 @@
+package com.github.akopyanrob.service;
+
+import com.github.akopyanrob.dns.DnsCache;
+import com.github.akopyanrob.result.ConnectionPhases;
+import com.github.akopyanrob.result.PingResult;
+import com.github.akopyanrob.result.TCPPingResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * HEAD probe over a fresh connection for every ping, timed phase by phase: name resolution, TCP connect,
+ * TLS handshake and the time from sending the request to the first byte of the response.
+ * Unlike {@link TCPPingService} no keep-alive connection is reused, so every result includes the handshakes.
+ * Hosts without a scheme are probed over http, or over TLS when the service is created for https, so the shared
+ * host list stays usable by the other probes. A host given as "https://name" always uses TLS.
+ * The timeout applies to every phase.
+ */
+public class PhasedTCPPingService implements PingService {
+    private static final Logger logger = LoggerFactory.getLogger(PhasedTCPPingService.class);
+
+    private static final int MAX_STATUS_LINE_LENGTH = 1024;
+
+    private final Config config;
+    private final DnsCache dnsCache;
+    private final SSLSocketFactory sslSocketFactory;
+    private final String defaultScheme;
+
+    public PhasedTCPPingService(Config config, DnsCache dnsCache) {
+        this(config, dnsCache, false);
+    }
+
+    /**
+     * @param https probe the hosts without a scheme over TLS
+     */
+    public PhasedTCPPingService(Config config, DnsCache dnsCache, boolean https) {
+        this(config, dnsCache, (SSLSocketFactory) SSLSocketFactory.getDefault(), https);
+    }
+
+    /**
+     * @param dnsCache resolves the hosts, a null one uses the resolver of the JVM
+     */
+    public PhasedTCPPingService(Config config, DnsCache dnsCache, SSLSocketFactory sslSocketFactory, boolean https) {
+        this.config = Objects.requireNonNull(config, "config must not be null");
+        this.dnsCache = dnsCache;
+        this.sslSocketFactory = Objects.requireNonNull(sslSocketFactory, "sslSocketFactory must not be null");
+        this.defaultScheme = https ? "https://" : "http://";
+    }
+
+    @Override
+    public PingResult ping(String host) {
+        long startTime = System.currentTimeMillis();
+        URI uri;
+        try {
+            uri = URI.create(host.contains("://") ? host : defaultScheme + host);
+        } catch (IllegalArgumentException e) {
+            logger.error("Invalid host " + host + ": " + e.getMessage());
+            return new TCPPingResult(false, host, startTime, null, null);
+        }
+        if (uri.getHost() == null) {
+            logger.error("Invalid host " + host);
+            return new TCPPingResult(false, host, startTime, null, null);
+        }
+        boolean https = "https".equalsIgnoreCase(uri.getScheme());
+        int port = uri.getPort() != -1 ? uri.getPort() : https ? 443 : 80;
+
+        long dnsStart = System.nanoTime();
+        InetAddress address;
+        try {
+            address = dnsCache != null ? dnsCache.resolve(uri.getHost()) : InetAddress.getByName(uri.getHost());
+        } catch (UnknownHostException e) {
+            logger.error("Error during tcp ping of host " + host + ": unknown host " + e.getMessage());
+            return new TCPPingResult(false, host, startTime, null, null);
+        }
+        long dnsNanos = System.nanoTime() - dnsStart;
+
+        try (Socket socket = new Socket()) {
+            socket.setTcpNoDelay(true);
+            socket.setSoTimeout(config.timeout());
+            long connectStart = System.nanoTime();
+            socket.connect(new InetSocketAddress(address, port), config.timeout());
+            long connectNanos = System.nanoTime() - connectStart;
+
+            Socket connection = socket;
+            long tlsNanos = -1;
+            if (https) {
+                long tlsStart = System.nanoTime();
+                connection = startTls(socket, uri.getHost(), port);
+                tlsNanos = System.nanoTime() - tlsStart;
+            }
+
+            OutputStream output = connection.getOutputStream();
+            InputStream input = new BufferedInputStream(connection.getInputStream());
+            long requestStart = System.nanoTime();
+            output.write(headRequest(uri, https));
+            output.flush();
+            int firstByte = input.read();
+            long firstByteNanos = System.nanoTime() - requestStart;
+            if (firstByte < 0) {
+                throw new IOException("Connection closed before the response");
+            }
+            int responseCode = readStatusCode(firstByte, input);
+
+            ConnectionPhases phases = new ConnectionPhases(dnsNanos, connectNanos, tlsNanos, firstByteNanos);
+            long responseTimeNanos = phases.connectionNanos();
+            logger.debug("Successful TCP ping result for host " + host + ": " + responseCode + " " + phases);
+            return new TCPPingResult(true, host, startTime, TimeUnit.NANOSECONDS.toMillis(responseTimeNanos), responseTimeNanos, responseCode, phases);
+        } catch (IOException e) {
+            logger.error("Error during tcp ping of host " + host + ": " + e.getMessage());
+            return new TCPPingResult(false, host, startTime, null, null);
+        }
+    }
+
+    private Socket startTls(Socket socket, String hostName, int port) throws IOException {
+        SSLSocket sslSocket = (SSLSocket) sslSocketFactory.createSocket(socket, hostName, port, true);
+        SSLParameters parameters = sslSocket.getSSLParameters();
+        parameters.setEndpointIdentificationAlgorithm("HTTPS");
+        sslSocket.setSSLParameters(parameters);
+        sslSocket.startHandshake();
+        return sslSocket;
+    }
+
+    private static byte[] headRequest(URI uri, boolean https) {
+        String path = uri.getRawPath() == null || uri.getRawPath().isEmpty() ? "/" : uri.getRawPath();
+        if (uri.getRawQuery() != null) {
+            path += "?" + uri.getRawQuery();
+        }
+        boolean defaultPort = uri.getPort() == -1 || uri.getPort() == (https ? 443 : 80);
+        String hostHeader = defaultPort ? uri.getHost() : uri.getHost() + ":" + uri.getPort();
+        return ("HEAD " + path + " HTTP/1.1\r\n"
+                + "Host: " + hostHeader + "\r\n"
+                + "Connection: close\r\n"
+                + "\r\n").getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Reads the rest of the status line, e.g. "HTTP/1.1 200 OK", and returns its code.
+     */
+    private static int readStatusCode(int firstByte, InputStream input) throws IOException {
+        StringBuilder statusLine = new StringBuilder().append((char) firstByte);
+        int next;
+        while ((next = input.read()) >= 0 && next != '\n') {
+            if (statusLine.length() >= MAX_STATUS_LINE_LENGTH) {
+                throw new IOException("Status line too long");
+            }
+            statusLine.append((char) next);
+        }
+        String[] parts = statusLine.toString().trim().split(" ", 3);
+        if (parts.length < 2 || !parts[0].startsWith("HTTP/")) {
+            throw new IOException("Malformed status line: " + statusLine.toString().trim());
+        }
+        try {
+            return Integer.parseInt(parts[1]);
+        } catch (NumberFormatException e) {
+            throw new IOException("Malformed status line: " + statusLine.toString().trim());
+        }
+    }
+}
@@ -1,20 +1,61 @@
 package com.github.akopyanrob.service;
 
+import com.github.akopyanrob.dns.DnsCache;
+import com.github.akopyanrob.metrics.MetricsRegistry;
+import com.github.akopyanrob.metrics.Timer;
 import com.github.akopyanrob.result.PingResult;
 
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.net.UnknownHostException;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public abstract class ProcessPingService implements PingService {
 
+    private static final Timer PROCESS_SPAWN_TIMER = MetricsRegistry.getInstance()
+            .timer("probe_process_spawn_seconds", "Time to start a probe process");
+    // Kills processes that run past their deadline, shared by all process based services
+    private static final ScheduledExecutorService WATCHDOG = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "process-watchdog");
+        thread.setDaemon(true);
+        return thread;
+    });
+
     private final ProcessBuilder processBuilder;
+    private final long timeoutMillis;
+    private final DnsCache dnsCache;
 
     protected ProcessPingService(ProcessBuilder processBuilder) {
+        this(processBuilder, 0);
+    }
+
+    /**
+     * @param timeoutMillis the process is killed when it runs longer than this, 0 means no limit
+     */
+    protected ProcessPingService(ProcessBuilder processBuilder, long timeoutMillis) {
+        this(processBuilder, timeoutMillis, null);
+    }
+
+    /**
+     * @param dnsCache when not null the host is resolved before the process starts and the command gets the address,
+     *                 so the process does not do its own lookup
+     */
+    protected ProcessPingService(ProcessBuilder processBuilder, long timeoutMillis, DnsCache dnsCache) {
         this.processBuilder = Objects.requireNonNull(processBuilder, "processBuilder must not be null");
+        if (timeoutMillis < 0) {
+            throw new IllegalArgumentException("Timeout must be non-negative");
+        }
+        this.timeoutMillis = timeoutMillis;
+        this.dnsCache = dnsCache;
     }
 
     @Override
@@ -22,42 +63,98 @@ public abstract class ProcessPingService implements PingService {
         List<String> outputLines;
         long startTime = System.currentTimeMillis();
         try {
-            outputLines = executeCommand(getPingCommand(host));
+            String target = dnsCache != null ? dnsCache.resolve(host).getHostAddress() : host;
+            outputLines = executeCommand(getPingCommand(target));
+        } catch (UnknownHostException e) {
+            return handleError(host, startTime, "Unknown host " + e.getMessage());
         } catch (IOException | InterruptedException e) {
             return handleError(host, startTime, e.getMessage());
         }
 
-        boolean success = parsePingOutput(outputLines);
-        return createPingResult(success, host, startTime, outputLines);
+        return createPingResult(host, startTime, outputLines);
     }
 
     protected abstract String getPingCommand(String host);
 
-    protected abstract boolean parsePingOutput(List<String> outputLines);
-
-    protected abstract PingResult createPingResult(boolean success, String host, long startTime, List<String> outputLines);
+    /**
+     * Parses the output of a process that finished or was stopped by {@link #isFinalLine}.
+     */
+    protected abstract PingResult createPingResult(String host, long startTime, List<String> outputLines);
 
     protected abstract PingResult handleError(String host, long startTime, String errorMessage);
 
+    /**
+     * Returns true when the line is enough to decide the result, the process is then killed without reading the rest.
+     */
+    protected boolean isFinalLine(String line) {
+        return false;
+    }
+
+    /**
+     * Same as {@link #isFinalLine(String)} for decisions over several lines, the last of the lines read so far is the new one.
+     */
+    protected boolean isFinalLine(List<String> outputLines) {
+        return isFinalLine(outputLines.get(outputLines.size() - 1));
+    }
+
     private List<String> executeCommand(String command) throws IOException, InterruptedException {
         List<String> outputLines = new ArrayList<>();
-        processBuilder.command(command.split(" "));
-        processBuilder.redirectErrorStream(true);
+        Process process;
+        synchronized (processBuilder) {
+            processBuilder.command(command.split(" "));
+            processBuilder.redirectErrorStream(true);
+            long spawnStart = System.nanoTime();
+            process = processBuilder.start();
+            PROCESS_SPAWN_TIMER.recordSince(spawnStart);
+        }
 
-        Process process = processBuilder.start();
-        var reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
+        AtomicBoolean timedOut = new AtomicBoolean();
+        ScheduledFuture<?> watchdog = timeoutMillis > 0 ? WATCHDOG.schedule(() -> {
+            timedOut.set(true);
+            killProcessTree(process);
+        }, timeoutMillis, TimeUnit.MILLISECONDS) : null;
 
-        String line;
-        while ((line = reader.readLine()) != null) {
-            if (!line.isBlank()) {
-                outputLines.add(line.trim());
+        int exitCode = -1;
+        try (var reader = new BufferedReader(new InputStreamReader(process.getInputStream(), Charset.defaultCharset()))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                String trimmedLine = line.trim();
+                outputLines.add(trimmedLine);
+                if (isFinalLine(outputLines)) {
+                    process.destroy();
+                    return outputLines;
+                }
+            }
+            exitCode = process.waitFor();
+        } catch (IOException e) {
+            // Reading fails when the watchdog kills the process, reported as a timeout below
+            if (!timedOut.get()) {
+                throw e;
+            }
+        } finally {
+            if (watchdog != null) {
+                watchdog.cancel(false);
+            }
+            if (process.isAlive()) {
+                killProcessTree(process);
             }
         }
 
-        int exitCode = process.waitFor();
+        if (timedOut.get()) {
+            throw new IOException("Command timed out after " + timeoutMillis + " ms");
+        }
         if (exitCode != 0) {
             throw new IOException("Command execution failed with exit code: " + exitCode);
         }
         return outputLines;
     }
+
+    // Children (e.g. of a wrapper script) would keep the output pipe open after the process itself is killed
+    private static void killProcessTree(Process process) {
+        process.descendants().forEach(ProcessHandle::destroyForcibly);
+        process.destroyForcibly();
+    }
 }
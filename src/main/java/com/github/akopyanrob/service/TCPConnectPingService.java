@@ -0,0 +1,283 @@
+package com.github.akopyanrob.service;
+
+import com.github.akopyanrob.dns.DnsCache;
+import com.github.akopyanrob.result.PingResult;
+import com.github.akopyanrob.result.TCPConnectPingResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Comparator;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures only the TCP handshake to host:port, without any application protocol on top.
+ * All connects are driven by one selector thread, so thousands of them can be in flight at the same time.
+ * The connection is closed (with a reset) as soon as the handshake completes.
+ * A host can override the default port with a "host:port" entry.
+ * Names are resolved by the shared {@link DnsCache} when one is given, otherwise on a virtual thread per probe.
+ */
+public class TCPConnectPingService implements AsyncPingService, AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(TCPConnectPingService.class);
+
+    private final int defaultPort;
+    private final Config config;
+    private final InFlightLimiter inFlightLimiter;
+    private final DnsCache dnsCache;
+    private final Selector selector;
+    private final ConcurrentLinkedQueue<ConnectProbe> pendingProbes = new ConcurrentLinkedQueue<>();
+    private final PriorityQueue<ConnectProbe> deadlines = new PriorityQueue<>(Comparator.comparingLong(probe -> probe.deadline));
+    // Name resolution blocks, so it runs on virtual threads instead of the selector thread
+    private final ExecutorService resolverExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Thread selectorThread;
+
+    private volatile boolean running = true;
+
+    public TCPConnectPingService(int defaultPort, Config config, InFlightLimiter inFlightLimiter) throws IOException {
+        this(defaultPort, config, inFlightLimiter, null);
+    }
+
+    public TCPConnectPingService(int defaultPort, Config config, InFlightLimiter inFlightLimiter, DnsCache dnsCache) throws IOException {
+        if (defaultPort <= 0 || defaultPort > 65535) {
+            throw new IllegalArgumentException("Port must be between 1 and 65535");
+        }
+        this.defaultPort = defaultPort;
+        this.config = Objects.requireNonNull(config, "config must not be null");
+        this.inFlightLimiter = Objects.requireNonNull(inFlightLimiter, "inFlightLimiter must not be null");
+        this.dnsCache = dnsCache;
+        this.selector = Selector.open();
+        this.selectorThread = new Thread(this::run, "tcp-connect-selector");
+        this.selectorThread.setDaemon(true);
+        this.selectorThread.start();
+    }
+
+    @Override
+    public CompletableFuture<PingResult> pingAsync(String host) {
+        String hostName = parseHostName(host);
+        int port = parsePort(host);
+        if (port < 0) {
+            logger.error("Error during tcp connect ping of host " + host + ": invalid port");
+            return CompletableFuture.completedFuture(failure(host, port, System.currentTimeMillis()));
+        }
+        return inFlightLimiter.acquire(host)
+                .thenCompose(permit -> resolve(hostName, port))
+                .thenCompose(address -> {
+                    if (!running) {
+                        return CompletableFuture.<PingResult>completedFuture(failure(host, port, System.currentTimeMillis()));
+                    }
+                    if (address.isUnresolved()) {
+                        logger.error("Error during tcp connect ping of host " + host + ": unknown host");
+                        return CompletableFuture.<PingResult>completedFuture(failure(host, port, System.currentTimeMillis()));
+                    }
+                    ConnectProbe probe = new ConnectProbe(host, port, address);
+                    pendingProbes.add(probe);
+                    if (running) {
+                        selector.wakeup();
+                    } else {
+                        // The selector thread stopped after the check above and no longer drains the queue
+                        failPendingProbes();
+                    }
+                    return probe.future;
+                })
+                .exceptionally(throwable -> {
+                    Throwable cause = throwable.getCause() != null ? throwable.getCause() : throwable;
+                    logger.error("Error during tcp connect ping of host " + host + ": " + cause.getMessage());
+                    return failure(host, port, System.currentTimeMillis());
+                })
+                .whenComplete((result, throwable) -> inFlightLimiter.release(host));
+    }
+
+    private CompletableFuture<InetSocketAddress> resolve(String hostName, int port) {
+        if (dnsCache != null) {
+            return dnsCache.resolveAsync(hostName).thenApply(address -> new InetSocketAddress(address, port));
+        }
+        return CompletableFuture.supplyAsync(() -> new InetSocketAddress(hostName, port), resolverExecutor);
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        selector.wakeup();
+        resolverExecutor.shutdownNow();
+    }
+
+    private void run() {
+        try {
+            while (running) {
+                long waitMillis = nextDeadlineMillis();
+                if (waitMillis > 0) {
+                    selector.select(waitMillis);
+                } else {
+                    selector.selectNow();
+                }
+                for (SelectionKey key : selector.selectedKeys()) {
+                    finishConnect((ConnectProbe) key.attachment());
+                }
+                selector.selectedKeys().clear();
+                startPendingProbes();
+                expireProbes();
+            }
+        } catch (IOException | ClosedSelectorException e) {
+            logger.error("TCP connect selector failed, failing all TCP connect probes from now on: {}", e.getMessage(), e);
+        } finally {
+            running = false;
+            failAll();
+        }
+    }
+
+    private void startPendingProbes() {
+        ConnectProbe probe;
+        while ((probe = pendingProbes.poll()) != null) {
+            try {
+                probe.channel = SocketChannel.open();
+                probe.channel.configureBlocking(false);
+                probe.channel.setOption(StandardSocketOptions.SO_LINGER, 0);
+                probe.deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(config.timeout());
+                probe.startNanos = System.nanoTime();
+                if (probe.channel.connect(probe.address)) {
+                    complete(probe, true);
+                } else {
+                    probe.channel.register(selector, SelectionKey.OP_CONNECT, probe);
+                    deadlines.add(probe);
+                }
+            } catch (IOException e) {
+                logger.error("Error during tcp connect ping of host " + probe.host + ": " + e.getMessage());
+                complete(probe, false);
+            }
+        }
+    }
+
+    private void finishConnect(ConnectProbe probe) {
+        try {
+            complete(probe, probe.channel.finishConnect());
+        } catch (IOException e) {
+            logger.error("Error during tcp connect ping of host " + probe.host + ": " + e.getMessage());
+            complete(probe, false);
+        }
+    }
+
+    private void expireProbes() {
+        long now = System.nanoTime();
+        while (!deadlines.isEmpty() && (deadlines.peek().done || deadlines.peek().deadline <= now)) {
+            ConnectProbe probe = deadlines.poll();
+            if (!probe.done) {
+                logger.error("Error during tcp connect ping of host " + probe.host + ": connect timed out");
+                complete(probe, false);
+            }
+        }
+    }
+
+    private long nextDeadlineMillis() {
+        while (!deadlines.isEmpty() && deadlines.peek().done) {
+            deadlines.poll();
+        }
+        if (!pendingProbes.isEmpty()) {
+            return 0;
+        }
+        if (deadlines.isEmpty()) {
+            return Long.MAX_VALUE;
+        }
+        long remainingNanos = deadlines.peek().deadline - System.nanoTime();
+        return remainingNanos <= 0 ? 0 : Math.max(1, TimeUnit.NANOSECONDS.toMillis(remainingNanos));
+    }
+
+    private void complete(ConnectProbe probe, boolean connected) {
+        long connectTimeNanos = System.nanoTime() - probe.startNanos;
+        probe.done = true;
+        closeQuietly(probe.channel);
+        if (connected) {
+            logger.debug("Successful TCP connect ping result for host " + probe.host + ": " + connectTimeNanos + "ns");
+            probe.future.complete(new TCPConnectPingResult(true, probe.host, probe.timeStamp, probe.port, connectTimeNanos));
+        } else {
+            probe.future.complete(failure(probe.host, probe.port, probe.timeStamp));
+        }
+    }
+
+    private void failPendingProbes() {
+        ConnectProbe probe;
+        while ((probe = pendingProbes.poll()) != null) {
+            probe.future.complete(failure(probe.host, probe.port, probe.timeStamp));
+        }
+    }
+
+    private void failAll() {
+        failPendingProbes();
+        ConnectProbe probe;
+        while ((probe = deadlines.poll()) != null) {
+            if (!probe.done) {
+                complete(probe, false);
+            }
+        }
+        try {
+            selector.close();
+        } catch (IOException e) {
+            logger.debug("Failed to close selector: {}", e.getMessage());
+        }
+    }
+
+    private static TCPConnectPingResult failure(String host, int port, long timeStamp) {
+        return new TCPConnectPingResult(false, host, timeStamp, port, null);
+    }
+
+    private static void closeQuietly(SocketChannel channel) {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            logger.debug("Failed to close channel: {}", e.getMessage());
+        }
+    }
+
+    private static String parseHostName(String host) {
+        int separator = host.lastIndexOf(':');
+        return separator > 0 && host.indexOf(':') == separator ? host.substring(0, separator) : host;
+    }
+
+    /**
+     * -1 when the port of a "host:port" entry is not a valid port.
+     */
+    private int parsePort(String host) {
+        int separator = host.lastIndexOf(':');
+        if (separator > 0 && host.indexOf(':') == separator) {
+            try {
+                int port = Integer.parseInt(host.substring(separator + 1));
+                return port > 0 && port <= 65535 ? port : -1;
+            } catch (NumberFormatException e) {
+                return -1;
+            }
+        }
+        return defaultPort;
+    }
+
+    private static final class ConnectProbe {
+        private final String host;
+        private final int port;
+        private final InetSocketAddress address;
+        private final long timeStamp = System.currentTimeMillis();
+        private final CompletableFuture<PingResult> future = new CompletableFuture<>();
+        private SocketChannel channel;
+        private long startNanos;
+        private long deadline;
+        private boolean done;
+
+        private ConnectProbe(String host, int port, InetSocketAddress address) {
+            this.host = host;
+            this.port = port;
+            this.address = address;
+        }
+    }
+}
@@ -1,11 +1,13 @@
 package com.github.akopyanrob.service;
 
+import com.github.akopyanrob.dns.DnsCache;
 import com.github.akopyanrob.result.PingResult;
 import com.github.akopyanrob.result.TCPPingResult;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.net.ConnectException;
+import java.net.InetAddress;
 import java.net.SocketTimeoutException;
 import java.net.URI;
 import java.net.UnknownHostException;
@@ -13,31 +15,40 @@ import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.net.http.HttpTimeoutException;
-import java.time.Duration;
 import java.util.Objects;
+import java.util.concurrent.TimeUnit;
 
 public class TCPPingService implements PingService {
     private static final Logger logger = LoggerFactory.getLogger(TCPPingService.class);
 
     private final HttpClient httpClient;
     private final Config config;
+    private final DnsCache dnsCache;
 
     public TCPPingService(HttpClient httpClient, Config config) {
+        this(httpClient, config, null);
+    }
+
+    /**
+     * A non-null dnsCache resolves the host before the request, so the lookup is not part of the response time.
+     */
+    public TCPPingService(HttpClient httpClient, Config config, DnsCache dnsCache) {
         this.httpClient = Objects.requireNonNull(httpClient, "httpClient must not be null");
         this.config = Objects.requireNonNull(config, "config must not be null");
+        this.dnsCache = dnsCache;
     }
 
     @Override
     public PingResult ping(String host) {
         long startTime = System.currentTimeMillis();
+        long startNanos;
         int responseCode;
         try {
-            HttpRequest request = HttpRequest.newBuilder()
-                    .uri(URI.create("http://" + host))
-                    .HEAD()
-                    .timeout(Duration.ofMillis(config.timeout()))
-                    .build();
+            URI uri = HeadRequests.uri(host);
+            InetAddress address = dnsCache != null && uri.getHost() != null ? dnsCache.resolve(uri.getHost()) : null;
+            HttpRequest request = HeadRequests.build(uri, address, config.timeout());
 
+            startNanos = System.nanoTime();
             HttpResponse<Void> response = httpClient.send(request, HttpResponse.BodyHandlers.discarding());
             responseCode = response.statusCode();
             logger.debug("Successful TCP ping result for host " + host + ": " + response.statusCode());
@@ -48,9 +59,9 @@ public class TCPPingService implements PingService {
             logger.error("Unexpected exception: " + e.getMessage());
             return null;
         }
-        long endTime = System.currentTimeMillis();
+        long responseTimeNanos = System.nanoTime() - startNanos;
 
-        return new TCPPingResult(true, host, startTime, endTime - startTime, responseCode);
+        return new TCPPingResult(true, host, startTime, TimeUnit.NANOSECONDS.toMillis(responseTimeNanos), responseTimeNanos, responseCode);
     }
 }
 
@@ -1,5 +1,6 @@
 package com.github.akopyanrob.service;
 
+import com.github.akopyanrob.dns.DnsCache;
 import com.github.akopyanrob.result.PingResult;
 import com.github.akopyanrob.result.TraceRoutePingResult;
 import org.slf4j.Logger;
@@ -11,34 +12,76 @@ import java.util.List;
 public class TraceRoutePingService extends ProcessPingService {
     private static final Logger logger = LoggerFactory.getLogger(TraceRoutePingService.class);
 
+    // Unanswered hops in a row after which the rest of the path is not expected to answer either
+    private static final int MAX_SILENT_HOPS = 4;
+
+    private final String traceExecutable;
+
     public TraceRoutePingService(ProcessBuilder processBuilder) {
         super(processBuilder);
+        this.traceExecutable = null;
+    }
+
+    /**
+     * The process is killed when it has not finished within the configured timeout.
+     * A null traceExecutable uses the platform default (tracert or traceroute).
+     */
+    public TraceRoutePingService(ProcessBuilder processBuilder, Config config, String traceExecutable) {
+        this(processBuilder, config, traceExecutable, null);
+    }
+
+    /**
+     * Traces the address from the dnsCache instead of the host name when the cache is not null.
+     */
+    public TraceRoutePingService(ProcessBuilder processBuilder, Config config, String traceExecutable, DnsCache dnsCache) {
+        super(processBuilder, config.timeout(), dnsCache);
+        this.traceExecutable = traceExecutable;
     }
 
     @Override
     protected String getPingCommand(String host) {
         String os = System.getProperty("os.name").toLowerCase();
         if (os.contains("win")) {
-            return String.format("tracert %s", host);
+            return String.format("%s %s", traceExecutable != null ? traceExecutable : "tracert", host);
         } else {
-            return String.format("traceroute -I %s", host);
+            return String.format("%s -I %s", traceExecutable != null ? traceExecutable : "traceroute", host);
         }
     }
 
+    /**
+     * Routers that do not answer are common, so a single unanswered hop does not end the trace, the hops behind it are
+     * still needed for the path. Only after MAX_SILENT_HOPS unanswered hops in a row there is no need to wait for more.
+     */
     @Override
+    protected boolean isFinalLine(List<String> outputLines) {
+        if (outputLines.size() < MAX_SILENT_HOPS) {
+            return false;
+        }
+        for (int i = outputLines.size() - MAX_SILENT_HOPS; i < outputLines.size(); i++) {
+            if (!isFailedHop(outputLines.get(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     protected boolean parsePingOutput(List<String> outputLines) {
         for (String line : outputLines) {
-            if (line.contains("Request timed out.") || line.matches(".*\\* \\* \\*.*")) {
+            if (isFailedHop(line)) {
                 return false;
             }
         }
         return true;
     }
 
+    private static boolean isFailedHop(String line) {
+        return line.contains("Request timed out.") || line.contains("* * *");
+    }
+
     @Override
-    protected PingResult createPingResult(boolean success, String host, long startTime, List<String> outputLines) {
+    protected PingResult createPingResult(String host, long startTime, List<String> outputLines) {
         logger.debug("Trace ping result for host " + host + ":\n " + outputLines);
-        return new TraceRoutePingResult(success, host, startTime, outputLines);
+        return new TraceRoutePingResult(parsePingOutput(outputLines), host, startTime, outputLines);
     }
 
     @Override
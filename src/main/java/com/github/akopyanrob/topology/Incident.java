@@ -0,0 +1,21 @@
+package com.github.akopyanrob.topology;
+
+import java.util.List;
+
+/**
+ * Failures of several hosts traced to one hop they all share.
+ *
+ * @param hop         address of the deepest hop on the paths of all failed hosts, "*" for a hop that never answered
+ * @param path        addresses from the first hop to the shared one
+ * @param failedHosts hosts behind the hop that failed, every host behind it
+ */
+public record Incident(String hop, List<String> path, List<String> failedHosts) {
+    public Incident {
+        path = List.copyOf(path);
+        failedHosts = List.copyOf(failedHosts);
+    }
+
+    public int depth() {
+        return path.size();
+    }
+}
@@ -0,0 +1,265 @@
+package com.github.akopyanrob.topology;
+
+import com.github.akopyanrob.result.TraceHop;
+import com.github.akopyanrob.result.TraceRoutePingResult;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * The paths of all hosts merged into one tree rooted at this host: hosts behind the same routers share the nodes of the
+ * common prefix, so a router is stored once per path prefix instead of once per host, and its address string once overall.
+ * A trace replaces the path of its host and nodes no host goes through anymore are removed.
+ * <p>
+ * {@link #correlate} turns the failures of a window into {@link Incident}s: when every host behind a hop is failing and
+ * there are at least minIncidentHosts of them, they are one incident named after the deepest hop they all share.
+ * Hosts that are still failing since an earlier window count too, so an outage spread over several windows correlates.
+ * Updates and correlation are synchronized, traces arrive seconds apart and a correlation walks a few paths.
+ */
+public class TopologyGraph {
+    private static final String UNANSWERED = "*";
+
+    private final int minIncidentHosts;
+    private final HopNode root = new HopNode(null, null);
+    // In trace order, so the hosts of an incident are listed in a stable order
+    private final Map<String, HopNode> hostNodes = new LinkedHashMap<>();
+    private final Map<String, String> addresses = new HashMap<>();
+    private int nodeCount;
+
+    /**
+     * @param minIncidentHosts failed hosts behind a hop needed for an incident, fewer are reported one by one
+     */
+    public TopologyGraph(int minIncidentHosts) {
+        if (minIncidentHosts < 2) {
+            throw new IllegalArgumentException("An incident needs at least 2 hosts");
+        }
+        this.minIncidentHosts = minIncidentHosts;
+    }
+
+    /**
+     * Replaces the path of the host with the hops of the trace. A failed trace only shows how far the path is reachable
+     * now, so it is used only while the host has no path yet, without its unanswered last hops.
+     */
+    public synchronized void update(String host, TraceRoutePingResult trace) {
+        List<TraceHop> hops = trace.getHops();
+        int length = hops.size();
+        if (!trace.isSuccessful()) {
+            if (hostNodes.containsKey(host)) {
+                return;
+            }
+            while (length > 0 && !hops.get(length - 1).isAnswered()) {
+                length--;
+            }
+        }
+        if (length == 0) {
+            return;
+        }
+        HopNode node = root;
+        for (int i = 0; i < length; i++) {
+            TraceHop hop = hops.get(i);
+            node = node.child(intern(hop.isAnswered() ? hop.address() : UNANSWERED));
+        }
+        HopNode previous = hostNodes.put(host, node);
+        if (previous == node) {
+            return;
+        }
+        node.addHost();
+        if (previous != null) {
+            previous.removeHost();
+        }
+    }
+
+    public synchronized void remove(String host) {
+        HopNode node = hostNodes.remove(host);
+        if (node != null) {
+            node.removeHost();
+        }
+    }
+
+    /**
+     * Groups the hosts that failed within a window into incidents, the hosts that are in none are returned as uncorrelated.
+     */
+    public Correlation correlate(Collection<String> failedHosts) {
+        return correlate(failedHosts, host -> false);
+    }
+
+    /**
+     * Same as {@link #correlate(Collection)}, but the hosts the predicate reports as still failing (e.g. from their
+     * latest results) count as failed too. They are added to the incidents of the failed hosts, not reported again.
+     * Walks the paths of all failing hosts.
+     */
+    public synchronized Correlation correlate(Collection<String> failedHosts, Predicate<String> stillFailing) {
+        Set<String> hosts = new LinkedHashSet<>(failedHosts);
+        Map<HopNode, Integer> failedBehind = new IdentityHashMap<>();
+        // The failing hosts that were not reported in this window, by the node their path ends at
+        Map<HopNode, List<String>> otherFailingHosts = new IdentityHashMap<>();
+        List<String> uncorrelated = new ArrayList<>();
+        for (String host : hosts) {
+            if (!hostNodes.containsKey(host)) {
+                uncorrelated.add(host);
+            }
+        }
+        hostNodes.forEach((host, node) -> {
+            boolean reported = hosts.contains(host);
+            if (!reported && !stillFailing.test(host)) {
+                return;
+            }
+            if (!reported) {
+                otherFailingHosts.computeIfAbsent(node, key -> new ArrayList<>()).add(host);
+            }
+            for (HopNode hop = node; hop != root; hop = hop.parent) {
+                failedBehind.merge(hop, 1, Integer::sum);
+            }
+        });
+
+        // Hops with every host behind them failed, only the first such hop from the root counts
+        Map<HopNode, List<String>> incidentHosts = new IdentityHashMap<>();
+        for (String host : hosts) {
+            HopNode node = hostNodes.get(host);
+            if (node == null) {
+                continue;
+            }
+            HopNode failedHop = null;
+            for (HopNode hop : node.pathFromRoot()) {
+                int failed = failedBehind.get(hop);
+                if (failed == hop.hostsBehind && failed >= minIncidentHosts) {
+                    failedHop = hop;
+                    break;
+                }
+            }
+            if (failedHop != null) {
+                incidentHosts.computeIfAbsent(failedHop, key -> new ArrayList<>()).add(host);
+            } else {
+                uncorrelated.add(host);
+            }
+        }
+
+        List<Incident> incidents = new ArrayList<>(incidentHosts.size());
+        incidentHosts.forEach((hop, hopHosts) -> {
+            hop.collectHosts(otherFailingHosts, hopHosts);
+            // The hosts all share the hops below the failed one down to where their paths split
+            HopNode shared = hop;
+            while (shared.hostsEnding == 0 && shared.childCount == 1) {
+                shared = shared.children[0];
+            }
+            incidents.add(new Incident(shared.address, shared.pathFromRoot().stream().map(node -> node.address).toList(), hopHosts));
+        });
+        return new Correlation(incidents, uncorrelated);
+    }
+
+    public synchronized int getHostCount() {
+        return hostNodes.size();
+    }
+
+    /**
+     * Hop nodes in the tree, shared prefixes counted once.
+     */
+    public synchronized int getNodeCount() {
+        return nodeCount;
+    }
+
+    private String intern(String address) {
+        String interned = addresses.putIfAbsent(address, address);
+        return interned != null ? interned : address;
+    }
+
+    /**
+     * @param uncorrelatedHosts failed hosts without a known path or not in an incident, reported one by one
+     */
+    public record Correlation(List<Incident> incidents, List<String> uncorrelatedHosts) {
+    }
+
+    /**
+     * Children are a small array, routers rarely have more than a few next hops.
+     */
+    private final class HopNode {
+        private final HopNode parent;
+        private final String address;
+        private HopNode[] children = new HopNode[0];
+        private int childCount;
+        // Hosts whose path ends here and hosts whose path goes through or ends here
+        private int hostsEnding;
+        private int hostsBehind;
+
+        private HopNode(HopNode parent, String address) {
+            this.parent = parent;
+            this.address = address;
+        }
+
+        private HopNode child(String address) {
+            for (int i = 0; i < childCount; i++) {
+                if (children[i].address.equals(address)) {
+                    return children[i];
+                }
+            }
+            if (childCount == children.length) {
+                children = Arrays.copyOf(children, Math.max(2, childCount * 2));
+            }
+            HopNode child = new HopNode(this, address);
+            children[childCount++] = child;
+            nodeCount++;
+            return child;
+        }
+
+        private void addHost() {
+            hostsEnding++;
+            for (HopNode node = this; node != null; node = node.parent) {
+                node.hostsBehind++;
+            }
+        }
+
+        /**
+         * Removes the nodes that no host goes through anymore.
+         */
+        private void removeHost() {
+            hostsEnding--;
+            for (HopNode node = this; node != null; node = node.parent) {
+                node.hostsBehind--;
+                if (node.hostsBehind == 0 && node.parent != null) {
+                    node.parent.removeChild(node);
+                }
+            }
+        }
+
+        private void removeChild(HopNode child) {
+            for (int i = 0; i < childCount; i++) {
+                if (children[i] == child) {
+                    children[i] = children[--childCount];
+                    children[childCount] = null;
+                    nodeCount--;
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Adds the hosts of the map whose path ends at this node or below it.
+         */
+        private void collectHosts(Map<HopNode, List<String>> hostsByNode, List<String> into) {
+            List<String> ending = hostsByNode.get(this);
+            if (ending != null) {
+                into.addAll(ending);
+            }
+            for (int i = 0; i < childCount; i++) {
+                children[i].collectHosts(hostsByNode, into);
+            }
+        }
+
+        private List<HopNode> pathFromRoot() {
+            List<HopNode> path = new ArrayList<>();
+            for (HopNode node = this; node != root; node = node.parent) {
+                path.add(node);
+            }
+            return path.reversed();
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package com.github.akopyanrob.trace;
+
+import com.github.akopyanrob.metrics.Counter;
+import com.github.akopyanrob.metrics.MetricsRegistry;
+import com.github.akopyanrob.result.PingResult;
+import com.github.akopyanrob.result.TraceRoutePingResult;
+import com.github.akopyanrob.scheduler.PhaseSpreader;
+import com.github.akopyanrob.service.Config;
+import com.github.akopyanrob.service.PingService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Runs traceroute rarely instead of on a fixed short interval: the path of a healthy host is discovered once per TTL
+ * and the trace is cached, a probe failure triggers a fresh trace right away so the failure report has the current path.
+ * A host never has two traces running, a trigger while one runs waits for it. Every finished trace is handed to the
+ * result consumer (e.g. {@code PingScheduler::publishResult}) before the callers waiting for it are woken up.
+ */
+public class TraceCache implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(TraceCache.class);
+
+    private static final Counter DISCOVERY_TRACES = traceCounter("discovery");
+    private static final Counter TRIGGERED_TRACES = traceCounter("failure");
+    private static final Counter SHARED_TRIGGERS = MetricsRegistry.getInstance()
+            .counter("trace_triggers_shared_total", "Failure triggers answered by a running or recent trace instead of a new one");
+
+    private final PingService traceService;
+    private final TraceCacheConfig config;
+    private final BiConsumer<String, PingResult> resultConsumer;
+    private final ScheduledExecutorService timer;
+    private final Executor executor;
+    private final LongSupplier clock;
+    private final Map<String, HostTrace> traces = new ConcurrentHashMap<>();
+
+    public TraceCache(PingService traceService, TraceCacheConfig config, BiConsumer<String, PingResult> resultConsumer) {
+        this(traceService, config, resultConsumer,
+                Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("trace-discovery").daemon().factory()),
+                Executors.newFixedThreadPool(config.maxConcurrentTraces(), Thread.ofPlatform().name("trace-", 0).daemon().factory()),
+                System::currentTimeMillis);
+    }
+
+    TraceCache(PingService traceService, TraceCacheConfig config, BiConsumer<String, PingResult> resultConsumer,
+               ScheduledExecutorService timer, Executor executor, LongSupplier clock) {
+        this.traceService = Objects.requireNonNull(traceService, "traceService must not be null");
+        this.config = Objects.requireNonNull(config, "config must not be null");
+        this.resultConsumer = Objects.requireNonNull(resultConsumer, "resultConsumer must not be null");
+        this.timer = Objects.requireNonNull(timer, "timer must not be null");
+        this.executor = Objects.requireNonNull(executor, "executor must not be null");
+        this.clock = Objects.requireNonNull(clock, "clock must not be null");
+    }
+
+    /**
+     * Discovers the path of every host once per TTL. The first discoveries are spread over {@code config.pingDelay()} ms.
+     */
+    public void start(Config config) {
+        for (String host : config.hosts()) {
+            scheduleDiscovery(host, PhaseSpreader.offset(host, TraceCache.class.getSimpleName(), config.pingDelay()));
+        }
+    }
+
+    /**
+     * The last trace of the host, null when there is none or it is older than the TTL.
+     */
+    public TraceRoutePingResult getCachedTrace(String host) {
+        HostTrace trace = traces.get(host);
+        if (trace == null) {
+            return null;
+        }
+        synchronized (trace) {
+            return trace.result instanceof TraceRoutePingResult result && clock.getAsLong() - trace.completedAt < config.ttlMillis()
+                    ? result : null;
+        }
+    }
+
+    /**
+     * Starts a trace of the failed host unless one is running or the last one is younger than the trigger interval.
+     * Completes with the trace result, null when the trace could not run.
+     */
+    public CompletableFuture<PingResult> trigger(String host) {
+        HostTrace trace = traces.computeIfAbsent(host, HostTrace::new);
+        synchronized (trace) {
+            if (trace.running != null) {
+                SHARED_TRIGGERS.increment();
+                return trace.running;
+            }
+            if (trace.result != null && clock.getAsLong() - trace.completedAt < config.minTriggerIntervalMillis()) {
+                SHARED_TRIGGERS.increment();
+                return CompletableFuture.completedFuture(trace.result);
+            }
+            TRIGGERED_TRACES.increment();
+            return startTrace(trace);
+        }
+    }
+
+    /**
+     * Triggers a trace and completes with it, or with null when it does not finish within the report wait.
+     * Never blocks, the caller sends the report once the returned future completes.
+     */
+    public CompletableFuture<PingResult> triggerForReport(String host) {
+        // A copy, timing out must not complete the trace shared with the other waiters
+        return trigger(host).copy()
+                .completeOnTimeout(null, config.reportWaitMillis(), TimeUnit.MILLISECONDS)
+                .whenComplete((result, throwable) -> {
+                    if (result == null) {
+                        logger.debug("Trace of host {} did not finish within {} ms, reporting without it", host, config.reportWaitMillis());
+                    }
+                });
+    }
+
+    @Override
+    public void close() {
+        timer.shutdownNow();
+        if (executor instanceof ExecutorService executorService) {
+            executorService.shutdownNow();
+        }
+    }
+
+    /**
+     * Traces the host when its last trace expired and returns the delay until the next check.
+     */
+    long discover(String host) {
+        HostTrace trace = traces.computeIfAbsent(host, HostTrace::new);
+        synchronized (trace) {
+            long age = trace.result != null ? clock.getAsLong() - trace.completedAt : Long.MAX_VALUE;
+            if (age < config.ttlMillis()) {
+                // Refreshed by a triggered trace in the meantime
+                return config.ttlMillis() - age;
+            }
+            if (trace.running == null) {
+                DISCOVERY_TRACES.increment();
+                startTrace(trace);
+            }
+            return config.ttlMillis();
+        }
+    }
+
+    private void scheduleDiscovery(String host, long delayMillis) {
+        try {
+            timer.schedule(() -> {
+                long nextDelay = config.ttlMillis();
+                try {
+                    nextDelay = discover(host);
+                } catch (Exception e) {
+                    logger.error("Error occurred during trace discovery for host {}: {}", host, e.getMessage(), e);
+                }
+                scheduleDiscovery(host, nextDelay);
+            }, delayMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            logger.debug("Trace cache is closed, stopped tracing host {}", host);
+        }
+    }
+
+    // Called with the lock of the trace held
+    private CompletableFuture<PingResult> startTrace(HostTrace trace) {
+        CompletableFuture<PingResult> running = new CompletableFuture<>();
+        trace.running = running;
+        try {
+            executor.execute(() -> runTrace(trace, running));
+        } catch (RejectedExecutionException e) {
+            trace.running = null;
+            running.complete(null);
+        }
+        return running;
+    }
+
+    private void runTrace(HostTrace trace, CompletableFuture<PingResult> running) {
+        PingResult result = null;
+        try {
+            result = traceService.ping(trace.host);
+        } catch (Exception e) {
+            logger.error("Error occurred during trace of host {}: {}", trace.host, e.getMessage(), e);
+        }
+        synchronized (trace) {
+            // A failed trace keeps the previous one and its age, so the next failure can trigger a new one
+            if (result != null) {
+                trace.result = result;
+                trace.completedAt = clock.getAsLong();
+            }
+            trace.running = null;
+        }
+        if (result != null) {
+            try {
+                resultConsumer.accept(trace.host, result);
+            } catch (Exception e) {
+                logger.error("Error occurred while publishing the trace of host {}: {}", trace.host, e.getMessage(), e);
+            }
+        }
+        running.complete(result);
+    }
+
+    private static Counter traceCounter(String reason) {
+        return MetricsRegistry.getInstance().counter("trace_runs_total", "Traces run by the trace cache by reason", "reason", reason);
+    }
+
+    private static final class HostTrace {
+        private final String host;
+        // Guarded by the trace
+        private PingResult result;
+        private long completedAt;
+        private CompletableFuture<PingResult> running;
+
+        private HostTrace(String host) {
+            this.host = host;
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.github.akopyanrob.trace;
+
+/**
+ * @param ttlMillis                a trace is reused for this long, after it the path of the host is discovered again
+ * @param minTriggerIntervalMillis a failure does not trigger a new trace when the last one is younger than this
+ * @param reportWaitMillis         how long a failure report waits for the trace it triggered
+ * @param maxConcurrentTraces      traces running at the same time, the others wait in a queue
+ */
+public record TraceCacheConfig(long ttlMillis, long minTriggerIntervalMillis, long reportWaitMillis, int maxConcurrentTraces) {
+    public TraceCacheConfig {
+        if (ttlMillis <= 0 || minTriggerIntervalMillis < 0 || reportWaitMillis < 0) {
+            throw new IllegalArgumentException("TTL must be positive, trigger interval and report wait non-negative");
+        }
+        if (maxConcurrentTraces <= 0) {
+            throw new IllegalArgumentException("Max concurrent traces must be positive");
+        }
+    }
+}
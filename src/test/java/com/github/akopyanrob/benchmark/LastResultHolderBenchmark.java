@@ -0,0 +1,126 @@
+package com.github.akopyanrob.benchmark;
+
+import com.github.akopyanrob.result.LastResultHolder;
+import com.github.akopyanrob.result.PingResult;
+import com.github.akopyanrob.result.ProbeType;
+import com.github.akopyanrob.result.TCPPingResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Result updates as done by the scheduler for every probe (last result, latency history and histograms),
+ * with 1, 4 and as many writer threads as there are CPUs, and with a reader next to three writers.
+ * The scheduler stores results by host id, the byName variants include the host registry lookup.
+ * Run with: mvn -Pjmh test-compile exec:exec -Djmh.args="LastResultHolder"
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--enable-preview")
+public class LastResultHolderBenchmark {
+    private static final int HOST_COUNT = 256;
+
+    @State(Scope.Benchmark)
+    public static class Results {
+        final LastResultHolder lastResultHolder = LastResultHolder.getInstance();
+        final String[] hosts = new String[HOST_COUNT];
+        final int[] hostIds = new int[HOST_COUNT];
+        final PingResult[] results = new PingResult[HOST_COUNT];
+
+        @Setup
+        public void setUp() {
+            for (int i = 0; i < HOST_COUNT; i++) {
+                hosts[i] = "host-" + i + ".example.com";
+                results[i] = new TCPPingResult(true, hosts[i], System.currentTimeMillis(), 10L + i % 40, (10L + i % 40) * 1_000_000, 200);
+                hostIds[i] = lastResultHolder.getHostRegistry().register(hosts[i]);
+                lastResultHolder.addLastResult(hostIds[i], ProbeType.TCP, results[i]);
+            }
+        }
+    }
+
+    /**
+     * Every thread walks the hosts from its own position, so the writers mostly hit different hosts like the probes do.
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+        private static int nextStart;
+        int index;
+
+        @Setup
+        public void setUp() {
+            synchronized (Cursor.class) {
+                index = nextStart;
+                nextStart += 31;
+            }
+        }
+
+        int next() {
+            index = (index + 1) % HOST_COUNT;
+            return index;
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void addSingleWriter(Results results, Cursor cursor) {
+        add(results, cursor);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void addFourWriters(Results results, Cursor cursor) {
+        add(results, cursor);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public void addMaxWriters(Results results, Cursor cursor) {
+        add(results, cursor);
+    }
+
+    @Benchmark
+    @Group("readWrite")
+    @GroupThreads(3)
+    public void writer(Results results, Cursor cursor) {
+        add(results, cursor);
+    }
+
+    @Benchmark
+    @Group("readWrite")
+    @GroupThreads(1)
+    public PingResult reader(Results results, Cursor cursor) {
+        return results.lastResultHolder.getSnapshot(results.hostIds[cursor.next()]).tcp();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void addByNameSingleWriter(Results results, Cursor cursor) {
+        int i = cursor.next();
+        results.lastResultHolder.addHostLastTCPPingResult(results.hosts[i], results.results[i]);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public PingResult readByName(Results results, Cursor cursor) {
+        return results.lastResultHolder.getSnapshot(results.hosts[cursor.next()]).tcp();
+    }
+
+    private static void add(Results results, Cursor cursor) {
+        int i = cursor.next();
+        results.lastResultHolder.addLastResult(results.hostIds[i], ProbeType.TCP, results.results[i]);
+    }
+}
@@ -0,0 +1,81 @@
+package com.github.akopyanrob.benchmark;
+
+import com.github.akopyanrob.result.ICMPOutputParser;
+import com.github.akopyanrob.result.ICMPStatistics;
+import com.github.akopyanrob.result.TraceHop;
+import com.github.akopyanrob.result.TraceOutputParser;
+import com.github.akopyanrob.service.TraceRoutePingService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing of ping and traceroute outputs, the work done for every process based probe once its output is read.
+ * Run with: mvn -Pjmh test-compile exec:exec -Djmh.args="OutputParsing"
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--enable-preview")
+public class OutputParsingBenchmark {
+    private final ParsingTraceRoutePingService traceRoutePingService = new ParsingTraceRoutePingService();
+
+    @Benchmark
+    public ICMPStatistics icmpLinuxSuccess() {
+        return ICMPOutputParser.parse(SampleOutputs.LINUX_PING_SUCCESS);
+    }
+
+    @Benchmark
+    public ICMPStatistics icmpLinuxPartialLoss() {
+        return ICMPOutputParser.parse(SampleOutputs.LINUX_PING_PARTIAL_LOSS);
+    }
+
+    @Benchmark
+    public ICMPStatistics icmpLinuxTotalLoss() {
+        return ICMPOutputParser.parse(SampleOutputs.LINUX_PING_TOTAL_LOSS);
+    }
+
+    @Benchmark
+    public ICMPStatistics icmpWindowsSuccess() {
+        return ICMPOutputParser.parse(SampleOutputs.WINDOWS_PING_SUCCESS);
+    }
+
+    @Benchmark
+    public boolean traceComplete() {
+        return traceRoutePingService.parse(SampleOutputs.TRACEROUTE_COMPLETE);
+    }
+
+    @Benchmark
+    public boolean traceTimeout() {
+        return traceRoutePingService.parse(SampleOutputs.TRACEROUTE_TIMEOUT);
+    }
+
+    @Benchmark
+    public List<TraceHop> traceHops() {
+        return TraceOutputParser.parse(SampleOutputs.TRACEROUTE_COMPLETE);
+    }
+
+    /**
+     * parsePingOutput is protected, the subclass only exposes it to the benchmark.
+     */
+    private static final class ParsingTraceRoutePingService extends TraceRoutePingService {
+        ParsingTraceRoutePingService() {
+            super(new ProcessBuilder());
+        }
+
+        boolean parse(List<String> outputLines) {
+            return parsePingOutput(outputLines);
+        }
+    }
+}
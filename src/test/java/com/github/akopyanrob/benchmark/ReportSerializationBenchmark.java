@@ -0,0 +1,107 @@
+package com.github.akopyanrob.benchmark;
+
+import com.github.akopyanrob.report.ReportBuilder;
+import com.github.akopyanrob.result.HostSnapshot;
+import com.github.akopyanrob.result.ICMPPingResult;
+import com.github.akopyanrob.result.JsonWriter;
+import com.github.akopyanrob.result.LastResultHolder;
+import com.github.akopyanrob.result.PingResult;
+import com.github.akopyanrob.result.ProcessPingResult;
+import com.github.akopyanrob.result.TCPPingResult;
+import com.github.akopyanrob.result.TraceRoutePingResult;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the previous report serialization (results serialized to strings, nested as string values, pretty printed,
+ * then encoded for the body publisher) with the streaming writer reused between reports.
+ * buildReport is the String variant used when a report is spooled to the outbox.
+ * Run with: mvn -Pjmh test-compile exec:exec -Djmh.args="ReportSerialization -prof gc"
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--enable-preview")
+public class ReportSerializationBenchmark {
+    private static final String HOST = "benchmark.example.com";
+
+    private LastResultHolder lastResultHolder;
+    private ReportBuilder reportBuilder;
+    private JsonWriter writer;
+
+    @Setup
+    public void setUp() {
+        lastResultHolder = LastResultHolder.getInstance();
+        List<String> pingLines = new ArrayList<>();
+        pingLines.add("PING " + HOST + " (93.184.216.34) 56(84) bytes of data.");
+        for (int i = 1; i <= 5; i++) {
+            pingLines.add("64 bytes from 93.184.216.34: icmp_seq=" + i + " ttl=56 time=11." + i + " ms");
+        }
+        pingLines.add("5 packets transmitted, 5 received, 0% packet loss, time 4006ms");
+        pingLines.add("rtt min/avg/max/mdev = 11.1/11.3/11.5/0.1 ms");
+        List<String> traceLines = new ArrayList<>();
+        for (int i = 1; i <= 12; i++) {
+            traceLines.add(" " + i + "  10.0.0." + i + " (10.0.0." + i + ")  " + i + ".123 ms  " + i + ".456 ms  " + i + ".789 ms");
+        }
+        lastResultHolder.addHostLastICMPPingResult(HOST, new ICMPPingResult(true, HOST, System.currentTimeMillis(), pingLines));
+        lastResultHolder.addHostLastTCPPingResult(HOST, new TCPPingResult(true, HOST, System.currentTimeMillis(), 42L, 200));
+        lastResultHolder.addHostLastTracePingResult(HOST, new TraceRoutePingResult(true, HOST, System.currentTimeMillis(), traceLines));
+        reportBuilder = new ReportBuilder(lastResultHolder);
+        writer = reportBuilder.newWriter();
+    }
+
+    @Benchmark
+    public byte[] previousPath() {
+        LinkedHashMap<String, String> reportMap = new LinkedHashMap<>();
+        reportMap.put("host", HOST);
+        HostSnapshot snapshot = lastResultHolder.getSnapshot(HOST);
+        reportMap.put("icmp_ping", previousToString(snapshot.icmp()));
+        reportMap.put("tcp_ping", previousToString(snapshot.tcp()));
+        reportMap.put("trace", previousToString(snapshot.trace()));
+        return new JSONObject(reportMap).toString(4).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public String buildReport() {
+        return reportBuilder.buildReport(HOST);
+    }
+
+    @Benchmark
+    public int streamingWriter() {
+        writer.reset();
+        reportBuilder.writeReport(HOST, writer);
+        return writer.size();
+    }
+
+    private static String previousToString(PingResult result) {
+        JSONObject jsonObject = new JSONObject();
+        jsonObject.put("isSuccessful", result.isSuccessful());
+        jsonObject.put("host", result.getHost());
+        jsonObject.put("timeStamp", result.getTimeStamp());
+        if (result instanceof ProcessPingResult processPingResult) {
+            jsonObject.put("resultLines", new JSONArray(processPingResult.getResultLines()));
+        } else if (result instanceof TCPPingResult tcpPingResult) {
+            jsonObject.put("responseTimeMillis", tcpPingResult.getResponseTimeMillis());
+            jsonObject.put("responseCode", tcpPingResult.getResponseCode());
+        }
+        return jsonObject.toString();
+    }
+}
@@ -0,0 +1,67 @@
+package com.github.akopyanrob.benchmark;
+
+import com.github.akopyanrob.result.ICMPPingResult;
+import com.github.akopyanrob.result.JsonWriter;
+import com.github.akopyanrob.result.PingResult;
+import com.github.akopyanrob.result.TCPPingResult;
+import com.github.akopyanrob.result.TraceRoutePingResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serialization of single results: toString() as used for logging and the standalone result JSON,
+ * and writeJson into a reused writer as used by the reports.
+ * Run with: mvn -Pjmh test-compile exec:exec -Djmh.args="ResultSerialization -prof gc"
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--enable-preview")
+public class ResultSerializationBenchmark {
+    private static final String HOST = "example.com";
+
+    private final PingResult icmpResult = new ICMPPingResult(true, HOST, 1_700_000_000_000L, SampleOutputs.LINUX_PING_SUCCESS);
+    private final PingResult traceResult = new TraceRoutePingResult(true, HOST, 1_700_000_000_000L, SampleOutputs.TRACEROUTE_COMPLETE);
+    private final PingResult tcpResult = new TCPPingResult(true, HOST, 1_700_000_000_000L, 42L, 42_123_456L, 200);
+    private final JsonWriter writer = new JsonWriter(false);
+
+    @Benchmark
+    public String icmpToString() {
+        return icmpResult.toString();
+    }
+
+    @Benchmark
+    public String traceToString() {
+        return traceResult.toString();
+    }
+
+    @Benchmark
+    public String tcpToString() {
+        return tcpResult.toString();
+    }
+
+    @Benchmark
+    public int icmpWriteJson() {
+        writer.reset();
+        icmpResult.writeJson(writer);
+        return writer.size();
+    }
+
+    @Benchmark
+    public int tcpWriteJson() {
+        writer.reset();
+        tcpResult.writeJson(writer);
+        return writer.size();
+    }
+}
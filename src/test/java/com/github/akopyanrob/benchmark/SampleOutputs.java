@@ -0,0 +1,74 @@
+package com.github.akopyanrob.benchmark;
+
+import java.util.List;
+
+/**
+ * Ping and traceroute outputs as printed by iputils ping, Windows ping and traceroute -I, used as benchmark inputs.
+ */
+final class SampleOutputs {
+
+    static final List<String> LINUX_PING_SUCCESS = List.of(
+            "PING example.com (93.184.215.14) 56(84) bytes of data.",
+            "64 bytes from 93.184.215.14 (93.184.215.14): icmp_seq=1 ttl=55 time=11.6 ms",
+            "64 bytes from 93.184.215.14 (93.184.215.14): icmp_seq=2 ttl=55 time=11.4 ms",
+            "64 bytes from 93.184.215.14 (93.184.215.14): icmp_seq=3 ttl=55 time=12.0 ms",
+            "64 bytes from 93.184.215.14 (93.184.215.14): icmp_seq=4 ttl=55 time=11.5 ms",
+            "64 bytes from 93.184.215.14 (93.184.215.14): icmp_seq=5 ttl=55 time=11.7 ms",
+            "",
+            "--- example.com ping statistics ---",
+            "5 packets transmitted, 5 received, 0% packet loss, time 4006ms",
+            "rtt min/avg/max/mdev = 11.412/11.646/12.012/0.205 ms");
+
+    static final List<String> LINUX_PING_PARTIAL_LOSS = List.of(
+            "PING example.com (93.184.215.14) 56(84) bytes of data.",
+            "64 bytes from 93.184.215.14 (93.184.215.14): icmp_seq=1 ttl=55 time=11.6 ms",
+            "64 bytes from 93.184.215.14 (93.184.215.14): icmp_seq=3 ttl=55 time=48.2 ms",
+            "64 bytes from 93.184.215.14 (93.184.215.14): icmp_seq=5 ttl=55 time=11.7 ms",
+            "",
+            "--- example.com ping statistics ---",
+            "5 packets transmitted, 3 received, 40% packet loss, time 4010ms",
+            "rtt min/avg/max/mdev = 11.600/23.833/48.200/17.230 ms");
+
+    static final List<String> LINUX_PING_TOTAL_LOSS = List.of(
+            "PING 10.255.255.1 (10.255.255.1) 56(84) bytes of data.",
+            "",
+            "--- 10.255.255.1 ping statistics ---",
+            "5 packets transmitted, 0 received, 100% packet loss, time 4098ms");
+
+    static final List<String> WINDOWS_PING_SUCCESS = List.of(
+            "",
+            "Pinging example.com [93.184.215.14] with 32 bytes of data:",
+            "Reply from 93.184.215.14: bytes=32 time=12ms TTL=55",
+            "Reply from 93.184.215.14: bytes=32 time=11ms TTL=55",
+            "Reply from 93.184.215.14: bytes=32 time=11ms TTL=55",
+            "Reply from 93.184.215.14: bytes=32 time=13ms TTL=55",
+            "Reply from 93.184.215.14: bytes=32 time=11ms TTL=55",
+            "",
+            "Ping statistics for 93.184.215.14:",
+            "    Packets: Sent = 5, Received = 5, Lost = 0 (0% loss),",
+            "Approximate round trip times in milli-seconds:",
+            "    Minimum = 11ms, Maximum = 13ms, Average = 11ms");
+
+    static final List<String> TRACEROUTE_COMPLETE = List.of(
+            "traceroute to example.com (93.184.215.14), 30 hops max, 60 byte packets",
+            " 1  _gateway (192.168.1.1)  0.412 ms  0.388 ms  0.377 ms",
+            " 2  10.20.0.1 (10.20.0.1)  6.118 ms  6.104 ms  6.097 ms",
+            " 3  100.64.12.9 (100.64.12.9)  7.245 ms  7.233 ms  7.228 ms",
+            " 4  ae1-10.edge1.fra1.example.net (80.81.192.10)  9.812 ms  9.801 ms  9.794 ms",
+            " 5  ae5.cr2.fra2.example.net (80.81.194.2)  10.301 ms  10.288 ms  10.276 ms",
+            " 6  be3187.ccr41.ams03.example.net (130.117.0.1)  15.842 ms  15.829 ms  15.817 ms",
+            " 7  be2183.ccr42.lon13.example.net (154.54.58.70)  21.377 ms  21.362 ms  21.350 ms",
+            " 8  be12497.ccr41.par01.example.net (154.54.56.129)  27.904 ms  27.889 ms  27.877 ms",
+            " 9  ae-66.core1.par.example.com (152.195.96.129)  28.512 ms  28.498 ms  28.485 ms",
+            "10  93.184.215.14 (93.184.215.14)  28.633 ms  28.619 ms  28.607 ms");
+
+    static final List<String> TRACEROUTE_TIMEOUT = List.of(
+            "traceroute to 10.255.255.1 (10.255.255.1), 30 hops max, 60 byte packets",
+            " 1  _gateway (192.168.1.1)  0.412 ms  0.388 ms  0.377 ms",
+            " 2  10.20.0.1 (10.20.0.1)  6.118 ms  6.104 ms  6.097 ms",
+            " 3  100.64.12.9 (100.64.12.9)  7.245 ms  7.233 ms  7.228 ms",
+            " 4  * * *");
+
+    private SampleOutputs() {
+    }
+}
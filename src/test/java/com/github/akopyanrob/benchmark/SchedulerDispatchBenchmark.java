@@ -0,0 +1,108 @@
+package com.github.akopyanrob.benchmark;
+
+import com.github.akopyanrob.report.ReportBuilder;
+import com.github.akopyanrob.report.Reporter;
+import com.github.akopyanrob.result.LastResultHolder;
+import com.github.akopyanrob.result.PingResult;
+import com.github.akopyanrob.result.TCPPingResult;
+import com.github.akopyanrob.scheduler.PingScheduler;
+import com.github.akopyanrob.scheduler.ProbeDispatcher;
+import com.github.akopyanrob.scheduler.ProbeTimer;
+import com.github.akopyanrob.service.Config;
+import com.github.akopyanrob.service.PingService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.net.http.HttpClient;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Overhead of the scheduler around a probe: timer, dispatch on a virtual thread, result handling and rescheduling.
+ * The probes do no work and the timer fires immediately, so every probe is handed to the benchmark thread
+ * and the next one of the host is only scheduled after that. The score is probes per millisecond.
+ * Run with: mvn -Pjmh test-compile exec:exec -Djmh.args="SchedulerDispatch"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--enable-preview")
+public class SchedulerDispatchBenchmark {
+
+    @Param({"1", "64"})
+    public int hostCount;
+
+    private final SynchronousQueue<PingResult> completedProbes = new SynchronousQueue<>();
+    private volatile boolean running;
+    private ProbeDispatcher probeDispatcher;
+
+    @Setup
+    public void setUp() {
+        running = true;
+        probeDispatcher = ProbeDispatcher.virtualThreads(hostCount);
+        ProbeTimer immediateTimer = new ProbeTimer() {
+            @Override
+            public void schedule(Runnable task, long delayMillis) {
+                if (!running) {
+                    throw new RejectedExecutionException("Benchmark is stopping");
+                }
+                task.run();
+            }
+
+            @Override
+            public void shutdown() {
+            }
+        };
+        LastResultHolder lastResultHolder = LastResultHolder.getInstance();
+        Reporter reporter = new Reporter(new ReportBuilder(lastResultHolder), HttpClient.newHttpClient(), "http://localhost/report");
+        PingScheduler pingScheduler = new PingScheduler(immediateTimer, lastResultHolder, reporter, probeDispatcher);
+
+        String[] hosts = new String[hostCount];
+        for (int i = 0; i < hostCount; i++) {
+            hosts[i] = "host-" + i + ".example.com";
+        }
+        pingScheduler.schedulePing(new NoOpPingService(), new Config(hosts, 0, 0));
+    }
+
+    @TearDown
+    public void tearDown() throws InterruptedException {
+        running = false;
+        // Releases the probes still waiting for the hand-off, they are not rescheduled anymore
+        while (completedProbes.poll(100, TimeUnit.MILLISECONDS) != null) {
+        }
+        probeDispatcher.shutdown();
+    }
+
+    @Benchmark
+    public PingResult probe() throws InterruptedException {
+        return completedProbes.take();
+    }
+
+    private final class NoOpPingService implements PingService {
+        @Override
+        public PingResult ping(String host) {
+            PingResult result = new TCPPingResult(true, host, System.currentTimeMillis(), 0L, 0L, 200);
+            if (running) {
+                try {
+                    completedProbes.put(result);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.github.akopyanrob.dns;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DnsCacheTest {
+    private static final String HOST = "example.com";
+
+    private final AtomicLong nanoClock = new AtomicLong();
+    private final AtomicInteger lookups = new AtomicInteger();
+    private final Queue<Runnable> pendingLookups = new ArrayDeque<>();
+    private volatile InetAddress[] answer;
+    private DnsCache dnsCache;
+
+    @BeforeEach
+    void setUp() throws UnknownHostException {
+        answer = new InetAddress[]{InetAddress.getByName("10.0.0.1")};
+        NameResolver resolver = hostName -> {
+            lookups.incrementAndGet();
+            if (answer == null) {
+                throw new UnknownHostException(hostName);
+            }
+            return answer;
+        };
+        dnsCache = new DnsCache(resolver, new DnsCacheConfig(1000, 100), pendingLookups::add, nanoClock::get);
+    }
+
+    @Test
+    void resolve_withinTtl_looksUpOnce() throws Exception {
+        CompletableFuture<InetAddress> first = dnsCache.resolveAsync(HOST);
+        runLookups();
+        advanceMillis(999);
+
+        assertEquals("10.0.0.1", first.join().getHostAddress());
+        assertEquals("10.0.0.1", dnsCache.resolveAsync(HOST).join().getHostAddress());
+        assertEquals(1, lookups.get());
+        assertEquals(1, dnsCache.size());
+    }
+
+    @Test
+    void resolveAsync_concurrentCalls_shareOneLookup() {
+        CompletableFuture<InetAddress> first = dnsCache.resolveAsync(HOST);
+        CompletableFuture<InetAddress> second = dnsCache.resolveAsync(HOST);
+        assertFalse(first.isDone());
+
+        runLookups();
+
+        assertEquals(first.join(), second.join());
+        assertEquals(1, lookups.get());
+    }
+
+    @Test
+    void resolve_afterTtl_returnsCachedAddressWhileRefreshing() throws Exception {
+        dnsCache.resolveAsync(HOST);
+        runLookups();
+        advanceMillis(1000);
+        answer = new InetAddress[]{InetAddress.getByName("10.0.0.2")};
+
+        CompletableFuture<InetAddress> stale = dnsCache.resolveAsync(HOST);
+
+        assertTrue(stale.isDone());
+        assertEquals("10.0.0.1", stale.join().getHostAddress());
+        assertEquals(1, pendingLookups.size());
+        runLookups();
+        assertEquals("10.0.0.2", dnsCache.resolveAsync(HOST).join().getHostAddress());
+        assertEquals(2, lookups.get());
+    }
+
+    @Test
+    void resolve_unknownHost_isCachedForNegativeTtl() {
+        answer = null;
+        CompletableFuture<InetAddress> failed = dnsCache.resolveAsync(HOST);
+        runLookups();
+        assertTrue(failed.isCompletedExceptionally());
+
+        advanceMillis(99);
+        assertTrue(dnsCache.resolveAsync(HOST).isCompletedExceptionally());
+        assertEquals(1, lookups.get());
+
+        advanceMillis(1);
+        CompletableFuture<InetAddress> retried = dnsCache.resolveAsync(HOST);
+        assertFalse(retried.isDone());
+        runLookups();
+        assertTrue(retried.isCompletedExceptionally());
+        assertEquals(2, lookups.get());
+    }
+
+    @Test
+    void resolve_unknownHost_throwsUnknownHostException() {
+        DnsCache directCache = new DnsCache(hostName -> {
+            throw new UnknownHostException(hostName);
+        }, new DnsCacheConfig(1000, 100), Runnable::run, nanoClock::get);
+
+        assertThrows(UnknownHostException.class, () -> directCache.resolve(HOST));
+    }
+
+    @Test
+    void resolve_addressLiteral_skipsLookup() throws Exception {
+        assertEquals("192.168.1.1", dnsCache.resolve("192.168.1.1").getHostAddress());
+        assertEquals(InetAddress.getByName("::1"), dnsCache.resolve("::1"));
+        assertEquals(0, lookups.get());
+        assertEquals(0, dnsCache.size());
+    }
+
+    @Test
+    void resolveAllAsync_returnsAllAddresses() throws Exception {
+        answer = new InetAddress[]{InetAddress.getByName("::2"), InetAddress.getByName("10.0.0.3")};
+
+        CompletableFuture<List<InetAddress>> addresses = dnsCache.resolveAllAsync(HOST);
+        runLookups();
+
+        assertEquals(2, addresses.join().size());
+        assertSame(answer[1], addresses.join().get(1));
+    }
+
+    private void advanceMillis(long millis) {
+        nanoClock.addAndGet(TimeUnit.MILLISECONDS.toNanos(millis));
+    }
+
+    private void runLookups() {
+        Runnable lookup;
+        while ((lookup = pendingLookups.poll()) != null) {
+            lookup.run();
+        }
+    }
+}
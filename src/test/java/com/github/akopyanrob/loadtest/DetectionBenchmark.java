@@ -0,0 +1,223 @@
+package com.github.akopyanrob.loadtest;
+
+import ch.qos.logback.classic.Level;
+import com.github.akopyanrob.report.BatchingReporter;
+import com.github.akopyanrob.report.ReportBuilder;
+import com.github.akopyanrob.report.ReportPipelineConfig;
+import com.github.akopyanrob.report.Reporter;
+import com.github.akopyanrob.result.LastResultHolder;
+import com.github.akopyanrob.result.ProbeType;
+import com.github.akopyanrob.service.Config;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.http.HttpClient;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to detect: how long it takes from a host going down until a report about it reaches the report endpoint.
+ * For every scenario the probes run against healthy stand-ins first, then every host is taken down once at a random
+ * instant within a probe period, and the time until the collector receives a report naming the host is recorded.
+ * Hosts without a report within detect.timeout.ms count as not detected.
+ * Run with: mvn -Pload-test test-compile exec:exec -Dload.main=com.github.akopyanrob.loadtest.DetectionBenchmark -Dload.args="samples=50"
+ */
+public final class DetectionBenchmark {
+    private static final String ROW_FORMAT = "%-14s %-6s %9s %9s %9s %9s %9s %9s%n";
+
+    private final DetectionConfig config;
+    private final PrintStream console;
+
+    private DetectionBenchmark(DetectionConfig config, PrintStream console) {
+        this.config = config;
+        this.console = console;
+    }
+
+    public static void main(String[] args) throws Exception {
+        DetectionConfig config = DetectionConfig.parse(args);
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME)).setLevel(Level.toLevel(config.logLevel()));
+        // The reporter prints every report, only the benchmark output goes to the console
+        PrintStream console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        new DetectionBenchmark(config, console).run();
+        System.exit(0);
+    }
+
+    private void run() throws Exception {
+        console.printf("%d samples, delay %d ms, timeout %d ms, ping %d ms, %s scheduler, %s reporting%n",
+                config.samples(), config.pingDelay(), config.timeout(), config.pingMillis(), config.schedulerType(),
+                config.batching() ? "batched (" + config.coalesceWindowMillis() + " ms window)" : "synchronous");
+        console.printf(ROW_FORMAT, "scenario", "probe", "detected", "p50 ms", "p90 ms", "p99 ms", "max ms", "mean ms");
+        try (ReportCollector collector = new ReportCollector(config.reportLatencyMillis())) {
+            for (String scenarioName : config.scenarios()) {
+                Scenario scenario = Scenario.of(scenarioName);
+                List<Sample> samples = runScenario(scenario, collector);
+                printSummary(scenario, samples);
+                if (config.outputFile() != null) {
+                    writeSamples(scenario, samples);
+                }
+            }
+        }
+    }
+
+    private List<Sample> runScenario(Scenario scenario, ReportCollector collector) throws Exception {
+        try (FakeTargets targets = new FakeTargets(config.samples(), config.targetLatencyMillis(), 0);
+             StubExecutables stubs = new StubExecutables(config.pingMillis(), config.traceMillis(), 0)) {
+            List<String> hosts = targets.getHosts();
+            Map<String, Long> injectedNanos = new ConcurrentHashMap<>();
+            Map<String, Long> detectedNanos = new ConcurrentHashMap<>();
+            CountDownLatch allDetected = new CountDownLatch(hosts.size());
+            collector.setListener((host, receivedNanos) -> {
+                if (injectedNanos.containsKey(host) && detectedNanos.putIfAbsent(host, receivedNanos) == null) {
+                    allDetected.countDown();
+                }
+            });
+
+            Reporter reporter = createReporter(collector);
+            ProbeStack probeStack = new ProbeStack(config.schedulerType(), config.maxInFlight(), reporter);
+            ScheduledExecutorService injector = Executors.newSingleThreadScheduledExecutor();
+            try {
+                probeStack.start(new Config(hosts.toArray(String[]::new), config.pingDelay(), config.timeout()), stubs);
+                // Every host completes a healthy round first
+                Thread.sleep(config.pingDelay() + config.pingMillis() + config.targetLatencyMillis());
+
+                // Random instants over a whole probe period, so the outage hits every phase of the probe cycle
+                long period = config.pingDelay() + config.pingMillis();
+                for (String host : hosts) {
+                    injector.schedule(() -> {
+                        injectedNanos.put(host, System.nanoTime());
+                        scenario.inject(host, targets, stubs);
+                        return null;
+                    }, ThreadLocalRandom.current().nextLong(period), TimeUnit.MILLISECONDS);
+                }
+                allDetected.await(period + config.detectTimeoutMillis(), TimeUnit.MILLISECONDS);
+            } finally {
+                collector.setListener(null);
+                injector.shutdownNow();
+                probeStack.close();
+                if (reporter instanceof BatchingReporter batchingReporter) {
+                    batchingReporter.close();
+                }
+            }
+
+            List<Sample> samples = new ArrayList<>();
+            for (String host : hosts) {
+                Long injected = injectedNanos.get(host);
+                Long detected = detectedNanos.get(host);
+                long detectionNanos = injected != null && detected != null ? detected - injected : -1;
+                samples.add(new Sample(host, detectionNanos <= TimeUnit.MILLISECONDS.toNanos(config.detectTimeoutMillis()) ? detectionNanos : -1));
+            }
+            // Lets the killed probe processes and open requests wind down before the next scenario
+            Thread.sleep(Math.min(config.timeout(), 2000));
+            return samples;
+        }
+    }
+
+    private Reporter createReporter(ReportCollector collector) {
+        ReportBuilder reportBuilder = new ReportBuilder(LastResultHolder.getInstance());
+        if (!config.batching()) {
+            return new Reporter(reportBuilder, HttpClient.newHttpClient(), collector.getUrl());
+        }
+        ReportPipelineConfig pipelineConfig = new ReportPipelineConfig(10000, config.coalesceWindowMillis(), 100, 4);
+        return new BatchingReporter(reportBuilder, HttpClient.newHttpClient(), collector.getUrl(), pipelineConfig, null);
+    }
+
+    private void printSummary(Scenario scenario, List<Sample> samples) {
+        long[] millis = samples.stream()
+                .filter(sample -> sample.detectionNanos() >= 0)
+                .mapToLong(sample -> TimeUnit.NANOSECONDS.toMillis(sample.detectionNanos()))
+                .sorted()
+                .toArray();
+        String detected = millis.length + "/" + samples.size();
+        if (millis.length == 0) {
+            console.printf(ROW_FORMAT, scenario.name, scenario.probeType.name().toLowerCase(), detected, "-", "-", "-", "-", "-");
+            return;
+        }
+        console.printf(ROW_FORMAT, scenario.name, scenario.probeType.name().toLowerCase(), detected,
+                percentile(millis, 50), percentile(millis, 90), percentile(millis, 99), millis[millis.length - 1],
+                Arrays.stream(millis).sum() / millis.length);
+    }
+
+    private static long percentile(long[] sorted, double percentile) {
+        int rank = (int) Math.ceil(percentile / 100 * sorted.length);
+        return sorted[Math.max(rank, 1) - 1];
+    }
+
+    /**
+     * One line per sample, so runs with different settings can be compared later. Undetected samples have no value.
+     */
+    private void writeSamples(Scenario scenario, List<Sample> samples) throws IOException {
+        Path output = Path.of(config.outputFile());
+        List<String> lines = new ArrayList<>();
+        if (!Files.exists(output)) {
+            lines.add("scenario,probe,scheduler,batching,delay_ms,timeout_ms,ping_ms,host,detection_ms");
+        }
+        for (Sample sample : samples) {
+            lines.add(String.join(",", scenario.name, scenario.probeType.name().toLowerCase(), config.schedulerType(),
+                    String.valueOf(config.batching()), String.valueOf(config.pingDelay()), String.valueOf(config.timeout()),
+                    String.valueOf(config.pingMillis()), sample.host(),
+                    sample.detectionNanos() < 0 ? "" : String.format("%.3f", sample.detectionNanos() / 1e6)));
+        }
+        Files.write(output, lines, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    private record Sample(String host, long detectionNanos) {
+    }
+
+    /**
+     * The outages, each one noticed by a single probe type.
+     */
+    private enum Scenario {
+        TCP_REFUSED("tcp-refused", ProbeType.TCP) {
+            @Override
+            void inject(String host, FakeTargets targets, StubExecutables stubs) {
+                targets.refuse(host);
+            }
+        },
+        TCP_BLACKHOLE("tcp-blackhole", ProbeType.TCP) {
+            @Override
+            void inject(String host, FakeTargets targets, StubExecutables stubs) {
+                targets.blackhole(host);
+            }
+        },
+        ICMP_LOSS("icmp-loss", ProbeType.ICMP) {
+            @Override
+            void inject(String host, FakeTargets targets, StubExecutables stubs) throws IOException {
+                stubs.markDown(host);
+            }
+        };
+
+        private final String name;
+        private final ProbeType probeType;
+
+        Scenario(String name, ProbeType probeType) {
+            this.name = name;
+            this.probeType = probeType;
+        }
+
+        abstract void inject(String host, FakeTargets targets, StubExecutables stubs) throws IOException;
+
+        static Scenario of(String name) {
+            for (Scenario scenario : values()) {
+                if (scenario.name.equals(name)) {
+                    return scenario;
+                }
+            }
+            throw new IllegalArgumentException("Unknown scenario: " + name);
+        }
+    }
+}
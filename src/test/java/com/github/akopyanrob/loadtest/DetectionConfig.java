@@ -0,0 +1,47 @@
+package com.github.akopyanrob.loadtest;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Settings of the detection benchmark, given as key=value arguments.
+ * A null outputFile only prints the summary, otherwise every sample is appended to it as CSV.
+ */
+record DetectionConfig(int samples, List<String> scenarios, int pingDelay, int timeout, long targetLatencyMillis,
+                       long pingMillis, long traceMillis, long reportLatencyMillis, int maxInFlight, String schedulerType,
+                       boolean batching, long coalesceWindowMillis, long detectTimeoutMillis, String outputFile, String logLevel) {
+
+    static DetectionConfig parse(String[] args) {
+        Map<String, String> values = LoadTestConfig.parseArguments(args);
+        int pingDelay = Integer.parseInt(values.getOrDefault("delay.ms", "5000"));
+        int timeout = Integer.parseInt(values.getOrDefault("timeout.ms", "5000"));
+        long pingMillis = Long.parseLong(values.getOrDefault("ping.ms", "4000"));
+        // Long enough for a probe that just started before the outage, the next one and the report
+        long defaultDetectTimeout = 3L * (pingDelay + timeout + pingMillis);
+        return new DetectionConfig(
+                Integer.parseInt(values.getOrDefault("samples", "50")),
+                Arrays.stream(values.getOrDefault("scenarios", "tcp-refused,tcp-blackhole,icmp-loss").split(","))
+                        .map(String::trim)
+                        .toList(),
+                pingDelay,
+                timeout,
+                Long.parseLong(values.getOrDefault("target.latency.ms", "20")),
+                pingMillis,
+                Long.parseLong(values.getOrDefault("trace.ms", "500")),
+                Long.parseLong(values.getOrDefault("report.latency.ms", "10")),
+                Integer.parseInt(values.getOrDefault("max.in.flight", "1024")),
+                values.getOrDefault("scheduler", "wheel"),
+                Boolean.parseBoolean(values.getOrDefault("report.batching", "false")),
+                Long.parseLong(values.getOrDefault("report.coalesce.window.ms", "1000")),
+                Long.parseLong(values.getOrDefault("detect.timeout.ms", String.valueOf(defaultDetectTimeout))),
+                values.get("out"),
+                values.getOrDefault("log.level", "OFF"));
+    }
+
+    DetectionConfig {
+        if (samples <= 0 || scenarios.isEmpty() || pingDelay <= 0 || detectTimeoutMillis <= 0 || maxInFlight <= 0) {
+            throw new IllegalArgumentException("Samples, scenarios, delay, detect timeout and max in-flight must be positive");
+        }
+    }
+}
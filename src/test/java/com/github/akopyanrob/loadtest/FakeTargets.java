@@ -0,0 +1,275 @@
+package com.github.akopyanrob.loadtest;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * HTTP targets listening on many loopback ports, all served by one selector thread so that thousands of them
+ * do not add thousands of threads to the measured process.
+ * Every request is answered with an empty 200 after the configured latency, failing requests are never answered
+ * so the probe runs into its timeout like with an unresponsive host.
+ * Single targets can be taken down by closing their listener (connections are refused) or by blackholing them
+ * (connections are accepted but nothing is answered).
+ */
+final class FakeTargets implements AutoCloseable {
+    private static final byte[] RESPONSE = "HTTP/1.1 200 OK\r\nContent-Length: 0\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+
+    private final Selector selector;
+    private final List<String> hosts = new ArrayList<>();
+    private final Map<String, Integer> targetIndexes = new HashMap<>();
+    private final ServerSocketChannel[] listeners;
+    private final AtomicIntegerArray blackholed;
+    // Listener changes run on the selector thread
+    private final ConcurrentLinkedQueue<Runnable> commands = new ConcurrentLinkedQueue<>();
+    private final PriorityQueue<PendingResponse> pendingResponses = new PriorityQueue<>();
+    private final long latencyNanos;
+    private final double failureRate;
+    private final Thread thread;
+    private final LongAdder requests = new LongAdder();
+    private volatile boolean running = true;
+
+    FakeTargets(int count, long latencyMillis, double failureRate) throws IOException {
+        this.selector = Selector.open();
+        this.latencyNanos = latencyMillis * 1_000_000;
+        this.failureRate = failureRate;
+        this.listeners = new ServerSocketChannel[count];
+        this.blackholed = new AtomicIntegerArray(count);
+        InetAddress loopback = InetAddress.getLoopbackAddress();
+        for (int i = 0; i < count; i++) {
+            listen(i, new InetSocketAddress(loopback, 0));
+            int port = ((InetSocketAddress) listeners[i].getLocalAddress()).getPort();
+            String host = loopback.getHostAddress() + ":" + port;
+            hosts.add(host);
+            targetIndexes.put(host, i);
+        }
+        this.thread = new Thread(this::run, "fake-targets");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * The targets as host:port, usable as hosts of the TCP ping.
+     */
+    List<String> getHosts() {
+        return hosts;
+    }
+
+    long getRequests() {
+        return requests.sum();
+    }
+
+    /**
+     * Closes the listener and the open connections of the target, new connections are refused.
+     */
+    void refuse(String host) {
+        int target = targetIndex(host);
+        runOnSelector(() -> {
+            if (listeners[target] != null) {
+                close(listeners[target].keyFor(selector));
+                listeners[target] = null;
+            }
+            for (SelectionKey key : selector.keys()) {
+                if (key.attachment() instanceof Connection connection && connection.target == target) {
+                    close(key);
+                }
+            }
+        });
+    }
+
+    /**
+     * Keeps accepting connections and reading requests of the target, but never answers them.
+     */
+    void blackhole(String host) {
+        blackholed.set(targetIndex(host), 1);
+    }
+
+    private int targetIndex(String host) {
+        Integer target = targetIndexes.get(host);
+        if (target == null) {
+            throw new IllegalArgumentException("Unknown target: " + host);
+        }
+        return target;
+    }
+
+    private void runOnSelector(Runnable command) {
+        commands.add(command);
+        selector.wakeup();
+    }
+
+    private void listen(int target, InetSocketAddress address) throws IOException {
+        ServerSocketChannel serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(address, 1024);
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT, target);
+        listeners[target] = serverChannel;
+    }
+
+    private void run() {
+        ByteBuffer readBuffer = ByteBuffer.allocate(4096);
+        while (running) {
+            try {
+                PendingResponse next = pendingResponses.peek();
+                long waitMillis = next == null ? 0 : Math.max(1, (next.dueNanos - System.nanoTime()) / 1_000_000);
+                selector.select(waitMillis);
+                Runnable command;
+                while ((command = commands.poll()) != null) {
+                    command.run();
+                }
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept((ServerSocketChannel) key.channel(), (Integer) key.attachment());
+                    } else if (key.isReadable()) {
+                        read(key, readBuffer);
+                    } else if (key.isWritable()) {
+                        write(key);
+                    }
+                }
+                sendDueResponses();
+            } catch (IOException e) {
+                if (running) {
+                    System.err.println("Fake targets failed: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void accept(ServerSocketChannel serverChannel, int target) throws IOException {
+        SocketChannel channel;
+        while ((channel = serverChannel.accept()) != null) {
+            channel.configureBlocking(false);
+            channel.register(selector, SelectionKey.OP_READ, new Connection(target));
+        }
+    }
+
+    /**
+     * Requests are HEAD requests without a body, so every blank line ends one request.
+     */
+    private void read(SelectionKey key, ByteBuffer readBuffer) {
+        Connection connection = (Connection) key.attachment();
+        SocketChannel channel = (SocketChannel) key.channel();
+        readBuffer.clear();
+        int read;
+        try {
+            read = channel.read(readBuffer);
+        } catch (IOException e) {
+            read = -1;
+        }
+        if (read < 0) {
+            close(key);
+            return;
+        }
+        for (int i = 0; i < read; i++) {
+            connection.matched = readBuffer.get(i) == "\r\n\r\n".charAt(connection.matched) ? connection.matched + 1
+                    : readBuffer.get(i) == '\r' ? 1 : 0;
+            if (connection.matched == 4) {
+                connection.matched = 0;
+                requests.increment();
+                if (blackholed.get(connection.target) == 0 && ThreadLocalRandom.current().nextDouble() >= failureRate) {
+                    pendingResponses.add(new PendingResponse(System.nanoTime() + latencyNanos, key));
+                }
+            }
+        }
+    }
+
+    private void sendDueResponses() {
+        long now = System.nanoTime();
+        while (!pendingResponses.isEmpty() && pendingResponses.peek().dueNanos <= now) {
+            SelectionKey key = pendingResponses.poll().key;
+            if (!key.isValid()) {
+                continue;
+            }
+            Connection connection = (Connection) key.attachment();
+            if (blackholed.get(connection.target) != 0) {
+                continue;
+            }
+            connection.output.add(ByteBuffer.wrap(RESPONSE));
+            write(key);
+        }
+    }
+
+    private void write(SelectionKey key) {
+        Connection connection = (Connection) key.attachment();
+        SocketChannel channel = (SocketChannel) key.channel();
+        try {
+            while (!connection.output.isEmpty()) {
+                ByteBuffer buffer = connection.output.peek();
+                channel.write(buffer);
+                if (buffer.hasRemaining()) {
+                    key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                    return;
+                }
+                connection.output.poll();
+            }
+            key.interestOps(SelectionKey.OP_READ);
+        } catch (IOException e) {
+            close(key);
+        }
+    }
+
+    private static void close(SelectionKey key) {
+        if (key == null) {
+            return;
+        }
+        key.cancel();
+        try {
+            key.channel().close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        selector.wakeup();
+        try {
+            thread.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (SelectionKey key : selector.keys()) {
+            key.channel().close();
+        }
+        selector.close();
+    }
+
+    private static final class Connection {
+        private final int target;
+        private final ArrayDeque<ByteBuffer> output = new ArrayDeque<>();
+        private int matched;
+
+        private Connection(int target) {
+            this.target = target;
+        }
+    }
+
+    private record PendingResponse(long dueNanos, SelectionKey key) implements Comparable<PendingResponse> {
+        @Override
+        public int compareTo(PendingResponse other) {
+            return Long.compare(dueNanos, other.dueNanos);
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.github.akopyanrob.loadtest;
+
+import ch.qos.logback.classic.Level;
+import com.github.akopyanrob.metrics.Counter;
+import com.github.akopyanrob.metrics.MetricsRegistry;
+import com.github.akopyanrob.report.ReportBuilder;
+import com.github.akopyanrob.report.Reporter;
+import com.github.akopyanrob.result.LastResultHolder;
+import com.github.akopyanrob.result.LatencyHistogram;
+import com.github.akopyanrob.result.ProbeType;
+import com.github.akopyanrob.scheduler.ProbeDispatcher;
+import com.github.akopyanrob.scheduler.SchedulingLagStats;
+import com.github.akopyanrob.service.Config;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.net.http.HttpClient;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs the scheduler, TCP, ICMP and trace probes and the reporter as wired by Main against local stand-ins:
+ * fake HTTP targets on loopback ports, stub ping and traceroute scripts and a report collector.
+ * Every host count is run for the configured duration and the harness stops at the first one whose p99 scheduling lag
+ * is above max.drift of the ping delay.
+ * Run with: mvn -Pload-test test-compile exec:exec -Dload.args="hosts=1000,2000 duration.s=30"
+ */
+public final class LoadHarness {
+    private static final String ROW_FORMAT = "%6s %10s %10s %9s %9s %9s %7s %8s %9s %9s %8s %8s %8s%n";
+
+    private final LoadTestConfig config;
+    private final PrintStream console;
+    private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+    private LoadHarness(LoadTestConfig config, PrintStream console) {
+        this.config = config;
+        this.console = console;
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadTestConfig config = LoadTestConfig.parse(args);
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME)).setLevel(Level.toLevel(config.logLevel()));
+        // The reporter prints every report, only the harness output goes to the console
+        PrintStream console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        new LoadHarness(config, console).run();
+        System.exit(0);
+    }
+
+    private void run() throws Exception {
+        try (FakeTargets targets = new FakeTargets(config.targets(), config.targetLatencyMillis(), config.failureRate());
+             StubExecutables stubs = new StubExecutables(config.pingMillis(), config.traceMillis(), config.failureRate());
+             ReportCollector collector = new ReportCollector(config.reportLatencyMillis())) {
+            console.printf("%d targets, delay %d ms, %s scheduler, %d max in-flight, failure rate %.3f, %d s per step%n",
+                    config.targets(), config.pingDelay(), config.schedulerType(), config.maxInFlight(), config.failureRate(),
+                    config.durationMillis() / 1000);
+            console.printf(ROW_FORMAT, "hosts", "probes/s", "nominal/s", "lag p50", "lag p99", "lag max", "drift",
+                    "reports", "rep p50", "rep p99", "in-fl", "heap MB", "threads");
+            for (int hostCount : config.hostCounts()) {
+                double drift = runStep(hostCount, targets.getHosts(), stubs, collector);
+                if (drift > config.maxDrift()) {
+                    console.printf("Scheduling drift %.1f%% is above %.1f%% at %d hosts%n", drift * 100, config.maxDrift() * 100, hostCount);
+                    return;
+                }
+            }
+            console.printf("Scheduling drift stayed below %.1f%% for all host counts%n", config.maxDrift() * 100);
+        }
+    }
+
+    /**
+     * Returns the p99 scheduling lag as a fraction of the ping delay.
+     */
+    private double runStep(int hostCount, List<String> targetHosts, StubExecutables stubs, ReportCollector collector) throws InterruptedException {
+        String[] hosts = new String[hostCount];
+        for (int i = 0; i < hostCount; i++) {
+            hosts[i] = targetHosts.get(i % targetHosts.size());
+        }
+        Config probeConfig = new Config(hosts, config.pingDelay(), config.timeout());
+
+        TimedReporter reporter = new TimedReporter(new ReportBuilder(LastResultHolder.getInstance()), HttpClient.newHttpClient(), collector.getUrl());
+        ProbeStack probeStack = new ProbeStack(config.schedulerType(), config.maxInFlight(), reporter);
+        ProbeDispatcher probeDispatcher = probeStack.getProbeDispatcher();
+
+        long resultsBefore = countResults();
+        long reportsBefore = collector.getReports();
+        AtomicLong maxHeap = new AtomicLong();
+        AtomicInteger maxThreads = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor();
+        sampler.scheduleAtFixedRate(() -> {
+            maxHeap.accumulateAndGet(memory.getHeapMemoryUsage().getUsed(), Math::max);
+            maxThreads.accumulateAndGet(threads.getThreadCount(), Math::max);
+            maxInFlight.accumulateAndGet(probeDispatcher.getInFlight(), Math::max);
+        }, 0, 1, TimeUnit.SECONDS);
+
+        long start = System.nanoTime();
+        probeStack.start(probeConfig, stubs);
+        Thread.sleep(config.durationMillis());
+        long elapsedNanos = System.nanoTime() - start;
+
+        probeStack.close();
+        sampler.shutdownNow();
+
+        double seconds = elapsedNanos / 1e9;
+        SchedulingLagStats lag = probeStack.getPingScheduler().getSchedulingLag();
+        double drift = lag.getLagPercentileMillis(99) / config.pingDelay();
+        console.printf(ROW_FORMAT, hostCount,
+                String.format("%.1f", (countResults() - resultsBefore) / seconds),
+                String.format("%.1f", hostCount * 3 * 1000.0 / config.pingDelay()),
+                String.format("%.1f", lag.getLagPercentileMillis(50)),
+                String.format("%.1f", lag.getLagPercentileMillis(99)),
+                String.format("%.1f", lag.getMaxLagMillis()),
+                String.format("%.1f%%", drift * 100),
+                collector.getReports() - reportsBefore,
+                String.format("%.1f", reporter.latency.getValueAtPercentile(50) / 1000.0),
+                String.format("%.1f", reporter.latency.getValueAtPercentile(99) / 1000.0),
+                maxInFlight.get(),
+                maxHeap.get() / (1024 * 1024),
+                maxThreads.get());
+        // Lets the killed probe processes and open requests wind down before the next step
+        Thread.sleep(Math.min(config.timeout(), 2000));
+        return drift;
+    }
+
+    private static long countResults() {
+        long results = 0;
+        for (ProbeType probeType : ProbeType.values()) {
+            for (String outcome : new String[]{"success", "failure"}) {
+                Counter counter = MetricsRegistry.getInstance().counter("probe_results_total", "Probe results by probe and outcome",
+                        "probe", probeType.name().toLowerCase(), "result", outcome);
+                results += counter.get();
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Measures the report latency as seen by the probe: building the report and sending it.
+     */
+    private static final class TimedReporter extends Reporter {
+        private final LatencyHistogram latency = new LatencyHistogram();
+
+        private TimedReporter(ReportBuilder reportBuilder, HttpClient httpClient, String reportDestinationUrl) {
+            super(reportBuilder, httpClient, reportDestinationUrl);
+        }
+
+        @Override
+        public void report(String host) {
+            long start = System.nanoTime();
+            super.report(host);
+            latency.record((System.nanoTime() - start) / 1000);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.github.akopyanrob.loadtest;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Settings of the load harness, given as key=value arguments. Every host count is run as its own step.
+ */
+record LoadTestConfig(int[] hostCounts, int targets, int pingDelay, int timeout, long durationMillis,
+                      long targetLatencyMillis, long pingMillis, long traceMillis, double failureRate,
+                      long reportLatencyMillis, int maxInFlight, String schedulerType, double maxDrift, String logLevel) {
+
+    static LoadTestConfig parse(String[] args) {
+        Map<String, String> values = parseArguments(args);
+        int[] hostCounts = Arrays.stream(values.getOrDefault("hosts", "500,1000,2000,4000").split(","))
+                .map(String::trim)
+                .mapToInt(Integer::parseInt)
+                .toArray();
+        int maxHosts = Arrays.stream(hostCounts).max().orElseThrow();
+        return new LoadTestConfig(
+                hostCounts,
+                Integer.parseInt(values.getOrDefault("targets", String.valueOf(maxHosts))),
+                Integer.parseInt(values.getOrDefault("delay.ms", "5000")),
+                Integer.parseInt(values.getOrDefault("timeout.ms", "2000")),
+                Long.parseLong(values.getOrDefault("duration.s", "60")) * 1000,
+                Long.parseLong(values.getOrDefault("target.latency.ms", "20")),
+                Long.parseLong(values.getOrDefault("ping.ms", "4000")),
+                Long.parseLong(values.getOrDefault("trace.ms", "500")),
+                Double.parseDouble(values.getOrDefault("failure.rate", "0.01")),
+                Long.parseLong(values.getOrDefault("report.latency.ms", "10")),
+                Integer.parseInt(values.getOrDefault("max.in.flight", "1024")),
+                values.getOrDefault("scheduler", "wheel"),
+                Double.parseDouble(values.getOrDefault("max.drift", "0.1")),
+                values.getOrDefault("log.level", "OFF"));
+    }
+
+    static Map<String, String> parseArguments(String[] args) {
+        Map<String, String> values = new HashMap<>();
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("Expected key=value but got: " + arg);
+            }
+            values.put(arg.substring(0, separator), arg.substring(separator + 1));
+        }
+        return values;
+    }
+
+    LoadTestConfig {
+        if (hostCounts.length == 0 || targets <= 0 || pingDelay <= 0 || durationMillis <= 0 || maxInFlight <= 0) {
+            throw new IllegalArgumentException("Host counts, targets, delay, duration and max in-flight must be positive");
+        }
+        if (failureRate < 0 || failureRate > 1) {
+            throw new IllegalArgumentException("Failure rate must be between 0 and 1");
+        }
+    }
+}
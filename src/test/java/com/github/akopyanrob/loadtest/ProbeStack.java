@@ -0,0 +1,65 @@
+package com.github.akopyanrob.loadtest;
+
+import com.github.akopyanrob.report.Reporter;
+import com.github.akopyanrob.result.LastResultHolder;
+import com.github.akopyanrob.scheduler.HashedWheelTimer;
+import com.github.akopyanrob.scheduler.PingScheduler;
+import com.github.akopyanrob.scheduler.ProbeDispatcher;
+import com.github.akopyanrob.service.Config;
+import com.github.akopyanrob.service.ICMPPingService;
+import com.github.akopyanrob.service.TCPPingService;
+import com.github.akopyanrob.service.TraceRoutePingService;
+
+import java.net.http.HttpClient;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The scheduler and the TCP, ICMP and trace probes wired like Main does with virtual threads,
+ * either with the timing wheel ("wheel") or the scheduled thread pool.
+ */
+final class ProbeStack implements AutoCloseable {
+    private final ProbeDispatcher probeDispatcher;
+    private final HashedWheelTimer wheelTimer;
+    private final ScheduledExecutorService scheduler;
+    private final PingScheduler pingScheduler;
+
+    ProbeStack(String schedulerType, int maxInFlight, Reporter reporter) {
+        LastResultHolder lastResultHolder = LastResultHolder.getInstance();
+        this.probeDispatcher = ProbeDispatcher.virtualThreads(maxInFlight);
+        if ("wheel".equalsIgnoreCase(schedulerType)) {
+            this.wheelTimer = new HashedWheelTimer(10, TimeUnit.MILLISECONDS, 512);
+            this.scheduler = null;
+            this.pingScheduler = new PingScheduler(wheelTimer, lastResultHolder, reporter, probeDispatcher);
+        } else {
+            this.wheelTimer = null;
+            this.scheduler = Executors.newScheduledThreadPool(Math.min(Runtime.getRuntime().availableProcessors() * 2, 16));
+            this.pingScheduler = new PingScheduler(scheduler, lastResultHolder, reporter, probeDispatcher);
+        }
+    }
+
+    PingScheduler getPingScheduler() {
+        return pingScheduler;
+    }
+
+    ProbeDispatcher getProbeDispatcher() {
+        return probeDispatcher;
+    }
+
+    void start(Config probeConfig, StubExecutables stubs) {
+        pingScheduler.schedulePing(new TCPPingService(HttpClient.newHttpClient(), probeConfig), probeConfig);
+        pingScheduler.schedulePing(new ICMPPingService(stubs.newProcessBuilder(), probeConfig, stubs.getPing().toString()), probeConfig);
+        pingScheduler.schedulePing(new TraceRoutePingService(stubs.newProcessBuilder(), probeConfig, stubs.getTraceroute().toString()), probeConfig);
+    }
+
+    @Override
+    public void close() {
+        if (wheelTimer != null) {
+            wheelTimer.shutdown();
+        } else {
+            scheduler.shutdownNow();
+        }
+        probeDispatcher.shutdown();
+    }
+}
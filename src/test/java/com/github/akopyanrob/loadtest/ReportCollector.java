@@ -0,0 +1,105 @@
+package com.github.akopyanrob.loadtest;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Stand-in for the report endpoint: reads the report, waits the configured latency and answers 200.
+ * A listener is told about every host of the received reports (a single report or a batch).
+ */
+final class ReportCollector implements AutoCloseable {
+    private static final Pattern HOST = Pattern.compile("\"host\":\\s*\"([^\"]*)\"");
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final long latencyMillis;
+    private final LongAdder reports = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+    private volatile ReportListener listener;
+
+    ReportCollector(long latencyMillis) throws IOException {
+        this.latencyMillis = latencyMillis;
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 1024);
+        this.server.createContext("/", this::handle);
+        this.server.setExecutor(executor);
+        this.server.start();
+    }
+
+    /**
+     * The address as the report.url property takes it, without the scheme.
+     */
+    String getUrl() {
+        return server.getAddress().getAddress().getHostAddress() + ":" + server.getAddress().getPort() + "/report";
+    }
+
+    long getReports() {
+        return reports.sum();
+    }
+
+    long getBytes() {
+        return bytes.sum();
+    }
+
+    void setListener(ReportListener listener) {
+        this.listener = listener;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange; InputStream body = exchange.getRequestBody()) {
+            long receivedNanos = System.nanoTime();
+            ReportListener currentListener = listener;
+            if (currentListener == null) {
+                bytes.add(body.transferTo(OutputStream.nullOutputStream()));
+            } else {
+                byte[] report = body.readAllBytes();
+                bytes.add(report.length);
+                for (String host : hosts(new String(report, StandardCharsets.UTF_8))) {
+                    currentListener.onReport(host, receivedNanos);
+                }
+            }
+            reports.increment();
+            if (latencyMillis > 0) {
+                Thread.sleep(latencyMillis);
+            }
+            exchange.sendResponseHeaders(200, -1);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * The results nested in a report carry the same host as the report itself.
+     */
+    private static Set<String> hosts(String report) {
+        Set<String> hosts = new LinkedHashSet<>();
+        Matcher matcher = HOST.matcher(report);
+        while (matcher.find()) {
+            hosts.add(matcher.group(1));
+        }
+        return hosts;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    interface ReportListener {
+        void onReport(String host, long receivedNanos);
+    }
+}
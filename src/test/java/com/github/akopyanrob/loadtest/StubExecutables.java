@@ -0,0 +1,110 @@
+package com.github.akopyanrob.loadtest;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Comparator;
+import java.util.Locale;
+import java.util.stream.Stream;
+
+/**
+ * Stub ping and traceroute scripts printing Linux style output after the configured duration,
+ * failing with the configured rate (100% packet loss or an unanswered hop) and always for hosts marked as down.
+ * They are created in a temporary bin directory, which is put in front of PATH for the probe processes.
+ * The services still get them by full path because ProcessBuilder looks up the command with the PATH of this process.
+ */
+final class StubExecutables implements AutoCloseable {
+    private final Path directory;
+    private final Path downDirectory;
+    private final Path ping;
+    private final Path traceroute;
+
+    StubExecutables(long pingMillis, long traceMillis, double failureRate) throws IOException {
+        this.directory = Files.createTempDirectory("load-harness");
+        Path bin = Files.createDirectory(directory.resolve("bin"));
+        this.downDirectory = Files.createDirectory(directory.resolve("down"));
+        // $RANDOM is 0-32767
+        int failureThreshold = (int) Math.round(failureRate * 32768);
+        this.ping = createScript(bin.resolve("ping"), """
+                #!/bin/bash
+                host="${@: -1}"
+                echo "PING $host ($host) 56(84) bytes of data."
+                sleep %s
+                if [ -e "%s/$host" ] || [ $RANDOM -lt %d ]; then
+                  echo ""
+                  echo "--- $host ping statistics ---"
+                  echo "5 packets transmitted, 0 received, 100%% packet loss, time 4098ms"
+                  exit 1
+                fi
+                for i in 1 2 3 4 5; do
+                  echo "64 bytes from $host: icmp_seq=$i ttl=64 time=0.05$i ms"
+                done
+                echo ""
+                echo "--- $host ping statistics ---"
+                echo "5 packets transmitted, 5 received, 0%% packet loss, time 4006ms"
+                echo "rtt min/avg/max/mdev = 0.051/0.053/0.055/0.002 ms"
+                """.formatted(seconds(pingMillis), downDirectory, failureThreshold));
+        this.traceroute = createScript(bin.resolve("traceroute"), """
+                #!/bin/bash
+                host="${@: -1}"
+                echo "traceroute to $host ($host), 30 hops max, 60 byte packets"
+                sleep %s
+                echo " 1  _gateway (192.168.1.1)  0.412 ms  0.388 ms  0.377 ms"
+                echo " 2  10.20.0.1 (10.20.0.1)  6.118 ms  6.104 ms  6.097 ms"
+                if [ -e "%s/$host" ] || [ $RANDOM -lt %d ]; then
+                  echo " 3  * * *"
+                  exit 0
+                fi
+                echo " 3  $host ($host)  7.245 ms  7.233 ms  7.228 ms"
+                """.formatted(seconds(traceMillis), downDirectory, failureThreshold));
+    }
+
+    Path getBinDirectory() {
+        return ping.getParent();
+    }
+
+    Path getPing() {
+        return ping;
+    }
+
+    Path getTraceroute() {
+        return traceroute;
+    }
+
+    /**
+     * The ping and traceroute stubs fail for the host from now on.
+     */
+    void markDown(String host) throws IOException {
+        Files.createFile(downDirectory.resolve(host));
+    }
+
+    /**
+     * A process builder running the probes with the stubs first on PATH.
+     */
+    ProcessBuilder newProcessBuilder() {
+        ProcessBuilder processBuilder = new ProcessBuilder();
+        String path = processBuilder.environment().getOrDefault("PATH", "");
+        processBuilder.environment().put("PATH", getBinDirectory() + (path.isEmpty() ? "" : ":" + path));
+        return processBuilder;
+    }
+
+    private static Path createScript(Path path, String content) throws IOException {
+        Files.writeString(path, content);
+        Files.setPosixFilePermissions(path, PosixFilePermissions.fromString("rwxr-xr-x"));
+        return path;
+    }
+
+    private static String seconds(long millis) {
+        return String.format(Locale.ROOT, "%.3f", millis / 1000.0);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.github.akopyanrob.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MetricsRegistryTest {
+
+    private final MetricsRegistry registry = MetricsRegistry.getInstance();
+
+    @Test
+    void counter_sameNameAndLabels_returnsSameCounter() {
+        Counter counter = registry.counter("test_same_total", "help", "a", "1");
+
+        assertSame(counter, registry.counter("test_same_total", "help", "a", "1"));
+        assertThrows(IllegalArgumentException.class, () -> registry.timer("test_same_total", "help"));
+        assertThrows(IllegalArgumentException.class, () -> registry.counter("test_odd_labels_total", "help", "a"));
+    }
+
+    @Test
+    void render_metrics_writesPrometheusText() throws IOException {
+        registry.counter("test_render_total", "Rendered \"counter\"", "host", "a\"b\\c").add(3);
+        registry.gauge("test_render_gauge", "Gauge", () -> 1.5);
+        Timer timer = registry.timer("test_render_seconds", "Timer");
+        timer.recordNanos(2_000_000);
+
+        String text = render();
+
+        assertTrue(text.contains("# HELP test_render_total Rendered \"counter\"\n# TYPE test_render_total counter\n"));
+        assertTrue(text.contains("test_render_total{host=\"a\\\"b\\\\c\"} 3\n"));
+        assertTrue(text.contains("test_render_gauge 1.5\n"));
+        assertTrue(text.contains("# TYPE test_render_seconds summary\n"));
+        assertTrue(text.contains("test_render_seconds_count 1\n"));
+        assertTrue(text.contains("test_render_seconds_sum 0.002\n"));
+        assertTrue(text.contains("test_render_seconds{quantile=\"0.99\"} 0.002"));
+    }
+
+    @Test
+    void render_registeredTimer_writesSummary() throws IOException {
+        Timer timer = new Timer();
+        timer.recordNanos(4_000_000);
+        registry.timer("test_registered_seconds", "Registered", timer);
+
+        String text = render();
+
+        assertTrue(text.contains("# TYPE test_registered_seconds summary\n"));
+        assertTrue(text.contains("test_registered_seconds_count 1\n"));
+        assertTrue(text.contains("test_registered_seconds{quantile=\"0.5\"} 0.004"));
+    }
+
+    @Test
+    void render_counterSupplier_writesCounterType() throws IOException {
+        registry.counter("test_supplied_total", "Supplied", () -> 7);
+
+        String text = render();
+
+        assertTrue(text.contains("# TYPE test_supplied_total counter\n"));
+        assertTrue(text.contains("test_supplied_total 7"));
+    }
+
+    @Test
+    void render_largeCollector_streamsAllSamples() throws IOException {
+        registry.collector("test_hosts_up", "gauge", "Hosts", writer -> {
+            for (int i = 0; i < 10_000; i++) {
+                writer.sample("test_hosts_up").label("host", "host" + i).value(i % 2);
+            }
+        });
+
+        String text = render();
+
+        assertTrue(text.contains("test_hosts_up{host=\"host0\"} 0\n"));
+        assertTrue(text.contains("test_hosts_up{host=\"host9999\"} 1\n"));
+    }
+
+    @Test
+    void metricsServer_scrape_servesMetrics() throws Exception {
+        registry.counter("test_server_total", "Scraped").increment();
+        try (MetricsServer server = new MetricsServer(registry, new InetSocketAddress("127.0.0.1", 0))) {
+            HttpResponse<String> response = HttpClient.newHttpClient().send(
+                    HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + server.getPort() + "/metrics")).GET().build(),
+                    HttpResponse.BodyHandlers.ofString());
+
+            assertEquals(200, response.statusCode());
+            assertTrue(response.headers().firstValue("Content-Type").orElse("").startsWith("text/plain; version=0.0.4"));
+            assertTrue(response.body().contains("test_server_total 1\n"));
+        }
+    }
+
+    private String render() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        registry.render(new MetricsWriter(out));
+        return out.toString(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,258 @@
+package com.github.akopyanrob.report;
+
+import com.github.akopyanrob.result.JsonWriter;
+import com.github.akopyanrob.result.TraceHop;
+import com.github.akopyanrob.result.TraceRoutePingResult;
+import com.github.akopyanrob.topology.Incident;
+import com.github.akopyanrob.topology.TopologyGraph;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class BatchingReporterTest {
+
+    private static final String REPORT_DESTINATION_URL = "example.com/report";
+
+    private ReportBuilder reportBuilder;
+    private HttpClient httpClient;
+    private HttpResponse<Void> httpResponse;
+    private BatchingReporter batchingReporter;
+
+    @BeforeEach
+    void setUp() {
+        reportBuilder = mock(ReportBuilder.class);
+        httpClient = mock(HttpClient.class);
+        httpResponse = mockResponse(200);
+        when(httpClient.sendAsync(any(HttpRequest.class), BatchingReporterTest.<Void>anyBodyHandler()))
+                .thenReturn(CompletableFuture.completedFuture(httpResponse));
+        when(reportBuilder.newWriter()).thenAnswer(invocation -> new JsonWriter(false));
+        when(reportBuilder.buildReport(any())).thenAnswer(invocation -> "{\"host\":\"" + invocation.getArgument(0) + "\"}");
+        doAnswer(invocation -> {
+            invocation.<JsonWriter>getArgument(1).rawValue("{\"host\":\"" + invocation.getArgument(0) + "\"}");
+            return null;
+        }).when(reportBuilder).writeReport(any(), any(JsonWriter.class));
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (batchingReporter != null) {
+            batchingReporter.close();
+        }
+    }
+
+    @Test
+    void config_invalidBatchSize_throwsException() {
+        assertThrows(IllegalArgumentException.class, () -> new ReportPipelineConfig(10, 0, 0, 1));
+    }
+
+    @Test
+    void report_sameHostWithinWindow_sendsOneReport() {
+        batchingReporter = new BatchingReporter(reportBuilder, httpClient, REPORT_DESTINATION_URL, new ReportPipelineConfig(100, 200, 10, 2));
+
+        batchingReporter.report("host");
+        batchingReporter.report("host");
+        batchingReporter.report("host");
+
+        verify(httpClient, timeout(2000).times(1)).sendAsync(any(HttpRequest.class), anyBodyHandler());
+        verify(reportBuilder, times(1)).writeReport(eq("host"), any(JsonWriter.class));
+        assertEquals(2, batchingReporter.getCoalescedReports());
+    }
+
+    @Test
+    void report_manyHostsWithinWindow_sendsOneJsonArray() throws InterruptedException {
+        batchingReporter = new BatchingReporter(reportBuilder, httpClient, REPORT_DESTINATION_URL, new ReportPipelineConfig(100, 200, 10, 2));
+
+        batchingReporter.report("host1");
+        batchingReporter.report("host2");
+        batchingReporter.report("host3");
+
+        ArgumentCaptor<HttpRequest> requestCaptor = ArgumentCaptor.forClass(HttpRequest.class);
+        verify(httpClient, timeout(2000).times(1)).sendAsync(requestCaptor.capture(), anyBodyHandler());
+        assertEquals("[{\"host\":\"host1\"},{\"host\":\"host2\"},{\"host\":\"host3\"}]", readBody(requestCaptor.getValue()));
+        Thread.sleep(50);
+        assertEquals(1, batchingReporter.getSentBatches());
+    }
+
+    @Test
+    void report_hostsBehindFailedHop_sendsOneIncident() {
+        doAnswer(invocation -> {
+            invocation.<JsonWriter>getArgument(1).rawValue("{\"incident\":\"" + invocation.<Incident>getArgument(0).hop() + "\"}");
+            return null;
+        }).when(reportBuilder).writeIncident(any(Incident.class), any(JsonWriter.class));
+        TopologyGraph topologyGraph = new TopologyGraph(2);
+        topologyGraph.update("host1", trace("host1", "10.0.0.1", "10.0.1.1", "192.0.2.1"));
+        topologyGraph.update("host2", trace("host2", "10.0.0.1", "10.0.1.1", "192.0.2.2"));
+        topologyGraph.update("host3", trace("host3", "10.9.0.1", "10.9.1.1", "192.0.2.3"));
+        batchingReporter = new BatchingReporter(reportBuilder, httpClient, REPORT_DESTINATION_URL, new ReportPipelineConfig(100, 200, 10, 2));
+        batchingReporter.attachTopology(topologyGraph);
+
+        batchingReporter.report("host1");
+        batchingReporter.report("host2");
+        batchingReporter.report("host3");
+
+        ArgumentCaptor<HttpRequest> requestCaptor = ArgumentCaptor.forClass(HttpRequest.class);
+        verify(httpClient, timeout(2000).times(1)).sendAsync(requestCaptor.capture(), anyBodyHandler());
+        assertEquals("[{\"incident\":\"10.0.1.1\"},{\"host\":\"host3\"}]", readBody(requestCaptor.getValue()));
+        assertEquals(1, batchingReporter.getIncidents());
+    }
+
+    @Test
+    void report_fullBatches_sendWithoutWaitingForWindow() {
+        batchingReporter = new BatchingReporter(reportBuilder, httpClient, REPORT_DESTINATION_URL, new ReportPipelineConfig(100, 500, 2, 4));
+
+        for (int i = 0; i < 10; i++) {
+            batchingReporter.report("host" + i);
+        }
+
+        // Only a batch that is not full waits for the window, so 5 batches take far less than 5 windows
+        verify(httpClient, timeout(1200).times(5)).sendAsync(any(HttpRequest.class), anyBodyHandler());
+    }
+
+    @Test
+    void report_dispatcherInterrupted_dropsInsteadOfQueueing() throws InterruptedException {
+        batchingReporter = new BatchingReporter(reportBuilder, httpClient, REPORT_DESTINATION_URL, new ReportPipelineConfig(100, 0, 10, 1));
+        Thread dispatcher = Thread.getAllStackTraces().keySet().stream()
+                .filter(thread -> thread.getName().equals("report-dispatcher") && thread.isAlive())
+                .findFirst().orElseThrow();
+
+        dispatcher.interrupt();
+        dispatcher.join(2000);
+        batchingReporter.report("host");
+
+        assertEquals(0, batchingReporter.getQueueDepth());
+        assertEquals(1, batchingReporter.getDroppedReports());
+    }
+
+    @Test
+    void report_fullQueue_dropsReportWithoutBlocking() {
+        batchingReporter = new BatchingReporter(reportBuilder, httpClient, REPORT_DESTINATION_URL, new ReportPipelineConfig(2, 1000, 10, 1));
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 10; i++) {
+            batchingReporter.report("host" + i);
+        }
+
+        assertTrue(System.nanoTime() - start < 500_000_000L);
+        // At most the first poll, one drain of the queue and a full queue are accepted
+        assertTrue(batchingReporter.getDroppedReports() >= 5);
+        assertTrue(batchingReporter.getQueueDepth() <= 2);
+    }
+
+    @Test
+    void report_batchCanNotBeBuilt_dropsItsReports() {
+        doThrow(new IllegalStateException("Test Exception")).when(reportBuilder).writeReport(eq("broken"), any(JsonWriter.class));
+        batchingReporter = new BatchingReporter(reportBuilder, httpClient, REPORT_DESTINATION_URL, new ReportPipelineConfig(100, 200, 10, 2));
+
+        batchingReporter.report("host");
+        batchingReporter.report("broken");
+
+        long deadline = System.nanoTime() + 2_000_000_000L;
+        while (batchingReporter.getDroppedReports() < 2 && System.nanoTime() < deadline) {
+            Thread.onSpinWait();
+        }
+        assertEquals(1, batchingReporter.getFailedBatches());
+        assertEquals(2, batchingReporter.getDroppedReports());
+        verify(httpClient, never()).sendAsync(any(HttpRequest.class), anyBodyHandler());
+    }
+
+    @Test
+    void report_batchCanNotBeBuilt_spoolsItsReports() {
+        doThrow(new IllegalStateException("Test Exception")).when(reportBuilder).writeReport(eq("broken"), any(JsonWriter.class));
+        ReportOutbox outbox = mock(ReportOutbox.class);
+        batchingReporter = new BatchingReporter(reportBuilder, httpClient, REPORT_DESTINATION_URL, new ReportPipelineConfig(100, 200, 10, 2), outbox);
+
+        batchingReporter.report("host");
+        batchingReporter.report("broken");
+
+        verify(outbox, timeout(2000)).append("{\"host\":\"host\"}");
+        verify(outbox, timeout(2000)).append("{\"host\":\"broken\"}");
+        assertEquals(0, batchingReporter.getDroppedReports());
+    }
+
+    @Test
+    void report_failedSend_countsFailedBatch() {
+        when(httpClient.sendAsync(any(HttpRequest.class), anyBodyHandler()))
+                .thenReturn(CompletableFuture.failedFuture(new IOException("Test Exception")));
+        batchingReporter = new BatchingReporter(reportBuilder, httpClient, REPORT_DESTINATION_URL, new ReportPipelineConfig(100, 0, 10, 1));
+
+        batchingReporter.report("host");
+
+        verify(httpClient, timeout(2000).times(1)).sendAsync(any(HttpRequest.class), anyBodyHandler());
+        long deadline = System.nanoTime() + 2_000_000_000L;
+        while (batchingReporter.getFailedBatches() == 0 && System.nanoTime() < deadline) {
+            Thread.onSpinWait();
+        }
+        assertEquals(1, batchingReporter.getFailedBatches());
+        assertEquals(0, batchingReporter.getInFlightRequests());
+    }
+
+    @SuppressWarnings("unchecked")
+    static <T> HttpResponse<T> mockResponse(int statusCode) {
+        HttpResponse<T> response = mock(HttpResponse.class);
+        when(response.statusCode()).thenReturn(statusCode);
+        return response;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <T> HttpResponse.BodyHandler<T> anyBodyHandler() {
+        return any(HttpResponse.BodyHandler.class);
+    }
+
+    private static TraceRoutePingResult trace(String host, String... addresses) {
+        List<TraceHop> hops = new ArrayList<>();
+        for (String address : addresses) {
+            hops.add(new TraceHop(hops.size() + 1, address, 1000));
+        }
+        return new TraceRoutePingResult(true, host, 0, hops, null);
+    }
+
+    static String readBody(HttpRequest request) {
+        StringBuilder body = new StringBuilder();
+        request.bodyPublisher().orElseThrow().subscribe(new Flow.Subscriber<>() {
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                subscription.request(Long.MAX_VALUE);
+            }
+
+            @Override
+            public void onNext(ByteBuffer item) {
+                body.append(StandardCharsets.UTF_8.decode(item));
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+            }
+
+            @Override
+            public void onComplete() {
+            }
+        });
+        return body.toString();
+    }
+}
@@ -0,0 +1,77 @@
+package com.github.akopyanrob.report;
+
+import com.github.akopyanrob.result.ICMPPingResult;
+import com.github.akopyanrob.result.LastResultHolder;
+import com.github.akopyanrob.result.ProbeType;
+import com.github.akopyanrob.result.TCPPingResult;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ReportBuilderTest {
+
+    @Test
+    void constructor_nullLastResultHolder_throwsException() {
+        assertThrows(NullPointerException.class, () -> new ReportBuilder(null));
+    }
+
+    @Test
+    void buildReport_results_writesNestedObjects() {
+        LastResultHolder lastResultHolder = LastResultHolder.getInstance();
+        String host = "report-builder-test-host";
+        lastResultHolder.addHostLastICMPPingResult(host, new ICMPPingResult(false, host, 1, List.of("100% packet loss")));
+        lastResultHolder.addHostLastTCPPingResult(host, new TCPPingResult(true, host, 2, 15L, 200));
+
+        String report = new ReportBuilder(lastResultHolder).buildReport(host);
+
+        assertFalse(report.contains("\n"));
+        JSONObject json = new JSONObject(report);
+        assertEquals(host, json.getString("host"));
+        assertEquals("100% packet loss", json.getJSONObject("icmp_ping").getJSONArray("resultLines").getString(0));
+        assertEquals(200, json.getJSONObject("tcp_ping").getInt("responseCode"));
+        assertEquals("N/A", json.getString("trace"));
+        assertFalse(json.has("tcp_connect"));
+    }
+
+    @Test
+    void buildReport_hostId_writesLatestSnapshot() {
+        LastResultHolder lastResultHolder = LastResultHolder.getInstance();
+        String host = "report-builder-id-host";
+        int hostId = lastResultHolder.getHostRegistry().register(host);
+        lastResultHolder.addLastResult(hostId, ProbeType.TCP, new TCPPingResult(false, host, 1, null, null));
+        lastResultHolder.addLastResult(hostId, ProbeType.TCP, new TCPPingResult(true, host, 2, 15L, 204));
+
+        JSONObject json = new JSONObject(new ReportBuilder(lastResultHolder).buildReport(hostId));
+
+        assertEquals(host, json.getString("host"));
+        assertEquals(204, json.getJSONObject("tcp_ping").getInt("responseCode"));
+        assertEquals("N/A", json.getString("icmp_ping"));
+    }
+
+    @Test
+    void buildReport_pretty_indentsReport() {
+        String report = new ReportBuilder(LastResultHolder.getInstance(), true).buildReport("report-builder-pretty-host");
+
+        assertTrue(report.startsWith("{\n    \"host\": \"report-builder-pretty-host\","));
+    }
+
+    @Test
+    void buildReport_percentilePeriod_writesTcpPercentiles() {
+        LastResultHolder lastResultHolder = LastResultHolder.getInstance();
+        String host = "report-builder-percentile-host";
+        lastResultHolder.addHostLastTCPPingResult(host, new TCPPingResult(true, host, System.currentTimeMillis(), 1L, 1_500_000L, 200));
+
+        JSONObject json = new JSONObject(new ReportBuilder(lastResultHolder, false, 0, 60_000).buildReport(host));
+
+        JSONObject tcpPercentiles = json.getJSONObject("latency_percentiles").getJSONObject("tcp_ping");
+        assertEquals(1, tcpPercentiles.getLong("count"));
+        assertEquals(1500, tcpPercentiles.getLong("max"));
+        assertEquals(0, json.getJSONObject("latency_percentiles").getJSONObject("icmp_ping").getLong("count"));
+    }
+}
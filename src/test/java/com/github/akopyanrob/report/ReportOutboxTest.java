@@ -0,0 +1,177 @@
+package com.github.akopyanrob.report;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.atLeast;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ReportOutboxTest {
+
+    private static final String REPORT_DESTINATION_URL = "example.com/report";
+
+    @TempDir
+    Path directory;
+
+    private HttpClient httpClient;
+    private AtomicBoolean endpointUp;
+    private ReportOutbox outbox;
+
+    @BeforeEach
+    void setUp() throws IOException, InterruptedException {
+        httpClient = mock(HttpClient.class);
+        endpointUp = new AtomicBoolean(true);
+        HttpResponse<Void> okResponse = BatchingReporterTest.mockResponse(200);
+        HttpResponse<Void> errorResponse = BatchingReporterTest.mockResponse(503);
+        doAnswer(invocation -> endpointUp.get() ? okResponse : errorResponse)
+                .when(httpClient).send(any(HttpRequest.class), BatchingReporterTest.anyBodyHandler());
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (outbox != null) {
+            outbox.close();
+        }
+    }
+
+    @Test
+    void constructor_tooFewSegments_throwsException() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new ReportOutbox(directory, 1024, 1, httpClient, REPORT_DESTINATION_URL, 10, 100));
+    }
+
+    @Test
+    void append_endpointRecovers_deliversReportsInOrder() throws Exception {
+        endpointUp.set(false);
+        outbox = new ReportOutbox(directory, 1024, 4, httpClient, REPORT_DESTINATION_URL, 10, 50);
+
+        outbox.append("{\"host\":\"host1\"}");
+        outbox.append("{\"host\":\"host2\"}");
+        verify(httpClient, timeout(2000).atLeast(3)).send(any(HttpRequest.class), BatchingReporterTest.anyBodyHandler());
+        assertEquals(2, outbox.getPendingReports());
+
+        endpointUp.set(true);
+        waitForPending(0);
+
+        ArgumentCaptor<HttpRequest> requestCaptor = ArgumentCaptor.forClass(HttpRequest.class);
+        verify(httpClient, atLeast(3)).send(requestCaptor.capture(), BatchingReporterTest.anyBodyHandler());
+        List<String> bodies = requestCaptor.getAllValues().stream().map(BatchingReporterTest::readBody).toList();
+        assertEquals("{\"host\":\"host2\"}", bodies.get(bodies.size() - 1));
+        assertEquals("{\"host\":\"host1\"}", bodies.get(bodies.size() - 2));
+        assertEquals(2, outbox.getDeliveredReports());
+    }
+
+    @Test
+    void append_restart_deliversPendingReports() throws Exception {
+        endpointUp.set(false);
+        outbox = new ReportOutbox(directory, 1024, 4, httpClient, REPORT_DESTINATION_URL, 10_000, 10_000);
+        outbox.append("{\"host\":\"host1\"}");
+        outbox.append("{\"host\":\"host2\"}");
+        outbox.close();
+
+        endpointUp.set(true);
+        outbox = new ReportOutbox(directory, 1024, 4, httpClient, REPORT_DESTINATION_URL, 10, 50);
+        waitForPending(0);
+        outbox.close();
+
+        // Delivered position is checkpointed, nothing is sent twice after another restart
+        outbox = new ReportOutbox(directory, 1024, 4, httpClient, REPORT_DESTINATION_URL, 10, 50);
+        assertEquals(0, outbox.getPendingReports());
+    }
+
+    @Test
+    void append_spoolFull_dropsOldestSegment() throws Exception {
+        endpointUp.set(false);
+        outbox = new ReportOutbox(directory, 64, 2, httpClient, REPORT_DESTINATION_URL, 10_000, 10_000);
+        String report = "{\"host\":\"host0000000001\"}";
+
+        for (int i = 0; i < 6; i++) {
+            outbox.append(report);
+        }
+
+        assertEquals(2, outbox.getSegmentCount());
+        assertEquals(4, outbox.getDroppedReports());
+        assertEquals(2, outbox.getPendingReports());
+    }
+
+    @Test
+    void append_reportLargerThanSegment_dropsReport() throws Exception {
+        outbox = new ReportOutbox(directory, 64, 2, httpClient, REPORT_DESTINATION_URL, 10, 50);
+
+        assertFalse(outbox.append("x".repeat(100)));
+
+        assertEquals(1, outbox.getDroppedReports());
+        verify(httpClient, never()).send(any(HttpRequest.class), BatchingReporterTest.anyBodyHandler());
+    }
+
+    @Test
+    void drain_reportRejected_dropsItAndDeliversTheNext() throws Exception {
+        HttpResponse<Void> okResponse = BatchingReporterTest.mockResponse(200);
+        HttpResponse<Void> badRequest = BatchingReporterTest.mockResponse(400);
+        doAnswer(invocation -> BatchingReporterTest.readBody(invocation.getArgument(0)).contains("bad") ? badRequest : okResponse)
+                .when(httpClient).send(any(HttpRequest.class), BatchingReporterTest.anyBodyHandler());
+        outbox = new ReportOutbox(directory, 1024, 4, httpClient, REPORT_DESTINATION_URL, 10_000, 10_000);
+
+        outbox.append("{\"host\":\"bad\"}");
+        outbox.append("{\"host\":\"host1\"}");
+        waitForPending(0);
+
+        assertEquals(1, outbox.getDroppedReports());
+        assertEquals(1, outbox.getDeliveredReports());
+    }
+
+    @Test
+    void isRejected_statusCodes_onlyPermanentClientErrors() {
+        assertTrue(ReportOutbox.isRejected(400));
+        assertTrue(ReportOutbox.isRejected(413));
+        assertFalse(ReportOutbox.isRejected(408));
+        assertFalse(ReportOutbox.isRejected(429));
+        assertFalse(ReportOutbox.isRejected(500));
+        assertFalse(ReportOutbox.isRejected(503));
+    }
+
+    @Test
+    void drain_allDelivered_deletesDeliveredSegments() throws Exception {
+        outbox = new ReportOutbox(directory, 64, 8, httpClient, REPORT_DESTINATION_URL, 10, 50);
+        String report = "{\"host\":\"host0000000001\"}";
+
+        for (int i = 0; i < 6; i++) {
+            outbox.append(report);
+        }
+        waitForPending(0);
+        outbox.append(report);
+        waitForPending(0);
+
+        assertEquals(1, outbox.getSegmentCount());
+        assertEquals(7, outbox.getDeliveredReports());
+    }
+
+    private void waitForPending(long expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (outbox.getPendingReports() != expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(expected, outbox.getPendingReports());
+    }
+}
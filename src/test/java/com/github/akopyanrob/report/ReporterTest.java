@@ -1,5 +1,6 @@
 package com.github.akopyanrob.report;
 
+import com.github.akopyanrob.result.JsonWriter;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
@@ -27,6 +28,7 @@ class ReporterTest {
     @BeforeEach
     void setUp() {
         reportBuilder = mock(ReportBuilder.class);
+        when(reportBuilder.newWriter()).thenAnswer(invocation -> new JsonWriter(false));
         httpClient = mock(HttpClient.class);
         httpResponse = mock(HttpResponse.class);
         reporter = new Reporter(reportBuilder, httpClient, REPORT_DESTINATION_URL);
@@ -52,7 +54,7 @@ class ReporterTest {
         String host = "host";
         String report = "{\"host\":\"host\"}";
 
-        when(reportBuilder.buildReport(host)).thenReturn(report);
+        stubReport(host, report);
         when(httpClient.send(any(HttpRequest.class), any(HttpResponse.BodyHandler.class))).thenReturn(httpResponse);
         when(httpResponse.statusCode()).thenReturn(200);
 
@@ -64,6 +66,7 @@ class ReporterTest {
         HttpRequest request = requestCaptor.getValue();
         assertEquals(URI.create("http://" + REPORT_DESTINATION_URL), request.uri());
         assertEquals("application/json; utf-8", request.headers().firstValue("Content-Type").orElse(null));
+        assertEquals(report, BatchingReporterTest.readBody(request));
         verify(httpResponse, times(1)).statusCode();
     }
 
@@ -72,7 +75,7 @@ class ReporterTest {
         String host = "invalidHost";
         String report = "{\"host\":\"invalidHost\"}";
 
-        when(reportBuilder.buildReport(host)).thenReturn(report);
+        stubReport(host, report);
         when(httpClient.send(any(HttpRequest.class), any(HttpResponse.BodyHandler.class))).thenReturn(httpResponse);
         when(httpResponse.statusCode()).thenReturn(500);
 
@@ -84,6 +87,7 @@ class ReporterTest {
         HttpRequest request = requestCaptor.getValue();
         assertEquals(URI.create("http://" + REPORT_DESTINATION_URL), request.uri());
         assertEquals("application/json; utf-8", request.headers().firstValue("Content-Type").orElse(null));
+        assertEquals(report, BatchingReporterTest.readBody(request));
         verify(httpResponse, times(1)).statusCode();
     }
 
@@ -92,12 +96,33 @@ class ReporterTest {
         String host = "host";
         String report = "{\"host\":\"host\"}";
 
-        when(reportBuilder.buildReport(host)).thenReturn(report);
+        stubReport(host, report);
         when(httpClient.send(any(HttpRequest.class), any(HttpResponse.BodyHandler.class))).thenThrow(IOException.class);
 
         assertDoesNotThrow(() -> reporter.report(host));
 
         verify(httpClient, times(1)).send(any(HttpRequest.class), any(HttpResponse.BodyHandler.class));
     }
-}
 
+    @Test
+    void report_failedWithOutbox_spoolsReport() throws IOException, InterruptedException {
+        String host = "host";
+        String report = "{\"host\":\"host\"}";
+        ReportOutbox outbox = mock(ReportOutbox.class);
+        reporter = new Reporter(reportBuilder, httpClient, REPORT_DESTINATION_URL, outbox);
+
+        stubReport(host, report);
+        when(httpClient.send(any(HttpRequest.class), any(HttpResponse.BodyHandler.class))).thenThrow(IOException.class);
+
+        reporter.report(host);
+
+        verify(outbox, times(1)).append(report);
+    }
+
+    private void stubReport(String host, String report) {
+        doAnswer(invocation -> {
+            invocation.<JsonWriter>getArgument(1).rawValue(report);
+            return null;
+        }).when(reportBuilder).writeReport(eq(host), any(JsonWriter.class));
+    }
+}
@@ -0,0 +1,69 @@
+package com.github.akopyanrob.result;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class HostRegistryTest {
+
+    @Test
+    void register_newHosts_assignsDenseIds() {
+        HostRegistry registry = new HostRegistry();
+
+        assertEquals(0, registry.register("a"));
+        assertEquals(1, registry.register("b"));
+        assertEquals(0, registry.register("a"));
+        assertEquals(2, registry.size());
+        assertEquals("b", registry.hostOf(1));
+        assertEquals(1, registry.idOf("b"));
+        assertEquals(-1, registry.idOf("unknown"));
+    }
+
+    @Test
+    void register_moreHostsThanInitialCapacity_keepsAllHosts() {
+        HostRegistry registry = new HostRegistry();
+
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i, registry.register("host-" + i));
+        }
+
+        for (int i = 0; i < 1000; i++) {
+            assertEquals("host-" + i, registry.hostOf(i));
+        }
+    }
+
+    @Test
+    void register_concurrently_givesEveryHostOneId() throws InterruptedException {
+        HostRegistry registry = new HostRegistry();
+        Set<Integer> ids = ConcurrentHashMap.newKeySet();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            threads.add(Thread.ofPlatform().start(() -> {
+                for (int i = 0; i < 500; i++) {
+                    ids.add(registry.register("host-" + i));
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(500, registry.size());
+        assertEquals(500, ids.size());
+    }
+
+    @Test
+    void hostOf_unknownId_throwsException() {
+        HostRegistry registry = new HostRegistry();
+        registry.register("a");
+
+        assertThrows(IllegalArgumentException.class, () -> registry.hostOf(1));
+        assertThrows(IllegalArgumentException.class, () -> registry.register(null));
+    }
+}
@@ -0,0 +1,100 @@
+package com.github.akopyanrob.result;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ICMPOutputParserTest {
+
+    @Test
+    void parse_linuxSuccess_returnsStatistics() {
+        ICMPStatistics statistics = ICMPOutputParser.parse(List.of(
+                "PING example.com (93.184.215.14) 56(84) bytes of data.",
+                "64 bytes from 93.184.215.14: icmp_seq=1 ttl=55 time=11.6 ms",
+                "64 bytes from 93.184.215.14: icmp_seq=2 ttl=55 time=11.4 ms",
+                "64 bytes from 93.184.215.14: icmp_seq=3 ttl=55 time=12.0 ms",
+                "--- example.com ping statistics ---",
+                "3 packets transmitted, 3 received, 0% packet loss, time 2003ms",
+                "rtt min/avg/max/mdev = 11.412/11.646/12.012/0.205 ms"));
+
+        assertEquals(new ICMPStatistics(3, 3, 11_412, 11_646, 12_012, 205, new int[]{11_600, 11_400, 12_000}), statistics);
+        assertEquals(0, statistics.lossRatio());
+    }
+
+    @Test
+    void parse_totalLoss_isNotMistakenForZeroLoss() {
+        ICMPStatistics statistics = ICMPOutputParser.parse(List.of(
+                "PING 10.255.255.1 (10.255.255.1) 56(84) bytes of data.",
+                "--- 10.255.255.1 ping statistics ---",
+                "5 packets transmitted, 0 received, 100% packet loss, time 4098ms"));
+
+        assertEquals(5, statistics.sent());
+        assertEquals(0, statistics.received());
+        assertEquals(1.0, statistics.lossRatio());
+        assertEquals(-1, statistics.avgMicros());
+        assertArrayEquals(new int[]{-1, -1, -1, -1, -1}, statistics.roundTripMicros());
+    }
+
+    @Test
+    void parse_partialLossWithErrors_placesRepliesBySequence() {
+        ICMPStatistics statistics = ICMPOutputParser.parse(List.of(
+                "64 bytes from 10.0.0.1: icmp_seq=1 ttl=64 time=1.00 ms",
+                "From 10.0.0.254 icmp_seq=2 Destination Host Unreachable",
+                "64 bytes from 10.0.0.1: icmp_seq=3 ttl=64 time=3.00 ms",
+                "3 packets transmitted, 2 received, +1 errors, 33.3333% packet loss, time 2002ms",
+                "rtt min/avg/max/mdev = 1.000/2.000/3.000/1.000 ms"));
+
+        assertEquals(2, statistics.received());
+        assertArrayEquals(new int[]{1000, -1, 3000}, statistics.roundTripMicros());
+        assertEquals(1.0 / 3, statistics.lossRatio(), 1e-9);
+    }
+
+    @Test
+    void parse_macOSOutput_countsSequencesFromZero() {
+        ICMPStatistics statistics = ICMPOutputParser.parse(List.of(
+                "64 bytes from 1.1.1.1: icmp_seq=0 ttl=57 time=10.500 ms",
+                "64 bytes from 1.1.1.1: icmp_seq=1 ttl=57 time=11.500 ms",
+                "2 packets transmitted, 2 packets received, 0.0% packet loss",
+                "round-trip min/avg/max/stddev = 10.500/11.000/11.500/0.500 ms"));
+
+        assertArrayEquals(new int[]{10_500, 11_500}, statistics.roundTripMicros());
+        assertEquals(500, statistics.mdevMicros());
+    }
+
+    @Test
+    void parse_windowsOutput_returnsStatistics() {
+        ICMPStatistics statistics = ICMPOutputParser.parse(List.of(
+                "Reply from 93.184.215.14: bytes=32 time=12ms TTL=55",
+                "Reply from 93.184.215.14: bytes=32 time<1ms TTL=55",
+                "Request timed out.",
+                "Packets: Sent = 3, Received = 2, Lost = 1 (33% loss),",
+                "Minimum = 1ms, Maximum = 12ms, Average = 6ms"));
+
+        assertEquals(3, statistics.sent());
+        assertEquals(2, statistics.received());
+        assertEquals(1000, statistics.minMicros());
+        assertEquals(6000, statistics.avgMicros());
+        assertEquals(12_000, statistics.maxMicros());
+        assertArrayEquals(new int[]{12_000, 1000, -1}, statistics.roundTripMicros());
+        assertTrue(statistics.mdevMicros() > 0);
+    }
+
+    @Test
+    void parse_noStatistics_returnsNull() {
+        assertNull(ICMPOutputParser.parse(List.of("ping: example.invalid: Name or service not known")));
+        assertNull(ICMPOutputParser.parse(null));
+    }
+
+    @Test
+    void writeJson_compactStatistics_omitsOutputLines() {
+        ICMPPingResult result = new ICMPPingResult(false, "host", 5, ICMPStatistics.of(new int[]{1500, -1}));
+
+        assertEquals("{\"isSuccessful\":false,\"host\":\"host\",\"timeStamp\":5,\"sent\":2,\"received\":1,\"loss\":0.5,"
+                + "\"rttMinMicros\":1500,\"rttAvgMicros\":1500,\"rttMaxMicros\":1500,\"rttMdevMicros\":0,\"rttMicros\":[1500,-1]}", result.toString());
+    }
+}
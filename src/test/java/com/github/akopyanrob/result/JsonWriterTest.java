@@ -0,0 +1,78 @@
+package com.github.akopyanrob.result;
+
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class JsonWriterTest {
+
+    @Test
+    void write_nestedStructure_writesCompactJson() {
+        JsonWriter writer = new JsonWriter(false);
+
+        writer.beginObject()
+                .name("a").value(1)
+                .name("b").beginArray().value(true).nullValue().value(-42).endArray()
+                .name("c").beginObject().endObject()
+                .endObject();
+
+        assertEquals("{\"a\":1,\"b\":[true,null,-42],\"c\":{}}", writer.toString());
+    }
+
+    @Test
+    void write_pretty_indentsLikeJsonObject() {
+        JsonWriter writer = new JsonWriter(true);
+
+        writer.beginObject().name("a").value(1).name("b").beginArray().value("x").endArray().endObject();
+
+        assertEquals("{\n    \"a\": 1,\n    \"b\": [\n        \"x\"\n    ]\n}", writer.toString());
+    }
+
+    @Test
+    void value_specialCharacters_escapesAndEncodesUtf8() {
+        JsonWriter writer = new JsonWriter(false);
+        String value = "quote\" backslash\\ newline\n tab\t bell\u0007 é € 😀";
+
+        writer.beginObject().name("value").value(value).endObject();
+
+        assertEquals(value, new JSONObject(writer.toString()).getString("value"));
+    }
+
+    @Test
+    void value_longBoundaries_writesDigits() {
+        JsonWriter writer = new JsonWriter(false, 1);
+
+        writer.strings(List.of()).beginArray().value(0).value(Long.MAX_VALUE).value(Long.MIN_VALUE).endArray();
+
+        assertEquals("[][0,9223372036854775807,-9223372036854775808]", writer.toString());
+    }
+
+    @Test
+    void reset_reusedWriter_startsFromEmptyBuffer() {
+        JsonWriter writer = new JsonWriter(false);
+        writer.beginObject().name("a").value("first").endObject();
+
+        writer.reset();
+        writer.beginArray().value("second").endArray();
+
+        assertEquals("[\"second\"]", writer.toString());
+        assertEquals(writer.size(), writer.toByteArray().length);
+    }
+
+    @Test
+    void endObject_nothingOpen_throwsException() {
+        assertThrows(IllegalStateException.class, () -> new JsonWriter(false).endObject());
+    }
+
+    @Test
+    void writeJson_processResult_writesResultLinesArray() {
+        PingResult result = new ICMPPingResult(true, "host", 5, List.of("line 1", "line \"2\""));
+
+        assertEquals("{\"isSuccessful\":true,\"host\":\"host\",\"timeStamp\":5,\"resultLines\":[\"line 1\",\"line \\\"2\\\"\"]}",
+                result.toString());
+    }
+}
@@ -0,0 +1,117 @@
+package com.github.akopyanrob.result;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LatencyHistogramTest {
+
+    @Test
+    void bucketIndex_allRanges_upperBoundWithinSixPercent() {
+        for (long value = 0; value <= LatencyHistogram.MAX_VALUE; value = value * 3 / 2 + 1) {
+            int index = LatencyHistogram.bucketIndex(value);
+            long upperBound = LatencyHistogram.bucketUpperBound(index);
+
+            assertTrue(index < LatencyHistogram.BUCKET_COUNT);
+            assertTrue(upperBound >= value, "value " + value);
+            assertTrue(upperBound - value <= value * 0.063, "value " + value);
+        }
+    }
+
+    @Test
+    void getValueAtPercentile_uniformValues_returnsPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 10_000; i++) {
+            histogram.record(i * 10L);
+        }
+
+        assertEquals(10_000, histogram.getCount());
+        assertEquals(50_000, histogram.getValueAtPercentile(50), 50_000 * 0.063);
+        assertEquals(99_000, histogram.getValueAtPercentile(99), 99_000 * 0.063);
+        assertEquals(99_900, histogram.getValueAtPercentile(99.9), 99_900 * 0.063);
+        assertEquals(100_000, histogram.getMaxMicros());
+        assertEquals(100_000, histogram.getValueAtPercentile(100));
+    }
+
+    @Test
+    void getValueAtPercentile_empty_returnsZero() {
+        assertEquals(0, new LatencyHistogram().getValueAtPercentile(99));
+    }
+
+    @Test
+    void record_aboveRange_clampedToMaxValue() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(TimeUnit.HOURS.toMicros(1));
+
+        assertEquals(1, histogram.getCount());
+        assertEquals(LatencyHistogram.MAX_VALUE, histogram.getMaxMicros());
+        assertEquals(LatencyHistogram.MAX_VALUE, histogram.getValueAtPercentile(100));
+    }
+
+    @Test
+    void add_twoHistograms_mergesCounts() {
+        LatencyHistogram first = new LatencyHistogram();
+        LatencyHistogram second = new LatencyHistogram();
+        first.record(100);
+        second.record(300);
+        second.record(-1);
+
+        first.add(second);
+
+        assertEquals(2, first.getCount());
+        assertEquals(300, first.getMaxMicros());
+        assertEquals(100, first.getValueAtPercentile(50), 3);
+    }
+
+    @Test
+    void windowedSnapshot_expiredWindows_areLeftOut() {
+        WindowedLatencyHistogram histogram = new WindowedLatencyHistogram(1000, 3);
+        histogram.record(500, 10);
+        histogram.record(1500, 20);
+        histogram.record(2500, 30);
+        histogram.record(3500, 40);
+
+        LatencyHistogram lastThreeWindows = histogram.snapshot(3600, 10_000);
+        LatencyHistogram lastWindow = histogram.snapshot(3600, 500);
+
+        assertEquals(3, lastThreeWindows.getCount());
+        assertEquals(20, lastThreeWindows.getValueAtPercentile(0));
+        assertEquals(1, lastWindow.getCount());
+        assertEquals(40, lastWindow.getMaxMicros());
+    }
+
+    @Test
+    void windowedSnapshot_reusedHistogram_isClearedFirst() {
+        WindowedLatencyHistogram histogram = new WindowedLatencyHistogram(1000, 3);
+        histogram.record(500, 10);
+        histogram.record(2500, 30);
+        LatencyHistogram scratch = new LatencyHistogram();
+
+        histogram.snapshot(2600, 10_000, scratch);
+        LatencyHistogram lastWindow = histogram.snapshot(2600, 500, scratch);
+
+        assertEquals(1, lastWindow.getCount());
+        assertEquals(30, lastWindow.getMaxMicros());
+    }
+
+    @Test
+    void windowedConstructor_zeroWindows_throwsException() {
+        assertThrows(IllegalArgumentException.class, () -> new WindowedLatencyHistogram(1000, 0));
+    }
+
+    @Test
+    void getHistogram_recordedResults_returnsHostDistribution() {
+        LastResultHolder lastResultHolder = LastResultHolder.getInstance();
+        String host = "latency-histogram-test-host";
+
+        lastResultHolder.addHostLastTCPPingResult(host, new TCPPingResult(true, host, System.currentTimeMillis(), 0L, 250_000L, 200));
+
+        LatencyHistogram histogram = lastResultHolder.getLatencyHistograms().getHistogram(host, ProbeType.TCP, 60_000);
+        assertEquals(1, histogram.getCount());
+        assertEquals(250, histogram.getMaxMicros());
+    }
+}
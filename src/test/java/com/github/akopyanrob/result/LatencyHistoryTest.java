@@ -0,0 +1,113 @@
+package com.github.akopyanrob.result;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LatencyHistoryTest {
+
+    @Test
+    void constructor_zeroCapacity_throwsException() {
+        assertThrows(IllegalArgumentException.class, () -> new LatencyHistory(0));
+    }
+
+    @Test
+    void getLastSamples_unknownHost_returnsEmpty() {
+        LatencyHistory history = new LatencyHistory(8);
+
+        assertEquals(0, history.getLastSamples("host", ProbeType.ICMP, 10).size());
+        assertEquals(0, history.getSampleCount("host", ProbeType.ICMP));
+    }
+
+    @Test
+    void getLastSamples_moreSamplesThanCapacity_returnsNewestOldestFirst() {
+        LatencyHistory history = new LatencyHistory(8);
+        for (int i = 0; i < 20; i++) {
+            history.record("host", ProbeType.TCP, 1000 + i, i * 10, i % 2 == 0);
+        }
+
+        LatencySamples samples = history.getLastSamples("host", ProbeType.TCP, 3);
+
+        assertEquals(3, samples.size());
+        assertEquals(1017, samples.getTimestamp(0));
+        assertEquals(190, samples.getLatencyMicros(2));
+        assertFalse(samples.isSuccessful(0));
+        assertTrue(samples.isSuccessful(1));
+        assertEquals(8, history.getLastSamples("host", ProbeType.TCP, 100).size());
+        assertEquals(20, history.getSampleCount("host", ProbeType.TCP));
+        assertEquals(0, history.getLastSamples("host", ProbeType.ICMP, 3).size());
+    }
+
+    @Test
+    void getSamples_timeRange_returnsSamplesInRange() {
+        LatencyHistory history = new LatencyHistory(16);
+        for (int i = 0; i < 10; i++) {
+            history.record("host", ProbeType.ICMP, i * 100, i, true);
+        }
+
+        LatencySamples samples = history.getSamples("host", ProbeType.ICMP, 250, 500);
+
+        assertEquals(3, samples.size());
+        assertEquals(300, samples.getTimestamp(0));
+        assertEquals(500, samples.getTimestamp(2));
+    }
+
+    @Test
+    void record_probeWithoutLatency_isNotKept() {
+        LatencyHistory history = new LatencyHistory(8);
+
+        history.record("host", ProbeType.TRACE, 1000, -1, true);
+
+        assertEquals(0, history.getLastSamples("host", ProbeType.TRACE, 10).size());
+        assertEquals(0, history.getSampleCount("host", ProbeType.TRACE));
+    }
+
+    @Test
+    void getLastSamples_concurrentWriter_returnsConsistentSamples() throws InterruptedException {
+        LatencyHistory history = new LatencyHistory(64);
+        AtomicBoolean running = new AtomicBoolean(true);
+        Thread writer = new Thread(() -> {
+            for (int i = 0; running.get(); i++) {
+                history.record("host", ProbeType.TCP_CONNECT, i, i, i % 3 == 0);
+            }
+        });
+        writer.start();
+
+        AtomicReference<String> error = new AtomicReference<>();
+        for (int round = 0; round < 10_000 && error.get() == null; round++) {
+            LatencySamples samples = history.getLastSamples("host", ProbeType.TCP_CONNECT, 64);
+            for (int i = 0; i < samples.size(); i++) {
+                long timestamp = samples.getTimestamp(i);
+                if (samples.getLatencyMicros(i) != (int) timestamp || samples.isSuccessful(i) != (timestamp % 3 == 0)
+                        || (i > 0 && timestamp != samples.getTimestamp(i - 1) + 1)) {
+                    error.set("Torn sample " + timestamp + " at " + i);
+                }
+            }
+        }
+        running.set(false);
+        writer.join();
+
+        assertNull(error.get());
+    }
+
+    @Test
+    void addHostLastResult_results_recordedInHistory() {
+        LastResultHolder lastResultHolder = LastResultHolder.getInstance();
+        String host = "latency-history-test-host";
+
+        lastResultHolder.addHostLastTCPPingResult(host, new TCPPingResult(true, host, 10, 15L, 200));
+        lastResultHolder.addHostLastICMPPingResult(host, new ICMPPingResult(true, host, 11,
+                List.of("5 packets transmitted, 5 received, 0% packet loss", "rtt min/avg/max/mdev = 1.0/2.5/4.0/0.1 ms")));
+
+        assertEquals(15_000, lastResultHolder.getLatencyHistory().getLastSamples(host, ProbeType.TCP, 1).getLatencyMicros(0));
+        assertEquals(2_500, lastResultHolder.getLatencyHistory().getLastSamples(host, ProbeType.ICMP, 1).getLatencyMicros(0));
+    }
+}
@@ -0,0 +1,173 @@
+package com.github.akopyanrob.result;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ResultLogTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void constructor_tooSmallSegment_throwsException() {
+        assertThrows(IllegalArgumentException.class, () -> new ResultLog(directory, 10, 2));
+    }
+
+    @Test
+    void forEach_timeRange_returnsRecordsOfHostAndProbe() throws IOException {
+        try (ResultLog resultLog = new ResultLog(directory, 256, 4)) {
+            for (int i = 0; i < 600; i++) {
+                resultLog.append("host" + (i % 2), ProbeType.TCP, new TCPPingResult(i % 3 != 0, "host" + (i % 2), 1000 + i, (long) i, 200));
+            }
+            resultLog.append("host0", ProbeType.ICMP, new ICMPPingResult(true, "host0", 1100, List.of()));
+
+            List<Long> timeStamps = new ArrayList<>();
+            resultLog.forEach("host0", ProbeType.TCP, 1100, 1110, (timeStamp, latencyMicros, successful, code) -> {
+                assertEquals((timeStamp - 1000) * 1000, latencyMicros);
+                assertEquals(200, code);
+                timeStamps.add(timeStamp);
+            });
+
+            assertEquals(List.of(1100L, 1102L, 1104L, 1106L, 1108L, 1110L), timeStamps);
+            assertEquals(3, resultLog.getSegmentCount());
+        }
+    }
+
+    @Test
+    void append_retentionExceeded_deletesOldestSegment() throws IOException {
+        try (ResultLog resultLog = new ResultLog(directory, 256, 2)) {
+            for (int i = 0; i < 256 * 3; i++) {
+                resultLog.append("host", ProbeType.TCP_CONNECT, new TCPConnectPingResult(true, "host", i, 443, 1_000_000L));
+            }
+
+            List<Long> timeStamps = new ArrayList<>();
+            resultLog.forEach("host", ProbeType.TCP_CONNECT, 0, Long.MAX_VALUE, (timeStamp, latencyMicros, successful, code) -> timeStamps.add(timeStamp));
+
+            assertEquals(2, resultLog.getSegmentCount());
+            assertEquals(512, timeStamps.size());
+            assertEquals(256L, timeStamps.get(0));
+        }
+    }
+
+    @Test
+    void restore_afterRestart_restoresLatestResults() throws IOException {
+        String host = "result-log-test-host";
+        try (ResultLog resultLog = new ResultLog(directory, 256, 4)) {
+            resultLog.append(host, ProbeType.ICMP, new ICMPPingResult(true, host, 10, List.of()));
+            resultLog.append(host, ProbeType.ICMP, new ICMPPingResult(false, host, 20, List.of()));
+            resultLog.append(host, ProbeType.TCP, new TCPPingResult(true, host, 30, 12L, 204));
+            resultLog.append(host, ProbeType.TCP_CONNECT, new TCPConnectPingResult(true, host, 40, 8080, 5_000L));
+        }
+
+        LastResultHolder lastResultHolder = LastResultHolder.getInstance();
+        try (ResultLog resultLog = new ResultLog(directory, 256, 4)) {
+            resultLog.restore(lastResultHolder);
+        }
+
+        PingResult icmp = lastResultHolder.getSnapshot(host).icmp();
+        assertFalse(icmp.isSuccessful());
+        assertEquals(20, icmp.getTimeStamp());
+        TCPPingResult tcp = (TCPPingResult) lastResultHolder.getSnapshot(host).tcp();
+        assertTrue(tcp.isSuccessful());
+        assertEquals(12L, tcp.getResponseTimeMillis());
+        assertEquals(204, tcp.getResponseCode());
+        TCPConnectPingResult tcpConnect = (TCPConnectPingResult) lastResultHolder.getSnapshot(host).tcpConnect();
+        assertEquals(8080, tcpConnect.getPort());
+        assertEquals(5_000L, tcpConnect.getConnectTimeNanos());
+        assertEquals(2, lastResultHolder.getLatencyHistory().getLastSamples(host, ProbeType.ICMP, 10).size());
+    }
+
+    @Test
+    void restore_severalSegments_replaysAllIntoHistory() throws IOException {
+        String host = "result-log-segments-host";
+        try (ResultLog resultLog = new ResultLog(directory, 256, 4)) {
+            for (int i = 0; i < 300; i++) {
+                resultLog.append(host, ProbeType.TCP_CONNECT, new TCPConnectPingResult(true, host, i, 443, 1_000_000L));
+            }
+        }
+
+        LastResultHolder lastResultHolder = LastResultHolder.getInstance();
+        try (ResultLog resultLog = new ResultLog(directory, 256, 4)) {
+            resultLog.restore(lastResultHolder);
+        }
+
+        assertEquals(300, lastResultHolder.getLatencyHistory().getSampleCount(host, ProbeType.TCP_CONNECT));
+    }
+
+    @Test
+    void restore_icmpResult_keepsLatency() throws IOException {
+        String host = "result-log-icmp-host";
+        try (ResultLog resultLog = new ResultLog(directory, 256, 4)) {
+            resultLog.append(host, ProbeType.ICMP, new ICMPPingResult(true, host, 10, ICMPStatistics.of(new int[]{2_500})));
+        }
+
+        LastResultHolder lastResultHolder = LastResultHolder.getInstance();
+        try (ResultLog resultLog = new ResultLog(directory, 256, 4)) {
+            resultLog.restore(lastResultHolder);
+        }
+
+        assertEquals(2_500, lastResultHolder.getSnapshot(host).icmp().getLatencyMicros());
+    }
+
+    @Test
+    void restore_icmpPartialLoss_keepsEchoCounts() throws IOException {
+        String host = "result-log-icmp-loss-host";
+        try (ResultLog resultLog = new ResultLog(directory, 256, 4)) {
+            resultLog.append(host, ProbeType.ICMP, new ICMPPingResult(false, host, 10, ICMPStatistics.of(new int[]{2_000, -1, 3_000, -1})));
+        }
+
+        LastResultHolder lastResultHolder = LastResultHolder.getInstance();
+        try (ResultLog resultLog = new ResultLog(directory, 256, 4)) {
+            resultLog.restore(lastResultHolder);
+        }
+
+        ICMPPingResult restored = (ICMPPingResult) lastResultHolder.getSnapshot(host).icmp();
+        assertFalse(restored.isSuccessful());
+        assertEquals(4, restored.getStatistics().sent());
+        assertEquals(2, restored.getStatistics().received());
+        assertEquals(2_500, restored.getLatencyMicros());
+    }
+
+    @Test
+    void restore_icmpWithoutStatistics_restoresThemAsUnknown() throws IOException {
+        String host = "result-log-icmp-unknown-host";
+        try (ResultLog resultLog = new ResultLog(directory, 256, 4)) {
+            resultLog.append(host, ProbeType.ICMP, new ICMPPingResult(false, host, 10, null, List.of("ping: unknown host")));
+        }
+
+        LastResultHolder lastResultHolder = LastResultHolder.getInstance();
+        try (ResultLog resultLog = new ResultLog(directory, 256, 4)) {
+            resultLog.restore(lastResultHolder);
+        }
+
+        assertNull(((ICMPPingResult) lastResultHolder.getSnapshot(host).icmp()).getStatistics());
+    }
+
+    @Test
+    void append_hostsNotPersisted_doesNotReuseHostIds() throws IOException {
+        try (ResultLog resultLog = new ResultLog(directory, 256, 4)) {
+            resultLog.append("lost", ProbeType.TCP_CONNECT, new TCPConnectPingResult(true, "lost", 10, 443, 1_000L));
+        }
+        Files.delete(directory.resolve("hosts.idx"));
+
+        List<Long> timeStamps = new ArrayList<>();
+        try (ResultLog resultLog = new ResultLog(directory, 256, 4)) {
+            resultLog.append("new", ProbeType.TCP_CONNECT, new TCPConnectPingResult(true, "new", 20, 443, 1_000L));
+            resultLog.forEach("new", ProbeType.TCP_CONNECT, 0, Long.MAX_VALUE, (timeStamp, latencyMicros, successful, code) -> timeStamps.add(timeStamp));
+        }
+
+        assertEquals(List.of(20L), timeStamps);
+    }
+}
@@ -0,0 +1,59 @@
+package com.github.akopyanrob.result;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TraceOutputParserTest {
+
+    @Test
+    void parse_linuxOutput_returnsHops() {
+        List<TraceHop> hops = TraceOutputParser.parse(List.of(
+                "traceroute to example.com (93.184.215.14), 30 hops max, 60 byte packets",
+                "1  _gateway (192.168.1.1)  0.500 ms  0.400 ms  0.300 ms",
+                "2  * * *",
+                "3  core.example.net (10.0.0.1)  10.000 ms *  12.000 ms",
+                "4  93.184.215.14  20.123 ms  20.123 ms  20.123 ms"));
+
+        assertEquals(List.of(
+                new TraceHop(1, "192.168.1.1", 400),
+                new TraceHop(2, null, -1),
+                new TraceHop(3, "10.0.0.1", 11_000),
+                new TraceHop(4, "93.184.215.14", 20_123)), hops);
+        assertFalse(hops.get(1).isAnswered());
+    }
+
+    @Test
+    void parse_windowsOutput_returnsHops() {
+        List<TraceHop> hops = TraceOutputParser.parse(List.of(
+                "Tracing route to example.com [93.184.215.14]",
+                "over a maximum of 30 hops:",
+                "1    <1 ms    <1 ms    <1 ms  192.168.1.1",
+                "2     *        *        *     Request timed out.",
+                "3    12 ms    11 ms    13 ms  core.example.net [10.0.0.1]",
+                "Trace complete."));
+
+        assertEquals(List.of(
+                new TraceHop(1, "192.168.1.1", 1000),
+                new TraceHop(2, null, -1),
+                new TraceHop(3, "10.0.0.1", 12_000)), hops);
+    }
+
+    @Test
+    void parse_errorOutput_returnsNoHops() {
+        assertTrue(TraceOutputParser.parse(List.of("Error: Command timed out after 300 ms")).isEmpty());
+        assertTrue(TraceOutputParser.parse(null).isEmpty());
+    }
+
+    @Test
+    void writeJson_traceResult_writesHops() {
+        TraceRoutePingResult result = new TraceRoutePingResult(true, "host", 5, List.of(new TraceHop(1, "10.0.0.1", 250)), null);
+
+        assertEquals("{\"isSuccessful\":true,\"host\":\"host\",\"timeStamp\":5,\"hops\":[{\"hop\":1,\"address\":\"10.0.0.1\",\"rttMicros\":250}]}",
+                result.toString());
+    }
+}
@@ -0,0 +1,70 @@
+package com.github.akopyanrob.scheduler;
+
+import com.github.akopyanrob.result.PingResult;
+import com.github.akopyanrob.result.TCPPingResult;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class AdaptiveIntervalPolicyTest {
+    private static final String HOST = "host";
+    private static final PingResult SUCCESS = new TCPPingResult(true, HOST, 0, 1L, 200);
+    private static final PingResult FAILURE = new TCPPingResult(false, HOST, 0, null, null);
+
+    private final AdaptiveIntervalPolicy policy = new AdaptiveIntervalPolicy(1000, new AdaptiveIntervalConfig(5000, 100, 2, 2));
+
+    @Test
+    void constructor_baseDelayAboveMax_throwsException() {
+        assertThrows(IllegalArgumentException.class, () -> new AdaptiveIntervalPolicy(6000, new AdaptiveIntervalConfig(5000, 100, 2, 2)));
+    }
+
+    @Test
+    void config_backoffFactorBelowOne_throwsException() {
+        assertThrows(IllegalArgumentException.class, () -> new AdaptiveIntervalConfig(5000, 100, 0.5, 2));
+    }
+
+    @Test
+    void nextDelay_consecutiveSuccesses_stretchesUpToMax() {
+        assertEquals(1000, policy.nextDelay(HOST, SUCCESS));
+        assertEquals(1000, policy.nextDelay(HOST, SUCCESS));
+        assertEquals(2000, policy.nextDelay(HOST, SUCCESS));
+        assertEquals(4000, policy.nextDelay(HOST, SUCCESS));
+        assertEquals(5000, policy.nextDelay(HOST, SUCCESS));
+        assertEquals(5000, policy.nextDelay(HOST, SUCCESS));
+        assertEquals(5000, policy.getDelayMillis(HOST));
+    }
+
+    @Test
+    void nextDelay_firstFailure_confirmsThenUsesBaseWhileFailing() {
+        for (int i = 0; i < 5; i++) {
+            policy.nextDelay(HOST, SUCCESS);
+        }
+
+        assertEquals(100, policy.nextDelay(HOST, FAILURE));
+        assertEquals(1000, policy.nextDelay(HOST, FAILURE));
+        assertEquals(1000, policy.nextDelay(HOST, null));
+    }
+
+    @Test
+    void nextDelay_recovery_restartsFromBase() {
+        policy.nextDelay(HOST, FAILURE);
+        policy.nextDelay(HOST, FAILURE);
+
+        assertEquals(1000, policy.nextDelay(HOST, SUCCESS));
+        assertEquals(1000, policy.nextDelay(HOST, SUCCESS));
+        assertEquals(2000, policy.nextDelay(HOST, SUCCESS));
+        assertEquals(100, policy.nextDelay(HOST, FAILURE));
+    }
+
+    @Test
+    void nextDelay_hostsAreIndependent() {
+        for (int i = 0; i < 4; i++) {
+            policy.nextDelay(HOST, SUCCESS);
+        }
+
+        assertEquals(100, policy.nextDelay("other", FAILURE));
+        assertEquals(4000, policy.getDelayMillis(HOST));
+        assertEquals(1000, policy.getDelayMillis("unknown"));
+    }
+}
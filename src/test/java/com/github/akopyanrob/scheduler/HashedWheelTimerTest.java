@@ -0,0 +1,112 @@
+package com.github.akopyanrob.scheduler;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HashedWheelTimerTest {
+    private HashedWheelTimer timer;
+
+    @BeforeEach
+    void setUp() {
+        timer = new HashedWheelTimer(5, TimeUnit.MILLISECONDS, 8);
+    }
+
+    @AfterEach
+    void tearDown() {
+        timer.shutdown();
+    }
+
+    @Test
+    void constructor_wheelSize_roundedToPowerOfTwo() {
+        var other = new HashedWheelTimer(1, TimeUnit.MILLISECONDS, 100);
+        assertEquals(128, other.getWheelSize());
+        other.shutdown();
+    }
+
+    @Test
+    void schedule_delay_firesNotBeforeDeadline() throws InterruptedException {
+        var fired = new CountDownLatch(1);
+        var firedAt = new AtomicLong();
+        long scheduledAt = System.nanoTime();
+
+        timer.schedule(() -> {
+            firedAt.set(System.nanoTime());
+            fired.countDown();
+        }, 50);
+
+        assertTrue(fired.await(5, TimeUnit.SECONDS));
+        assertTrue(firedAt.get() - scheduledAt >= TimeUnit.MILLISECONDS.toNanos(50));
+    }
+
+    @Test
+    void schedule_delayLongerThanOneRound_firesAfterRemainingRounds() throws InterruptedException {
+        // 8 buckets of 5 ms make a 40 ms round
+        var fired = new CountDownLatch(1);
+        long scheduledAt = System.nanoTime();
+        var firedAt = new AtomicLong();
+
+        timer.schedule(() -> {
+            firedAt.set(System.nanoTime());
+            fired.countDown();
+        }, 130);
+
+        assertTrue(fired.await(5, TimeUnit.SECONDS));
+        assertTrue(firedAt.get() - scheduledAt >= TimeUnit.MILLISECONDS.toNanos(130));
+    }
+
+    @Test
+    void schedule_manyTasks_firesAll() throws InterruptedException {
+        int tasks = 100_000;
+        var fired = new CountDownLatch(tasks);
+
+        for (int i = 0; i < tasks; i++) {
+            timer.schedule(fired::countDown, i % 200);
+        }
+
+        assertTrue(fired.await(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void schedule_failingTask_keepsTimerRunning() throws InterruptedException {
+        var fired = new CountDownLatch(1);
+
+        timer.schedule(() -> {
+            throw new IllegalStateException("Test Exception");
+        }, 0);
+        timer.schedule(fired::countDown, 10);
+
+        assertTrue(fired.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void schedule_afterShutdown_throwsException() {
+        timer.shutdown();
+        assertThrows(RejectedExecutionException.class, () -> timer.schedule(() -> {
+        }, 0));
+    }
+
+    @Test
+    void phaseSpreader_offset_isDeterministicAndInsideInterval() {
+        long interval = 5000;
+        int[] bucketCounts = new int[10];
+        for (int i = 0; i < 10_000; i++) {
+            long offset = PhaseSpreader.offset("host" + i, "TCPPingService", interval);
+            assertEquals(offset, PhaseSpreader.offset("host" + i, "TCPPingService", interval));
+            assertTrue(offset >= 0 && offset < interval);
+            bucketCounts[(int) (offset * 10 / interval)]++;
+        }
+        for (int count : bucketCounts) {
+            assertTrue(count > 800 && count < 1200, "Offsets are not spread evenly: " + count);
+        }
+    }
+}
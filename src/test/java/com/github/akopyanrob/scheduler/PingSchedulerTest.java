@@ -1,10 +1,14 @@
 package com.github.akopyanrob.scheduler;
 
 import com.github.akopyanrob.report.Reporter;
+import com.github.akopyanrob.result.HostRegistry;
 import com.github.akopyanrob.result.ICMPPingResult;
 import com.github.akopyanrob.result.LastResultHolder;
+import com.github.akopyanrob.result.PingResult;
+import com.github.akopyanrob.result.ProbeType;
 import com.github.akopyanrob.result.TCPPingResult;
 import com.github.akopyanrob.result.TraceRoutePingResult;
+import com.github.akopyanrob.service.AsyncPingService;
 import com.github.akopyanrob.service.Config;
 import com.github.akopyanrob.service.ICMPPingService;
 import com.github.akopyanrob.service.PingService;
@@ -17,14 +21,24 @@ import org.mockito.Mockito;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.after;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -35,12 +49,15 @@ class PingSchedulerTest {
     private Reporter reporter;
     private Config config;
     private static final String HOST = "host";
+    // The only host of the config, registered first
+    private static final int HOST_ID = 0;
 
     @BeforeEach
     void setUp() {
         scheduler = Executors.newScheduledThreadPool(32);
 
         lastResultHolder = mock(LastResultHolder.class);
+        when(lastResultHolder.getHostRegistry()).thenReturn(new HostRegistry());
         reporter = mock(Reporter.class);
 
         config = new Config(new String[]{HOST}, 300, 400);
@@ -61,6 +78,18 @@ class PingSchedulerTest {
         assertThrows(NullPointerException.class, () -> new PingScheduler(scheduler, lastResultHolder, null));
     }
 
+    @Test
+    void schedulePing_executorMode_startsHostAtPhaseOffset() {
+        ScheduledExecutorService mockScheduler = mock(ScheduledExecutorService.class);
+        var pingScheduler = new PingScheduler(mockScheduler, lastResultHolder, reporter);
+        var icmpPingService = mock(ICMPPingService.class);
+
+        pingScheduler.schedulePing(icmpPingService, config);
+
+        long phaseOffset = PhaseSpreader.offset(HOST, icmpPingService.getClass().getSimpleName(), config.pingDelay());
+        verify(mockScheduler).scheduleWithFixedDelay(any(Runnable.class), eq(phaseOffset), eq(300L), eq(TimeUnit.MILLISECONDS));
+    }
+
     @Test
     void icmpPingSuccess() {
         ScheduledExecutorService mockScheduler = mock(ScheduledExecutorService.class);
@@ -83,7 +112,7 @@ class PingSchedulerTest {
         pingScheduler.schedulePing(icmpPingService, config);
 
         verify(icmpPingService, times(1)).ping(HOST);
-        verify(lastResultHolder, times(1)).addHostLastICMPPingResult(HOST, icmpPingResult);
+        verify(lastResultHolder, times(1)).addLastResult(HOST_ID, ProbeType.ICMP, icmpPingResult);
         verify(reporter, times(0)).report(HOST);
     }
 
@@ -109,7 +138,7 @@ class PingSchedulerTest {
         pingScheduler.schedulePing(icmpPingService, config);
 
         verify(icmpPingService, times(1)).ping(HOST);
-        verify(lastResultHolder, times(1)).addHostLastICMPPingResult(HOST, icmpPingResult);
+        verify(lastResultHolder, times(1)).addLastResult(HOST_ID, ProbeType.ICMP, icmpPingResult);
         verify(reporter, times(1)).report(HOST);
     }
 
@@ -137,7 +166,7 @@ class PingSchedulerTest {
         pingScheduler.schedulePing(tcpPingService, config);
 
         verify(tcpPingService, times(1)).ping(HOST);
-        verify(lastResultHolder, times(1)).addHostLastTCPPingResult(HOST, tcpPingResult);
+        verify(lastResultHolder, times(1)).addLastResult(HOST_ID, ProbeType.TCP, tcpPingResult);
         verify(reporter, times(0)).report(HOST);
     }
 
@@ -165,10 +194,50 @@ class PingSchedulerTest {
         pingScheduler.schedulePing(tcpPingService, config);
 
         verify(tcpPingService, times(1)).ping(HOST);
-        verify(lastResultHolder, times(1)).addHostLastTCPPingResult(HOST, tcpPingResult);
+        verify(lastResultHolder, times(1)).addLastResult(HOST_ID, ProbeType.TCP, tcpPingResult);
         verify(reporter, times(1)).report(HOST);
     }
 
+    @Test
+    void tcpPingFailure_withFailureHook_runsHookBeforeReport() {
+        ScheduledExecutorService mockScheduler = mock(ScheduledExecutorService.class);
+        var pingScheduler = new PingScheduler(mockScheduler, lastResultHolder, reporter);
+        var events = new CopyOnWriteArrayList<String>();
+        pingScheduler.attachFailureHook(host -> {
+            events.add("hook " + host);
+            return CompletableFuture.completedFuture(null);
+        });
+        doAnswer(invocation -> events.add("report " + invocation.getArgument(0))).when(reporter).report(HOST);
+
+        var tcpPingService = mock(TCPPingService.class);
+        when(tcpPingService.ping(HOST)).thenReturn(new TCPPingResult(false, HOST, System.currentTimeMillis(), null, null));
+        doAnswer(invocation -> {
+            Runnable task = invocation.getArgument(0);
+            task.run();
+            return null;
+        }).when(mockScheduler).scheduleWithFixedDelay(any(Runnable.class), anyLong(), anyLong(), any());
+
+        pingScheduler.schedulePing(tcpPingService, config);
+
+        assertEquals(List.of("hook " + HOST, "report " + HOST), events);
+    }
+
+    @Test
+    void tcpPingFailure_withPendingFailureHook_reportsOnceItCompletes() {
+        var pingScheduler = new PingScheduler(scheduler, lastResultHolder, reporter);
+        var hook = new CompletableFuture<Void>();
+        pingScheduler.attachFailureHook(host -> hook);
+        var tcpPingService = mock(TCPPingService.class);
+        when(tcpPingService.ping(HOST)).thenReturn(new TCPPingResult(false, HOST, System.currentTimeMillis(), null, null));
+
+        pingScheduler.schedulePing(tcpPingService, config);
+
+        verify(tcpPingService, timeout(1000)).ping(HOST);
+        verify(reporter, after(200).never()).report(HOST);
+        hook.complete(null);
+        verify(reporter, timeout(1000).atLeastOnce()).report(HOST);
+    }
+
     @Test
     void tracePingSuccess() {
         var mockScheduler = mock(ScheduledExecutorService.class);
@@ -191,10 +260,32 @@ class PingSchedulerTest {
         pingScheduler.schedulePing(traceRoutePingService, config);
 
         verify(traceRoutePingService, times(1)).ping(HOST);
-        verify(lastResultHolder, times(1)).addHostLastTracePingResult(HOST, traceRoutePingResult);
+        verify(lastResultHolder, times(1)).addLastResult(HOST_ID, ProbeType.TRACE, traceRoutePingResult);
         verify(reporter, times(0)).report(HOST);
     }
 
+    @Test
+    void tracePing_withTraceListener_passesStoredTrace() {
+        ScheduledExecutorService mockScheduler = mock(ScheduledExecutorService.class);
+        var pingScheduler = new PingScheduler(mockScheduler, lastResultHolder, reporter);
+        var traces = new CopyOnWriteArrayList<TraceRoutePingResult>();
+        pingScheduler.attachTraceListener((host, trace) -> traces.add(trace));
+
+        var traceRoutePingService = mock(TraceRoutePingService.class);
+        var traceRoutePingResult = new TraceRoutePingResult(true, HOST, System.currentTimeMillis(), List.of("PING"));
+        when(traceRoutePingService.ping(HOST)).thenReturn(traceRoutePingResult);
+        doAnswer(invocation -> {
+            Runnable task = invocation.getArgument(0);
+            task.run();
+            return null;
+        }).when(mockScheduler).scheduleWithFixedDelay(any(Runnable.class), anyLong(), anyLong(), any());
+
+        pingScheduler.schedulePing(traceRoutePingService, config);
+
+        verify(lastResultHolder, times(1)).addLastResult(HOST_ID, ProbeType.TRACE, traceRoutePingResult);
+        assertEquals(List.of(traceRoutePingResult), traces);
+    }
+
     @Test
     void tracePingFailure() {
         var mockScheduler = mock(ScheduledExecutorService.class);
@@ -217,10 +308,172 @@ class PingSchedulerTest {
         pingScheduler.schedulePing(traceRoutePingService, config);
 
         verify(traceRoutePingService, times(1)).ping(HOST);
-        verify(lastResultHolder, times(1)).addHostLastTracePingResult(HOST, traceRoutePingResult);
+        verify(lastResultHolder, times(1)).addLastResult(HOST_ID, ProbeType.TRACE, traceRoutePingResult);
         verify(reporter, times(0)).report(HOST);
     }
 
+    @Test
+    void dispatchedPing_runsProbeOnVirtualThreadAndReschedules() throws InterruptedException {
+        var probeDispatcher = ProbeDispatcher.virtualThreads(4);
+        var pingScheduler = new PingScheduler(scheduler, lastResultHolder, reporter, probeDispatcher);
+
+        var tcpPingService = mock(TCPPingService.class);
+        var tcpPingResult = new TCPPingResult(false, HOST, System.currentTimeMillis(), null, null);
+        var probeThreadIsVirtual = new AtomicBoolean();
+        var pings = new CountDownLatch(2);
+        when(tcpPingService.ping(HOST)).thenAnswer(invocation -> {
+            probeThreadIsVirtual.set(Thread.currentThread().isVirtual());
+            pings.countDown();
+            return tcpPingResult;
+        });
+
+        pingScheduler.schedulePing(tcpPingService, new Config(new String[]{HOST}, 10, 400));
+
+        assertTrue(pings.await(5, TimeUnit.SECONDS));
+        assertTrue(probeThreadIsVirtual.get());
+        verify(lastResultHolder, timeout(1000).atLeast(2)).addLastResult(HOST_ID, ProbeType.TCP, tcpPingResult);
+        verify(reporter, timeout(1000).atLeast(2)).report(HOST);
+        probeDispatcher.shutdown();
+    }
+
+    @Test
+    void schedulePing_fixedDelay_recordsSchedulingLag() throws InterruptedException {
+        var pingScheduler = new PingScheduler(scheduler, lastResultHolder, reporter);
+        var traceRoutePingService = mock(TraceRoutePingService.class);
+        var traceRoutePingResult = new TraceRoutePingResult(true, HOST, System.currentTimeMillis(), List.of("PING"));
+        var pings = new CountDownLatch(3);
+        when(traceRoutePingService.ping(HOST)).thenAnswer(invocation -> {
+            pings.countDown();
+            return traceRoutePingResult;
+        });
+
+        pingScheduler.schedulePing(traceRoutePingService, new Config(new String[]{HOST}, 20, 400));
+
+        assertTrue(pings.await(5, TimeUnit.SECONDS));
+        assertTrue(pingScheduler.getSchedulingLag().getCount() >= 3);
+    }
+
+    @Test
+    void wheelTimerPing_recordsSchedulingLag() throws InterruptedException {
+        var wheelTimer = new HashedWheelTimer(1, TimeUnit.MILLISECONDS, 64);
+        var probeDispatcher = ProbeDispatcher.virtualThreads(4);
+        var pingScheduler = new PingScheduler(wheelTimer, lastResultHolder, reporter, probeDispatcher);
+
+        var traceRoutePingService = mock(TraceRoutePingService.class);
+        var traceRoutePingResult = new TraceRoutePingResult(true, HOST, System.currentTimeMillis(), List.of("PING"));
+        var pings = new CountDownLatch(3);
+        when(traceRoutePingService.ping(HOST)).thenAnswer(invocation -> {
+            pings.countDown();
+            return traceRoutePingResult;
+        });
+
+        pingScheduler.schedulePing(traceRoutePingService, new Config(new String[]{HOST}, 20, 400));
+
+        assertTrue(pings.await(5, TimeUnit.SECONDS));
+        verify(lastResultHolder, timeout(1000).atLeast(3)).addLastResult(HOST_ID, ProbeType.TRACE, traceRoutePingResult);
+        assertTrue(pingScheduler.getSchedulingLag().getCount() >= 3);
+        wheelTimer.shutdown();
+        probeDispatcher.shutdown();
+    }
+
+    @Test
+    void asyncPingFailure_handlesResultWhenFutureCompletes() {
+        var probeDispatcher = ProbeDispatcher.virtualThreads(4);
+        var pingScheduler = new PingScheduler(scheduler, lastResultHolder, reporter, probeDispatcher);
+
+        var asyncPingService = mock(AsyncPingService.class);
+        var tcpPingResult = new TCPPingResult(false, HOST, System.currentTimeMillis(), null, null);
+        var pendingResult = new CompletableFuture<PingResult>();
+        when(asyncPingService.pingAsync(HOST)).thenReturn(pendingResult).thenReturn(new CompletableFuture<>());
+
+        pingScheduler.scheduleAsyncPing(asyncPingService, config);
+
+        verify(asyncPingService, timeout(1000).times(1)).pingAsync(HOST);
+        verify(lastResultHolder, times(0)).addLastResult(HOST_ID, ProbeType.TCP, tcpPingResult);
+
+        pendingResult.complete(tcpPingResult);
+
+        verify(lastResultHolder, timeout(1000).times(1)).addLastResult(HOST_ID, ProbeType.TCP, tcpPingResult);
+        verify(reporter, timeout(1000).times(1)).report(HOST);
+        verify(asyncPingService, timeout(1000).times(2)).pingAsync(HOST);
+        probeDispatcher.shutdown();
+    }
+
+    @Test
+    void dispatchedPing_withIntervalPolicy_schedulesNextProbeWithPolicyDelay() throws InterruptedException {
+        var delays = new CopyOnWriteArrayList<Long>();
+        var scheduled = new CountDownLatch(4);
+        ProbeTimer recordingTimer = new ProbeTimer() {
+            @Override
+            public void schedule(Runnable task, long delayMillis) {
+                delays.add(delayMillis);
+                scheduled.countDown();
+                if (delays.size() < 4) {
+                    task.run();
+                }
+            }
+
+            @Override
+            public void shutdown() {
+            }
+        };
+        var probeDispatcher = ProbeDispatcher.virtualThreads(4);
+        var pingScheduler = new PingScheduler(recordingTimer, lastResultHolder, reporter, probeDispatcher);
+
+        var tcpPingService = mock(TCPPingService.class);
+        var success = new TCPPingResult(true, HOST, System.currentTimeMillis(), 1L, 200);
+        var failure = new TCPPingResult(false, HOST, System.currentTimeMillis(), null, null);
+        when(tcpPingService.ping(HOST)).thenReturn(success, failure, success);
+
+        pingScheduler.schedulePing(tcpPingService, config, (host, result) -> result.isSuccessful() ? 1000 : 7);
+
+        assertTrue(scheduled.await(5, TimeUnit.SECONDS));
+        assertEquals(List.of(1000L, 7L, 1000L), delays.subList(1, 4));
+        probeDispatcher.shutdown();
+    }
+
+    @Test
+    void pooledPing_withIntervalPolicy_reschedulesAfterEveryProbe() throws InterruptedException {
+        var pingScheduler = new PingScheduler(scheduler, lastResultHolder, reporter);
+
+        var tcpPingService = mock(TCPPingService.class);
+        var success = new TCPPingResult(true, HOST, System.currentTimeMillis(), 1L, 200);
+        var pings = new CountDownLatch(3);
+        when(tcpPingService.ping(HOST)).thenAnswer(invocation -> {
+            pings.countDown();
+            return success;
+        });
+        var policy = mock(IntervalPolicy.class);
+        when(policy.nextDelay(HOST, success)).thenReturn(5L);
+
+        pingScheduler.schedulePing(tcpPingService, config, policy);
+
+        assertTrue(pings.await(5, TimeUnit.SECONDS));
+        verify(policy, timeout(1000).atLeast(2)).nextDelay(HOST, success);
+        assertTrue(pingScheduler.getSchedulingLag().getCount() >= 3);
+    }
+
+    @Test
+    void dispatchResult_blockingReports_returnsBeforeTheReportsAreSent() throws InterruptedException {
+        var pingScheduler = new PingScheduler(scheduler, lastResultHolder, reporter);
+        var release = new CountDownLatch(1);
+        var reports = new CountDownLatch(2);
+        doAnswer(invocation -> {
+            reports.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return null;
+        }).when(reporter).report(any());
+
+        pingScheduler.dispatchResult("a", new ICMPPingResult(false, "a", System.currentTimeMillis(), List.of()));
+        pingScheduler.dispatchResult("b", new ICMPPingResult(false, "b", System.currentTimeMillis(), List.of()));
+
+        // Both reports are sent at the same time while the first one still blocks
+        assertTrue(reports.await(5, TimeUnit.SECONDS));
+        release.countDown();
+        verify(lastResultHolder, timeout(1000)).addLastResult(eq(0), eq(ProbeType.ICMP), any());
+        verify(lastResultHolder, timeout(1000)).addLastResult(eq(1), eq(ProbeType.ICMP), any());
+    }
+
     @AfterEach
     void tearDown() {
         scheduler.shutdownNow();
@@ -0,0 +1,81 @@
+package com.github.akopyanrob.scheduler;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ProbeDispatcherTest {
+    private ProbeDispatcher probeDispatcher;
+
+    @AfterEach
+    void tearDown() {
+        if (probeDispatcher != null) {
+            probeDispatcher.shutdown();
+        }
+    }
+
+    @Test
+    void constructor_nonPositiveMaxInFlight_throwsException() {
+        assertThrows(IllegalArgumentException.class, () -> ProbeDispatcher.virtualThreads(0));
+    }
+
+    @Test
+    void dispatch_moreProbesThanPermits_capsConcurrentProbes() throws InterruptedException {
+        probeDispatcher = ProbeDispatcher.virtualThreads(2);
+        var running = new AtomicInteger();
+        var maxRunning = new AtomicInteger();
+        var completed = new CountDownLatch(20);
+
+        for (int i = 0; i < 20; i++) {
+            probeDispatcher.dispatch(() -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                sleep(5);
+                running.decrementAndGet();
+            }, completed::countDown);
+        }
+
+        assertTrue(completed.await(5, TimeUnit.SECONDS));
+        assertTrue(maxRunning.get() <= 2);
+        assertEquals(0, probeDispatcher.getInFlight());
+    }
+
+    @Test
+    void dispatch_blockedProbe_countsAsInFlight() throws InterruptedException {
+        probeDispatcher = ProbeDispatcher.virtualThreads(4);
+        var started = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+
+        probeDispatcher.dispatch(() -> {
+            started.countDown();
+            await(release);
+        }, () -> {
+        });
+
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        assertEquals(1, probeDispatcher.getInFlight());
+        release.countDown();
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.github.akopyanrob.service;
+
+import com.github.akopyanrob.result.PingResult;
+import com.github.akopyanrob.result.TCPPingResult;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.ConnectException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class AsyncTCPPingServiceTest {
+
+    private HttpClient httpClient;
+    private InFlightLimiter inFlightLimiter;
+    private AsyncTCPPingService asyncTcpPingService;
+
+    @BeforeEach
+    void setUp() {
+        httpClient = mock(HttpClient.class);
+        inFlightLimiter = new InFlightLimiter(2, 1);
+        asyncTcpPingService = new AsyncTCPPingService(httpClient, new Config(new String[]{"Host"}, 300, 400), inFlightLimiter);
+    }
+
+    @Test
+    void constructor_nullLimiter_throwsException() {
+        assertThrows(NullPointerException.class, () -> new AsyncTCPPingService(httpClient, new Config(new String[]{"Host"}, 300, 400), null));
+    }
+
+    @Test
+    void pingAsync_successfulResponse_returnsPingResult() {
+        String host = "example.com";
+        HttpResponse<Void> response = mockResponse(200);
+        when(httpClient.sendAsync(any(HttpRequest.class), AsyncTCPPingServiceTest.<Void>anyBodyHandler()))
+                .thenReturn(CompletableFuture.completedFuture(response));
+
+        PingResult result = asyncTcpPingService.pingAsync(host).join();
+
+        assertNotNull(result);
+        assertTrue(result.isSuccessful());
+        assertEquals(host, result.getHost());
+        assertEquals(200, ((TCPPingResult) result).getResponseCode());
+        assertEquals(0, inFlightLimiter.getInFlight());
+    }
+
+    @Test
+    void pingAsync_timeout_returnsFailedPingResult() {
+        String host = "example.com";
+        when(httpClient.sendAsync(any(HttpRequest.class), AsyncTCPPingServiceTest.<Void>anyBodyHandler()))
+                .thenReturn(CompletableFuture.failedFuture(new HttpTimeoutException("Timeout")));
+
+        PingResult result = asyncTcpPingService.pingAsync(host).join();
+
+        assertFalse(result.isSuccessful());
+        assertNull(((TCPPingResult) result).getResponseTimeMillis());
+        assertNull(((TCPPingResult) result).getResponseCode());
+        assertEquals(0, inFlightLimiter.getInFlight());
+    }
+
+    @Test
+    void pingAsync_sameHostTwice_secondRequestWaitsForFirst() {
+        String host = "example.com";
+        CompletableFuture<HttpResponse<Void>> firstResponse = new CompletableFuture<>();
+        when(httpClient.sendAsync(any(HttpRequest.class), AsyncTCPPingServiceTest.<Void>anyBodyHandler()))
+                .thenReturn(firstResponse)
+                .thenReturn(CompletableFuture.failedFuture(new ConnectException("Connection failed")));
+
+        CompletableFuture<PingResult> first = asyncTcpPingService.pingAsync(host);
+        CompletableFuture<PingResult> second = asyncTcpPingService.pingAsync(host);
+
+        verify(httpClient, times(1)).sendAsync(any(HttpRequest.class), AsyncTCPPingServiceTest.<Void>anyBodyHandler());
+        assertEquals(1, inFlightLimiter.getWaiting());
+
+        firstResponse.completeExceptionally(new ConnectException("Connection failed"));
+
+        assertFalse(first.join().isSuccessful());
+        assertFalse(second.join().isSuccessful());
+        verify(httpClient, times(2)).sendAsync(any(HttpRequest.class), AsyncTCPPingServiceTest.<Void>anyBodyHandler());
+        assertEquals(0, inFlightLimiter.getInFlight());
+    }
+
+    @Test
+    void inFlightLimiter_globalLimit_admitsWaitersInOrder() {
+        var limiter = new InFlightLimiter(1, 1);
+
+        CompletableFuture<Void> first = limiter.acquire("a");
+        CompletableFuture<Void> second = limiter.acquire("b");
+        CompletableFuture<Void> third = limiter.acquire("c");
+
+        assertTrue(first.isDone());
+        assertFalse(second.isDone());
+        assertFalse(third.isDone());
+
+        limiter.release("a");
+        assertTrue(second.isDone());
+        assertFalse(third.isDone());
+
+        limiter.release("b");
+        assertTrue(third.isDone());
+        assertEquals(1, limiter.getInFlight());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> HttpResponse<T> mockResponse(int statusCode) {
+        HttpResponse<T> response = mock(HttpResponse.class);
+        when(response.statusCode()).thenReturn(statusCode);
+        return response;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> HttpResponse.BodyHandler<T> anyBodyHandler() {
+        return any(HttpResponse.BodyHandler.class);
+    }
+}
@@ -0,0 +1,129 @@
+package com.github.akopyanrob.service;
+
+import com.github.akopyanrob.result.ICMPPingResult;
+import com.github.akopyanrob.result.PingResult;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ContinuousICMPPingServiceTest {
+
+    private final List<PingResult> results = new CopyOnWriteArrayList<>();
+    private ContinuousICMPPingService service;
+
+    @AfterEach
+    void tearDown() {
+        if (service != null) {
+            service.close();
+        }
+    }
+
+    @Test
+    void constructor_nonPositiveInterval_throwsException() {
+        assertThrows(IllegalArgumentException.class, () -> new ContinuousICMPPingService("ping", 0, 10, (host, result) -> {
+        }));
+    }
+
+    @Test
+    void start_streamingReplies_publishesSuccessfulResults(@TempDir Path tempDir) throws Exception {
+        Path stub = TraceRoutePingServiceTest.writeStub(tempDir, """
+                #!/bin/sh
+                for host; do :; done
+                i=1
+                while true; do
+                  echo "64 bytes from $host: icmp_seq=$i ttl=64 time=0.5$i ms"
+                  i=$((i+1))
+                  sleep 0.02
+                done
+                """);
+        service = new ContinuousICMPPingService(stub.toString(), 20, 10, (host, result) -> results.add(result));
+
+        service.start(new Config(new String[]{"127.0.0.1"}, 100, 400));
+
+        waitForResults(3);
+        PingResult result = results.get(results.size() - 1);
+        assertTrue(result.isSuccessful());
+        assertEquals("127.0.0.1", result.getHost());
+        assertEquals(10, ((ICMPPingResult) result).getStatistics().received());
+    }
+
+    @Test
+    void start_processExits_publishesFailureAndRestarts(@TempDir Path tempDir) throws Exception {
+        Path counter = tempDir.resolve("starts");
+        Path stub = TraceRoutePingServiceTest.writeStub(tempDir, """
+                #!/bin/sh
+                echo started >> %s
+                echo "no answer yet for icmp_seq=1"
+                exit 1
+                """.formatted(counter));
+        service = new ContinuousICMPPingService(stub.toString(), 10, 10, (host, result) -> results.add(result));
+
+        service.start(new Config(new String[]{"127.0.0.1"}, 50, 400));
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while ((!Files.exists(counter) || Files.readAllLines(counter).size() < 3) && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+        }
+        assertTrue(Files.readAllLines(counter).size() >= 3);
+        assertTrue(results.stream().noneMatch(PingResult::isSuccessful));
+        // The process never answered, so it is reported down once, not on every tick of the backoff
+        assertEquals(1, results.stream().filter(result -> ((ICMPPingResult) result).getResultLines() != null
+                && ((ICMPPingResult) result).getResultLines().get(0).contains("not running")).count());
+    }
+
+    @Test
+    void rollingWindow_lateReplyAfterNoAnswer_replacesLoss() {
+        var window = new ContinuousICMPPingService.RollingWindow(4);
+        assertNull(window.toResult("host", 0));
+
+        window.recordReply(1, 1.0);
+        window.recordLoss(2);
+        ICMPPingResult withLoss = window.toResult("host", 0);
+        assertFalse(withLoss.isSuccessful());
+        assertArrayEquals(new int[]{1000, -1}, withLoss.getStatistics().roundTripMicros());
+
+        window.recordReply(2, 3.0);
+        ICMPPingResult recovered = window.toResult("host", 0);
+        assertTrue(recovered.isSuccessful());
+        assertEquals(1000, recovered.getStatistics().minMicros());
+        assertEquals(2000, recovered.getStatistics().avgMicros());
+        assertEquals(3000, recovered.getStatistics().maxMicros());
+    }
+
+    @Test
+    void rollingWindow_lossBeforeLastResult_failsOnlyOnce() {
+        var window = new ContinuousICMPPingService.RollingWindow(10);
+        window.recordReply(1, 1.0);
+        window.recordLoss(2);
+        assertFalse(window.toResult("host", 0).isSuccessful());
+
+        window.recordReply(3, 1.0);
+        window.recordReply(4, 1.0);
+        ICMPPingResult next = window.toResult("host", 0);
+
+        assertTrue(next.isSuccessful());
+        assertEquals(3, next.getStatistics().received());
+        assertEquals(4, next.getStatistics().sent());
+    }
+
+    private void waitForResults(int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (results.size() < count && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+        }
+        assertTrue(results.size() >= count, "Only " + results.size() + " results published");
+    }
+}
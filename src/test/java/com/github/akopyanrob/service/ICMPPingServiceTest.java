@@ -4,16 +4,21 @@ import com.github.akopyanrob.result.ICMPPingResult;
 import com.github.akopyanrob.result.PingResult;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.Mockito;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertInstanceOf;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.when;
@@ -58,7 +63,40 @@ class ICMPPingServiceTest {
         assertEquals(host, result.getHost());
         assertInstanceOf(ICMPPingResult.class, result);
         ICMPPingResult icmpResult = (ICMPPingResult) result;
-        assertTrue(icmpResult.getResultLines().toString().contains("0% loss"));
+        assertEquals(5, icmpResult.getStatistics().received());
+        assertEquals(13_000, icmpResult.getLatencyMicros());
+        assertNull(icmpResult.getResultLines());
+    }
+
+    @Test
+    void ping_totalLoss_returnsFailedPingResult() throws Exception {
+        String simulatedOutput = """
+                PING 10.255.255.1 (10.255.255.1) 56(84) bytes of data.
+
+                --- 10.255.255.1 ping statistics ---
+                5 packets transmitted, 0 received, 100% packet loss, time 4098ms
+                """;
+        when(processBuilder.start()).thenReturn(mockProcess);
+        when(mockProcess.getInputStream()).thenReturn(new ByteArrayInputStream(simulatedOutput.getBytes()));
+
+        PingResult result = icmpPingService.ping("10.255.255.1");
+
+        assertFalse(result.isSuccessful());
+        ICMPPingResult icmpResult = (ICMPPingResult) result;
+        assertEquals(1.0, icmpResult.getStatistics().lossRatio());
+        assertEquals(-1, icmpResult.getLatencyMicros());
+    }
+
+    @Test
+    void ping_unparsableOutput_keepsOutputLines() throws Exception {
+        when(processBuilder.start()).thenReturn(mockProcess);
+        when(mockProcess.getInputStream()).thenReturn(new ByteArrayInputStream("ping: unknown output\n".getBytes()));
+
+        PingResult result = icmpPingService.ping("example.com");
+
+        assertFalse(result.isSuccessful());
+        assertNull(((ICMPPingResult) result).getStatistics());
+        assertEquals(List.of("ping: unknown output"), ((ICMPPingResult) result).getResultLines());
     }
 
     @Test
@@ -89,7 +127,7 @@ class ICMPPingServiceTest {
         assertEquals(host, result.getHost());
         assertInstanceOf(ICMPPingResult.class, result);
         ICMPPingResult icmpResult = (ICMPPingResult) result;
-        assertTrue(icmpResult.getResultLines().toString().contains("80% loss"));
+        assertEquals(0.8, icmpResult.getStatistics().lossRatio(), 1e-9);
     }
 
     @Test
@@ -106,4 +144,26 @@ class ICMPPingServiceTest {
         ICMPPingResult icmpResult = (ICMPPingResult) result;
         assertEquals("Error: Test Exception", icmpResult.getResultLines().get(0));
     }
+
+    @Test
+    void ping_stubPrintsSummary_killsProcessWithoutWaitingForExit(@TempDir Path tempDir) throws Exception {
+        Path stub = TraceRoutePingServiceTest.writeStub(tempDir, """
+                #!/bin/sh
+                echo "PING $3 ($3) 56(84) bytes of data."
+                echo "64 bytes from $3: icmp_seq=1 ttl=64 time=0.045 ms"
+                echo ""
+                echo "--- $3 ping statistics ---"
+                echo "5 packets transmitted, 5 received, 0% packet loss, time 4099ms"
+                echo "rtt min/avg/max/mdev = 0.031/0.043/0.051/0.007 ms"
+                exec sleep 30
+                """);
+        var service = new ICMPPingService(new ProcessBuilder(), new Config(new String[]{"host"}, 300, 20_000), stub.toString(), null, true);
+
+        long start = System.nanoTime();
+        PingResult result = service.ping("127.0.0.1");
+
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(10));
+        assertTrue(result.isSuccessful());
+        assertEquals(5, ((ICMPPingResult) result).getResultLines().size());
+    }
 }
@@ -0,0 +1,44 @@
+package com.github.akopyanrob.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class InFlightLimiterTest {
+
+    @Test
+    void release_hostAtPerHostLimit_admitsWaiterOfOtherHost() {
+        InFlightLimiter limiter = new InFlightLimiter(2, 1);
+        limiter.acquire("a");
+        limiter.acquire("b");
+        CompletableFuture<Void> secondA = limiter.acquire("a");
+        CompletableFuture<Void> c = limiter.acquire("c");
+
+        limiter.release("b");
+
+        assertFalse(secondA.isDone());
+        assertTrue(c.isDone());
+        assertEquals(1, limiter.getWaiting());
+    }
+
+    @Test
+    void release_globalLimit_admitsWaitersInArrivalOrder() {
+        InFlightLimiter limiter = new InFlightLimiter(1, 2);
+        limiter.acquire("a");
+        CompletableFuture<Void> b = limiter.acquire("b");
+        CompletableFuture<Void> c = limiter.acquire("c");
+
+        limiter.release("a");
+        assertTrue(b.isDone());
+        assertFalse(c.isDone());
+
+        limiter.release("b");
+        assertTrue(c.isDone());
+        assertEquals(1, limiter.getInFlight());
+        assertEquals(0, limiter.getWaiting());
+    }
+}
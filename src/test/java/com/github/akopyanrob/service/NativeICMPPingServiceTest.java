@@ -0,0 +1,68 @@
+package com.github.akopyanrob.service;
+
+import com.github.akopyanrob.result.ICMPPingResult;
+import com.github.akopyanrob.result.PingResult;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs against 127.0.0.1 when net.ipv4.ping_group_range allows unprivileged ICMP sockets, skipped otherwise.
+ */
+class NativeICMPPingServiceTest {
+
+    private NativeICMPPingService nativeICMPPingService;
+
+    @BeforeEach
+    void setUp() {
+        nativeICMPPingService = NativeICMPPingService.create(new Config(new String[]{"127.0.0.1"}, 300, 1000), 10);
+        Assumptions.assumeTrue(nativeICMPPingService != null, "Unprivileged ICMP sockets are not available");
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (nativeICMPPingService != null) {
+            nativeICMPPingService.close();
+        }
+    }
+
+    @Test
+    void create_negativePacketInterval_throwsException() {
+        assertThrows(IllegalArgumentException.class, () -> NativeICMPPingService.create(new Config(new String[]{"Host"}, 300, 400), -1));
+    }
+
+    @Test
+    void pingAsync_loopback_returnsPerPacketRoundTrips() {
+        PingResult result = nativeICMPPingService.pingAsync("127.0.0.1").join();
+
+        assertTrue(result.isSuccessful());
+        assertEquals("127.0.0.1", result.getHost());
+        ICMPPingResult icmpResult = (ICMPPingResult) result;
+        assertEquals(5, icmpResult.getStatistics().received());
+        assertEquals(5, icmpResult.getStatistics().roundTripMicros().length);
+        assertTrue(icmpResult.getStatistics().roundTripMicros()[0] >= 0);
+    }
+
+    @Test
+    void pingAsync_manyConcurrentHosts_matchesRepliesPerHost() {
+        var first = nativeICMPPingService.pingAsync("127.0.0.1");
+        var second = nativeICMPPingService.pingAsync("127.0.0.2");
+
+        assertTrue(first.join().isSuccessful());
+        assertTrue(second.join().isSuccessful());
+    }
+
+    @Test
+    void pingAsync_unknownHost_returnsFailedPingResult() {
+        PingResult result = nativeICMPPingService.pingAsync("unknown-host.invalid").join();
+
+        assertFalse(result.isSuccessful());
+        assertTrue(((ICMPPingResult) result).getResultLines().get(0).startsWith("Error: "));
+    }
+}
@@ -0,0 +1,98 @@
+package com.github.akopyanrob.service;
+
+import com.github.akopyanrob.result.PingResult;
+import com.github.akopyanrob.result.TraceHop;
+import com.github.akopyanrob.result.TraceRoutePingResult;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs against loopback addresses on Linux, skipped when the native engine is not available.
+ */
+class NativeTraceRoutePingServiceTest {
+
+    private NativeTraceRoutePingService nativeTraceRoutePingService;
+
+    @BeforeEach
+    void setUp() {
+        nativeTraceRoutePingService = NativeTraceRoutePingService.create(new Config(new String[]{"127.0.0.1"}, 300, 1000), 8, 2, null);
+        Assumptions.assumeTrue(nativeTraceRoutePingService != null, "Native trace engine is not available");
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (nativeTraceRoutePingService != null) {
+            nativeTraceRoutePingService.close();
+        }
+    }
+
+    @Test
+    void create_invalidMaxHops_throwsException() {
+        assertThrows(IllegalArgumentException.class, () -> NativeTraceRoutePingService.create(new Config(new String[]{"Host"}, 300, 400), 0, 1, null));
+    }
+
+    @Test
+    void pingAsync_loopback_reachesDestinationAtFirstHop() {
+        PingResult result = nativeTraceRoutePingService.pingAsync("127.0.0.1").join();
+
+        assertTrue(result.isSuccessful());
+        List<TraceHop> hops = ((TraceRoutePingResult) result).getHops();
+        assertEquals(1, hops.size());
+        assertEquals("127.0.0.1", hops.get(0).address());
+        assertTrue(hops.get(0).rttMicros() >= 0);
+    }
+
+    @Test
+    void pingAsync_manyConcurrentHosts_matchesAnswersPerHost() {
+        var first = nativeTraceRoutePingService.pingAsync("127.0.0.1");
+        var second = nativeTraceRoutePingService.pingAsync("127.0.0.2");
+        var third = nativeTraceRoutePingService.pingAsync("127.0.0.3");
+
+        assertEquals("127.0.0.1", ((TraceRoutePingResult) first.join()).getHops().get(0).address());
+        assertEquals("127.0.0.2", ((TraceRoutePingResult) second.join()).getHops().get(0).address());
+        assertEquals("127.0.0.3", ((TraceRoutePingResult) third.join()).getHops().get(0).address());
+    }
+
+    @Test
+    void pingAsync_unreachableAddress_failsWithinOneTimeout() {
+        long start = System.nanoTime();
+        // The broadcast address can not be sent to without SO_BROADCAST, so the probes fail locally
+        PingResult result = nativeTraceRoutePingService.pingAsync("255.255.255.255").join();
+
+        assertFalse(result.isSuccessful());
+        assertTrue(((TraceRoutePingResult) result).getResultLines().get(0).startsWith("Error: "));
+        assertTrue(System.nanoTime() - start < 1_000_000_000L);
+    }
+
+    @Test
+    void pingAsync_unknownHost_returnsFailedPingResult() {
+        PingResult result = nativeTraceRoutePingService.pingAsync("unknown-host.invalid").join();
+
+        assertFalse(result.isSuccessful());
+        assertTrue(((TraceRoutePingResult) result).getResultLines().get(0).startsWith("Error: "));
+    }
+
+    @Test
+    void engineTrace_afterClose_failsWithoutSending() throws Exception {
+        NativeTraceEngine engine = NativeTraceEngine.open(1);
+        var running = engine.trace((Inet4Address) InetAddress.getByName("127.0.0.1"), 8, 1000);
+        engine.close();
+
+        running.join();
+        var closed = engine.trace((Inet4Address) InetAddress.getByName("127.0.0.1"), 8, 1000);
+
+        assertTrue(closed.isCompletedExceptionally());
+        assertFalse(engine.isFailed());
+    }
+}
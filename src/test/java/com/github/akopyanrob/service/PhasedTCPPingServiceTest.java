@@ -0,0 +1,160 @@
+package com.github.akopyanrob.service;
+
+import com.github.akopyanrob.dns.DnsCache;
+import com.github.akopyanrob.dns.DnsCacheConfig;
+import com.github.akopyanrob.result.ConnectionPhases;
+import com.github.akopyanrob.result.PingResult;
+import com.github.akopyanrob.result.TCPPingResult;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PhasedTCPPingServiceTest {
+
+    private final Config config = new Config(new String[]{"Host"}, 300, 2000);
+    private final CopyOnWriteArrayList<String> requests = new CopyOnWriteArrayList<>();
+    private ServerSocket server;
+    private Thread serverThread;
+    private volatile String response = "HTTP/1.1 204 No Content\r\n\r\n";
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = new ServerSocket();
+        server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        serverThread = Thread.ofVirtual().start(this::serve);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        server.close();
+        serverThread.interrupt();
+    }
+
+    @Test
+    void ping_respondingServer_returnsPhases() {
+        PhasedTCPPingService service = new PhasedTCPPingService(config, null);
+        String host = "127.0.0.1:" + server.getLocalPort();
+
+        PingResult result = service.ping(host);
+
+        assertInstanceOf(TCPPingResult.class, result);
+        TCPPingResult tcpResult = (TCPPingResult) result;
+        assertTrue(tcpResult.isSuccessful());
+        assertEquals(host, tcpResult.getHost());
+        assertEquals(204, tcpResult.getResponseCode());
+        ConnectionPhases phases = tcpResult.getPhases();
+        assertNotNull(phases);
+        assertTrue(phases.connectNanos() > 0);
+        assertTrue(phases.firstByteNanos() > 0);
+        assertEquals(-1, phases.tlsNanos());
+        assertEquals(phases.connectionNanos(), tcpResult.getResponseTimeNanos());
+        assertTrue(tcpResult.toString().contains("\"phases\":{\"dnsNanos\""));
+    }
+
+    @Test
+    void ping_everyPing_opensFreshConnectionWithHeadRequest() {
+        PhasedTCPPingService service = new PhasedTCPPingService(config, null);
+        String host = "127.0.0.1:" + server.getLocalPort() + "/health";
+
+        service.ping(host);
+        service.ping(host);
+
+        assertEquals(2, requests.size());
+        assertTrue(requests.getFirst().startsWith("HEAD /health HTTP/1.1\r\nHost: 127.0.0.1:" + server.getLocalPort() + "\r\n"));
+        assertTrue(requests.getFirst().contains("Connection: close"));
+    }
+
+    @Test
+    void ping_malformedResponse_returnsFailedPingResult() {
+        response = "garbage\r\n";
+        PhasedTCPPingService service = new PhasedTCPPingService(config, null);
+
+        PingResult result = service.ping("127.0.0.1:" + server.getLocalPort());
+
+        assertFalse(result.isSuccessful());
+        assertNull(((TCPPingResult) result).getPhases());
+    }
+
+    @Test
+    void ping_httpsService_probesHostsWithoutSchemeOverTls() {
+        // The test server does not speak TLS, so the handshake times out
+        PhasedTCPPingService service = new PhasedTCPPingService(new Config(new String[]{"Host"}, 300, 500), null, true);
+
+        PingResult result = service.ping("127.0.0.1:" + server.getLocalPort());
+
+        assertFalse(result.isSuccessful());
+        assertTrue(requests.stream().noneMatch(request -> request.startsWith("HEAD")));
+    }
+
+    @Test
+    void ping_refusedConnection_returnsFailedPingResult() throws IOException {
+        // A socket nobody accepts on, closing the test server defers the close while its thread is blocked in accept
+        int port;
+        try (ServerSocket unused = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            port = unused.getLocalPort();
+        }
+        PhasedTCPPingService service = new PhasedTCPPingService(config, null);
+
+        PingResult result = service.ping("127.0.0.1:" + port);
+
+        assertFalse(result.isSuccessful());
+        assertNull(((TCPPingResult) result).getResponseTimeMillis());
+    }
+
+    @Test
+    void ping_nameResolvedByDnsCache_connectsToResolvedAddress() {
+        DnsCache dnsCache = new DnsCache(hostName -> {
+            if (!hostName.equals("service.internal")) {
+                throw new UnknownHostException(hostName);
+            }
+            return new InetAddress[]{InetAddress.getLoopbackAddress()};
+        }, new DnsCacheConfig(60_000, 1000));
+        PhasedTCPPingService service = new PhasedTCPPingService(config, dnsCache);
+
+        PingResult resolved = service.ping("service.internal:" + server.getLocalPort());
+        PingResult unknown = service.ping("unknown.internal:" + server.getLocalPort());
+
+        assertTrue(resolved.isSuccessful());
+        assertTrue(requests.getFirst().contains("Host: service.internal:" + server.getLocalPort()));
+        assertFalse(unknown.isSuccessful());
+        dnsCache.close();
+    }
+
+    private void serve() {
+        while (!server.isClosed()) {
+            try (Socket socket = server.accept()) {
+                requests.add(readRequest(socket.getInputStream()));
+                socket.getOutputStream().write(response.getBytes(StandardCharsets.US_ASCII));
+                socket.getOutputStream().flush();
+            } catch (IOException e) {
+                // The server was closed
+            }
+        }
+    }
+
+    private static String readRequest(InputStream input) throws IOException {
+        StringBuilder request = new StringBuilder();
+        int next;
+        while (!request.toString().endsWith("\r\n\r\n") && (next = input.read()) >= 0) {
+            request.append((char) next);
+        }
+        return request.toString();
+    }
+}
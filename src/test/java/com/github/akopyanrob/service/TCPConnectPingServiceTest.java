@@ -0,0 +1,114 @@
+package com.github.akopyanrob.service;
+
+import com.github.akopyanrob.result.PingResult;
+import com.github.akopyanrob.result.TCPConnectPingResult;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TCPConnectPingServiceTest {
+
+    private ServerSocketChannel listener;
+    private TCPConnectPingService tcpConnectPingService;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        listener = ServerSocketChannel.open();
+        listener.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 1024);
+        tcpConnectPingService = new TCPConnectPingService(listener.socket().getLocalPort(),
+                new Config(new String[]{"127.0.0.1"}, 300, 2000), new InFlightLimiter(10_000, 10_000));
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        tcpConnectPingService.close();
+        listener.close();
+    }
+
+    @Test
+    void constructor_invalidPort_throwsException() {
+        assertThrows(IllegalArgumentException.class, () -> new TCPConnectPingService(0,
+                new Config(new String[]{"Host"}, 300, 400), new InFlightLimiter(1, 1)));
+    }
+
+    @Test
+    void pingAsync_listeningPort_returnsConnectTime() {
+        PingResult result = tcpConnectPingService.pingAsync("127.0.0.1").join();
+
+        assertTrue(result.isSuccessful());
+        assertEquals("127.0.0.1", result.getHost());
+        assertInstanceOf(TCPConnectPingResult.class, result);
+        TCPConnectPingResult connectResult = (TCPConnectPingResult) result;
+        assertEquals(listener.socket().getLocalPort(), connectResult.getPort());
+        assertNotNull(connectResult.getConnectTimeNanos());
+        assertTrue(connectResult.getConnectTimeNanos() > 0);
+    }
+
+    @Test
+    void pingAsync_closedPort_returnsFailedPingResult() throws IOException {
+        int closedPort;
+        try (ServerSocketChannel closed = ServerSocketChannel.open()) {
+            closed.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+            closedPort = closed.socket().getLocalPort();
+        }
+
+        PingResult result = tcpConnectPingService.pingAsync("127.0.0.1:" + closedPort).join();
+
+        assertFalse(result.isSuccessful());
+        assertEquals("127.0.0.1:" + closedPort, result.getHost());
+        assertEquals(closedPort, ((TCPConnectPingResult) result).getPort());
+        assertNull(((TCPConnectPingResult) result).getConnectTimeNanos());
+    }
+
+    @Test
+    void pingAsync_invalidPort_returnsFailedPingResult() {
+        PingResult result = tcpConnectPingService.pingAsync("127.0.0.1:abc").join();
+
+        assertFalse(result.isSuccessful());
+        assertEquals(-1, ((TCPConnectPingResult) result).getPort());
+    }
+
+    @Test
+    void pingAsync_unknownHost_returnsFailedPingResult() {
+        PingResult result = tcpConnectPingService.pingAsync("unknown-host.invalid").join();
+
+        assertFalse(result.isSuccessful());
+    }
+
+    @Test
+    void pingAsync_manyConcurrentConnects_allSucceed() {
+        List<CompletableFuture<PingResult>> results = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            results.add(tcpConnectPingService.pingAsync("127.0.0.1"));
+        }
+
+        for (CompletableFuture<PingResult> result : results) {
+            assertTrue(result.join().isSuccessful());
+        }
+    }
+
+    @Test
+    void pingAsync_afterClose_returnsFailedPingResult() {
+        tcpConnectPingService.close();
+
+        PingResult result = tcpConnectPingService.pingAsync("127.0.0.1").exceptionally(throwable -> null).join();
+
+        assertTrue(result == null || !result.isSuccessful());
+    }
+}
@@ -1,5 +1,7 @@
 package com.github.akopyanrob.service;
 
+import com.github.akopyanrob.dns.DnsCache;
+import com.github.akopyanrob.dns.DnsCacheConfig;
 import com.github.akopyanrob.result.PingResult;
 import com.github.akopyanrob.result.TCPPingResult;
 import org.junit.jupiter.api.BeforeEach;
@@ -19,6 +21,8 @@ import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 class TCPPingServiceTest {
@@ -47,7 +51,8 @@ class TCPPingServiceTest {
         assertNotNull(result);
         assertTrue(result.isSuccessful());
         assertEquals(host, result.getHost());
-        assertTrue(((TCPPingResult) result).getResponseTimeMillis() > 0);
+        assertTrue(((TCPPingResult) result).getResponseTimeNanos() > 0);
+        assertEquals(((TCPPingResult) result).getResponseTimeNanos() / 1_000_000, ((TCPPingResult) result).getResponseTimeMillis());
         assertEquals(200, ((TCPPingResult) result).getResponseCode());
     }
 
@@ -106,4 +111,21 @@ class TCPPingServiceTest {
 
         assertNull(result);
     }
-}
\ No newline at end of file
+
+    @Test
+    void ping_hostUnknownToDnsCache_returnsFailedPingResultWithoutRequest() throws Exception {
+        String host = "unknown-host";
+        DnsCache dnsCache = new DnsCache(hostName -> {
+            throw new UnknownHostException(hostName);
+        }, new DnsCacheConfig(1000, 1000));
+        tcpPingService = new TCPPingService(httpClient, config, dnsCache);
+
+        PingResult result = tcpPingService.ping(host);
+
+        assertNotNull(result);
+        assertFalse(result.isSuccessful());
+        assertEquals(host, result.getHost());
+        verify(httpClient, never()).send(any(HttpRequest.class), any(HttpResponse.BodyHandler.class));
+        dnsCache.close();
+    }
+}
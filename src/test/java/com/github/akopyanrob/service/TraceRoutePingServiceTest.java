@@ -2,8 +2,10 @@ package com.github.akopyanrob.service;
 
 import com.github.akopyanrob.result.PingResult;
 import com.github.akopyanrob.result.TraceRoutePingResult;
+import org.junit.jupiter.api.Assumptions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.Mockito;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -16,6 +18,9 @@ import static org.mockito.Mockito.when;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
 
 public class TraceRoutePingServiceTest {
 
@@ -93,5 +98,71 @@ public class TraceRoutePingServiceTest {
         TraceRoutePingResult traceRoutePingResult = (TraceRoutePingResult) result;
         assertEquals("Error: Test Exception", traceRoutePingResult.getResultLines().get(0));
     }
-}
 
+    @Test
+    public void testTraceRouteStubSilentHops_killsProcessEarly(@TempDir Path tempDir) throws Exception {
+        Path stub = writeStub(tempDir, """
+                #!/bin/sh
+                echo "traceroute to $2 ($2), 30 hops max, 60 byte packets"
+                echo " 1  192.168.1.1 (192.168.1.1)  0.421 ms  0.389 ms  0.371 ms"
+                echo " 2  * * *"
+                echo " 3  10.0.0.1 (10.0.0.1)  1.421 ms  1.389 ms  1.371 ms"
+                echo " 4  * * *"
+                echo " 5  * * *"
+                echo " 6  * * *"
+                echo " 7  * * *"
+                exec sleep 30
+                """);
+        var service = new TraceRoutePingService(new ProcessBuilder(), new Config(new String[]{"host"}, 300, 20_000), stub.toString());
+
+        long start = System.nanoTime();
+        PingResult result = service.ping("127.0.0.1");
+
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(10));
+        assertFalse(result.isSuccessful());
+        assertEquals(8, ((TraceRoutePingResult) result).getResultLines().size());
+    }
+
+    @Test
+    public void testTraceRouteStubSingleSilentHop_readsHopsBehindIt(@TempDir Path tempDir) throws Exception {
+        Path stub = writeStub(tempDir, """
+                #!/bin/sh
+                echo "traceroute to $2 ($2), 30 hops max, 60 byte packets"
+                echo " 1  192.168.1.1 (192.168.1.1)  0.421 ms  0.389 ms  0.371 ms"
+                echo " 2  * * *"
+                echo " 3  10.0.0.1 (10.0.0.1)  1.421 ms  1.389 ms  1.371 ms"
+                echo " 4  $2 ($2)  2.421 ms  2.389 ms  2.371 ms"
+                """);
+        var service = new TraceRoutePingService(new ProcessBuilder(), new Config(new String[]{"host"}, 300, 20_000), stub.toString());
+
+        PingResult result = service.ping("127.0.0.1");
+
+        assertFalse(result.isSuccessful());
+        assertEquals(5, ((TraceRoutePingResult) result).getResultLines().size());
+    }
+
+    @Test
+    public void testTraceRouteStubHanging_timesOut(@TempDir Path tempDir) throws Exception {
+        Path stub = writeStub(tempDir, """
+                #!/bin/sh
+                echo "traceroute to $2 ($2), 30 hops max, 60 byte packets"
+                sleep 30
+                """);
+        var service = new TraceRoutePingService(new ProcessBuilder(), new Config(new String[]{"host"}, 300, 300), stub.toString());
+
+        long start = System.nanoTime();
+        PingResult result = service.ping("127.0.0.1");
+
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(10));
+        assertFalse(result.isSuccessful());
+        assertEquals("Error: Command timed out after 300 ms", ((TraceRoutePingResult) result).getResultLines().get(0));
+    }
+
+    static Path writeStub(Path directory, String script) throws IOException {
+        Assumptions.assumeFalse(System.getProperty("os.name").toLowerCase().contains("win"));
+        Path stub = directory.resolve("stub.sh");
+        Files.writeString(stub, script);
+        assertTrue(stub.toFile().setExecutable(true));
+        return stub;
+    }
+}
@@ -0,0 +1,130 @@
+package com.github.akopyanrob.topology;
+
+import com.github.akopyanrob.result.TraceHop;
+import com.github.akopyanrob.result.TraceRoutePingResult;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class TopologyGraphTest {
+
+    @Test
+    void constructor_singleHostIncidents_throwsException() {
+        assertThrows(IllegalArgumentException.class, () -> new TopologyGraph(1));
+    }
+
+    @Test
+    void update_sharedPrefix_storesCommonHopsOnce() {
+        TopologyGraph topologyGraph = new TopologyGraph(2);
+
+        topologyGraph.update("a", trace(true, "10.0.0.1", "10.0.1.1", "192.0.2.1"));
+        topologyGraph.update("b", trace(true, "10.0.0.1", "10.0.1.1", "192.0.2.2"));
+        topologyGraph.update("c", trace(true, "10.0.0.1", "10.0.2.1", "192.0.2.3"));
+
+        assertEquals(3, topologyGraph.getHostCount());
+        assertEquals(6, topologyGraph.getNodeCount());
+    }
+
+    @Test
+    void update_changedPath_removesUnusedHops() {
+        TopologyGraph topologyGraph = new TopologyGraph(2);
+        topologyGraph.update("a", trace(true, "10.0.0.1", "10.0.1.1", "192.0.2.1"));
+
+        topologyGraph.update("a", trace(true, "10.0.0.1", "10.0.2.1", "192.0.2.1"));
+
+        assertEquals(3, topologyGraph.getNodeCount());
+        topologyGraph.remove("a");
+        assertEquals(0, topologyGraph.getNodeCount());
+    }
+
+    @Test
+    void update_failedTraceOfKnownHost_keepsLastPath() {
+        TopologyGraph topologyGraph = new TopologyGraph(2);
+        topologyGraph.update("a", trace(true, "10.0.0.1", "10.0.1.1", "192.0.2.1"));
+        topologyGraph.update("b", trace(true, "10.0.0.1", "10.0.1.1", "192.0.2.2"));
+
+        topologyGraph.update("a", trace(false, "10.0.0.1", null, null));
+
+        TopologyGraph.Correlation correlation = topologyGraph.correlate(List.of("a", "b"));
+        assertEquals(List.of(new Incident("10.0.1.1", List.of("10.0.0.1", "10.0.1.1"), List.of("a", "b"))), correlation.incidents());
+    }
+
+    @Test
+    void correlate_allHostsBehindHopFailed_returnsDeepestSharedHop() {
+        TopologyGraph topologyGraph = new TopologyGraph(2);
+        topologyGraph.update("a", trace(true, "10.0.0.1", "10.0.1.1", "10.0.1.2", "192.0.2.1"));
+        topologyGraph.update("b", trace(true, "10.0.0.1", "10.0.1.1", "10.0.1.2", "192.0.2.2"));
+        topologyGraph.update("c", trace(true, "10.0.0.1", "10.0.2.1", "192.0.2.3"));
+
+        TopologyGraph.Correlation correlation = topologyGraph.correlate(List.of("a", "b", "c", "unknown"));
+
+        // Every host behind 10.0.0.1 failed, the hosts split after it
+        assertEquals(List.of(new Incident("10.0.0.1", List.of("10.0.0.1"), List.of("a", "b", "c"))), correlation.incidents());
+        assertEquals(List.of("unknown"), correlation.uncorrelatedHosts());
+    }
+
+    @Test
+    void correlate_healthyHostBehindHop_reportsHostsSeparately() {
+        TopologyGraph topologyGraph = new TopologyGraph(2);
+        topologyGraph.update("a", trace(true, "10.0.0.1", "10.0.1.1", "192.0.2.1"));
+        topologyGraph.update("b", trace(true, "10.0.0.1", "10.0.2.1", "192.0.2.2"));
+        topologyGraph.update("c", trace(true, "10.0.0.1", "10.0.2.1", "192.0.2.3"));
+
+        TopologyGraph.Correlation correlation = topologyGraph.correlate(List.of("a", "b"));
+
+        assertEquals(List.of(), correlation.incidents());
+        assertEquals(List.of("a", "b"), correlation.uncorrelatedHosts());
+    }
+
+    @Test
+    void correlate_fewerHostsThanMinimum_returnsNoIncident() {
+        TopologyGraph topologyGraph = new TopologyGraph(3);
+        topologyGraph.update("a", trace(true, "10.0.0.1", "192.0.2.1"));
+        topologyGraph.update("b", trace(true, "10.0.0.1", "192.0.2.2"));
+
+        TopologyGraph.Correlation correlation = topologyGraph.correlate(List.of("a", "b"));
+
+        assertEquals(List.of(), correlation.incidents());
+        assertEquals(List.of("a", "b"), correlation.uncorrelatedHosts());
+    }
+
+    @Test
+    void correlate_hostsStillFailingFromEarlierBatches_joinIncident() {
+        TopologyGraph topologyGraph = new TopologyGraph(3);
+        topologyGraph.update("a", trace(true, "10.0.0.1", "10.0.1.1", "192.0.2.1"));
+        topologyGraph.update("b", trace(true, "10.0.0.1", "10.0.1.1", "192.0.2.2"));
+        topologyGraph.update("c", trace(true, "10.0.0.1", "10.0.2.1", "192.0.2.3"));
+        topologyGraph.update("d", trace(true, "10.0.3.1", "192.0.2.4"));
+
+        // a and b failed in an earlier batch and have not recovered, d is failing behind another hop
+        TopologyGraph.Correlation correlation = topologyGraph.correlate(List.of("c"), Set.of("a", "b", "d")::contains);
+
+        assertEquals(List.of(new Incident("10.0.0.1", List.of("10.0.0.1"), List.of("c", "a", "b"))), correlation.incidents());
+        assertEquals(List.of(), correlation.uncorrelatedHosts());
+    }
+
+    @Test
+    void correlate_onlyEarlierFailures_returnsNothing() {
+        TopologyGraph topologyGraph = new TopologyGraph(2);
+        topologyGraph.update("a", trace(true, "10.0.0.1", "192.0.2.1"));
+        topologyGraph.update("b", trace(true, "10.0.0.1", "192.0.2.2"));
+
+        TopologyGraph.Correlation correlation = topologyGraph.correlate(List.of(), host -> true);
+
+        assertEquals(List.of(), correlation.incidents());
+        assertEquals(List.of(), correlation.uncorrelatedHosts());
+    }
+
+    private static TraceRoutePingResult trace(boolean successful, String... addresses) {
+        List<TraceHop> hops = new ArrayList<>();
+        for (String address : addresses) {
+            hops.add(new TraceHop(hops.size() + 1, address, address != null ? 1000 : -1));
+        }
+        return new TraceRoutePingResult(successful, "host", 0, hops, null);
+    }
+}
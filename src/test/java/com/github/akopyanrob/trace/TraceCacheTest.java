@@ -0,0 +1,145 @@
+package com.github.akopyanrob.trace;
+
+import com.github.akopyanrob.result.PingResult;
+import com.github.akopyanrob.result.TraceRoutePingResult;
+import com.github.akopyanrob.service.PingService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TraceCacheTest {
+    private static final String HOST = "example.com";
+
+    private final AtomicLong clock = new AtomicLong(1_000_000);
+    private final AtomicInteger traces = new AtomicInteger();
+    private final AtomicBoolean failing = new AtomicBoolean();
+    private final Queue<Runnable> pendingTraces = new ArrayDeque<>();
+    private final List<PingResult> published = new CopyOnWriteArrayList<>();
+    private ScheduledExecutorService timer;
+    private TraceCache traceCache;
+
+    @BeforeEach
+    void setUp() {
+        PingService traceService = host -> {
+            traces.incrementAndGet();
+            if (failing.get()) {
+                throw new IllegalStateException("trace failed");
+            }
+            return new TraceRoutePingResult(true, host, clock.get(), List.of("1  10.0.0.1  1.000 ms"));
+        };
+        timer = Executors.newSingleThreadScheduledExecutor();
+        traceCache = new TraceCache(traceService, new TraceCacheConfig(60_000, 5_000, 100, 1),
+                (host, result) -> published.add(result), timer, pendingTraces::add, clock::get);
+    }
+
+    @AfterEach
+    void tearDown() {
+        timer.shutdownNow();
+    }
+
+    @Test
+    void trigger_whileTraceRuns_sharesIt() {
+        CompletableFuture<PingResult> first = traceCache.trigger(HOST);
+        CompletableFuture<PingResult> second = traceCache.trigger(HOST);
+
+        assertSame(first, second);
+        runTraces();
+        assertEquals(1, traces.get());
+        assertEquals(List.of(first.join()), published);
+    }
+
+    @Test
+    void trigger_withinMinInterval_returnsLastTrace() {
+        traceCache.trigger(HOST);
+        runTraces();
+        clock.addAndGet(4_999);
+
+        CompletableFuture<PingResult> recent = traceCache.trigger(HOST);
+        assertTrue(recent.isDone());
+        clock.addAndGet(1);
+        CompletableFuture<PingResult> fresh = traceCache.trigger(HOST);
+
+        assertFalse(fresh.isDone());
+        runTraces();
+        assertEquals(2, traces.get());
+    }
+
+    @Test
+    void discover_expiredTrace_tracesAgainOncePerTtl() {
+        assertEquals(60_000, traceCache.discover(HOST));
+        runTraces();
+        clock.addAndGet(20_000);
+
+        assertEquals(40_000, traceCache.discover(HOST));
+        assertTrue(pendingTraces.isEmpty());
+        assertEquals(1, traces.get());
+        clock.addAndGet(40_000);
+        assertNull(traceCache.getCachedTrace(HOST));
+
+        traceCache.discover(HOST);
+        runTraces();
+        assertEquals(2, traces.get());
+        assertEquals(1, traceCache.getCachedTrace(HOST).getHops().size());
+    }
+
+    @Test
+    void discover_afterTriggeredTrace_waitsForItsTtl() {
+        traceCache.trigger(HOST);
+        runTraces();
+        clock.addAndGet(10_000);
+
+        assertEquals(50_000, traceCache.discover(HOST));
+        assertEquals(1, traces.get());
+    }
+
+    @Test
+    void triggerForReport_traceNotFinished_completesWithNullAfterReportWait() {
+        long start = System.nanoTime();
+
+        CompletableFuture<PingResult> result = traceCache.triggerForReport(HOST);
+
+        assertFalse(result.isDone());
+        assertNull(result.join());
+        assertTrue(System.nanoTime() - start >= 100_000_000L);
+        runTraces();
+        assertEquals(1, published.size());
+    }
+
+    @Test
+    void trigger_afterFailedTrace_doesNotServeExpiredTrace() {
+        traceCache.trigger(HOST);
+        runTraces();
+        clock.addAndGet(60_000);
+        failing.set(true);
+
+        traceCache.trigger(HOST);
+        runTraces();
+
+        assertNull(traceCache.getCachedTrace(HOST));
+        assertFalse(traceCache.trigger(HOST).isDone());
+    }
+
+    private void runTraces() {
+        Runnable trace;
+        while ((trace = pendingTraces.poll()) != null) {
+            trace.run();
+        }
+    }
+}